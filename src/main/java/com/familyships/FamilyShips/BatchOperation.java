@@ -0,0 +1,83 @@
+package com.familyships.FamilyShips;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// One step of a /model/batch request. `op` is the name of the corresponding
+// endpoint (new_person, delete_person, new_family, delete_family, attach_child,
+// detach_child, attach_parent, detach_parent, set_names) and the other fields are
+// its parameters.
+//
+// new_person and new_family can name the created entity with `ref`, which must not be
+// a number. Any id of a later operation can then be either a number or one of those
+// refs.
+public class BatchOperation {
+    private String op;
+    private String ref;
+    private String personId;
+    private String familyId;
+    private String childId;
+    private String parentId;
+    private String spaceSeparatedNames;
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public String getRef() {
+        return ref;
+    }
+
+    public void setRef(String ref) {
+        this.ref = ref;
+    }
+
+    public String getPersonId() {
+        return personId;
+    }
+
+    public void setPersonId(String personId) {
+        this.personId = personId;
+    }
+
+    public String getFamilyId() {
+        return familyId;
+    }
+
+    public void setFamilyId(String familyId) {
+        this.familyId = familyId;
+    }
+
+    public String getChildId() {
+        return childId;
+    }
+
+    public void setChildId(String childId) {
+        this.childId = childId;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(String parentId) {
+        this.parentId = parentId;
+    }
+
+    public String getSpaceSeparatedNames() {
+        return spaceSeparatedNames;
+    }
+
+    public void setSpaceSeparatedNames(String spaceSeparatedNames) {
+        this.spaceSeparatedNames = spaceSeparatedNames;
+    }
+
+    public List<String> getNames() {
+        String names = spaceSeparatedNames != null ? spaceSeparatedNames : "";
+        return new ArrayList<String>(List.of(names.split(" ")));
+    }
+}
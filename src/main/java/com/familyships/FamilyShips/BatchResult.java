@@ -0,0 +1,59 @@
+package com.familyships.FamilyShips;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Response of /model/batch. `ids` maps the refs of the created people and families
+// to their real ids. When `applied` is false, nothing was changed and
+// `failedOperation` is the index of the first operation that could not be applied.
+public class BatchResult {
+    private boolean applied = true;
+    private Integer failedOperation = null;
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    public boolean isApplied() {
+        return applied;
+    }
+
+    public Integer getFailedOperation() {
+        return failedOperation;
+    }
+
+    public Map<String, Integer> getIds() {
+        return applied ? ids : Map.of();
+    }
+
+    void fail(int operationIndex) {
+        applied = false;
+        failedOperation = operationIndex;
+    }
+
+    // Refs that are numbers could be mistaken for ids, so they fail the operation.
+    boolean assign(String ref, Integer id) {
+        if (ref != null) {
+            if (ids.containsKey(ref) || parseId(ref) != null) {
+                return false;
+            }
+            ids.put(ref, id);
+        }
+        return true;
+    }
+
+    // Turns either a number or a ref of an earlier operation into an id. Returns null
+    // when it's neither.
+    Integer resolve(String idOrRef) {
+        if (idOrRef == null) {
+            return null;
+        }
+        Integer id = parseId(idOrRef);
+        return id != null ? id : ids.get(idOrRef);
+    }
+
+    private static Integer parseId(String idOrRef) {
+        try {
+            return Integer.valueOf(idOrRef);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.familyships.FamilyShips;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.familyships.FamilyShips.metrics.StatementCounter;
+import com.familyships.FamilyShips.model.TreeChangeLog;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Runs a modification of a tree (a `ModelService` transaction) again when it lost the
+// race against a concurrent modification of the same tree or family, see
+// `Tree.version`. Every attempt is a new transaction that reads the tree as the
+// winner left it, so a retried link is checked again for loops.
+//
+// With many editors on the same tree a long modification could keep losing to short
+// ones, so after `familyships.conflict-retry.optimistic-attempts` the next attempts
+// lock the tree (see `TreeChangeLog.locked`). After
+// `familyships.conflict-retry.max-attempts` attempts (which takes a deadlock) the
+// modification fails with 409 Conflict and the client can reload and try again.
+@Component
+public class ConflictRetry {
+    @ResponseStatus(value = HttpStatus.CONFLICT, reason = "The tree was modified concurrently, reload it and try again.")
+    public static class ConflictException extends RuntimeException {
+        public ConflictException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    @Autowired
+    private StatementCounter statementCounter;
+    @Autowired
+    private TreeChangeLog treeChangeLog;
+
+    private final int optimisticAttempts;
+    private final int maxAttempts;
+
+    private final Counter retries;
+    private final Counter conflicts;
+
+    public ConflictRetry(@Value("${familyships.conflict-retry.optimistic-attempts:3}") int optimisticAttempts,
+            @Value("${familyships.conflict-retry.max-attempts:5}") int maxAttempts,
+            MeterRegistry meterRegistry) {
+        this.optimisticAttempts = optimisticAttempts;
+        this.maxAttempts = maxAttempts;
+        this.retries = meterRegistry.counter("familyships.conflict_retry.retries");
+        this.conflicts = meterRegistry.counter("familyships.conflict_retry.conflicts");
+    }
+
+    // Must be called outside of a transaction.
+    public <T> T run(Supplier<T> modification) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                if (attempt > optimisticAttempts) {
+                    return treeChangeLog.locked(modification);
+                }
+                return modification.get();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    conflicts.increment();
+                    throw new ConflictException(e);
+                }
+                retries.increment();
+            }
+            // A short random pause, longer with every attempt, so that the losers
+            // don't all come back at the same time (at most 80ms).
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L << attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConflictException(e);
+            }
+            // The query budget is per attempt, see `QueryBudget`.
+            statementCounter.reset();
+        }
+    }
+}
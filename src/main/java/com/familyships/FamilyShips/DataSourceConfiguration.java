@@ -0,0 +1,65 @@
+package com.familyships.FamilyShips;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.familyships.FamilyShips.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Read replicas of the `spring.datasource` database, only when
+// `familyships.datasource.replica-urls` (comma separated JDBC urls) is set: the
+// replicas are reached with the same user, password and driver, and their pools have
+// the same `spring.datasource.hikari.*` settings. See `ReplicaRoutingDataSource` for
+// which transactions go where.
+@Configuration
+@ConditionalOnProperty("familyships.datasource.replica-urls")
+public class DataSourceConfiguration implements DisposableBean {
+    private final List<HikariDataSource> pools = new ArrayList<HikariDataSource>();
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+            @Value("${familyships.datasource.replica-urls}") String[] replicaUrls,
+            @Value("${familyships.datasource.read-your-writes-window:PT10S}") Duration readYourWritesWindow,
+            MeterRegistry meterRegistry) {
+        DataSource primary = pool(properties, properties.determineUrl(), "primary", environment, meterRegistry);
+        List<DataSource> replicas = new ArrayList<DataSource>();
+        for (String url : replicaUrls) {
+            replicas.add(pool(properties, url.trim(), "replica-" + replicas.size(), environment, meterRegistry));
+        }
+        return new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primary, replicas, readYourWritesWindow, meterRegistry));
+    }
+
+    private HikariDataSource pool(DataSourceProperties properties, String url, String name, Environment environment,
+            MeterRegistry meterRegistry) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        // The pools aren't beans, so they are not picked up by the connection pool
+        // metrics otherwise.
+        pool.setMetricRegistry(meterRegistry);
+        pools.add(pool);
+        return pool;
+    }
+
+    @Override
+    public void destroy() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
@@ -2,8 +2,10 @@ package com.familyships.FamilyShips;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class FamilyShipsApplication {
 	// TODO: Export (Gedcom and CSV) and Import (Gedcom and CSV)
 	public static void main(String[] args) {
@@ -1,311 +1,498 @@
 package com.familyships.FamilyShips;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.familyships.FamilyShips.authentication.AuthenticationController.UnknownUserIdentifierException;
-import com.familyships.FamilyShips.authentication.User;
-import com.familyships.FamilyShips.authentication.UserRepository;
-import com.familyships.FamilyShips.model.Family;
-import com.familyships.FamilyShips.model.FamilyChild;
-import com.familyships.FamilyShips.model.FamilyChildKey;
-import com.familyships.FamilyShips.model.FamilyChildRepository;
-import com.familyships.FamilyShips.model.FamilyParent;
-import com.familyships.FamilyShips.model.FamilyParentKey;
-import com.familyships.FamilyShips.model.FamilyParentRepository;
-import com.familyships.FamilyShips.model.FamilyRepository;
-import com.familyships.FamilyShips.model.Person;
-import com.familyships.FamilyShips.model.PersonRepository;
-import com.familyships.FamilyShips.model.Tree;
-import com.familyships.FamilyShips.model.TreeRepository;
+import com.familyships.FamilyShips.authentication.PrincipalTreeCache;
+import com.familyships.FamilyShips.gedcom.GedcomExporter;
+import com.familyships.FamilyShips.gedcom.GedcomImportJob;
+import com.familyships.FamilyShips.gedcom.GedcomImporter;
+import com.familyships.FamilyShips.graph.KinshipIndex;
+import com.familyships.FamilyShips.layout.TreeLayout;
+import com.familyships.FamilyShips.metrics.QueryBudget;
+import com.familyships.FamilyShips.model.TreeChanges;
+import com.familyships.FamilyShips.model.TreePage;
+import com.familyships.FamilyShips.model.TreeSnapshot;
+import com.familyships.FamilyShips.model.TreeSnapshotConverter;
+import com.familyships.FamilyShips.search.NameIndex;
+
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping(path = "/model")
 public class ModelController {
     @Autowired
-    private PersonRepository personRepository;
-    @Autowired
-    private FamilyRepository familyRepository;
+    private PrincipalTreeCache principalTreeCache;
     @Autowired
-    private FamilyChildRepository familyChildRepository;
+    private ModelService modelService;
     @Autowired
-    private FamilyParentRepository familyParentRepository;
+    private ConflictRetry conflictRetry;
     @Autowired
-    private UserRepository userRepository;
+    private GedcomImporter gedcomImporter;
     @Autowired
-    private TreeRepository treeRepository;
+    private GedcomExporter gedcomExporter;
 
-    Tree getTreeForPrincipal(OAuth2User principal) throws Exception {
-        User user = null;
-        String googleSub = principal.getAttribute("sub");
-        if (googleSub != null) {
-            user = userRepository.findByGoogleSub(googleSub);
-        }
-        String gitLogin = principal.getAttribute("login");
-        if (gitLogin != null) {
-            // There is no clear documentation on the Git side which attribute should be
-            // used to identify the user so using the git login here.
-            user = userRepository.findByGitLogin(gitLogin);
-        }
-        if (user == null) {
+    Integer getTreeIdForPrincipal(OAuth2User principal) throws Exception {
+        Integer treeId = principalTreeCache.getTreeId(principal);
+        if (treeId == null) {
             throw new Exception("User is not registered.");
         }
-        return user.getTree();
+        return treeId;
+    }
+
+    // Conditional GET for the endpoints that return the whole tree (or a part of it):
+    // their ETag is the tree and its revision, which is checked with one query by
+    // primary key before anything else is read. A client that sends the ETag of the
+    // response it already has back in If-None-Match gets 304 Not Modified with no body
+    // until the tree changes. Returns the revision the response should be made at, or
+    // null if 304 was sent.
+    //
+    // The response can only be of a later revision than its ETag (it's read after the
+    // revision), which at worst makes the client download the same tree once more.
+    private Long checkNotModified(ServletWebRequest request, Integer treeId) {
+        long revision = modelService.revision(treeId);
+        String eTag = "\"" + treeId + "." + revision;
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept != null && accept.contains(TreeSnapshotConverter.MEDIA_TYPE.toString())) {
+            eTag += ".tree";
+        }
+        HttpServletResponse response = request.getResponse();
+        // Browsers may keep the response, but have to check that it's still current
+        // every time.
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        return request.checkNotModified(eTag + "\"") ? null : revision;
     }
 
     // /model/people
     // Input: No input
     // Output: list of people, where person is
     // personId,names,parentOfFamiliesIds,childOfFamiliesIds
+    // (304 Not Modified if the tree didn't change, see `checkNotModified`)
+    @QueryBudget(6)
     @GetMapping("/people")
-    public @ResponseBody List<Person> people(@AuthenticationPrincipal OAuth2User principal) throws Exception {
-        Tree tree = getTreeForPrincipal(principal);
-        List<Person> result = new ArrayList<Person>();
-        for (Person person : tree.getPeople()) {
-            result.add(person);
+    public @ResponseBody List<TreeSnapshot.PersonEntry> people(ServletWebRequest request,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        Integer treeId = getTreeIdForPrincipal(principal);
+        Long revision = checkNotModified(request, treeId);
+        if (revision == null) {
+            return null;
+        }
+        return modelService.people(treeId, revision);
+    }
+
+    // /model/people_by_generation
+    // Input: from, to (inclusive), generations counted from people without parents (0)
+    // Output: list of people with a generation in that range, in the same format as
+    // /model/people, ordered by generation
+    @QueryBudget(8)
+    @GetMapping("/people_by_generation")
+    public @ResponseBody List<TreeSnapshot.PersonEntry> peopleByGeneration(@RequestParam Integer from, @RequestParam Integer to,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        return modelService.peopleByGeneration(getTreeIdForPrincipal(principal), from, to);
+    }
+
+    // /model/people_page
+    // Input: after (optional, the `next` of the previous page, from the start if not
+    // given), limit (optional, 500 if not given, at most 5000)
+    // Output: revision,items,next where items are people with ids greater than
+    // `after`, in id order and in the same format as in /model/snapshot, and next is
+    // the `after` of the following page (null on the last one)
+    @QueryBudget(6)
+    @GetMapping("/people_page")
+    public @ResponseBody TreePage<TreeSnapshot.PersonEntry> peoplePage(@RequestParam(required = false) Integer after,
+            @RequestParam(required = false) Integer limit, ServletWebRequest request,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        Integer treeId = getTreeIdForPrincipal(principal);
+        Long revision = checkNotModified(request, treeId);
+        if (revision == null) {
+            return null;
+        }
+        return modelService.peoplePage(treeId, revision, after, pageSize(limit));
+    }
+
+    private static int pageSize(Integer limit) {
+        return limit == null ? 500 : Math.max(1, Math.min(limit, 5000));
+    }
+
+    // /model/families_page
+    // Input: after, limit as in /model/people_page
+    // Output: revision,items,next as in /model/people_page, with families in the same
+    // format as in /model/snapshot
+    @QueryBudget(6)
+    @GetMapping("/families_page")
+    public @ResponseBody TreePage<TreeSnapshot.FamilyEntry> familiesPage(
+            @RequestParam(required = false) Integer after, @RequestParam(required = false) Integer limit,
+            ServletWebRequest request, @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        Integer treeId = getTreeIdForPrincipal(principal);
+        Long revision = checkNotModified(request, treeId);
+        if (revision == null) {
+            return null;
         }
-        return result;
+        return modelService.familiesPage(treeId, revision, after, pageSize(limit));
+    }
+
+    // /model/search
+    // Input: q, the beginning of one or more names (in any case, with or without
+    // diacritics, a typo or two allowed), limit (optional, 20 if not given, at most 100)
+    // Output: list of matching people as id,names,score, best matches (lowest score)
+    // first
+    @QueryBudget(6)
+    @GetMapping("/search")
+    public @ResponseBody List<NameIndex.Hit> search(@RequestParam String q,
+            @RequestParam(required = false) Integer limit,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        int maxHits = limit == null ? 20 : Math.min(limit, 100);
+        return modelService.search(getTreeIdForPrincipal(principal), q, maxHits);
     }
 
     // /model/families
     // Input: No input
     // Output: list of families, where a family consists of
     // familyId,children,parents
+    // (304 Not Modified if the tree didn't change, see `checkNotModified`)
+    @QueryBudget(6)
     @GetMapping("/families")
-    public @ResponseBody List<Family> families(@AuthenticationPrincipal OAuth2User principal) throws Exception {
-        Tree tree = getTreeForPrincipal(principal);
-        List<Family> result = new ArrayList<Family>();
-        for (Family family : tree.getFamilies()) {
-            result.add(family);
+    public @ResponseBody List<TreeSnapshot.FamilyEntry> families(ServletWebRequest request,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        Integer treeId = getTreeIdForPrincipal(principal);
+        Long revision = checkNotModified(request, treeId);
+        if (revision == null) {
+            return null;
         }
-        return result;
+        return modelService.families(treeId, revision);
+    }
+
+    // /model/snapshot
+    // Input: No input
+    // Output: people and families of the tree in the same format as /model/people
+    // and /model/families, loaded with a constant number of queries regardless of
+    // the size of the tree
+    @QueryBudget(6)
+    @GetMapping("/snapshot")
+    public @ResponseBody TreeSnapshot snapshot(ServletWebRequest request,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        Integer treeId = getTreeIdForPrincipal(principal);
+        Long revision = checkNotModified(request, treeId);
+        if (revision == null) {
+            return null;
+        }
+        return modelService.snapshot(treeId, revision);
+    }
+
+    // /model/subgraph
+    // Input: root (personId), up and down (generations of ancestors and descendants
+    // of the person, 3 if not given), sideways (steps to the siblings and partners of
+    // all of those, 1 if not given)
+    // Output: the people around the person and the families they are in, in the same
+    // format as /model/snapshot but with only the links between them
+    @QueryBudget(6)
+    @GetMapping("/subgraph")
+    public @ResponseBody TreeSnapshot subgraph(@RequestParam Integer root,
+            @RequestParam(defaultValue = "3") int up, @RequestParam(defaultValue = "3") int down,
+            @RequestParam(defaultValue = "1") int sideways, ServletWebRequest request,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        Integer treeId = getTreeIdForPrincipal(principal);
+        Long revision = checkNotModified(request, treeId);
+        if (revision == null) {
+            return null;
+        }
+        TreeSnapshot subgraph = modelService.subgraph(treeId, revision, root, up, down, sideways);
+        if (subgraph == null) {
+            throw new Exception("Unknown person.");
+        }
+        return subgraph;
+    }
+
+    // /model/layout
+    // Input: No input
+    // Output: the revision and the positions of all people and families of the tree,
+    // the same positions the frontend calculates in `layout.ts`
+    @QueryBudget(6)
+    @GetMapping("/layout")
+    public @ResponseBody TreeLayout layout(ServletWebRequest request,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        Integer treeId = getTreeIdForPrincipal(principal);
+        Long revision = checkNotModified(request, treeId);
+        if (revision == null) {
+            return null;
+        }
+        return modelService.layout(treeId, revision);
+    }
+
+    private KinshipIndex kinshipOf(OAuth2User principal, Integer... personIds) throws Exception {
+        KinshipIndex kinship = modelService.kinship(getTreeIdForPrincipal(principal));
+        for (Integer personId : personIds) {
+            if (!kinship.contains(personId)) {
+                throw new Exception("Unknown person.");
+            }
+        }
+        return kinship;
+    }
+
+    // /model/ancestors
+    // Input: personId, depth (optional, how many generations up, all if not given)
+    // Output: list of ancestors as id,distance (1 for parents, 2 for grandparents...),
+    // closest first
+    @QueryBudget(6)
+    @GetMapping("/ancestors")
+    public @ResponseBody List<KinshipIndex.Relative> ancestors(@RequestParam Integer personId,
+            @RequestParam(required = false) Integer depth,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        return kinshipOf(principal, personId).ancestors(personId, depth);
+    }
+
+    // /model/descendants
+    // Input: personId, depth (optional, how many generations down, all if not given)
+    // Output: list of descendants as id,distance (1 for children, 2 for
+    // grandchildren...), closest first
+    @QueryBudget(6)
+    @GetMapping("/descendants")
+    public @ResponseBody List<KinshipIndex.Relative> descendants(@RequestParam Integer personId,
+            @RequestParam(required = false) Integer depth,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        return kinshipOf(principal, personId).descendants(personId, depth);
+    }
+
+    // /model/common_ancestors
+    // Input: personId, relativeId
+    // Output: list of the lowest common ancestors (the ones that are not ancestors of
+    // other common ancestors) as id,personDistance,relativeDistance, closest first
+    @QueryBudget(6)
+    @GetMapping("/common_ancestors")
+    public @ResponseBody List<KinshipIndex.CommonAncestor> commonAncestors(@RequestParam Integer personId,
+            @RequestParam Integer relativeId,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        return kinshipOf(principal, personId, relativeId).lowestCommonAncestors(personId, relativeId);
+    }
+
+    // /model/relationship
+    // Input: personId, relativeId
+    // Output: name,commonAncestors where name is what the relative is to the person
+    // ("parent", "sibling", "second cousin once removed"...) or null if they are not
+    // related by blood, and commonAncestors as in /model/common_ancestors
+    @QueryBudget(6)
+    @GetMapping("/relationship")
+    public @ResponseBody KinshipIndex.Relationship relationship(@RequestParam Integer personId,
+            @RequestParam Integer relativeId,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        return kinshipOf(principal, personId, relativeId).relationship(personId, relativeId);
+    }
+
+    // /model/changes
+    // Input: since, the revision the client is at (from /model/snapshot or the
+    // previous /model/changes)
+    // Output: the current revision and the changes made after `since`, or resync
+    // set to true if the client has to reload the whole tree
+    @QueryBudget(3)
+    @GetMapping("/changes")
+    public @ResponseBody TreeChanges changes(@RequestParam long since,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        return modelService.changes(getTreeIdForPrincipal(principal), since);
     }
 
     // /model/new_person
     // Input: spaceSeparatedNames
     // Output: personId
+    @QueryBudget(8)
     @PostMapping("/new_person")
     public @ResponseBody Integer newPerson(@RequestParam String spaceSeparatedNames,
             @AuthenticationPrincipal OAuth2User principal) throws Exception {
-        Tree tree = getTreeForPrincipal(principal);
         List<String> names = Arrays.asList(spaceSeparatedNames.split(" "));
-        Person person = new Person();
-        person.setNames(names);
-        person = personRepository.save(person);
-        tree.addPerson(person);
-        treeRepository.save(tree);
-        return person.getId();
+        Integer treeId = getTreeIdForPrincipal(principal);
+        return conflictRetry.run(() -> modelService.newPerson(treeId, names));
     }
 
     // /model/delete_person
     // Input: personId
-    // Output: whether deleted or not
+    // Output: whether deleted or not. Families left without any parents or children
+    // are removed later by `TombstoneSweeper`.
+    @QueryBudget(18)
     @PostMapping("/delete_person")
     public @ResponseBody boolean deletePerson(@RequestParam Integer personId,
             @AuthenticationPrincipal OAuth2User principal) throws Exception {
-        Tree tree = getTreeForPrincipal(principal);
-        Optional<Person> maybePerson = personRepository.findById(personId);
-        if (!maybePerson.isPresent()) {
-            return false;
-        }
-        Person person = maybePerson.get();
-        if (!tree.getPeople().contains(person)) {
-            return false;
-        }
-
-        // When we delete a person we delete all of its relationships first
-        for (FamilyChild familyChild : person.getChildOfFamily()) {
-            familyChildRepository.delete(familyChild);
-        }
+        Integer treeId = getTreeIdForPrincipal(principal);
+        return conflictRetry.run(() -> modelService.deletePerson(treeId, personId));
+    }
 
-        for (FamilyParent familyParent : person.getParentOfFamily()) {
-            familyParentRepository.delete(familyParent);
+    // /model/delete_people
+    // Input: personIds (comma separated, at most 1000)
+    // Output: ids of the people deleted (people not in the tree are skipped). Their
+    // links go with them, the families left without any are removed later by
+    // `TombstoneSweeper`.
+    @PostMapping("/delete_people")
+    public @ResponseBody List<Integer> deletePeople(@RequestParam List<Integer> personIds,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        if (personIds.size() > 1000) {
+            throw new Exception("At most 1000 people can be deleted at once.");
         }
-        tree.deletePerson(person);
-        treeRepository.save(tree);
-        personRepository.delete(person);
-        return true;
+        Integer treeId = getTreeIdForPrincipal(principal);
+        return conflictRetry.run(() -> modelService.deletePeople(treeId, personIds));
     }
 
     // /model/new_family
     // Input: No input
     // Output: familyId
+    @QueryBudget(8)
     @PostMapping("/new_family")
     public @ResponseBody Integer newFamily(@AuthenticationPrincipal OAuth2User principal) throws Exception {
-        Tree tree = getTreeForPrincipal(principal);
-        Family family = new Family();
-        family = familyRepository.save(family);
-        tree.addFamily(family);
-        treeRepository.save(tree);
-        return family.getId();
+        Integer treeId = getTreeIdForPrincipal(principal);
+        return conflictRetry.run(() -> modelService.newFamily(treeId));
     }
 
     // /model/delete_family
     // Input: familyId
     // Output: whether deleted or not
+    @QueryBudget(18)
     @PostMapping("/delete_family")
     public @ResponseBody boolean deleteFamily(@RequestParam Integer familyId,
             @AuthenticationPrincipal OAuth2User principal) throws Exception {
-        Tree tree = getTreeForPrincipal(principal);
-        Optional<Family> maybeFamily = familyRepository.findById(familyId);
-        if (!maybeFamily.isPresent()) {
-            return false;
-        }
-        Family family = maybeFamily.get();
-        if (!tree.getFamilies().contains((family))) {
-            return false;
-        }
-
-        // When we delete a person we delete all of its relationships first
-        for (FamilyChild familyChild : family.getChildren()) {
-            familyChildRepository.delete(familyChild);
-        }
-
-        for (FamilyParent familyParent : family.getParents()) {
-            familyParentRepository.delete(familyParent);
-        }
-
-        tree.deleteFamily(family);
-        treeRepository.save(tree);
-        familyRepository.delete(family);
-        return true;
+        Integer treeId = getTreeIdForPrincipal(principal);
+        return conflictRetry.run(() -> modelService.deleteFamily(treeId, familyId));
     }
 
     // /model/attach_child
     // Input: personId, familyId
-    // Output: whether attached or not
+    // Output: whether attached or not (not when the child is already an ancestor of
+    // one of the parents)
+    @QueryBudget(18)
     @PostMapping(value = "/attach_child")
     public @ResponseBody boolean attachChild(@RequestParam Integer familyId,
             @RequestParam Integer childId,
             @AuthenticationPrincipal OAuth2User principal) throws Exception {
-        Tree tree = getTreeForPrincipal(principal);
-        FamilyChildKey familyChildKey = new FamilyChildKey(familyId, childId);
-        FamilyChild familyChild = new FamilyChild(familyChildKey);
-        Person child = personRepository.findById(childId).get();
-        Family family = familyRepository.findById(familyId).get();
-        if (!tree.getFamilies().contains((family))) {
-            return false;
-        }
-        if (!tree.getPeople().contains((child))) {
-            return false;
-        }
-        familyChild.setChild(child);
-        familyChild.setFamily(family);
-        familyChildRepository.save(familyChild);
-        return true;
+        Integer treeId = getTreeIdForPrincipal(principal);
+        return conflictRetry.run(() -> modelService.attachChild(treeId, familyId, childId));
     }
 
     // /model/detach_child
     // Input: personId, familyId
     // Output: whether detached or not
+    @QueryBudget(18)
     @PostMapping(value = "/detach_child")
     public @ResponseBody boolean detachChild(@RequestParam Integer familyId,
             @RequestParam Integer childId,
             @AuthenticationPrincipal OAuth2User principal) throws Exception {
-        Tree tree = getTreeForPrincipal(principal);
-        if (!tree.getPeople().contains((personRepository.findById(childId).get()))) {
-            return false;
-        }
-        if (!tree.getFamilies().contains((familyRepository.findById(familyId).get()))) {
-            return false;
-        }
-        FamilyChildKey familyChildKey = new FamilyChildKey(familyId, childId);
-        familyChildRepository.deleteById(familyChildKey);
-
-        Family family = familyRepository.findById(familyId).get();
-        if(family.getChildren().size() == 0 && family.getParents().size() == 0) {
-            tree.deleteFamily(family);
-            treeRepository.save(tree);
-            familyRepository.delete(family);
-        }
-        return true;
+        Integer treeId = getTreeIdForPrincipal(principal);
+        return conflictRetry.run(() -> modelService.detachChild(treeId, familyId, childId));
     }
 
     // /model/attach_parent
     // Input: personId, familyId
-    // Output: whether attached or not
+    // Output: whether attached or not (not when the parent is already a descendant
+    // of one of the children)
+    @QueryBudget(18)
     @PostMapping("/attach_parent")
     public @ResponseBody boolean attachParent(@RequestParam Integer familyId,
             @RequestParam Integer parentId,
             @AuthenticationPrincipal OAuth2User principal) throws Exception {
-        Tree tree = getTreeForPrincipal(principal);
-
-        FamilyParentKey familyParentKey = new FamilyParentKey(familyId, parentId);
-        FamilyParent familyParent = new FamilyParent(familyParentKey);
-        Person parent = personRepository.findById(parentId).get();
-        Family family = familyRepository.findById(familyId).get();
-        if (!tree.getPeople().contains(parent)) {
-            return false;
-        }
-        if (!tree.getFamilies().contains(family)) {
-            return false;
-        }
-        familyParent.setFamily(family);
-        familyParent.setParent(parent);
-        familyParentRepository.save(familyParent);
-        return true;
+        Integer treeId = getTreeIdForPrincipal(principal);
+        return conflictRetry.run(() -> modelService.attachParent(treeId, familyId, parentId));
     }
 
     // /model/detach_parent
     // Input: personId, familyId
     // Output: whether detached or not
+    @QueryBudget(18)
     @PostMapping("/detach_parent")
     public @ResponseBody boolean detachParent(@RequestParam Integer familyId,
             @RequestParam Integer parentId,
             @AuthenticationPrincipal OAuth2User principal) throws Exception {
-        Tree tree = getTreeForPrincipal(principal);
-        if (!tree.getPeople().contains((personRepository.findById(parentId).get()))) {
-            return false;
-        }
-        if (!tree.getFamilies().contains((familyRepository.findById(familyId).get()))) {
-            return false;
-        }
-        FamilyParentKey familyParentKey = new FamilyParentKey(familyId, parentId);
-        familyParentRepository.deleteById(familyParentKey);
-        Family family = familyRepository.findById(familyId).get();
-        if(family.getChildren().size() == 0 && family.getParents().size() == 0) {
-            tree.deleteFamily(family);
-            treeRepository.save(tree);
-            familyRepository.delete(family);
-        }
-        return true;
+        Integer treeId = getTreeIdForPrincipal(principal);
+        return conflictRetry.run(() -> modelService.detachParent(treeId, familyId, parentId));
     }
 
     // /model/set_names
     // Input: personId, spaceSeparatedNames
     // Output: whether the names were set or not
+    @QueryBudget(10)
     @PostMapping("/set_names")
     public @ResponseBody boolean setNames(@RequestParam Integer personId,
             @RequestParam String spaceSeparatedNames,
             @AuthenticationPrincipal OAuth2User principal) throws Exception {
-        Tree tree = getTreeForPrincipal(principal);
-        if (!tree.getPeople().contains((personRepository.findById(personId).get()))) {
-            return false;
+        Integer treeId = getTreeIdForPrincipal(principal);
+        // A new list on every attempt, a failed attempt may have kept the previous one.
+        return conflictRetry.run(() -> modelService.setNames(treeId, personId,
+                new ArrayList<String>(List.of(spaceSeparatedNames.split(" ")))));
+    }
+
+    // /model/batch
+    // Input: JSON list of operations (at most 1000), see `BatchOperation`
+    // Output: whether all of them were applied and the ids of the created people
+    // and families, see `BatchResult`. Bigger edits have to be split into several
+    // batches, later ones referring to what the earlier ones created by id.
+    @PostMapping("/batch")
+    public @ResponseBody BatchResult batch(@RequestBody List<BatchOperation> operations,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        if (operations.size() > 1000) {
+            throw new Exception("At most 1000 operations can be sent in one batch.");
         }
-        List<String> names = new ArrayList<String>(List.of(spaceSeparatedNames.split(" ")));
-        Optional<Person> maybePerson = personRepository.findById(personId);
-        if (!maybePerson.isPresent()) {
-            return false;
+        Integer treeId = getTreeIdForPrincipal(principal);
+        return conflictRetry.run(() -> modelService.batch(treeId, operations));
+    }
+
+    // /model/import
+    // Input: file, a GEDCOM file (multipart upload)
+    // Output: the import job, whose progress can be followed with
+    // /model/import_status. People and families of the file are added to the tree.
+    @PostMapping("/import")
+    public @ResponseBody GedcomImportJob importGedcom(@RequestParam MultipartFile file,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        Integer treeId = getTreeIdForPrincipal(principal);
+        try (var input = file.getInputStream()) {
+            return gedcomImporter.start(treeId, input);
         }
-        Person person = maybePerson.get();
-        person.setNames(names);
-        personRepository.save(person);
-        return true;
+    }
+
+    // /model/import_status
+    // Input: jobId
+    // Output: the import job with its state and the number of people, families and
+    // links imported so far
+    @QueryBudget(2)
+    @GetMapping("/import_status")
+    public @ResponseBody GedcomImportJob importStatus(@RequestParam String jobId,
+            @AuthenticationPrincipal OAuth2User principal) throws Exception {
+        GedcomImportJob job = gedcomImporter.job(getTreeIdForPrincipal(principal), jobId);
+        if (job == null) {
+            throw new Exception("Unknown import job.");
+        }
+        return job;
+    }
+
+    // /model/export.ged
+    // Input: No input
+    // Output: the whole tree as a GEDCOM 5.5.1 file, streamed as it is read
+    @GetMapping("/export.ged")
+    public ResponseEntity<StreamingResponseBody> exportGedcom(@AuthenticationPrincipal OAuth2User principal)
+            throws Exception {
+        Integer treeId = getTreeIdForPrincipal(principal);
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "plain", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"tree.ged\"")
+                .body(output -> gedcomExporter.export(treeId, output));
     }
 }
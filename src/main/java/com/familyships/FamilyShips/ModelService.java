@@ -0,0 +1,593 @@
+package com.familyships.FamilyShips;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import com.familyships.FamilyShips.graph.KinshipIndex;
+import com.familyships.FamilyShips.graph.KinshipIndexCache;
+import com.familyships.FamilyShips.graph.Neighborhood;
+import com.familyships.FamilyShips.graph.ReachabilityIndex;
+import com.familyships.FamilyShips.graph.TreeGraph;
+import com.familyships.FamilyShips.layout.TreeLayout;
+import com.familyships.FamilyShips.layout.TreeLayoutCache;
+import com.familyships.FamilyShips.model.Family;
+import com.familyships.FamilyShips.model.FamilyChild;
+import com.familyships.FamilyShips.model.FamilyChildKey;
+import com.familyships.FamilyShips.model.FamilyChildRepository;
+import com.familyships.FamilyShips.model.FamilyParent;
+import com.familyships.FamilyShips.model.FamilyParentKey;
+import com.familyships.FamilyShips.model.FamilyParentRepository;
+import com.familyships.FamilyShips.model.FamilyRepository;
+import com.familyships.FamilyShips.model.GenerationIndex;
+import com.familyships.FamilyShips.model.NameIndexCache;
+import com.familyships.FamilyShips.model.Person;
+import com.familyships.FamilyShips.model.PersonRepository;
+import com.familyships.FamilyShips.model.ReachabilityIndexCache;
+import com.familyships.FamilyShips.model.Tree;
+import com.familyships.FamilyShips.model.TreeChangeLog;
+import com.familyships.FamilyShips.model.TreeChangeRepository;
+import com.familyships.FamilyShips.model.TreeChanges;
+import com.familyships.FamilyShips.model.TreeGraphCache;
+import com.familyships.FamilyShips.model.TreePage;
+import com.familyships.FamilyShips.model.TreeRepository;
+import com.familyships.FamilyShips.model.TreeSnapshot;
+import com.familyships.FamilyShips.model.TreeChange.Kind;
+import com.familyships.FamilyShips.search.NameIndex;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+
+// All the reads and modifications of a tree. Every method runs in a single
+// transaction and returns the same values as the corresponding `/model/*` endpoint.
+// Every modification is recorded in the `TreeChangeLog`. Links that would make
+// someone their own ancestor are rejected, see `ReachabilityIndexCache`.
+//
+// Entities are looked up by id (which goes through the persistence context) rather
+// than through queries where possible, so that within a batch the inserts of
+// earlier operations are not flushed early and can be sent in JDBC batches.
+@Service
+@Transactional
+public class ModelService {
+    @Autowired
+    private PersonRepository personRepository;
+    @Autowired
+    private FamilyRepository familyRepository;
+    @Autowired
+    private FamilyChildRepository familyChildRepository;
+    @Autowired
+    private FamilyParentRepository familyParentRepository;
+    @Autowired
+    private TreeRepository treeRepository;
+    @Autowired
+    private TreeChangeRepository treeChangeRepository;
+    @Autowired
+    private TreeChangeLog treeChangeLog;
+    @Autowired
+    private TreeLayoutCache treeLayoutCache;
+    @Autowired
+    private GenerationIndex generationIndex;
+    @Autowired
+    private ReachabilityIndexCache reachabilityIndexCache;
+    @Autowired
+    private KinshipIndexCache kinshipIndexCache;
+    @Autowired
+    private TreeGraphCache treeGraphCache;
+    @Autowired
+    private NameIndexCache nameIndexCache;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // The modifications read the tree before the people and families they change, so
+    // that when they run locked (see `TreeChangeLog.locked`) nobody can change those
+    // after they were read.
+    private Optional<Person> findPerson(Integer treeId, Integer personId) {
+        if (personId == null) {
+            return Optional.empty();
+        }
+        treeChangeLog.treeForModification(treeId);
+        return personRepository.findById(personId).filter(person -> treeId.equals(person.getTreeId()));
+    }
+
+    private Optional<Family> findFamily(Integer treeId, Integer familyId) {
+        if (familyId == null) {
+            return Optional.empty();
+        }
+        treeChangeLog.treeForModification(treeId);
+        return familyRepository.findById(familyId).filter(family -> treeId.equals(family.getTreeId()));
+    }
+
+    // Bumps the version of the family when the transaction commits, so that two
+    // transactions changing the links of the same family (like the removal of an empty
+    // family and an attach to it) can't both commit. Families inserted by this
+    // transaction are reported as locked already, nobody else can change them.
+    private void linksChanged(Family family) {
+        if (entityManager.getLockMode(family) != LockModeType.OPTIMISTIC_FORCE_INCREMENT) {
+            entityManager.lock(family, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        }
+    }
+
+    // The bulk deletes of links bypass the persistence context, so links read or made
+    // earlier in the transaction (a batch) would stay managed and the later operations
+    // would still find them. Looking them up by reference doesn't hit the database.
+    private void forgetLinks(Class<?> linkClass, Collection<?> keys) {
+        for (Object key : keys) {
+            entityManager.detach(entityManager.getReference(linkClass, key));
+        }
+    }
+
+    // Deleted people and families are only taken out of their tree, which is a single
+    // update, and purged later, see `TombstoneSweeper`.
+    private static void tombstone(Person person) {
+        person.setTreeId(null);
+        person.setRemovedAt(Instant.now());
+    }
+
+    private static void tombstone(Family family) {
+        family.setTreeId(null);
+        family.setRemovedAt(Instant.now());
+    }
+
+    // Current revision of the tree, read with one query by primary key. The read
+    // methods below take it so that a caller that already read it (to check whether
+    // the client is up to date, see `ModelController`) doesn't read it again.
+    @Transactional(readOnly = true)
+    public long revision(Integer treeId) {
+        return treeRepository.findRevisionById(treeId);
+    }
+
+    // Families and links of the tree at the given revision (or a later one), see
+    // `TreeGraphCache`.
+    private TreeGraph graph(Integer treeId, long revision) {
+        return treeGraphCache.get(treeId, revision);
+    }
+
+    @Transactional(readOnly = true)
+    public TreeSnapshot snapshot(Integer treeId, long revision) {
+        return new TreeSnapshot(personRepository.findIdsAndNamesByTreeId(treeId), graph(treeId, revision));
+    }
+
+    // The people around the person, see `Neighborhood`, null if the person is not in
+    // the tree.
+    @Transactional(readOnly = true)
+    public TreeSnapshot subgraph(Integer treeId, long revision, Integer personId, int up, int down,
+            int sideways) {
+        TreeGraph graph = graph(treeId, revision);
+        int index = graph.personIndex(personId);
+        if (index < 0) {
+            return null;
+        }
+        Neighborhood neighborhood = new Neighborhood(graph, index, up, down, sideways);
+        List<Integer> personIds = new ArrayList<Integer>(neighborhood.people().length);
+        for (int person : neighborhood.people()) {
+            personIds.add(graph.personIds()[person]);
+        }
+        return new TreeSnapshot(personRepository.findIdsAndNamesByIdIn(personIds), graph, neighborhood.families());
+    }
+
+    // Index of the first id greater than `after` (all of them if null) in sorted ids.
+    private static int firstAfter(int[] ids, Integer after) {
+        if (after == null) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(ids, after);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    // Up to `limit` people with ids greater than `after`, in id order. Pages are cut
+    // from the graph of the tree, so only the names of the people on the page are read.
+    @Transactional(readOnly = true)
+    public TreePage<TreeSnapshot.PersonEntry> peoplePage(Integer treeId, long revision, Integer after,
+            int limit) {
+        TreeGraph graph = graph(treeId, revision);
+        int[] ids = graph.personIds();
+        int from = firstAfter(ids, after);
+        int to = Math.min(ids.length, from + limit);
+        List<Integer> pageIds = new ArrayList<Integer>(to - from);
+        for (int i = from; i < to; i++) {
+            pageIds.add(ids[i]);
+        }
+        List<TreeSnapshot.PersonEntry> people = pageIds.isEmpty() ? List.of()
+                : TreeSnapshot.people(personRepository.findIdsAndNamesByIdIn(pageIds), graph);
+        return new TreePage<TreeSnapshot.PersonEntry>(graph.getRevision(), people,
+                to < ids.length ? ids[to - 1] : null);
+    }
+
+    // Up to `limit` families with ids greater than `after`, in id order.
+    @Transactional(readOnly = true)
+    public TreePage<TreeSnapshot.FamilyEntry> familiesPage(Integer treeId, long revision, Integer after,
+            int limit) {
+        TreeGraph graph = graph(treeId, revision);
+        int[] ids = graph.familyIds();
+        int from = firstAfter(ids, after);
+        int to = Math.min(ids.length, from + limit);
+        return new TreePage<TreeSnapshot.FamilyEntry>(graph.getRevision(), TreeSnapshot.families(graph, from, to),
+                to < ids.length ? ids[to - 1] : null);
+    }
+
+    // Positions of all the people and families, recalculated only when the tree
+    // changed since the last call.
+    @Transactional(readOnly = true)
+    public TreeLayout layout(Integer treeId, long revision) {
+        return treeLayoutCache.get(treeId, revision, () -> treeGraphCache.get(treeId, revision));
+    }
+
+    // Parents and children of everyone in the tree for the kinship queries, rebuilt
+    // only when the tree changed since the last call.
+    @Transactional(readOnly = true)
+    public KinshipIndex kinship(Integer treeId) {
+        long revision = revision(treeId);
+        return kinshipIndexCache.get(treeId, revision,
+                () -> new KinshipIndex(treeGraphCache.get(treeId, revision)));
+    }
+
+    // People whose names match the query, best first, see `NameIndex`.
+    @Transactional(readOnly = true)
+    public List<NameIndex.Hit> search(Integer treeId, String query, int limit) {
+        long revision = revision(treeId);
+        return nameIndexCache.get(treeId, revision).search(query, limit);
+    }
+
+    // All the people of the tree in the same format as in the snapshot, in id order.
+    // Like the other reads, this is a few short statements and doesn't load any
+    // entities, so nothing is left to be loaded lazily while the response is written
+    // (`spring.jpa.open-in-view` is off) and the connection goes back to the pool as
+    // soon as the transaction ends.
+    @Transactional(readOnly = true)
+    public List<TreeSnapshot.PersonEntry> people(Integer treeId, long revision) {
+        return TreeSnapshot.people(personRepository.findIdsAndNamesByTreeId(treeId), graph(treeId, revision));
+    }
+
+    @Transactional(readOnly = true)
+    public List<TreeSnapshot.FamilyEntry> families(Integer treeId, long revision) {
+        TreeGraph graph = graph(treeId, revision);
+        return TreeSnapshot.families(graph, 0, graph.familyCount());
+    }
+
+    // People whose generation (see `GenerationIndex`) is between the given ones,
+    // inclusive, ordered by generation.
+    @Transactional(readOnly = true)
+    public List<TreeSnapshot.PersonEntry> peopleByGeneration(Integer treeId, Integer fromGeneration,
+            Integer toGeneration) {
+        List<Integer> ids = personRepository.findIdsByTreeIdAndGenerationBetween(treeId, fromGeneration,
+                toGeneration);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, TreeSnapshot.PersonEntry> people = new HashMap<Integer, TreeSnapshot.PersonEntry>();
+        for (TreeSnapshot.PersonEntry person : TreeSnapshot.people(personRepository.findIdsAndNamesByIdIn(ids),
+                graph(treeId, revision(treeId)))) {
+            people.put(person.getId(), person);
+        }
+        List<TreeSnapshot.PersonEntry> result = new ArrayList<TreeSnapshot.PersonEntry>(ids.size());
+        for (Integer id : ids) {
+            result.add(people.get(id));
+        }
+        return result;
+    }
+
+    // Changes made after the given revision, or a resync signal if those are not
+    // available anymore.
+    @Transactional(readOnly = true)
+    public TreeChanges changes(Integer treeId, long since) {
+        Tree tree = treeRepository.findById(treeId).get();
+        if (since < tree.getCompactedRevision() || since > tree.getRevision()) {
+            return new TreeChanges(tree.getRevision(), true, List.of());
+        }
+        return new TreeChanges(tree.getRevision(), false, treeChangeRepository.findByTreeIdSince(treeId, since));
+    }
+
+    public Integer newPerson(Integer treeId, List<String> names) {
+        Person person = new Person();
+        person.setNames(names);
+        person.setTreeId(treeId);
+        person.setGeneration(0);
+        person = personRepository.save(person);
+        treeChangeLog.record(treeId, Kind.PERSON_ADDED, person.getId(), null, String.join(" ", names));
+        return person.getId();
+    }
+
+    public boolean deletePerson(Integer treeId, Integer personId) {
+        if (personId == null) {
+            return false;
+        }
+        return !deletePeople(treeId, List.of(personId)).isEmpty();
+    }
+
+    // Deletes the given people with all their links. People of other trees (or of no
+    // tree) are skipped. The links are deleted with one statement for each link table,
+    // however many there are, and the families left without any are removed later by
+    // `TombstoneSweeper`. Returns the ids of the people deleted.
+    public List<Integer> deletePeople(Integer treeId, Collection<Integer> personIds) {
+        treeChangeLog.treeForModification(treeId);
+        List<Person> people = new ArrayList<Person>();
+        for (Person person : personRepository.findAllById(new HashSet<Integer>(personIds))) {
+            if (treeId.equals(person.getTreeId())) {
+                people.add(person);
+            }
+        }
+        if (people.isEmpty()) {
+            return List.of();
+        }
+        List<Integer> deletedIds = people.stream().map(Person::getId).toList();
+        ReachabilityIndex reachability = reachabilityIndexCache.forTransaction(treeId);
+
+        List<FamilyChildKey> childKeys = familyChildRepository.findKeysByChildIdIn(deletedIds);
+        for (FamilyChildKey key : childKeys) {
+            reachability.detachChild(key.getFamilyId(), key.getChildId());
+        }
+        Set<Integer> parentOfFamilyIds = new HashSet<Integer>();
+        List<FamilyParentKey> parentKeys = familyParentRepository.findKeysByParentIdIn(deletedIds);
+        for (FamilyParentKey key : parentKeys) {
+            reachability.detachParent(key.getFamilyId(), key.getParentId());
+            parentOfFamilyIds.add(key.getFamilyId());
+        }
+        Set<Integer> orphanedChildIds = new HashSet<Integer>();
+        if (!parentOfFamilyIds.isEmpty()) {
+            orphanedChildIds.addAll(familyChildRepository.findChildIdsByFamilyIdIn(parentOfFamilyIds));
+            orphanedChildIds.removeAll(deletedIds);
+        }
+
+        familyChildRepository.deleteByChildIdIn(deletedIds);
+        familyParentRepository.deleteByParentIdIn(deletedIds);
+        forgetLinks(FamilyChild.class, childKeys);
+        forgetLinks(FamilyParent.class, parentKeys);
+        for (Person person : people) {
+            tombstone(person);
+            treeChangeLog.record(treeId, Kind.PERSON_REMOVED, person.getId(), null, null);
+        }
+        generationIndex.parentsChanged(orphanedChildIds);
+        return deletedIds;
+    }
+
+    public Integer newFamily(Integer treeId) {
+        Family family = new Family();
+        family.setTreeId(treeId);
+        family = familyRepository.save(family);
+        treeChangeLog.record(treeId, Kind.FAMILY_ADDED, null, family.getId(), null);
+        return family.getId();
+    }
+
+    public boolean deleteFamily(Integer treeId, Integer familyId) {
+        Optional<Family> maybeFamily = findFamily(treeId, familyId);
+        if (!maybeFamily.isPresent()) {
+            return false;
+        }
+        Family family = maybeFamily.get();
+        ReachabilityIndex reachability = reachabilityIndexCache.forTransaction(treeId);
+
+        // When we delete a family we delete all of its relationships first
+        List<Integer> childIds = familyChildRepository.findChildIdsByFamilyId(familyId);
+        List<FamilyChildKey> childKeys = new ArrayList<FamilyChildKey>();
+        for (Integer childId : childIds) {
+            reachability.detachChild(familyId, childId);
+            childKeys.add(new FamilyChildKey(familyId, childId));
+        }
+        List<FamilyParentKey> parentKeys = new ArrayList<FamilyParentKey>();
+        for (Integer parentId : familyParentRepository.findParentIdsByFamilyId(familyId)) {
+            reachability.detachParent(familyId, parentId);
+            parentKeys.add(new FamilyParentKey(familyId, parentId));
+        }
+        familyChildRepository.deleteByFamilyId(familyId);
+        familyParentRepository.deleteByFamilyId(familyId);
+        forgetLinks(FamilyChild.class, childKeys);
+        forgetLinks(FamilyParent.class, parentKeys);
+        tombstone(family);
+        generationIndex.parentsChanged(childIds);
+        treeChangeLog.record(treeId, Kind.FAMILY_REMOVED, null, familyId, null);
+        return true;
+    }
+
+    public boolean attachChild(Integer treeId, Integer familyId, Integer childId) {
+        Optional<Family> family = findFamily(treeId, familyId);
+        if (!family.isPresent()) {
+            return false;
+        }
+        Optional<Person> child = findPerson(treeId, childId);
+        if (!child.isPresent()) {
+            return false;
+        }
+        FamilyChildKey familyChildKey = new FamilyChildKey(familyId, childId);
+        if (familyChildRepository.findById(familyChildKey).isPresent()) {
+            return true;
+        }
+        ReachabilityIndex reachability = reachabilityIndexCache.forTransaction(treeId);
+        if (reachability.wouldLoopWithChild(familyId, childId)) {
+            return false;
+        }
+        FamilyChild familyChild = new FamilyChild(familyChildKey);
+        familyChild.setChild(child.get());
+        familyChild.setFamily(family.get());
+        familyChildRepository.save(familyChild);
+        linksChanged(family.get());
+        reachability.attachChild(familyId, childId);
+        generationIndex.parentsChanged(List.of(childId));
+        treeChangeLog.record(treeId, Kind.CHILD_ATTACHED, childId, familyId, null);
+        return true;
+    }
+
+    public boolean detachChild(Integer treeId, Integer familyId, Integer childId) {
+        if (familyId == null || childId == null) {
+            return false;
+        }
+        if (!personRepository.existsByIdAndTreeId(childId, treeId)) {
+            return false;
+        }
+        Optional<Family> family = findFamily(treeId, familyId);
+        if (!family.isPresent()) {
+            return false;
+        }
+        ReachabilityIndex reachability = reachabilityIndexCache.forTransaction(treeId);
+        FamilyChildKey familyChildKey = new FamilyChildKey(familyId, childId);
+        Optional<FamilyChild> familyChild = familyChildRepository.findById(familyChildKey);
+        if (familyChild.isPresent()) {
+            familyChildRepository.delete(familyChild.get());
+            linksChanged(family.get());
+            reachability.detachChild(familyId, childId);
+            generationIndex.parentsChanged(List.of(childId));
+            treeChangeLog.record(treeId, Kind.CHILD_DETACHED, childId, familyId, null);
+        }
+        return true;
+    }
+
+    public boolean attachParent(Integer treeId, Integer familyId, Integer parentId) {
+        Optional<Person> parent = findPerson(treeId, parentId);
+        if (!parent.isPresent()) {
+            return false;
+        }
+        Optional<Family> family = findFamily(treeId, familyId);
+        if (!family.isPresent()) {
+            return false;
+        }
+        FamilyParentKey familyParentKey = new FamilyParentKey(familyId, parentId);
+        if (familyParentRepository.findById(familyParentKey).isPresent()) {
+            return true;
+        }
+        ReachabilityIndex reachability = reachabilityIndexCache.forTransaction(treeId);
+        if (reachability.wouldLoopWithParent(familyId, parentId)) {
+            return false;
+        }
+        FamilyParent familyParent = new FamilyParent(familyParentKey);
+        familyParent.setFamily(family.get());
+        familyParent.setParent(parent.get());
+        familyParentRepository.save(familyParent);
+        linksChanged(family.get());
+        reachability.attachParent(familyId, parentId);
+        generationIndex.parentsChanged(familyChildRepository.findChildIdsByFamilyId(familyId));
+        treeChangeLog.record(treeId, Kind.PARENT_ATTACHED, parentId, familyId, null);
+        return true;
+    }
+
+    public boolean detachParent(Integer treeId, Integer familyId, Integer parentId) {
+        if (familyId == null || parentId == null) {
+            return false;
+        }
+        if (!personRepository.existsByIdAndTreeId(parentId, treeId)) {
+            return false;
+        }
+        Optional<Family> family = findFamily(treeId, familyId);
+        if (!family.isPresent()) {
+            return false;
+        }
+        ReachabilityIndex reachability = reachabilityIndexCache.forTransaction(treeId);
+        FamilyParentKey familyParentKey = new FamilyParentKey(familyId, parentId);
+        Optional<FamilyParent> familyParent = familyParentRepository.findById(familyParentKey);
+        if (familyParent.isPresent()) {
+            familyParentRepository.delete(familyParent.get());
+            linksChanged(family.get());
+            reachability.detachParent(familyId, parentId);
+            generationIndex.parentsChanged(familyChildRepository.findChildIdsByFamilyId(familyId));
+            treeChangeLog.record(treeId, Kind.PARENT_DETACHED, parentId, familyId, null);
+        }
+        return true;
+    }
+
+    // Removes the families of the tree that are still empty and have the same version
+    // (no link was attached or detached since) as when `TombstoneSweeper` found them
+    // empty, like /model/delete_family would. Returns how many were removed.
+    public int removeEmptyFamilies(Integer treeId, Map<Integer, Long> versions) {
+        treeChangeLog.treeForModification(treeId);
+        int removed = 0;
+        for (Family family : familyRepository.findAllById(familyRepository.findEmptyIdsByIdIn(versions.keySet()))) {
+            if (treeId.equals(family.getTreeId()) && versions.get(family.getId()) == family.getVersion()) {
+                tombstone(family);
+                treeChangeLog.record(treeId, Kind.FAMILY_REMOVED, null, family.getId(), null);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // Purges up to `limit` deleted people with their names, returns how many.
+    public int purgeRemovedPeople(int limit) {
+        List<Integer> personIds = personRepository.findRemovedIds(PageRequest.of(0, limit));
+        if (personIds.isEmpty()) {
+            return 0;
+        }
+        personRepository.deleteAll(personRepository.findAllById(personIds));
+        return personIds.size();
+    }
+
+    // Purges up to `limit` deleted families, returns how many.
+    public int purgeRemovedFamilies(int limit) {
+        List<Integer> familyIds = familyRepository.findRemovedIds(PageRequest.of(0, limit));
+        if (familyIds.isEmpty()) {
+            return 0;
+        }
+        return familyRepository.deleteByIdIn(familyIds);
+    }
+
+    public boolean setNames(Integer treeId, Integer personId, List<String> names) {
+        Optional<Person> maybePerson = findPerson(treeId, personId);
+        if (!maybePerson.isPresent()) {
+            return false;
+        }
+        Person person = maybePerson.get();
+        person.setNames(names);
+        personRepository.save(person);
+        treeChangeLog.record(treeId, Kind.PERSON_RENAMED, personId, null, String.join(" ", names));
+        return true;
+    }
+
+    // Applies all the operations in order, in one transaction. If any of them fails
+    // nothing is applied.
+    public BatchResult batch(Integer treeId, List<BatchOperation> operations) {
+        BatchResult result = new BatchResult();
+        for (int i = 0; i < operations.size(); i++) {
+            if (!apply(treeId, operations.get(i), result)) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                result.fail(i);
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private boolean apply(Integer treeId, BatchOperation operation, BatchResult result) {
+        if (operation.getOp() == null) {
+            return false;
+        }
+        switch (operation.getOp()) {
+            case "new_person":
+                return result.assign(operation.getRef(),
+                        newPerson(treeId, operation.getNames()));
+            case "delete_person":
+                return deletePerson(treeId, result.resolve(operation.getPersonId()));
+            case "new_family":
+                return result.assign(operation.getRef(), newFamily(treeId));
+            case "delete_family":
+                return deleteFamily(treeId, result.resolve(operation.getFamilyId()));
+            case "attach_child":
+                return attachChild(treeId, result.resolve(operation.getFamilyId()),
+                        result.resolve(operation.getChildId()));
+            case "detach_child":
+                return detachChild(treeId, result.resolve(operation.getFamilyId()),
+                        result.resolve(operation.getChildId()));
+            case "attach_parent":
+                return attachParent(treeId, result.resolve(operation.getFamilyId()),
+                        result.resolve(operation.getParentId()));
+            case "detach_parent":
+                return detachParent(treeId, result.resolve(operation.getFamilyId()),
+                        result.resolve(operation.getParentId()));
+            case "set_names":
+                return setNames(treeId, result.resolve(operation.getPersonId()),
+                        operation.getNames());
+            default:
+                return false;
+        }
+    }
+}
@@ -4,20 +4,28 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 
+import com.familyships.FamilyShips.authentication.PrincipalTreeCache;
+
 @Configuration
 public class SecurityConfiguration {
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, PrincipalTreeCache principalTreeCache) throws Exception {
         http
                 .authorizeHttpRequests(a -> a
                         .requestMatchers("/", "/error", "/webjars/**", "/index.html", "/familyships.png", "/icons/familyships.svg", "/tree/logo.js", "/style.css", "/icons/github.svg", "/icons/google.svg").permitAll()
                         .anyRequest().authenticated())
                         
                 .logout(l -> l
+                        .addLogoutHandler((request, response, authentication) -> {
+                            if (authentication != null && authentication.getPrincipal() instanceof OAuth2User principal) {
+                                principalTreeCache.evict(PrincipalTreeCache.keyFor(principal));
+                            }
+                        })
                         .logoutSuccessUrl("/").logoutUrl("/logout").permitAll())
                         
                 .csrf().disable()
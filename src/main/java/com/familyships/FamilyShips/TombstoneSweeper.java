@@ -0,0 +1,146 @@
+package com.familyships.FamilyShips;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.familyships.FamilyShips.model.FamilyRepository;
+import com.familyships.FamilyShips.model.PersonRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Cleans up after the modifications of all the trees, every
+// `familyships.sweeper.interval`, so that they don't have to do it themselves:
+//
+// - families without parents or children are removed from their tree (like
+//   /model/delete_family would, so the clients see it in the changes). Only the ones
+//   found empty by two sweeps in a row, without any link attached or detached in
+//   between (see `Family.version`), so that a family that was just created has a
+//   whole interval to get its first link.
+// - people and families deleted from their tree (see `Person.removedAt`) are purged,
+//   together with their names.
+//
+// All of it goes in batches of `familyships.sweeper.batch-size`, each in its own
+// transaction. Metrics:
+//
+// - familyships.sweeper.backlog: gauge, what there was to clean up at the start of the
+//   last sweep, tagged with the kind (people, families or empty_families),
+// - familyships.sweeper.cleaned: counter, tagged the same way,
+// - familyships.sweeper.sweeps: timer.
+@Component
+public class TombstoneSweeper {
+    private static final Logger logger = LoggerFactory.getLogger(TombstoneSweeper.class);
+
+    @Autowired
+    private ModelService modelService;
+    @Autowired
+    private ConflictRetry conflictRetry;
+    @Autowired
+    private PersonRepository personRepository;
+    @Autowired
+    private FamilyRepository familyRepository;
+
+    private final int batchSize;
+    private final MeterRegistry meterRegistry;
+    private final Timer sweeps;
+    private final Map<String, AtomicLong> backlog = new HashMap<String, AtomicLong>();
+
+    // The empty families found by the last sweep, by tree, with their versions.
+    private Map<Integer, Map<Integer, Long>> emptyFamilies = new HashMap<Integer, Map<Integer, Long>>();
+
+    public TombstoneSweeper(@Value("${familyships.sweeper.batch-size:500}") int batchSize,
+            MeterRegistry meterRegistry) {
+        this.batchSize = batchSize;
+        this.meterRegistry = meterRegistry;
+        this.sweeps = meterRegistry.timer("familyships.sweeper.sweeps");
+        for (String kind : List.of("people", "families", "empty_families")) {
+            AtomicLong count = new AtomicLong();
+            backlog.put(kind, count);
+            Gauge.builder("familyships.sweeper.backlog", count, AtomicLong::get).tag("kind", kind)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${familyships.sweeper.interval:PT5M}",
+            fixedDelayString = "${familyships.sweeper.interval:PT5M}")
+    public synchronized void sweep() {
+        sweeps.record(() -> {
+            removeEmptyFamilies();
+            backlog.get("people").set(personRepository.countByRemovedAtIsNotNull());
+            backlog.get("families").set(familyRepository.countByRemovedAtIsNotNull());
+            cleaned("people", purge(modelService::purgeRemovedPeople));
+            cleaned("families", purge(modelService::purgeRemovedFamilies));
+        });
+    }
+
+    private void removeEmptyFamilies() {
+        Map<Integer, Map<Integer, Long>> found = new HashMap<Integer, Map<Integer, Long>>();
+        Map<Integer, Map<Integer, Long>> removable = new HashMap<Integer, Map<Integer, Long>>();
+        int count = 0;
+        Integer afterId = 0;
+        List<Object[]> batch;
+        do {
+            batch = familyRepository.findEmptyAfter(afterId, PageRequest.of(0, batchSize));
+            for (Object[] row : batch) {
+                Integer familyId = (Integer) row[0];
+                Integer treeId = (Integer) row[1];
+                Long version = (Long) row[2];
+                found.computeIfAbsent(treeId, id -> new HashMap<Integer, Long>()).put(familyId, version);
+                if (version.equals(emptyFamilies.getOrDefault(treeId, Map.of()).get(familyId))) {
+                    removable.computeIfAbsent(treeId, id -> new HashMap<Integer, Long>()).put(familyId, version);
+                }
+                afterId = familyId;
+                count++;
+            }
+        } while (batch.size() == batchSize);
+        backlog.get("empty_families").set(count);
+        emptyFamilies = found;
+
+        int removed = 0;
+        for (Map.Entry<Integer, Map<Integer, Long>> tree : removable.entrySet()) {
+            List<Integer> familyIds = new ArrayList<Integer>(tree.getValue().keySet());
+            for (int from = 0; from < familyIds.size(); from += batchSize) {
+                Map<Integer, Long> versions = new HashMap<Integer, Long>();
+                for (Integer familyId : familyIds.subList(from, Math.min(from + batchSize, familyIds.size()))) {
+                    versions.put(familyId, tree.getValue().get(familyId));
+                }
+                try {
+                    removed += conflictRetry.run(() -> modelService.removeEmptyFamilies(tree.getKey(), versions));
+                } catch (ConflictRetry.ConflictException e) {
+                    // The tree is busy, the families will be found again next time.
+                    logger.warn("Could not remove the empty families of tree {}", tree.getKey(), e);
+                }
+            }
+        }
+        cleaned("empty_families", removed);
+    }
+
+    // Runs the purge (which takes the size of the batch and returns how many it purged)
+    // until there is nothing left.
+    private int purge(IntUnaryOperator purge) {
+        int purged = 0;
+        int count;
+        do {
+            count = purge.applyAsInt(batchSize);
+            purged += count;
+        } while (count == batchSize);
+        return purged;
+    }
+
+    private void cleaned(String kind, int count) {
+        meterRegistry.counter("familyships.sweeper.cleaned", "kind", kind).increment(count);
+    }
+}
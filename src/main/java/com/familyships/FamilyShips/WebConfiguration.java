@@ -0,0 +1,31 @@
+package com.familyships.FamilyShips;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.familyships.FamilyShips.metrics.ModelRequestMetrics;
+import com.familyships.FamilyShips.model.TreeSnapshotConverter;
+
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+    @Autowired
+    private ModelRequestMetrics modelRequestMetrics;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(modelRequestMetrics).addPathPatterns("/model/**");
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // After the JSON converter, so that clients accepting anything (`*/*`) still
+        // get JSON and only the ones asking for the binary format get it.
+        converters.add(new TreeSnapshotConverter());
+    }
+
+}
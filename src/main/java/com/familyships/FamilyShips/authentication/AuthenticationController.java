@@ -22,6 +22,8 @@ public class AuthenticationController {
     private UserRepository userRepository;
     @Autowired
     private TreeRepository treeRepository;
+    @Autowired
+    private PrincipalTreeCache principalTreeCache;
 
     public class UnknownUserIdentifierException extends Exception {
     }
@@ -49,6 +51,7 @@ public class AuthenticationController {
                 user.attachTree(tree);
                 userRepository.save(user);
             }
+            principalTreeCache.put(PrincipalTreeCache.keyFor(principal), user.getTree().getId());
 
             return Collections.singletonMap("name", user.getName());
         }
@@ -67,6 +70,7 @@ public class AuthenticationController {
                 user.attachTree(tree);
                 userRepository.save(user);
             }
+            principalTreeCache.put(PrincipalTreeCache.keyFor(principal), user.getTree().getId());
             return Collections.singletonMap("name", user.getName());
 
         }
@@ -0,0 +1,119 @@
+package com.familyships.FamilyShips.authentication;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Remembers which tree belongs to which logged in principal, so that the model
+// endpoints don't have to look up the user (and its tree) on every request.
+// Entries are filled in on login (`/auth/id`) or on the first miss, and dropped on
+// logout, when the user is deleted or when the cache grows over its maximum size
+// (least recently used first).
+@Component
+public class PrincipalTreeCache {
+    @Autowired
+    private UserRepository userRepository;
+
+    private final int maxSize;
+    private final Map<String, Integer> treeIds;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public PrincipalTreeCache(@Value("${familyships.principal-tree-cache.max-size:10000}") int maxSize,
+            MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.treeIds = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                if (size() > PrincipalTreeCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hits = meterRegistry.counter("familyships.principal_tree_cache.hits");
+        this.misses = meterRegistry.counter("familyships.principal_tree_cache.misses");
+        this.evictions = meterRegistry.counter("familyships.principal_tree_cache.evictions");
+        Gauge.builder("familyships.principal_tree_cache.size", this, PrincipalTreeCache::size)
+                .register(meterRegistry);
+    }
+
+    // Google users are identified by the `sub` attribute and Git users by the
+    // `login` attribute. Returns null if the principal has neither.
+    public static String keyFor(OAuth2User principal) {
+        String googleSub = principal.getAttribute("sub");
+        if (googleSub != null) {
+            return "google:" + googleSub;
+        }
+        String gitLogin = principal.getAttribute("login");
+        if (gitLogin != null) {
+            return "git:" + gitLogin;
+        }
+        return null;
+    }
+
+    public static String keyFor(User user) {
+        if (user.getGoogleSub() != null) {
+            return "google:" + user.getGoogleSub();
+        }
+        if (user.getGitLogin() != null) {
+            return "git:" + user.getGitLogin();
+        }
+        return null;
+    }
+
+    // Returns the id of the tree of the given principal, or null if the principal
+    // is not registered.
+    public Integer getTreeId(OAuth2User principal) {
+        String key = keyFor(principal);
+        if (key == null) {
+            return null;
+        }
+        synchronized (this) {
+            Integer treeId = treeIds.get(key);
+            if (treeId != null) {
+                hits.increment();
+                return treeId;
+            }
+        }
+        misses.increment();
+        Integer treeId = null;
+        String googleSub = principal.getAttribute("sub");
+        if (googleSub != null) {
+            treeId = userRepository.findTreeIdByGoogleSub(googleSub);
+        } else {
+            treeId = userRepository.findTreeIdByGitLogin(principal.getAttribute("login"));
+        }
+        if (treeId != null) {
+            put(key, treeId);
+        }
+        return treeId;
+    }
+
+    public synchronized void put(String key, Integer treeId) {
+        if (key != null && treeId != null) {
+            treeIds.put(key, treeId);
+        }
+    }
+
+    public synchronized void evict(String key) {
+        if (key != null) {
+            treeIds.remove(key);
+        }
+    }
+
+    public synchronized int size() {
+        return treeIds.size();
+    }
+}
@@ -0,0 +1,16 @@
+package com.familyships.FamilyShips.authentication;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import jakarta.persistence.PostRemove;
+
+// Makes sure a deleted user doesn't stay resolvable through the `PrincipalTreeCache`.
+public class UserCacheListener {
+    @Autowired
+    private PrincipalTreeCache principalTreeCache;
+
+    @PostRemove
+    public void userRemoved(User user) {
+        principalTreeCache.evict(PrincipalTreeCache.keyFor(user));
+    }
+}
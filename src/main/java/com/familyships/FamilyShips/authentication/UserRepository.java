@@ -12,4 +12,10 @@ public interface UserRepository extends CrudRepository<User, Integer> {
 
     @Query("SELECT u FROM User u WHERE u.gitLogin = ?1")
     User findByGitLogin(String gitLogin);
+
+    @Query("SELECT u.tree.id FROM User u WHERE u.googleSub = ?1")
+    Integer findTreeIdByGoogleSub(String googleSub);
+
+    @Query("SELECT u.tree.id FROM User u WHERE u.gitLogin = ?1")
+    Integer findTreeIdByGitLogin(String gitLogin);
 }
\ No newline at end of file
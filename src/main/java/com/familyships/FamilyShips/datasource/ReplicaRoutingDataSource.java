@@ -0,0 +1,145 @@
+package com.familyships.FamilyShips.datasource;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.familyships.FamilyShips.authentication.PrincipalTreeCache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Sends the read-only transactions of web requests (all the `ModelService` reads behind
+// the GET /model/* endpoints) to the replicas, round robin, and everything else to the
+// primary: the modifications, and whatever runs outside of a request (the sweeper, the
+// migrations, the GEDCOM imports). Must be wrapped in a
+// `LazyConnectionDataSourceProxy`, so that the connection is only picked once the
+// transaction has been marked read-only, see `DataSourceConfiguration`.
+//
+// The replicas lag behind, so:
+//
+// - a user who modified their tree reads from the primary for
+//   `familyships.datasource.read-your-writes-window` after the commit, so they
+//   always see their own modifications. Everyone else may see the tree as it was a
+//   moment ago (with an older revision, so their clients catch up on the next
+//   request, see /model/changes).
+// - all the reads of a request go to the same database (the replica it started with,
+//   or the primary once it modified something or read from it). The revision of a tree
+//   and the data read after it then come from the same database, so the caches never
+//   remember data older than the revision they have it at (see `TreeGraphCache`),
+//   which they would if the revision came from a replica ahead of the one the data
+//   came from.
+//
+// Metrics: familyships.datasource.connections, counter of the connections taken,
+// tagged with the target (primary or replica).
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    private static final String TARGET_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".target";
+    private static final String PRIMARY = "primary";
+    // Expired entries are only dropped once there are this many users in the window.
+    private static final int MAX_STICKY_USERS = 1000;
+
+    private final int replicas;
+    private final long windowNanos;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    // Until when (`System.nanoTime`) each user reads from the primary.
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<String, Long>();
+
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration readYourWritesWindow,
+            MeterRegistry meterRegistry) {
+        Map<Object, Object> targets = new HashMap<Object, Object>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+        this.replicas = replicas.size();
+        this.windowNanos = readYourWritesWindow.toNanos();
+        this.primaryConnections = meterRegistry.counter("familyships.datasource.connections", "target", "primary");
+        this.replicaConnections = meterRegistry.counter("familyships.datasource.connections", "target", "replica");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null || replicas == 0) {
+            primaryConnections.increment();
+            return PRIMARY;
+        }
+        String user = currentUser();
+        Object target = request.getAttribute(TARGET_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            target = PRIMARY;
+            if (user != null) {
+                stickAfterCommit(user);
+            }
+        } else if (target == null) {
+            target = user != null && isSticky(user) ? PRIMARY : Math.floorMod(nextReplica.getAndIncrement(), replicas);
+        }
+        request.setAttribute(TARGET_ATTRIBUTE, target, RequestAttributes.SCOPE_REQUEST);
+        (PRIMARY.equals(target) ? primaryConnections : replicaConnections).increment();
+        return target;
+    }
+
+    // The logged in user of the current request, see `PrincipalTreeCache.keyFor`.
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof OAuth2User principal) {
+            return PrincipalTreeCache.keyFor(principal);
+        }
+        return null;
+    }
+
+    // The window starts when the modification is visible on the primary.
+    private void stickAfterCommit(String user) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            stick(user);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                stick(user);
+            }
+        });
+    }
+
+    private void stick(String user) {
+        long now = System.nanoTime();
+        if (stickyUntil.size() >= MAX_STICKY_USERS) {
+            stickyUntil.values().removeIf(until -> until - now < 0);
+        }
+        stickyUntil.put(user, now + windowNanos);
+    }
+
+    private boolean isSticky(String user) {
+        Long until = stickyUntil.get(user);
+        if (until == null) {
+            return false;
+        }
+        if (until - System.nanoTime() < 0) {
+            stickyUntil.remove(user, until);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+package com.familyships.FamilyShips.gedcom;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.familyships.FamilyShips.model.FamilyChildKey;
+import com.familyships.FamilyShips.model.FamilyChildRepository;
+import com.familyships.FamilyShips.model.FamilyParentKey;
+import com.familyships.FamilyShips.model.FamilyParentRepository;
+import com.familyships.FamilyShips.model.FamilyRepository;
+import com.familyships.FamilyShips.model.PersonRepository;
+
+// Writes a tree as a GEDCOM 5.5.1 document.
+//
+// People and then families are read in chunks of `CHUNK_SIZE` ids (keyset
+// pagination), together with the names and links of just that chunk, and written out
+// before the next chunk is read. Memory use doesn't depend on the size of the tree and
+// the first bytes go out before most of the tree has been read. All the chunks are
+// read within one read-only transaction so that they are consistent with each other.
+//
+// The model doesn't know the sex of the parents: the first two parents of a family
+// (by id) are written as HUSB and WIFE, any further ones as `_PARENT`. The last name
+// of a person is written as the surname.
+@Service
+public class GedcomExporter {
+    static final int CHUNK_SIZE = 1000;
+
+    private final PersonRepository personRepository;
+    private final FamilyRepository familyRepository;
+    private final FamilyChildRepository familyChildRepository;
+    private final FamilyParentRepository familyParentRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public GedcomExporter(PersonRepository personRepository, FamilyRepository familyRepository,
+            FamilyChildRepository familyChildRepository, FamilyParentRepository familyParentRepository,
+            PlatformTransactionManager transactionManager) {
+        this.personRepository = personRepository;
+        this.familyRepository = familyRepository;
+        this.familyChildRepository = familyChildRepository;
+        this.familyParentRepository = familyParentRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    // "John Paul Smith" becomes "John Paul /Smith/".
+    static String gedcomName(List<String> names) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                name.append(' ');
+            }
+            String part = names.get(i).replaceAll("[\\r\\n/]", " ").trim();
+            name.append(i == names.size() - 1 ? "/" + part + "/" : part);
+        }
+        return name.toString();
+    }
+
+    public void export(Integer treeId, OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        writer.write("0 HEAD\n1 SOUR FamilyShips\n1 GEDC\n2 VERS 5.5.1\n2 FORM LINEAGE-LINKED\n1 CHAR UTF-8\n");
+        writer.flush();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try {
+                    writePeople(treeId, writer);
+                    writeFamilies(treeId, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.write("0 TRLR\n");
+        writer.flush();
+    }
+
+    private void writePeople(Integer treeId, Writer writer) throws IOException {
+        Integer afterId = Integer.MIN_VALUE;
+        while (true) {
+            List<Integer> personIds = personRepository.findIdsByTreeIdAfter(treeId, afterId,
+                    PageRequest.ofSize(CHUNK_SIZE));
+            if (personIds.isEmpty()) {
+                return;
+            }
+            Integer fromId = personIds.get(0);
+            Integer toId = personIds.get(personIds.size() - 1);
+
+            Map<Integer, List<String>> names = new HashMap<Integer, List<String>>();
+            for (Object[] row : personRepository.findIdsAndNamesByTreeIdBetween(treeId, fromId, toId)) {
+                names.computeIfAbsent((Integer) row[0], id -> new ArrayList<String>()).add((String) row[1]);
+            }
+            Map<Integer, List<Integer>> childOfFamilies = new HashMap<Integer, List<Integer>>();
+            for (FamilyChildKey key : familyChildRepository.findKeysByTreeIdAndChildIdBetween(treeId, fromId, toId)) {
+                childOfFamilies.computeIfAbsent(key.getChildId(), id -> new ArrayList<Integer>()).add(key.getFamilyId());
+            }
+            Map<Integer, List<Integer>> parentOfFamilies = new HashMap<Integer, List<Integer>>();
+            for (FamilyParentKey key : familyParentRepository.findKeysByTreeIdAndParentIdBetween(treeId, fromId, toId)) {
+                parentOfFamilies.computeIfAbsent(key.getParentId(), id -> new ArrayList<Integer>()).add(key.getFamilyId());
+            }
+
+            for (Integer personId : personIds) {
+                writer.write("0 @I" + personId + "@ INDI\n");
+                List<String> personNames = names.getOrDefault(personId, List.of());
+                if (!personNames.isEmpty()) {
+                    writer.write("1 NAME " + gedcomName(personNames) + "\n");
+                }
+                for (Integer familyId : childOfFamilies.getOrDefault(personId, List.of())) {
+                    writer.write("1 FAMC @F" + familyId + "@\n");
+                }
+                for (Integer familyId : parentOfFamilies.getOrDefault(personId, List.of())) {
+                    writer.write("1 FAMS @F" + familyId + "@\n");
+                }
+            }
+            writer.flush();
+            afterId = toId;
+        }
+    }
+
+    private void writeFamilies(Integer treeId, Writer writer) throws IOException {
+        Integer afterId = Integer.MIN_VALUE;
+        while (true) {
+            List<Integer> familyIds = familyRepository.findIdsByTreeIdAfter(treeId, afterId,
+                    PageRequest.ofSize(CHUNK_SIZE));
+            if (familyIds.isEmpty()) {
+                return;
+            }
+            Integer fromId = familyIds.get(0);
+            Integer toId = familyIds.get(familyIds.size() - 1);
+
+            Map<Integer, List<Integer>> parents = new HashMap<Integer, List<Integer>>();
+            for (FamilyParentKey key : familyParentRepository.findKeysByTreeIdAndFamilyIdBetween(treeId, fromId, toId)) {
+                parents.computeIfAbsent(key.getFamilyId(), id -> new ArrayList<Integer>()).add(key.getParentId());
+            }
+            Map<Integer, List<Integer>> children = new HashMap<Integer, List<Integer>>();
+            for (FamilyChildKey key : familyChildRepository.findKeysByTreeIdAndFamilyIdBetween(treeId, fromId, toId)) {
+                children.computeIfAbsent(key.getFamilyId(), id -> new ArrayList<Integer>()).add(key.getChildId());
+            }
+
+            for (Integer familyId : familyIds) {
+                writer.write("0 @F" + familyId + "@ FAM\n");
+                List<Integer> parentIds = parents.getOrDefault(familyId, new ArrayList<Integer>());
+                parentIds.sort(null);
+                for (int i = 0; i < parentIds.size(); i++) {
+                    String tag = i == 0 ? "HUSB" : i == 1 ? "WIFE" : "_PARENT";
+                    writer.write("1 " + tag + " @I" + parentIds.get(i) + "@\n");
+                }
+                for (Integer childId : children.getOrDefault(familyId, List.of())) {
+                    writer.write("1 CHIL @I" + childId + "@\n");
+                }
+            }
+            writer.flush();
+            afterId = toId;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.familyships.FamilyShips.gedcom;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// Status of one GEDCOM import, as returned by /model/import and /model/import_status.
+// The counters are updated by the importing thread while the job runs.
+public class GedcomImportJob {
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Integer treeId;
+    private final Instant createdAt = Instant.now();
+    private volatile State state = State.QUEUED;
+    private volatile long people;
+    private volatile long families;
+    private volatile long links;
+    private volatile String error;
+    private volatile Instant finishedAt;
+
+    GedcomImportJob(Integer treeId) {
+        this.treeId = treeId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @JsonIgnore
+    public Integer getTreeId() {
+        return treeId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getPeople() {
+        return people;
+    }
+
+    public long getFamilies() {
+        return families;
+    }
+
+    public long getLinks() {
+        return links;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    void running() {
+        state = State.RUNNING;
+    }
+
+    void progress(long people, long families, long links) {
+        this.people = people;
+        this.families = families;
+        this.links = links;
+    }
+
+    void done() {
+        state = State.DONE;
+        finishedAt = Instant.now();
+    }
+
+    void failed(String error) {
+        this.error = error;
+        state = State.FAILED;
+        finishedAt = Instant.now();
+    }
+}
@@ -0,0 +1,250 @@
+package com.familyships.FamilyShips.gedcom;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.gedml.GedcomParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.xml.sax.SAXException;
+
+import com.familyships.FamilyShips.model.Family;
+import com.familyships.FamilyShips.model.FamilyChild;
+import com.familyships.FamilyShips.model.FamilyChildKey;
+import com.familyships.FamilyShips.model.FamilyParent;
+import com.familyships.FamilyShips.model.FamilyParentKey;
+import com.familyships.FamilyShips.model.GenerationIndex;
+import com.familyships.FamilyShips.model.Person;
+import com.familyships.FamilyShips.model.TreeChangeLog;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Imports GEDCOM files into a tree in the background.
+//
+// The upload is spooled to a temporary file and then parsed record by record, so the
+// file is never held in memory. Individuals become `Person`s, families become
+// `Family`s and their HUSB/WIFE and CHIL references become `FamilyParent`s and
+// `FamilyChild`ren. Everything is inserted in JDBC batches, with ids taken from the
+// pooled sequences, and the persistence context is cleared every `FLUSH_INTERVAL`
+// records; the only state that grows with the file is the map from GEDCOM
+// cross-references to the ids they were given.
+//
+// The whole import is one transaction, so a file that fails to parse leaves the tree
+// untouched. Clients are told to reload the tree afterwards (see
+// `TreeChangeLog.recordReload`).
+@Service
+public class GedcomImporter {
+    private static final Logger logger = LoggerFactory.getLogger(GedcomImporter.class);
+
+    // Records persisted between two flushes of the persistence context.
+    static final int FLUSH_INTERVAL = 500;
+    // Finished jobs are forgotten after that long.
+    static final Duration JOB_RETENTION = Duration.ofHours(1);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TreeChangeLog treeChangeLog;
+    private final GenerationIndex generationIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final Map<String, GedcomImportJob> jobs = new ConcurrentHashMap<String, GedcomImportJob>();
+
+    public GedcomImporter(TreeChangeLog treeChangeLog, GenerationIndex generationIndex,
+            PlatformTransactionManager transactionManager,
+            @Value("${familyships.gedcom-import.threads:2}") int threads) {
+        this.treeChangeLog = treeChangeLog;
+        this.generationIndex = generationIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Spools the upload and queues the import, returning right away.
+    public GedcomImportJob start(Integer treeId, InputStream upload) throws IOException {
+        forgetFinishedJobs();
+        Path file = Files.createTempFile("familyships-import", ".ged");
+        try {
+            Files.copy(upload, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        GedcomImportJob job = new GedcomImportJob(treeId);
+        jobs.put(job.getId(), job);
+        executor.submit(() -> run(job, file));
+        return job;
+    }
+
+    // Returns the job with the given id if it belongs to the given tree, null otherwise.
+    public GedcomImportJob job(Integer treeId, String jobId) {
+        GedcomImportJob job = jobId == null ? null : jobs.get(jobId);
+        if (job == null || !job.getTreeId().equals(treeId)) {
+            return null;
+        }
+        return job;
+    }
+
+    private void forgetFinishedJobs() {
+        Instant threshold = Instant.now().minus(JOB_RETENTION);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(threshold));
+    }
+
+    private void run(GedcomImportJob job, Path file) {
+        job.running();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (InputStream input = Files.newInputStream(file)) {
+                    importFile(job, input);
+                } catch (IOException | SAXException e) {
+                    throw new GedcomImportException(e);
+                }
+            });
+            job.done();
+        } catch (RuntimeException e) {
+            Throwable cause = e instanceof GedcomImportException ? e.getCause() : e;
+            logger.warn("Import {} into tree {} failed", job.getId(), job.getTreeId(), cause);
+            job.failed(cause.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Could not delete {}", file, e);
+            }
+        }
+    }
+
+    private static class GedcomImportException extends RuntimeException {
+        GedcomImportException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    // Must be called within a transaction.
+    void importFile(GedcomImportJob job, InputStream input) throws IOException, SAXException {
+        TreeWriter writer = new TreeWriter(job);
+        GedcomParser parser = new GedcomParser();
+        parser.setContentHandler(new GedcomRecordHandler(writer));
+        parser.parse(input);
+        writer.finish();
+        generationIndex.recalculate(job.getTreeId());
+        treeChangeLog.recordReload(job.getTreeId());
+    }
+
+    // Persists the records as they come. Families may refer to individuals that are
+    // defined later in the file; those links are kept aside until the end.
+    private class TreeWriter implements GedcomRecordHandler.Sink {
+        private final GedcomImportJob job;
+        private final Integer treeId;
+        private final Map<String, Integer> personIds = new HashMap<String, Integer>();
+        // familyId, GEDCOM reference of the person, whether it is a parent
+        private final List<Object[]> pendingLinks = new ArrayList<Object[]>();
+
+        private long people = 0;
+        private long families = 0;
+        private long links = 0;
+        private long unflushed = 0;
+
+        TreeWriter(GedcomImportJob job) {
+            this.job = job;
+            this.treeId = job.getTreeId();
+        }
+
+        @Override
+        public void individual(String xref, List<String> names) {
+            Person person = new Person();
+            person.setNames(names);
+            person.setTreeId(treeId);
+            entityManager.persist(person);
+            personIds.put(xref, person.getId());
+            people++;
+            persisted();
+        }
+
+        @Override
+        public void family(String xref, List<String> parentXrefs, List<String> childXrefs) {
+            Family family = new Family();
+            family.setTreeId(treeId);
+            entityManager.persist(family);
+            Integer familyId = family.getId();
+            families++;
+            // The same person can be listed twice (e.g. a CHIL line repeated), but the
+            // link tables don't allow duplicates.
+            for (String parentXref : new LinkedHashSet<String>(parentXrefs)) {
+                link(familyId, parentXref, true);
+            }
+            for (String childXref : new LinkedHashSet<String>(childXrefs)) {
+                link(familyId, childXref, false);
+            }
+            persisted();
+        }
+
+        private void link(Integer familyId, String personXref, boolean parent) {
+            Integer personId = personIds.get(personXref);
+            if (personId == null) {
+                pendingLinks.add(new Object[] { familyId, personXref, parent });
+                return;
+            }
+            if (parent) {
+                FamilyParent familyParent = new FamilyParent(new FamilyParentKey(familyId, personId));
+                familyParent.setFamily(entityManager.getReference(Family.class, familyId));
+                familyParent.setParent(entityManager.getReference(Person.class, personId));
+                entityManager.persist(familyParent);
+            } else {
+                FamilyChild familyChild = new FamilyChild(new FamilyChildKey(familyId, personId));
+                familyChild.setFamily(entityManager.getReference(Family.class, familyId));
+                familyChild.setChild(entityManager.getReference(Person.class, personId));
+                entityManager.persist(familyChild);
+            }
+            links++;
+        }
+
+        private void persisted() {
+            if (++unflushed >= FLUSH_INTERVAL) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            entityManager.flush();
+            entityManager.clear();
+            unflushed = 0;
+            job.progress(people, families, links);
+        }
+
+        // Links to individuals that never showed up in the file are dropped.
+        void finish() {
+            for (Object[] pendingLink : pendingLinks) {
+                if (personIds.containsKey((String) pendingLink[1])) {
+                    link((Integer) pendingLink[0], (String) pendingLink[1], (Boolean) pendingLink[2]);
+                    persisted();
+                }
+            }
+            pendingLinks.clear();
+            flush();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.familyships.FamilyShips.gedcom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+// Turns the SAX events produced by `org.gedml.GedcomParser` into individuals and
+// families, handing every record over as soon as it ends, so that nothing but the
+// current record is kept in memory.
+//
+// The parser wraps the whole file in a GED element, so records (INDI, FAM, ...) are
+// at depth 2 and their fields (NAME, HUSB, ...) at depth 3.
+class GedcomRecordHandler extends DefaultHandler {
+    interface Sink {
+        void individual(String xref, List<String> names);
+
+        void family(String xref, List<String> parentXrefs, List<String> childXrefs);
+    }
+
+    private final Sink sink;
+
+    private int depth = 0;
+    private String recordTag = null;
+    private String recordXref = null;
+    private String fieldTag = null;
+    private final StringBuilder text = new StringBuilder();
+
+    private String name = null;
+    private final List<String> parentXrefs = new ArrayList<String>();
+    private final List<String> childXrefs = new ArrayList<String>();
+
+    GedcomRecordHandler(Sink sink) {
+        this.sink = sink;
+    }
+
+    // "John Paul /Smith/" becomes [John, Paul, Smith].
+    static List<String> splitName(String name) {
+        List<String> names = new ArrayList<String>();
+        if (name == null) {
+            return names;
+        }
+        for (String part : name.replace('/', ' ').trim().split("\\s+")) {
+            if (!part.isEmpty()) {
+                names.add(part);
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        depth++;
+        if (depth == 2) {
+            recordTag = qName;
+            recordXref = attributes.getValue("ID");
+            name = null;
+            parentXrefs.clear();
+            childXrefs.clear();
+        } else if (depth == 3) {
+            fieldTag = qName;
+            text.setLength(0);
+            String ref = attributes.getValue("REF");
+            if ("FAM".equals(recordTag) && ref != null) {
+                // _PARENT is what `GedcomExporter` writes for any parents after the
+                // first two.
+                if (qName.equals("HUSB") || qName.equals("WIFE") || qName.equals("_PARENT")) {
+                    parentXrefs.add(ref);
+                } else if (qName.equals("CHIL")) {
+                    childXrefs.add(ref);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (depth == 3 && "NAME".equals(fieldTag)) {
+            text.append(ch, start, length);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (depth == 3) {
+            // Only the first NAME of an individual is kept, the others are usually
+            // alternative spellings.
+            if ("INDI".equals(recordTag) && "NAME".equals(fieldTag) && name == null) {
+                name = text.toString();
+            }
+            fieldTag = null;
+        } else if (depth == 2 && recordXref != null) {
+            if ("INDI".equals(recordTag)) {
+                sink.individual(recordXref, splitName(name));
+            } else if ("FAM".equals(recordTag)) {
+                sink.family(recordXref, parentXrefs, childXrefs);
+            }
+            recordTag = null;
+        }
+        depth--;
+    }
+}
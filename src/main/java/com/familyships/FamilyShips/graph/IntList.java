@@ -0,0 +1,187 @@
+package com.familyships.FamilyShips.graph;
+
+import java.util.Arrays;
+
+// Growable list of ints, so that graph code doesn't box every person and family id.
+public final class IntList {
+    public interface Comparator {
+        int compare(int a, int b);
+    }
+
+    private int[] values;
+    private int size = 0;
+
+    public IntList() {
+        this(4);
+    }
+
+    public IntList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    public static IntList of(int... values) {
+        IntList result = new IntList(values.length);
+        for (int value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public int first() {
+        return values[0];
+    }
+
+    public int last() {
+        return values[size - 1];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public void addFirst(int value) {
+        add(value);
+        System.arraycopy(values, 0, values, 1, size - 1);
+        values[0] = value;
+    }
+
+    public boolean contains(int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Removes all the occurrences of the value.
+    public void removeAll(int value) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (values[i] != value) {
+                values[kept++] = values[i];
+            }
+        }
+        size = kept;
+    }
+
+    public void set(int index, int value) {
+        values[index] = value;
+    }
+
+    // Removes the first occurrence of the value, returns whether there was one.
+    public boolean removeFirst(int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                System.arraycopy(values, i + 1, values, i, size - i - 1);
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void removeLast() {
+        size--;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void reverse() {
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    // Stable sort that gives exactly the same order as `Array.prototype.sort` in V8,
+    // even for comparators that are not consistent (like the one used to pick the best
+    // family of a person). Short lists are sorted the way V8's TimSort sorts them: the
+    // leading run is found and the rest is binary insertion sorted. Longer lists are
+    // merge sorted, which only differs from V8 for inconsistent comparators.
+    public void sort(Comparator comparator) {
+        if (size < 2) {
+            return;
+        }
+        if (size < 64) {
+            binaryInsertionSort(0, size, countRunAndMakeAscending(0, size, comparator), comparator);
+            return;
+        }
+        mergeSort(Arrays.copyOf(values, size), values, 0, size, comparator);
+    }
+
+    private int countRunAndMakeAscending(int low, int high, Comparator comparator) {
+        int runHigh = low + 1;
+        if (comparator.compare(values[runHigh++], values[low]) < 0) {
+            while (runHigh < high && comparator.compare(values[runHigh], values[runHigh - 1]) < 0) {
+                runHigh++;
+            }
+            for (int i = low, j = runHigh - 1; i < j; i++, j--) {
+                int tmp = values[i];
+                values[i] = values[j];
+                values[j] = tmp;
+            }
+        } else {
+            while (runHigh < high && comparator.compare(values[runHigh], values[runHigh - 1]) >= 0) {
+                runHigh++;
+            }
+        }
+        return runHigh;
+    }
+
+    private void binaryInsertionSort(int low, int high, int start, Comparator comparator) {
+        for (; start < high; start++) {
+            int pivot = values[start];
+            int left = low;
+            int right = start;
+            while (left < right) {
+                int middle = (left + right) >>> 1;
+                if (comparator.compare(pivot, values[middle]) < 0) {
+                    right = middle;
+                } else {
+                    left = middle + 1;
+                }
+            }
+            System.arraycopy(values, left, values, left + 1, start - left);
+            values[left] = pivot;
+        }
+    }
+
+    private static void mergeSort(int[] source, int[] destination, int low, int high, Comparator comparator) {
+        if (high - low < 2) {
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        mergeSort(destination, source, low, middle, comparator);
+        mergeSort(destination, source, middle, high, comparator);
+        for (int i = low, left = low, right = middle; i < high; i++) {
+            if (right >= high || (left < middle && comparator.compare(source[right], source[left]) >= 0)) {
+                destination[i] = source[left++];
+            } else {
+                destination[i] = source[right++];
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.familyships.FamilyShips.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Parents and children of every person of a tree at one revision, for answering
+// how people are related without going through the families.
+//
+// People are numbered densely in the order of their ids, and the parents/children of
+// `i` are `values[offsets[i]]..values[offsets[i + 1] - 1]` (compressed sparse rows),
+// so a query only touches the people it visits.
+//
+// Lowest common ancestors are found by walking up from both people: with two parents
+// per person and the same ancestors reached along several lines (pedigree collapse)
+// the tree is not a tree in the graph sense, so the usual LCA tables don't apply, but
+// the ancestors of a single person stay few even in large trees.
+//
+// Immutable, safe to share between requests.
+public class KinshipIndex {
+    // Someone reached by walking up or down from a person, `distance` generations away.
+    public static class Relative {
+        private final int id;
+        private final int distance;
+
+        Relative(int id, int distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    // An ancestor shared by two people, with the number of generations from each of
+    // them. Both distances are 0 when it's the same person, one of them is 0 when one
+    // person is the ancestor of the other.
+    public static class CommonAncestor {
+        private final int id;
+        private final int personDistance;
+        private final int relativeDistance;
+
+        CommonAncestor(int id, int personDistance, int relativeDistance) {
+            this.id = id;
+            this.personDistance = personDistance;
+            this.relativeDistance = relativeDistance;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public int getPersonDistance() {
+            return personDistance;
+        }
+
+        public int getRelativeDistance() {
+            return relativeDistance;
+        }
+    }
+
+    // What the relative is to the person ("parent", "first cousin once removed", ...),
+    // through the closest of the common ancestors. `name` is null if they have no
+    // common ancestors. Half relations are named the same as full ones.
+    public static class Relationship {
+        private final String name;
+        private final List<CommonAncestor> commonAncestors;
+
+        Relationship(String name, List<CommonAncestor> commonAncestors) {
+            this.name = name;
+            this.commonAncestors = commonAncestors;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<CommonAncestor> getCommonAncestors() {
+            return commonAncestors;
+        }
+    }
+
+    private static final String[] ORDINAL_WORDS = { "zeroth", "first", "second", "third", "fourth", "fifth",
+            "sixth", "seventh", "eighth", "ninth", "tenth" };
+
+    private final long revision;
+    private final int[] personIds;
+    private final int[] parentsOffsets;
+    private final int[] parents;
+    private final int[] childrenOffsets;
+    private final int[] children;
+
+    // Uses the same person numbering as the graph.
+    public KinshipIndex(TreeGraph graph) {
+        this.revision = graph.getRevision();
+        this.personIds = graph.personIds();
+        int people = personIds.length;
+        parentsOffsets = new int[people + 1];
+        parents = join(graph.childOfOffsets(), graph.childOf(), graph.familyParentsOffsets(),
+                graph.familyParents(), parentsOffsets);
+        childrenOffsets = new int[people + 1];
+        children = join(graph.parentOfOffsets(), graph.parentOf(), graph.familyChildrenOffsets(),
+                graph.familyChildren(), childrenOffsets);
+    }
+
+    // People reached from every person through the families they are in: the
+    // parents of the families they are a child of, or the children of the families
+    // they are a parent of.
+    private static int[] join(int[] familiesOffsets, int[] families, int[] peopleOffsets, int[] people,
+            int[] offsets) {
+        int count = offsets.length - 1;
+        for (int person = 0; person < count; person++) {
+            int reached = 0;
+            for (int i = familiesOffsets[person]; i < familiesOffsets[person + 1]; i++) {
+                reached += peopleOffsets[families[i] + 1] - peopleOffsets[families[i]];
+            }
+            offsets[person + 1] = offsets[person] + reached;
+        }
+        int[] result = new int[offsets[count]];
+        int next = 0;
+        for (int person = 0; person < count; person++) {
+            for (int i = familiesOffsets[person]; i < familiesOffsets[person + 1]; i++) {
+                for (int j = peopleOffsets[families[i]]; j < peopleOffsets[families[i] + 1]; j++) {
+                    result[next++] = people[j];
+                }
+            }
+        }
+        return result;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public int peopleCount() {
+        return personIds.length;
+    }
+
+    public boolean contains(int personId) {
+        return Arrays.binarySearch(personIds, personId) >= 0;
+    }
+
+    // Ancestors up to `maxDepth` generations up (all of them if null), closest first.
+    public List<Relative> ancestors(int personId, Integer maxDepth) {
+        return relatives(walk(personId, parentsOffsets, parents, maxDepth));
+    }
+
+    // Descendants up to `maxDepth` generations down (all of them if null), closest first.
+    public List<Relative> descendants(int personId, Integer maxDepth) {
+        return relatives(walk(personId, childrenOffsets, children, maxDepth));
+    }
+
+    // Common ancestors of the two people that are not an ancestor of another common
+    // ancestor, closest first. Each person counts as their own ancestor.
+    public List<CommonAncestor> lowestCommonAncestors(int personId, int relativeId) {
+        Map<Integer, Integer> personAncestors = walk(personId, parentsOffsets, parents, null);
+        Map<Integer, Integer> relativeAncestors = walk(relativeId, parentsOffsets, parents, null);
+        List<CommonAncestor> result = new ArrayList<CommonAncestor>();
+        for (Map.Entry<Integer, Integer> entry : personAncestors.entrySet()) {
+            int ancestor = entry.getKey();
+            Integer relativeDistance = relativeAncestors.get(ancestor);
+            if (relativeDistance == null) {
+                continue;
+            }
+            boolean lowest = true;
+            for (int i = childrenOffsets[ancestor]; i < childrenOffsets[ancestor + 1] && lowest; i++) {
+                lowest = !(personAncestors.containsKey(children[i]) && relativeAncestors.containsKey(children[i]));
+            }
+            if (lowest) {
+                result.add(new CommonAncestor(personIds[ancestor], entry.getValue(), relativeDistance));
+            }
+        }
+        result.sort(Comparator
+                .comparingInt((CommonAncestor ancestor) -> ancestor.personDistance + ancestor.relativeDistance)
+                .thenComparingInt(ancestor -> Math.max(ancestor.personDistance, ancestor.relativeDistance))
+                .thenComparingInt(ancestor -> ancestor.id));
+        return result;
+    }
+
+    public Relationship relationship(int personId, int relativeId) {
+        List<CommonAncestor> commonAncestors = lowestCommonAncestors(personId, relativeId);
+        if (commonAncestors.isEmpty()) {
+            return new Relationship(null, commonAncestors);
+        }
+        CommonAncestor closest = commonAncestors.get(0);
+        return new Relationship(name(closest.personDistance, closest.relativeDistance), commonAncestors);
+    }
+
+    // What someone `relativeDistance` generations below a common ancestor is to someone
+    // `personDistance` generations below it.
+    static String name(int personDistance, int relativeDistance) {
+        if (personDistance == 0 && relativeDistance == 0) {
+            return "self";
+        }
+        if (relativeDistance == 0) {
+            return personDistance == 1 ? "parent" : greats(personDistance - 2) + "grandparent";
+        }
+        if (personDistance == 0) {
+            return relativeDistance == 1 ? "child" : greats(relativeDistance - 2) + "grandchild";
+        }
+        if (personDistance == 1 && relativeDistance == 1) {
+            return "sibling";
+        }
+        if (relativeDistance == 1) {
+            String greats = greats(personDistance - 2);
+            return greats + "aunt or " + greats + "uncle";
+        }
+        if (personDistance == 1) {
+            String greats = greats(relativeDistance - 2);
+            return greats + "niece or " + greats + "nephew";
+        }
+        int degree = Math.min(personDistance, relativeDistance) - 1;
+        int removed = Math.abs(personDistance - relativeDistance);
+        String cousin = (degree < ORDINAL_WORDS.length ? ORDINAL_WORDS[degree] : ordinal(degree)) + " cousin";
+        switch (removed) {
+            case 0:
+                return cousin;
+            case 1:
+                return cousin + " once removed";
+            case 2:
+                return cousin + " twice removed";
+            default:
+                return cousin + " " + removed + " times removed";
+        }
+    }
+
+    private static String greats(int count) {
+        switch (count) {
+            case 0:
+                return "";
+            case 1:
+                return "great-";
+            case 2:
+                return "great-great-";
+            default:
+                return ordinal(count) + " great-";
+        }
+    }
+
+    private static String ordinal(int number) {
+        if (number % 100 >= 11 && number % 100 <= 13) {
+            return number + "th";
+        }
+        switch (number % 10) {
+            case 1:
+                return number + "st";
+            case 2:
+                return number + "nd";
+            case 3:
+                return number + "rd";
+            default:
+                return number + "th";
+        }
+    }
+
+    // Breadth first walk from the person along the given relation, returning the
+    // distance of everyone reached (including the person, at 0) in the order they were
+    // reached. Loops in the tree are walked around once.
+    private Map<Integer, Integer> walk(int personId, int[] offsets, int[] values, Integer maxDepth) {
+        Map<Integer, Integer> distances = new LinkedHashMap<Integer, Integer>();
+        int start = Arrays.binarySearch(personIds, personId);
+        if (start < 0) {
+            return distances;
+        }
+        distances.put(start, 0);
+        IntList frontier = IntList.of(start);
+        for (int depth = 1; !frontier.isEmpty() && (maxDepth == null || depth <= maxDepth); depth++) {
+            IntList next = new IntList();
+            for (int i = 0; i < frontier.size(); i++) {
+                int person = frontier.get(i);
+                for (int j = offsets[person]; j < offsets[person + 1]; j++) {
+                    if (distances.putIfAbsent(values[j], depth) == null) {
+                        next.add(values[j]);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return distances;
+    }
+
+    private List<Relative> relatives(Map<Integer, Integer> distances) {
+        List<Relative> result = new ArrayList<Relative>(distances.size());
+        for (Map.Entry<Integer, Integer> entry : distances.entrySet()) {
+            if (entry.getValue() > 0) {
+                result.add(new Relative(personIds[entry.getKey()], entry.getValue()));
+            }
+        }
+        return result;
+    }
+}
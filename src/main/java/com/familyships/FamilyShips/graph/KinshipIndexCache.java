@@ -0,0 +1,30 @@
+package com.familyships.FamilyShips.graph;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Remembers the last built `KinshipIndex` of every tree, see `RevisionCache`.
+@Component
+public class KinshipIndexCache {
+    private final RevisionCache<KinshipIndex> indices;
+
+    public KinshipIndexCache(@Value("${familyships.kinship-cache.max-size:1000}") int maxSize,
+            MeterRegistry meterRegistry) {
+        this.indices = new RevisionCache<KinshipIndex>("familyships.kinship_cache", "familyships.kinship.build",
+                maxSize, KinshipIndex::getRevision, meterRegistry);
+    }
+
+    // Returns the index of the tree at the given revision, building it if it's not
+    // cached.
+    public KinshipIndex get(Integer treeId, long revision, Supplier<KinshipIndex> build) {
+        return indices.get(treeId, revision, build);
+    }
+
+    public int size() {
+        return indices.size();
+    }
+}
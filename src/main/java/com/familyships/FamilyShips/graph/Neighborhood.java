@@ -0,0 +1,103 @@
+package com.familyships.FamilyShips.graph;
+
+import java.util.Arrays;
+
+// The people around one person of a `TreeGraph`: their ancestors up to `up`
+// generations, their descendants down to `down` generations, and then the siblings and
+// partners of all of them, repeated `sideways` times (so 2 adds the siblings of
+// partners and the partners of siblings as well), plus the families any of those people
+// are in.
+//
+// People and families are given as indices of the graph, in increasing order.
+public class Neighborhood {
+    private final int[] people;
+    private final int[] families;
+
+    public Neighborhood(TreeGraph graph, int personIndex, int up, int down, int sideways) {
+        boolean[] included = new boolean[graph.peopleCount()];
+        IntList reached = IntList.of(personIndex);
+        included[personIndex] = true;
+        walk(graph.childOfOffsets(), graph.childOf(), graph.familyParentsOffsets(), graph.familyParents(),
+                personIndex, up, included, reached);
+        walk(graph.parentOfOffsets(), graph.parentOf(), graph.familyChildrenOffsets(), graph.familyChildren(),
+                personIndex, down, included, reached);
+
+        IntList frontier = IntList.of(reached.toArray());
+        for (int step = 0; step < sideways && !frontier.isEmpty(); step++) {
+            IntList next = new IntList();
+            for (int i = 0; i < frontier.size(); i++) {
+                int person = frontier.get(i);
+                // Siblings, through the families the person is a child of, and partners,
+                // through the families the person is a parent of.
+                visitRelatives(graph.childOfOffsets(), graph.childOf(), graph.familyChildrenOffsets(),
+                        graph.familyChildren(), person, included, next);
+                visitRelatives(graph.parentOfOffsets(), graph.parentOf(), graph.familyParentsOffsets(),
+                        graph.familyParents(), person, included, next);
+            }
+            for (int i = 0; i < next.size(); i++) {
+                reached.add(next.get(i));
+            }
+            frontier = next;
+        }
+
+        people = reached.toArray();
+        Arrays.sort(people);
+        boolean[] includedFamilies = new boolean[graph.familyCount()];
+        IntList families = new IntList();
+        for (int person : people) {
+            addFamilies(graph.parentOfOffsets(), graph.parentOf(), person, includedFamilies, families);
+            addFamilies(graph.childOfOffsets(), graph.childOf(), person, includedFamilies, families);
+        }
+        this.families = families.toArray();
+        Arrays.sort(this.families);
+    }
+
+    // Breadth first walk from the person through the families they are in on one side
+    // (as a child to go up, as a parent to go down) to the people on the other side.
+    private static void walk(int[] familiesOffsets, int[] families, int[] peopleOffsets, int[] familyPeople,
+            int start, int depth, boolean[] included, IntList reached) {
+        IntList frontier = IntList.of(start);
+        for (int generation = 0; generation < depth && !frontier.isEmpty(); generation++) {
+            IntList next = new IntList();
+            for (int i = 0; i < frontier.size(); i++) {
+                visitRelatives(familiesOffsets, families, peopleOffsets, familyPeople, frontier.get(i), included,
+                        next);
+            }
+            for (int i = 0; i < next.size(); i++) {
+                reached.add(next.get(i));
+            }
+            frontier = next;
+        }
+    }
+
+    private static void visitRelatives(int[] familiesOffsets, int[] families, int[] peopleOffsets,
+            int[] familyPeople, int person, boolean[] included, IntList next) {
+        for (int i = familiesOffsets[person]; i < familiesOffsets[person + 1]; i++) {
+            int family = families[i];
+            for (int j = peopleOffsets[family]; j < peopleOffsets[family + 1]; j++) {
+                if (!included[familyPeople[j]]) {
+                    included[familyPeople[j]] = true;
+                    next.add(familyPeople[j]);
+                }
+            }
+        }
+    }
+
+    private static void addFamilies(int[] offsets, int[] values, int person, boolean[] included,
+            IntList families) {
+        for (int i = offsets[person]; i < offsets[person + 1]; i++) {
+            if (!included[values[i]]) {
+                included[values[i]] = true;
+                families.add(values[i]);
+            }
+        }
+    }
+
+    public int[] people() {
+        return people;
+    }
+
+    public int[] families() {
+        return families;
+    }
+}
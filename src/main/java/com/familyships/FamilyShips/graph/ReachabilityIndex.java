@@ -0,0 +1,295 @@
+package com.familyships.FamilyShips.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Parent-child links of one tree kept in memory, to tell whether a new link would
+// make someone their own ancestor.
+//
+// Every person has a level which is lower than the level of any of their children
+// (a topological order, but not necessarily the generation). A descendant always has
+// a higher level than their ancestor, so looking for an ancestor amongst the
+// descendants of someone never has to go deeper than the ancestor's level. Attaching
+// a child below their new parents only raises the levels of that child and their
+// descendants where needed, detaching never changes any level.
+//
+// Trees that already have loops (from before links were validated, or from an
+// import) have no such order. Those are searched without the shortcut, and the
+// levels are recalculated after links are removed in case the loop went away.
+//
+// Not thread safe.
+public class ReachabilityIndex {
+    private final Map<Integer, Integer> personIndices = new HashMap<Integer, Integer>();
+    private final Map<Integer, Integer> familyIndices = new HashMap<Integer, Integer>();
+
+    // Children of every person, once for every family they are a child of the person in.
+    private final List<IntList> children = new ArrayList<IntList>();
+    private final IntList levels = new IntList();
+    private final List<IntList> familyParents = new ArrayList<IntList>();
+    private final List<IntList> familyChildren = new ArrayList<IntList>();
+
+    private boolean ordered = true;
+    private boolean recalculateLevels = false;
+
+    // Scratch space of the searches: a person is visited if `visited` holds the
+    // current `visit`.
+    private int[] visited = new int[0];
+    private int visit = 0;
+    private final IntList stack = new IntList();
+
+    // Builds the index from all the (familyId, parentId) and (familyId, childId)
+    // links of a tree.
+    public static ReachabilityIndex of(int[] parentLinkFamilyIds, int[] parentLinkPersonIds,
+            int[] childLinkFamilyIds, int[] childLinkPersonIds) {
+        ReachabilityIndex index = new ReachabilityIndex();
+        for (int i = 0; i < parentLinkFamilyIds.length; i++) {
+            index.familyParents.get(index.family(parentLinkFamilyIds[i])).add(index.person(parentLinkPersonIds[i]));
+        }
+        for (int i = 0; i < childLinkFamilyIds.length; i++) {
+            int family = index.family(childLinkFamilyIds[i]);
+            int child = index.person(childLinkPersonIds[i]);
+            index.familyChildren.get(family).add(child);
+            IntList parents = index.familyParents.get(family);
+            for (int j = 0; j < parents.size(); j++) {
+                index.children.get(parents.get(j)).add(child);
+            }
+        }
+        index.recalculateLevels();
+        return index;
+    }
+
+    public int peopleCount() {
+        return personIndices.size();
+    }
+
+    // Whether attaching the person as a child of the family would make them their
+    // own ancestor, that is whether they already are an ancestor of (or are) one of
+    // the parents.
+    public boolean wouldLoopWithChild(int familyId, int childId) {
+        Integer family = familyIndices.get(familyId);
+        Integer child = personIndices.get(childId);
+        if (family == null || child == null) {
+            return false;
+        }
+        return reachesAny(IntList.of(child), familyParents.get(family));
+    }
+
+    // Whether attaching the person as a parent of the family would make them their
+    // own ancestor, that is whether they already are a descendant of (or are) one of
+    // the children.
+    public boolean wouldLoopWithParent(int familyId, int parentId) {
+        Integer family = familyIndices.get(familyId);
+        Integer parent = personIndices.get(parentId);
+        if (family == null || parent == null) {
+            return false;
+        }
+        return reachesAny(familyChildren.get(family), IntList.of(parent));
+    }
+
+    public void attachChild(int familyId, int childId) {
+        int family = family(familyId);
+        int child = person(childId);
+        familyChildren.get(family).add(child);
+        IntList parents = familyParents.get(family);
+        int level = 0;
+        for (int i = 0; i < parents.size(); i++) {
+            children.get(parents.get(i)).add(child);
+            level = Math.max(level, levels.get(parents.get(i)) + 1);
+        }
+        raise(child, level);
+    }
+
+    public void detachChild(int familyId, int childId) {
+        int family = family(familyId);
+        int child = person(childId);
+        if (!familyChildren.get(family).removeFirst(child)) {
+            return;
+        }
+        IntList parents = familyParents.get(family);
+        for (int i = 0; i < parents.size(); i++) {
+            children.get(parents.get(i)).removeFirst(child);
+        }
+        linkRemoved();
+    }
+
+    public void attachParent(int familyId, int parentId) {
+        int family = family(familyId);
+        int parent = person(parentId);
+        familyParents.get(family).add(parent);
+        IntList familyChildren = this.familyChildren.get(family);
+        for (int i = 0; i < familyChildren.size(); i++) {
+            children.get(parent).add(familyChildren.get(i));
+        }
+        for (int i = 0; i < familyChildren.size(); i++) {
+            raise(familyChildren.get(i), levels.get(parent) + 1);
+        }
+    }
+
+    public void detachParent(int familyId, int parentId) {
+        int family = family(familyId);
+        int parent = person(parentId);
+        if (!familyParents.get(family).removeFirst(parent)) {
+            return;
+        }
+        IntList familyChildren = this.familyChildren.get(family);
+        for (int i = 0; i < familyChildren.size(); i++) {
+            children.get(parent).removeFirst(familyChildren.get(i));
+        }
+        linkRemoved();
+    }
+
+    private int person(int personId) {
+        Integer index = personIndices.get(personId);
+        if (index != null) {
+            return index;
+        }
+        index = children.size();
+        personIndices.put(personId, index);
+        children.add(new IntList(2));
+        levels.add(0);
+        return index;
+    }
+
+    private int family(int familyId) {
+        Integer index = familyIndices.get(familyId);
+        if (index != null) {
+            return index;
+        }
+        index = familyParents.size();
+        familyIndices.put(familyId, index);
+        familyParents.add(new IntList(2));
+        familyChildren.add(new IntList(2));
+        return index;
+    }
+
+    private void linkRemoved() {
+        if (!ordered) {
+            recalculateLevels = true;
+        }
+    }
+
+    // Depth first search from the sources for any of the targets.
+    private boolean reachesAny(IntList sources, IntList targets) {
+        if (sources.isEmpty() || targets.isEmpty()) {
+            return false;
+        }
+        if (recalculateLevels) {
+            recalculateLevels();
+        }
+        startVisit();
+        int maxTargetLevel = Integer.MIN_VALUE;
+        for (int i = 0; i < targets.size(); i++) {
+            maxTargetLevel = Math.max(maxTargetLevel, levels.get(targets.get(i)));
+        }
+        // Targets get a number of their own, so that they are told apart from the
+        // people visited by this search.
+        int targetMark = visit;
+        for (int i = 0; i < targets.size(); i++) {
+            visited[targets.get(i)] = targetMark;
+        }
+        visit++;
+
+        stack.clear();
+        for (int i = 0; i < sources.size(); i++) {
+            stack.add(sources.get(i));
+        }
+        while (!stack.isEmpty()) {
+            int person = stack.last();
+            stack.removeLast();
+            if (visited[person] == targetMark) {
+                return true;
+            }
+            if (visited[person] == visit) {
+                continue;
+            }
+            visited[person] = visit;
+            if (ordered && levels.get(person) >= maxTargetLevel) {
+                continue;
+            }
+            IntList personChildren = children.get(person);
+            for (int i = 0; i < personChildren.size(); i++) {
+                stack.add(personChildren.get(i));
+            }
+        }
+        return false;
+    }
+
+    private void startVisit() {
+        if (visited.length < children.size()) {
+            visited = new int[Math.max(children.size(), visited.length * 2)];
+            visit = 0;
+        }
+        if (visit > Integer.MAX_VALUE - 2) {
+            Arrays.fill(visited, 0);
+            visit = 0;
+        }
+        visit++;
+    }
+
+    // Makes sure that the person and all their descendants are at least at the
+    // given level, each one level below their parent.
+    private void raise(int person, int level) {
+        if (!ordered || levels.get(person) >= level) {
+            return;
+        }
+        levels.set(person, level);
+        stack.clear();
+        stack.add(person);
+        while (!stack.isEmpty()) {
+            int parent = stack.last();
+            stack.removeLast();
+            int childLevel = levels.get(parent) + 1;
+            IntList parentChildren = children.get(parent);
+            for (int i = 0; i < parentChildren.size(); i++) {
+                int child = parentChildren.get(i);
+                if (levels.get(child) < childLevel) {
+                    if (child == person) {
+                        // The new link closed a loop after all, only possible if it
+                        // wasn't checked first.
+                        ordered = false;
+                        return;
+                    }
+                    levels.set(child, childLevel);
+                    stack.add(child);
+                }
+            }
+        }
+    }
+
+    // Kahn's algorithm over the whole tree. If some people are left over they are
+    // on a loop and the tree has no order.
+    private void recalculateLevels() {
+        recalculateLevels = false;
+        int[] remainingParents = new int[children.size()];
+        for (IntList personChildren : children) {
+            for (int i = 0; i < personChildren.size(); i++) {
+                remainingParents[personChildren.get(i)]++;
+            }
+        }
+        IntList ready = new IntList();
+        for (int person = 0; person < children.size(); person++) {
+            levels.set(person, 0);
+            if (remainingParents[person] == 0) {
+                ready.add(person);
+            }
+        }
+        int done = 0;
+        while (!ready.isEmpty()) {
+            int parent = ready.last();
+            ready.removeLast();
+            done++;
+            IntList parentChildren = children.get(parent);
+            for (int i = 0; i < parentChildren.size(); i++) {
+                int child = parentChildren.get(i);
+                levels.set(child, Math.max(levels.get(child), levels.get(parent) + 1));
+                if (--remainingParents[child] == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        ordered = done == children.size();
+    }
+}
@@ -0,0 +1,71 @@
+package com.familyships.FamilyShips.graph;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Remembers the last value built for every tree out of its `TreeGraph` (its
+// `KinshipIndex`, its layout). A value is only valid for the revision it was built
+// at, any modification of the tree bumps the revision and the next request builds the
+// value again. Trees that were not looked at for the longest are dropped when the
+// cache grows over its maximum size.
+//
+// Metrics: <name>.hits, <name>.misses and <name>.size of the cache, and the given
+// timer for the builds.
+public class RevisionCache<V> {
+    private final int maxSize;
+    private final ToLongFunction<V> revisionOf;
+    private final Map<Integer, V> values;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer builds;
+
+    public RevisionCache(String name, String buildTimer, int maxSize, ToLongFunction<V> revisionOf,
+            MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.revisionOf = revisionOf;
+        this.values = new LinkedHashMap<Integer, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, V> eldest) {
+                return size() > RevisionCache.this.maxSize;
+            }
+        };
+        this.hits = meterRegistry.counter(name + ".hits");
+        this.misses = meterRegistry.counter(name + ".misses");
+        this.builds = meterRegistry.timer(buildTimer);
+        Gauge.builder(name + ".size", this, RevisionCache::size).register(meterRegistry);
+    }
+
+    // Returns the value of the tree at the given revision, building it if it's not
+    // cached. The build happens outside of the lock, two requests for the same tree
+    // might both build it.
+    public V get(Integer treeId, long revision, Supplier<V> build) {
+        synchronized (this) {
+            V value = values.get(treeId);
+            if (value != null && revisionOf.applyAsLong(value) == revision) {
+                hits.increment();
+                return value;
+            }
+        }
+        misses.increment();
+        V value = builds.record(build);
+        synchronized (this) {
+            V cached = values.get(treeId);
+            if (cached == null || revisionOf.applyAsLong(cached) < revisionOf.applyAsLong(value)) {
+                values.put(treeId, value);
+            }
+        }
+        return value;
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+}
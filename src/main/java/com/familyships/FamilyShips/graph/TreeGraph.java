@@ -0,0 +1,332 @@
+package com.familyships.FamilyShips.graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// The people and families of a tree at one revision and the links between them, in
+// primitive int arrays instead of entities: people and families are numbered densely
+// (0..n-1) in the order of their ids, and every relation is an offsets/values pair
+// (compressed sparse rows), so the neighbours of `i` are
+// `values[offsets[i]]..values[offsets[i + 1] - 1]`, sorted.
+//
+// Immutable, safe to share between requests. The arrays returned by the accessors
+// must not be modified. Changes are applied with `patched`, which lays the arrays out
+// again without going back to the database.
+public final class TreeGraph {
+    // Changes to apply to a graph, in order.
+    public static final class Patch {
+        private static final int ADD_PERSON = 0;
+        private static final int REMOVE_PERSON = 1;
+        private static final int ADD_FAMILY = 2;
+        private static final int REMOVE_FAMILY = 3;
+        private static final int ATTACH_CHILD = 4;
+        private static final int DETACH_CHILD = 5;
+        private static final int ATTACH_PARENT = 6;
+        private static final int DETACH_PARENT = 7;
+
+        // (operation, person id, family id) triples.
+        private final IntList operations = new IntList();
+
+        public boolean isEmpty() {
+            return operations.isEmpty();
+        }
+
+        // Number of changes.
+        public int size() {
+            return operations.size() / 3;
+        }
+
+        public void addAll(Patch patch) {
+            for (int i = 0; i < patch.operations.size(); i++) {
+                operations.add(patch.operations.get(i));
+            }
+        }
+
+        public void addPerson(int personId) {
+            add(ADD_PERSON, personId, 0);
+        }
+
+        // Removes the person with all their links.
+        public void removePerson(int personId) {
+            add(REMOVE_PERSON, personId, 0);
+        }
+
+        public void addFamily(int familyId) {
+            add(ADD_FAMILY, 0, familyId);
+        }
+
+        // Removes the family with all its links.
+        public void removeFamily(int familyId) {
+            add(REMOVE_FAMILY, 0, familyId);
+        }
+
+        public void attachChild(int familyId, int childId) {
+            add(ATTACH_CHILD, childId, familyId);
+        }
+
+        public void detachChild(int familyId, int childId) {
+            add(DETACH_CHILD, childId, familyId);
+        }
+
+        public void attachParent(int familyId, int parentId) {
+            add(ATTACH_PARENT, parentId, familyId);
+        }
+
+        public void detachParent(int familyId, int parentId) {
+            add(DETACH_PARENT, parentId, familyId);
+        }
+
+        private void add(int operation, int personId, int familyId) {
+            operations.add(operation);
+            operations.add(personId);
+            operations.add(familyId);
+        }
+    }
+
+    private final long revision;
+    private final int[] personIds;
+    private final int[] familyIds;
+
+    // Families the person is a parent of / a child of.
+    private final int[] parentOfOffsets;
+    private final int[] parentOf;
+    private final int[] childOfOffsets;
+    private final int[] childOf;
+    // Parents / children of the family.
+    private final int[] familyParentsOffsets;
+    private final int[] familyParents;
+    private final int[] familyChildrenOffsets;
+    private final int[] familyChildren;
+
+    // Links are given as (family id, person id) pairs. Links to people or families
+    // that are not in the lists are ignored.
+    public TreeGraph(long revision, int[] personIds, int[] familyIds, int[] parentLinkFamilyIds,
+            int[] parentLinkPersonIds, int[] childLinkFamilyIds, int[] childLinkPersonIds) {
+        this.revision = revision;
+        this.personIds = personIds.clone();
+        this.familyIds = familyIds.clone();
+        Arrays.sort(this.personIds);
+        Arrays.sort(this.familyIds);
+        int people = this.personIds.length;
+        int families = this.familyIds.length;
+
+        int[][] parentLinks = links(parentLinkFamilyIds, parentLinkPersonIds);
+        int[][] childLinks = links(childLinkFamilyIds, childLinkPersonIds);
+
+        parentOfOffsets = new int[people + 1];
+        parentOf = group(parentLinks[1], parentLinks[0], people, parentOfOffsets);
+        childOfOffsets = new int[people + 1];
+        childOf = group(childLinks[1], childLinks[0], people, childOfOffsets);
+        familyParentsOffsets = new int[families + 1];
+        familyParents = group(parentLinks[0], parentLinks[1], families, familyParentsOffsets);
+        familyChildrenOffsets = new int[families + 1];
+        familyChildren = group(childLinks[0], childLinks[1], families, familyChildrenOffsets);
+    }
+
+    // Translates (family id, person id) pairs into (family, person) indices.
+    private int[][] links(int[] linkFamilyIds, int[] linkPersonIds) {
+        IntList families = new IntList(linkFamilyIds.length);
+        IntList people = new IntList(linkPersonIds.length);
+        for (int i = 0; i < linkFamilyIds.length; i++) {
+            int family = familyIndex(linkFamilyIds[i]);
+            int person = personIndex(linkPersonIds[i]);
+            if (family >= 0 && person >= 0) {
+                families.add(family);
+                people.add(person);
+            }
+        }
+        return new int[][] { families.toArray(), people.toArray() };
+    }
+
+    // Counting sort of `values` by `keys`, with every group sorted.
+    private static int[] group(int[] keys, int[] values, int keyCount, int[] offsets) {
+        for (int key : keys) {
+            offsets[key + 1]++;
+        }
+        for (int i = 0; i < keyCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] next = Arrays.copyOf(offsets, keyCount);
+        int[] result = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[next[keys[i]]++] = values[i];
+        }
+        for (int i = 0; i < keyCount; i++) {
+            Arrays.sort(result, offsets[i], offsets[i + 1]);
+        }
+        return result;
+    }
+
+    // The graph after the changes, at the given revision.
+    public TreeGraph patched(Patch patch, long revision) {
+        Set<Integer> removedPeople = new HashSet<Integer>();
+        Set<Integer> removedFamilies = new HashSet<Integer>();
+        IntList addedPeople = new IntList();
+        IntList addedFamilies = new IntList();
+        // Links (family id << 32 | person id) that were attached (true) or detached
+        // (false), the last change of every link wins.
+        Map<Long, Boolean> parentLinks = new LinkedHashMap<Long, Boolean>();
+        Map<Long, Boolean> childLinks = new LinkedHashMap<Long, Boolean>();
+        IntList operations = patch.operations;
+        for (int i = 0; i < operations.size(); i += 3) {
+            int personId = operations.get(i + 1);
+            int familyId = operations.get(i + 2);
+            long link = (long) familyId << 32 | (personId & 0xffffffffL);
+            switch (operations.get(i)) {
+                case Patch.ADD_PERSON:
+                    addedPeople.add(personId);
+                    break;
+                case Patch.REMOVE_PERSON:
+                    removedPeople.add(personId);
+                    break;
+                case Patch.ADD_FAMILY:
+                    addedFamilies.add(familyId);
+                    break;
+                case Patch.REMOVE_FAMILY:
+                    removedFamilies.add(familyId);
+                    break;
+                case Patch.ATTACH_CHILD:
+                    childLinks.put(link, true);
+                    break;
+                case Patch.DETACH_CHILD:
+                    childLinks.put(link, false);
+                    break;
+                case Patch.ATTACH_PARENT:
+                    parentLinks.put(link, true);
+                    break;
+                case Patch.DETACH_PARENT:
+                    parentLinks.put(link, false);
+                    break;
+            }
+        }
+
+        IntList newPersonIds = new IntList(personIds.length + addedPeople.size());
+        for (int personId : personIds) {
+            if (!removedPeople.contains(personId)) {
+                newPersonIds.add(personId);
+            }
+        }
+        for (int i = 0; i < addedPeople.size(); i++) {
+            if (!removedPeople.contains(addedPeople.get(i)) && personIndex(addedPeople.get(i)) < 0) {
+                newPersonIds.add(addedPeople.get(i));
+            }
+        }
+        IntList newFamilyIds = new IntList(familyIds.length + addedFamilies.size());
+        for (int familyId : familyIds) {
+            if (!removedFamilies.contains(familyId)) {
+                newFamilyIds.add(familyId);
+            }
+        }
+        for (int i = 0; i < addedFamilies.size(); i++) {
+            if (!removedFamilies.contains(addedFamilies.get(i)) && familyIndex(addedFamilies.get(i)) < 0) {
+                newFamilyIds.add(addedFamilies.get(i));
+            }
+        }
+
+        // Links of removed people and families are dropped by the constructor.
+        IntList parentLinkFamilyIds = new IntList(familyParents.length);
+        IntList parentLinkPersonIds = new IntList(familyParents.length);
+        patchLinks(familyParentsOffsets, familyParents, parentLinks, parentLinkFamilyIds, parentLinkPersonIds);
+        IntList childLinkFamilyIds = new IntList(familyChildren.length);
+        IntList childLinkPersonIds = new IntList(familyChildren.length);
+        patchLinks(familyChildrenOffsets, familyChildren, childLinks, childLinkFamilyIds, childLinkPersonIds);
+
+        return new TreeGraph(revision, newPersonIds.toArray(), newFamilyIds.toArray(), parentLinkFamilyIds.toArray(),
+                parentLinkPersonIds.toArray(), childLinkFamilyIds.toArray(), childLinkPersonIds.toArray());
+    }
+
+    private void patchLinks(int[] offsets, int[] people, Map<Long, Boolean> changes, IntList linkFamilyIds,
+            IntList linkPersonIds) {
+        for (int family = 0; family < familyIds.length; family++) {
+            for (int i = offsets[family]; i < offsets[family + 1]; i++) {
+                long link = (long) familyIds[family] << 32 | (personIds[people[i]] & 0xffffffffL);
+                // Removed from the changes so that attaching a link that is already
+                // there doesn't add it twice.
+                Boolean attached = changes.remove(link);
+                if (attached == null || attached) {
+                    linkFamilyIds.add(familyIds[family]);
+                    linkPersonIds.add(personIds[people[i]]);
+                }
+            }
+        }
+        for (Map.Entry<Long, Boolean> change : changes.entrySet()) {
+            if (change.getValue()) {
+                linkFamilyIds.add((int) (change.getKey() >>> 32));
+                linkPersonIds.add((int) (long) change.getKey());
+            }
+        }
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public int peopleCount() {
+        return personIds.length;
+    }
+
+    public int familyCount() {
+        return familyIds.length;
+    }
+
+    // Index of the person with the given id, or a negative number if there is none.
+    public int personIndex(int personId) {
+        return Arrays.binarySearch(personIds, personId);
+    }
+
+    // Index of the family with the given id, or a negative number if there is none.
+    public int familyIndex(int familyId) {
+        return Arrays.binarySearch(familyIds, familyId);
+    }
+
+    public int[] personIds() {
+        return personIds;
+    }
+
+    public int[] familyIds() {
+        return familyIds;
+    }
+
+    public int[] parentOfOffsets() {
+        return parentOfOffsets;
+    }
+
+    public int[] parentOf() {
+        return parentOf;
+    }
+
+    public int[] childOfOffsets() {
+        return childOfOffsets;
+    }
+
+    public int[] childOf() {
+        return childOf;
+    }
+
+    public int[] familyParentsOffsets() {
+        return familyParentsOffsets;
+    }
+
+    public int[] familyParents() {
+        return familyParents;
+    }
+
+    public int[] familyChildrenOffsets() {
+        return familyChildrenOffsets;
+    }
+
+    public int[] familyChildren() {
+        return familyChildren;
+    }
+
+    // Approximate heap size of the graph: the arrays and their headers.
+    public long estimatedBytes() {
+        long ints = personIds.length + familyIds.length + parentOfOffsets.length + parentOf.length
+                + childOfOffsets.length + childOf.length + familyParentsOffsets.length + familyParents.length
+                + familyChildrenOffsets.length + familyChildren.length;
+        return 4 * ints + 10 * 16 + 64;
+    }
+}
@@ -0,0 +1,1145 @@
+package com.familyships.FamilyShips.layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.familyships.FamilyShips.graph.IntList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Port of the layout in `static/tree/layout.ts`, step by step, so that the server
+// gives the same positions as the browser. The four phases keep their names:
+// `recalculateLayerAssignment`, `recalculateConstraints`, `recalculateLayout` and
+// `recalculatePositions`, and the comments of the TypeScript version apply here too.
+//
+// People and families are the dense indices of `LayoutGraph`. What the TypeScript
+// version keeps in records keyed by id is kept in arrays indexed by person or family,
+// "undefined" being -1. The deques of people forming blocks are doubly linked lists
+// threaded through `nodeLeft` / `nodeRight`.
+//
+// An instance computes one layout and is then thrown away.
+final class LayoutEngine {
+    private static final Logger logger = LoggerFactory.getLogger(LayoutEngine.class);
+
+    static final double SPACE_BETWEEN_LAYERS = 200.0;
+    static final double SPACE_BETWEEN_PEOPLE = 300.0;
+    static final double DEPTH_FAMILY_BASE = 60.0;
+    static final double DEPTH_MODIFIER = 15.0;
+    static final double OVERLAY_OFFSET = 10.0;
+
+    // Special family depths, any other depth is >= 0.
+    private static final int DEPTH_PARTNER = -1;
+    private static final int DEPTH_SINGLE = -2;
+    // The TypeScript version ends up with an undefined depth (and a NaN position) in
+    // some corner cases, we draw those as depth 0.
+    private static final int DEPTH_UNKNOWN = -3;
+
+    private final LayoutGraph graph;
+    private final int people;
+    private final int families;
+
+    // Scratch space for the traversals, a slot is "marked" when it holds the
+    // current epoch.
+    private final int[] personMarks;
+    private final int[] otherPersonMarks;
+    private final int[] familyMarks;
+    private int epoch = 0;
+
+    LayoutEngine(LayoutGraph graph) {
+        this.graph = graph;
+        this.people = graph.peopleCount();
+        this.families = graph.familyCount();
+        this.personMarks = new int[people];
+        this.otherPersonMarks = new int[people];
+        this.familyMarks = new int[families];
+    }
+
+    TreeLayout calculate(long revision) {
+        recalculateLayerAssignment();
+        recalculateConstraints();
+        recalculateLayout();
+        recalculatePositions();
+        return new TreeLayout(revision, graph.personIds, personX, personY, graph.familyIds, familyX, familyY);
+    }
+
+    // -------------------------- Assigning people to layers --------------------------
+
+    final List<int[]> layers = new ArrayList<int[]>();
+    int[] personsLayer;
+    private int[] sccIds;
+
+    void recalculateLayerAssignment() {
+        sccIds = StronglyConnectedComponents.of(graph);
+        layers.clear();
+        personsLayer = new int[people];
+        Arrays.fill(personsLayer, -1);
+
+        boolean[] unassigned = new boolean[people];
+        Arrays.fill(unassigned, true);
+        int unassignedCount = people;
+        boolean[] considered = new boolean[people];
+        // In the order people were considered, people thrown out of `considered` stay
+        // in the list.
+        IntList consideredList = new IntList();
+        int[] throwOutConsidered = new int[people];
+        int throwOutEpoch = 0;
+        IntList cluster = new IntList();
+        IntList consideredPartners = new IntList();
+        IntList lowerLayersPartners = new IntList();
+
+        while (unassignedCount > 0) {
+            consideredList.clear();
+            for (int person = 0; person < people; person++) {
+                if (!unassigned[person] || hasNonLaidOutParents(person, unassigned)) {
+                    continue;
+                }
+                if (layers.isEmpty() && isChildOfParentlessFamily(person)) {
+                    continue;
+                }
+                considered[person] = true;
+                consideredList.add(person);
+            }
+
+            if (consideredList.isEmpty()) {
+                logger.warn("BUG: We couldn't neatly assing people to layers. Some people might be missing from the graph.");
+                break;
+            }
+
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                throwOutEpoch++;
+                for (int i = 0; i < consideredList.size(); i++) {
+                    int id = consideredList.get(i);
+                    if (!considered[id] || throwOutConsidered[id] == throwOutEpoch) {
+                        continue;
+                    }
+                    throwOutConsidered[id] = throwOutEpoch;
+
+                    partnerCluster(id, cluster);
+                    consideredPartners.clear();
+                    lowerLayersPartners.clear();
+                    for (int j = 0; j < cluster.size(); j++) {
+                        int partner = cluster.get(j);
+                        if (considered[partner]) {
+                            consideredPartners.add(partner);
+                            throwOutConsidered[partner] = throwOutEpoch;
+                        } else {
+                            lowerLayersPartners.add(partner);
+                        }
+                    }
+
+                    if (lowerLayersPartners.isEmpty()) {
+                        continue;
+                    }
+                    if (isAnyReachableFrom(consideredPartners, lowerLayersPartners)) {
+                        continue;
+                    }
+                    for (int j = 0; j < consideredPartners.size(); j++) {
+                        if (considered[consideredPartners.get(j)]) {
+                            considered[consideredPartners.get(j)] = false;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+
+            IntList layer = new IntList();
+            for (int i = 0; i < consideredList.size(); i++) {
+                if (considered[consideredList.get(i)]) {
+                    layer.add(consideredList.get(i));
+                }
+            }
+            if (layer.isEmpty()) {
+                logger.warn("BUG: There is something weird with partner resolution.");
+                layer = consideredList;
+            }
+
+            for (int i = 0; i < layer.size(); i++) {
+                int id = layer.get(i);
+                considered[id] = false;
+                unassigned[id] = false;
+                unassignedCount--;
+                personsLayer[id] = layers.size();
+            }
+            // People were considered in the order of their ids, so the layer is sorted.
+            layers.add(layer.toArray());
+        }
+    }
+
+    private boolean hasNonLaidOutParents(int person, boolean[] unassigned) {
+        for (int i = graph.childOfOffsets[person]; i < graph.childOfOffsets[person + 1]; i++) {
+            int family = graph.childOf[i];
+            for (int j = graph.familyParentsOffsets[family]; j < graph.familyParentsOffsets[family + 1]; j++) {
+                int parent = graph.familyParents[j];
+                if (unassigned[parent] && sccIds[parent] != sccIds[person]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isChildOfParentlessFamily(int person) {
+        for (int i = graph.childOfOffsets[person]; i < graph.childOfOffsets[person + 1]; i++) {
+            if (graph.parentCount(graph.childOf[i]) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Everyone reachable from the person in the partner graph (`model.partnerCluster`).
+    private void partnerCluster(int person, IntList result) {
+        result.clear();
+        int clusterEpoch = ++epoch;
+        personMarks[person] = clusterEpoch;
+        result.add(person);
+        for (int i = 0; i < result.size(); i++) {
+            int current = result.get(i);
+            for (int j = graph.partnersOffsets[current]; j < graph.partnersOffsets[current + 1]; j++) {
+                int partner = graph.partners[j];
+                if (personMarks[partner] != clusterEpoch) {
+                    personMarks[partner] = clusterEpoch;
+                    result.add(partner);
+                }
+            }
+        }
+    }
+
+    // Whether any of the `endIds` (or anyone in their strongly connected components)
+    // is a descendant of any of the `startIds`, see `reachability.ts`.
+    private boolean isAnyReachableFrom(IntList startIds, IntList endIds) {
+        int endEpoch = ++epoch;
+        for (int i = 0; i < endIds.size(); i++) {
+            otherPersonMarks[sccIds[endIds.get(i)]] = endEpoch;
+        }
+        int visitedEpoch = ++epoch;
+        IntList stack = new IntList();
+        for (int i = 0; i < startIds.size(); i++) {
+            int start = startIds.get(i);
+            if (personMarks[start] == visitedEpoch) {
+                continue;
+            }
+            personMarks[start] = visitedEpoch;
+            stack.add(start);
+            while (!stack.isEmpty()) {
+                int current = stack.last();
+                stack.removeLast();
+                for (int j = graph.childrenOffsets[current]; j < graph.childrenOffsets[current + 1]; j++) {
+                    int child = graph.children[j];
+                    if (otherPersonMarks[sccIds[child]] == endEpoch) {
+                        return true;
+                    }
+                    if (personMarks[child] != visitedEpoch) {
+                        personMarks[child] = visitedEpoch;
+                        stack.add(child);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // -------------------------- Calculating new constraints between people and grouping the layers with them --------------------------
+
+    // Blocks: union find over people, the root keeps the ends of the deque.
+    private int[] blockParent;
+    private int[] blockFront;
+    private int[] blockBack;
+    private int[] nodeLeft;
+    private int[] nodeRight;
+    // Slices: union find over people, the root keeps the ends of the slice.
+    private int[] sliceParent;
+    private int[] sliceLeft;
+    private int[] sliceRight;
+
+    private int[] assignedFamily;
+    private IntList[] beginsFamilySlices;
+    private IntList[] endsFamilySlices;
+    private boolean[] lockedChild;
+    private IntList[] familyAssignedChildren;
+    // Only defined for families whose parents are in one slice.
+    private int[] familySliceLeft;
+    private int[] familySliceRight;
+
+    int blockId(int person) {
+        int root = person;
+        while (blockParent[root] != root) {
+            root = blockParent[root];
+        }
+        // Compress paths as we go.
+        while (blockParent[person] != root) {
+            int next = blockParent[person];
+            blockParent[person] = root;
+            person = next;
+        }
+        return root;
+    }
+
+    int sliceId(int person) {
+        int root = person;
+        while (sliceParent[root] != root) {
+            root = sliceParent[root];
+        }
+        while (sliceParent[person] != root) {
+            int next = sliceParent[person];
+            sliceParent[person] = root;
+            person = next;
+        }
+        return root;
+    }
+
+    private void mergeBlocks(int firstBlockRepresentant, int secondBlockRepresentant) {
+        int first = blockId(firstBlockRepresentant);
+        int second = blockId(secondBlockRepresentant);
+        nodeRight[blockBack[first]] = blockFront[second];
+        nodeLeft[blockFront[second]] = blockBack[first];
+        blockBack[first] = blockBack[second];
+        blockParent[second] = first;
+    }
+
+    private void reverseBlockDeque(int block) {
+        int current = blockFront[block];
+        while (current != -1) {
+            int right = nodeRight[current];
+            nodeRight[current] = nodeLeft[current];
+            nodeLeft[current] = right;
+            current = right;
+        }
+        int front = blockFront[block];
+        blockFront[block] = blockBack[block];
+        blockBack[block] = front;
+    }
+
+    private void mergeSlices(int firstSliceRepresentant, int secondSliceRepresentant) {
+        int first = sliceId(firstSliceRepresentant);
+        int second = sliceId(secondSliceRepresentant);
+        sliceRight[first] = sliceRight[second];
+        sliceParent[second] = first;
+    }
+
+    IntList sliceToArray(int sliceRepresentant) {
+        IntList result = new IntList();
+        int slice = sliceId(sliceRepresentant);
+        int current = sliceLeft[slice];
+        int end = nodeRight[sliceRight[slice]];
+        while (current != end && current != -1) {
+            result.add(current);
+            current = nodeRight[current];
+        }
+        return result;
+    }
+
+    IntList slicesInBlock(int blockRepresentant) {
+        IntList result = new IntList();
+        int block = blockId(blockRepresentant);
+        int last = blockFront[block];
+        result.add(last);
+        last = sliceRight[sliceId(last)];
+        while (last != blockBack[block] && nodeRight[last] != -1) {
+            last = nodeRight[last];
+            last = sliceRight[sliceId(last)];
+            result.add(last);
+        }
+        return result;
+    }
+
+    // Blocks of the layer, every block as a list of slices (`layerConstraintsToArray`).
+    // In person ids, for tests.
+    List<List<List<Integer>>> layerConstraintsToArray(int layerIndex) {
+        List<List<List<Integer>>> result = new ArrayList<List<List<Integer>>>();
+        int blocksAddedEpoch = ++epoch;
+        for (int person : layers.get(layerIndex)) {
+            int block = blockId(person);
+            if (personMarks[block] == blocksAddedEpoch) {
+                continue;
+            }
+            personMarks[block] = blocksAddedEpoch;
+            List<List<Integer>> slices = new ArrayList<List<Integer>>();
+            IntList sliceIds = slicesInBlock(block);
+            for (int i = 0; i < sliceIds.size(); i++) {
+                List<Integer> slice = new ArrayList<Integer>();
+                IntList slicePeople = sliceToArray(sliceIds.get(i));
+                for (int j = 0; j < slicePeople.size(); j++) {
+                    slice.add(graph.personIds[slicePeople.get(j)]);
+                }
+                slices.add(slice);
+            }
+            result.add(slices);
+        }
+        return result;
+    }
+
+    void recalculateConstraints() {
+        blockParent = new int[people];
+        blockFront = new int[people];
+        blockBack = new int[people];
+        nodeLeft = new int[people];
+        nodeRight = new int[people];
+        sliceParent = new int[people];
+        sliceLeft = new int[people];
+        sliceRight = new int[people];
+        assignedFamily = new int[people];
+        beginsFamilySlices = new IntList[people];
+        endsFamilySlices = new IntList[people];
+        lockedChild = new boolean[people];
+        for (int person = 0; person < people; person++) {
+            blockParent[person] = person;
+            blockFront[person] = person;
+            blockBack[person] = person;
+            nodeLeft[person] = -1;
+            nodeRight[person] = -1;
+            sliceParent[person] = person;
+            sliceLeft[person] = person;
+            sliceRight[person] = person;
+            assignedFamily[person] = -1;
+            beginsFamilySlices[person] = new IntList(1);
+            endsFamilySlices[person] = new IntList(1);
+        }
+        familyAssignedChildren = new IntList[families];
+        familySliceLeft = new int[families];
+        familySliceRight = new int[families];
+        for (int family = 0; family < families; family++) {
+            familyAssignedChildren[family] = new IntList(1);
+            familySliceLeft[family] = -1;
+            familySliceRight[family] = -1;
+        }
+
+        IntList.Comparator byParentCount = (a, b) -> graph.parentCount(a) - graph.parentCount(b);
+        IntList.Comparator byParentCountDescending = (a, b) -> graph.parentCount(b) - graph.parentCount(a);
+
+        for (int[] layer : layers) {
+            for (int person : layer) {
+                int bestFamilyForPerson = findBestFamilyForPerson(person);
+                if (bestFamilyForPerson != -1) {
+                    assignedFamily[person] = bestFamilyForPerson;
+                    // We need to sort the begins and ends, so that we don't cross lines
+                    // while drawing children
+                    beginsFamilySlices[person].sort(byParentCount);
+                    endsFamilySlices[person].sort(byParentCountDescending);
+                    familyAssignedChildren[bestFamilyForPerson].add(person);
+                }
+            }
+            for (int person : layer) {
+                for (int i = graph.partnersOffsets[person]; i < graph.partnersOffsets[person + 1]; i++) {
+                    int partner = graph.partners[i];
+                    // Try adding each partnership only once
+                    if (partner < person) {
+                        continue;
+                    }
+                    if (attemptConstraint(person, partner, false) || attemptConstraint(partner, person, false)) {
+                        continue;
+                    }
+                    reverseBlock(person);
+                    if (attemptConstraint(person, partner, false) || attemptConstraint(partner, person, false)) {
+                        continue;
+                    }
+                    reverseBlock(person);
+                }
+                for (int i = graph.parentOfOffsets[person]; i < graph.parentOfOffsets[person + 1]; i++) {
+                    int family = graph.parentOf[i];
+                    if (familySliceLeft[family] != -1) {
+                        continue;
+                    }
+                    findFamilySlice(family);
+                    if (familySliceLeft[family] != -1) {
+                        beginsFamilySlices[familySliceLeft[family]].add(family);
+                        endsFamilySlices[familySliceRight[family]].add(family);
+                    }
+                }
+            }
+        }
+    }
+
+    private void reverseBlock(int blockRepresentant) {
+        IntList dependentBlocks = new IntList();
+        IntList dependentFamilies = new IntList();
+        int blocksEpoch = ++epoch;
+        int familiesEpoch = blocksEpoch;
+        IntList stack = IntList.of(blockId(blockRepresentant));
+        while (!stack.isEmpty()) {
+            int block = stack.last();
+            stack.removeLast();
+            if (otherPersonMarks[block] == blocksEpoch) {
+                continue;
+            }
+            otherPersonMarks[block] = blocksEpoch;
+            dependentBlocks.add(block);
+            IntList slices = slicesInBlock(block);
+            for (int i = 0; i < slices.size(); i++) {
+                IntList peopleInSlice = sliceToArray(slices.get(i));
+                for (int j = 0; j < peopleInSlice.size(); j++) {
+                    int family = assignedFamily[peopleInSlice.get(j)];
+                    if (family == -1 || familySliceLeft[family] == -1) {
+                        continue;
+                    }
+                    if (familyMarks[family] != familiesEpoch) {
+                        familyMarks[family] = familiesEpoch;
+                        dependentFamilies.add(family);
+                    }
+                    stack.add(blockId(familySliceLeft[family]));
+                }
+                for (int j = 0; j < peopleInSlice.size(); j++) {
+                    int person = peopleInSlice.get(j);
+                    for (IntList familySlices : new IntList[] { beginsFamilySlices[person], endsFamilySlices[person] }) {
+                        for (int k = 0; k < familySlices.size(); k++) {
+                            IntList children = familyAssignedChildren[familySlices.get(k)];
+                            for (int l = 0; l < children.size(); l++) {
+                                stack.add(blockId(children.get(l)));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < dependentBlocks.size(); i++) {
+            int block = dependentBlocks.get(i);
+            IntList slices = slicesInBlock(block);
+            for (int j = 0; j < slices.size(); j++) {
+                IntList peopleInSlice = sliceToArray(slices.get(j));
+                for (int k = 0; k < peopleInSlice.size(); k++) {
+                    int person = peopleInSlice.get(k);
+                    IntList tmp = beginsFamilySlices[person];
+                    beginsFamilySlices[person] = endsFamilySlices[person];
+                    endsFamilySlices[person] = tmp;
+                }
+                int slice = sliceId(slices.get(j));
+                int tmp = sliceLeft[slice];
+                sliceLeft[slice] = sliceRight[slice];
+                sliceRight[slice] = tmp;
+            }
+            reverseBlockDeque(blockId(block));
+        }
+        for (int i = 0; i < dependentFamilies.size(); i++) {
+            int family = dependentFamilies.get(i);
+            int tmp = familySliceLeft[family];
+            familySliceLeft[family] = familySliceRight[family];
+            familySliceRight[family] = tmp;
+            familyAssignedChildren[family].reverse();
+        }
+    }
+
+    // Sets the slice of the family if its parents are neighbours.
+    private void findFamilySlice(int family) {
+        int start = graph.familyParentsOffsets[family];
+        int end = graph.familyParentsOffsets[family + 1];
+        if (start == end) {
+            return;
+        }
+        int parentsEpoch = ++epoch;
+        for (int i = start; i < end; i++) {
+            personMarks[graph.familyParents[i]] = parentsEpoch;
+        }
+        int anyParent = graph.familyParents[start];
+        int encounters = 1;
+        int right = anyParent;
+        while (nodeRight[right] != -1 && personMarks[nodeRight[right]] == parentsEpoch) {
+            right = nodeRight[right];
+            encounters++;
+        }
+        int left = anyParent;
+        while (nodeLeft[left] != -1 && personMarks[nodeLeft[left]] == parentsEpoch) {
+            left = nodeLeft[left];
+            encounters++;
+        }
+        if (encounters == end - start) {
+            familySliceLeft[family] = left;
+            familySliceRight[family] = right;
+        }
+    }
+
+    // This attempts to find a set of parents that this child can be added as a dependency too.
+    private int findBestFamilyForPerson(int person) {
+        IntList personsFamilies = new IntList();
+        for (int i = graph.childOfOffsets[person]; i < graph.childOfOffsets[person + 1]; i++) {
+            int family = graph.childOf[i];
+            if (graph.parentCount(family) == 0 || familySliceLeft[family] == -1
+                    || personsLayer[familySliceLeft[family]] < personsLayer[person]) {
+                personsFamilies.add(family);
+            }
+        }
+        if (personsFamilies.isEmpty()) {
+            return -1;
+        }
+        // We want to start by looking at two parent families and ignore no parent families if possible
+        personsFamilies.sort((a, b) -> {
+            int aParents = graph.parentCount(a);
+            int bParents = graph.parentCount(b);
+            if (aParents == 2 || bParents == 0) {
+                return -1;
+            }
+            if (bParents == 2 || aParents == 0) {
+                return 1;
+            }
+            return aParents - bParents;
+        });
+
+        // We first look for families, whose parents are neighbours and there are at least two parents.
+        for (int i = 0; i < personsFamilies.size(); i++) {
+            if (familySliceLeft[personsFamilies.get(i)] != -1) {
+                return personsFamilies.get(i);
+            }
+        }
+        return personsFamilies.first();
+    }
+
+    // Will attempt to add a constraint between two people, so that they are kept together in a layout.
+    // Return `false` and doesn't modify anything if this constraint cannot be added.
+    private boolean attemptConstraint(int first, int second, boolean onlyBlock) {
+        if (first == second) {
+            return true;
+        }
+        // We don't constrain partners across layers
+        if (personsLayer[first] != personsLayer[second]) {
+            return false;
+        }
+        int firstBlock = blockId(first);
+        int secondBlock = blockId(second);
+        if (firstBlock == secondBlock) {
+            return false;
+        }
+        if (blockBack[firstBlock] != first) {
+            return false;
+        }
+        if (blockFront[secondBlock] != second) {
+            return false;
+        }
+
+        int firstFamily = assignedFamily[first];
+        int secondFamily = assignedFamily[second];
+        if (firstFamily != -1 && secondFamily != -1) {
+            if (familySliceLeft[firstFamily] == -1 || familySliceLeft[secondFamily] == -1) {
+                return false;
+            }
+            IntList firstEnds = endsFamilySlices[familySliceRight[firstFamily]];
+            for (int i = 0; i < firstEnds.size(); i++) {
+                if (familyAssignedChildren[firstEnds.get(i)].size() < familyAssignedChildren[firstFamily].size()) {
+                    return false;
+                }
+            }
+            IntList secondBegins = beginsFamilySlices[familySliceLeft[secondFamily]];
+            for (int i = 0; i < secondBegins.size(); i++) {
+                if (familyAssignedChildren[secondBegins.get(i)].size() < familyAssignedChildren[secondFamily].size()) {
+                    return false;
+                }
+            }
+            IntList firstChildren = familyAssignedChildren[firstFamily];
+            if (lockedChild[first] && (firstChildren.isEmpty() || firstChildren.last() != first)) {
+                return false;
+            }
+            IntList secondChildren = familyAssignedChildren[secondFamily];
+            if (lockedChild[second] && (secondChildren.isEmpty() || secondChildren.first() != second)) {
+                return false;
+            }
+            if (!attemptConstraint(familySliceRight[firstFamily], familySliceLeft[secondFamily], true)) {
+                return false;
+            }
+            lockedChild[first] = true;
+            lockedChild[second] = true;
+
+            // We need to mangle the begins and ends to ensure the family slices are correctly ordered.
+            IntList ends = endsFamilySlices[familySliceRight[firstFamily]];
+            ends.removeAll(firstFamily);
+            ends.add(firstFamily);
+            ends = endsFamilySlices[familySliceRight[secondFamily]];
+            ends.removeAll(secondFamily);
+            ends.addFirst(secondFamily);
+
+            // We also need to mangle the children of the family to ensure the proper person is at the end/beginning
+            firstChildren.removeAll(first);
+            firstChildren.add(first);
+            secondChildren.removeAll(second);
+            secondChildren.addFirst(second);
+
+            mergeBlocks(first, second);
+            // We cannot merge slices in this case.
+            return true;
+        }
+        mergeBlocks(first, second);
+        if (!onlyBlock) {
+            mergeSlices(first, second);
+        }
+        return true;
+    }
+
+    // -------------------------- Sorting people in each layer according to the collected constraints --------------------------
+
+    private static final class FamilyLayoutInformation {
+        final int family;
+        // (layer, position) pairs
+        final IntList members;
+        int depth;
+
+        FamilyLayoutInformation(int family, IntList members, int depth) {
+            this.family = family;
+            this.members = members;
+            this.depth = depth;
+        }
+    }
+
+    // Either a group of partners with their families (`partners` set) or a family
+    // floating between other nodes (`family` set).
+    private static final class LayoutNode {
+        final int[] partners;
+        // Families of every partner, in the same order as `partners`.
+        final FamilyLayoutInformation[][] partnerFamilies;
+        final FamilyLayoutInformation family;
+
+        LayoutNode(int[] partners, FamilyLayoutInformation[][] partnerFamilies) {
+            this.partners = partners;
+            this.partnerFamilies = partnerFamilies;
+            this.family = null;
+        }
+
+        LayoutNode(FamilyLayoutInformation family) {
+            this.partners = null;
+            this.partnerFamilies = null;
+            this.family = family;
+        }
+    }
+
+    private static final byte NOT_LAID_OUT = 0;
+    private static final byte CONSIDERED = 1;
+    private static final byte LAID_OUT = 2;
+
+    private List<List<LayoutNode>> layout;
+    private byte[] personsLayoutState;
+    private int[] personsLayoutLayer;
+    private int[] personsLayoutPosition;
+    private int[] familyLayoutLayer;
+    private int[] familyLayoutPosition;
+    // Depth of the families that are still open in each layer, keyed by
+    // `layer * families + family`, and the number of those in each layer.
+    private Map<Long, Integer> familyDepthInLayer;
+    private int[] familyDepthCountInLayer;
+    private int[] partnersMarks;
+    private int[] familiesSetMarks;
+    private int[] openFamiliesMarks;
+
+    private long depthKey(int layer, int family) {
+        return (long) layer * families + family;
+    }
+
+    private Integer removeFamilyDepth(int layer, int family) {
+        Integer depth = familyDepthInLayer.remove(depthKey(layer, family));
+        if (depth != null) {
+            familyDepthCountInLayer[layer]--;
+        }
+        return depth;
+    }
+
+    void recalculateLayout() {
+        int layerCount = layers.size();
+        layout = new ArrayList<List<LayoutNode>>(layerCount);
+        for (int i = 0; i < layerCount; i++) {
+            layout.add(new ArrayList<LayoutNode>());
+        }
+        personsLayoutState = new byte[people];
+        personsLayoutLayer = new int[people];
+        personsLayoutPosition = new int[people];
+        familyLayoutLayer = new int[families];
+        familyLayoutPosition = new int[families];
+        Arrays.fill(familyLayoutLayer, -1);
+        familyDepthInLayer = new HashMap<Long, Integer>();
+        familyDepthCountInLayer = new int[layerCount];
+        partnersMarks = new int[people];
+        familiesSetMarks = new int[families];
+        openFamiliesMarks = new int[families];
+
+        List<IntList> parentlessFamiliesInLayer = new ArrayList<IntList>(layerCount);
+        for (int i = 0; i < layerCount; i++) {
+            parentlessFamiliesInLayer.add(new IntList());
+        }
+        for (int family = 0; family < families; family++) {
+            if (graph.parentCount(family) > 0) {
+                continue;
+            }
+            int minChildLayer = Integer.MAX_VALUE;
+            for (int i = graph.familyChildrenOffsets[family]; i < graph.familyChildrenOffsets[family + 1]; i++) {
+                minChildLayer = Math.min(minChildLayer, personsLayer[graph.familyChildren[i]]);
+            }
+            int layer = minChildLayer == Integer.MAX_VALUE ? 0 : minChildLayer - 1;
+            if (layer < 0 || layer >= layerCount) {
+                layer = 0;
+            }
+            if (layerCount > 0) {
+                parentlessFamiliesInLayer.get(layer).add(family);
+            }
+        }
+
+        for (int layerIndex = 0; layerIndex < layerCount; layerIndex++) {
+            for (int person : layers.get(layerIndex)) {
+                IntList slices = slicesInBlock(person);
+                for (int i = 0; i < slices.size(); i++) {
+                    pushSliceIntoLayout(slices.get(i));
+                }
+            }
+            IntList parentless = parentlessFamiliesInLayer.get(layerIndex);
+            for (int i = 0; i < parentless.size(); i++) {
+                int family = parentless.get(i);
+                int position = layout.get(layerIndex).size();
+                layout.get(layerIndex).add(new LayoutNode(
+                        new FamilyLayoutInformation(family, pushFamilyMembersIntoLayout(family), 2)));
+                familyLayoutLayer[family] = layerIndex;
+                familyLayoutPosition[family] = position;
+            }
+        }
+    }
+
+    private IntList pushFamilyMembersIntoLayout(int family) {
+        IntList pushed = new IntList();
+        IntList children = familyAssignedChildren[family];
+        for (int i = 0; i < children.size(); i++) {
+            int child = children.get(i);
+            pushSliceIntoLayout(child);
+            if (personsLayoutState[child] == LAID_OUT) {
+                pushed.add(personsLayoutLayer[child]);
+                pushed.add(personsLayoutPosition[child]);
+            }
+        }
+        return pushed;
+    }
+
+    private FamilyLayoutInformation[] pushFamiliesMembersIntoLayout(IntList... familiesAndDepths) {
+        int count = 0;
+        for (IntList list : familiesAndDepths) {
+            count += list.size() / 2;
+        }
+        FamilyLayoutInformation[] result = new FamilyLayoutInformation[count];
+        int index = 0;
+        for (IntList list : familiesAndDepths) {
+            for (int i = 0; i < list.size(); i += 2) {
+                int family = list.get(i);
+                result[index++] = new FamilyLayoutInformation(family, pushFamilyMembersIntoLayout(family),
+                        list.get(i + 1));
+            }
+        }
+        return result;
+    }
+
+    private void pushSliceIntoLayout(int sliceRepresentant) {
+        if (personsLayoutState[sliceRepresentant] != NOT_LAID_OUT) {
+            return;
+        }
+        // We make sure to only visit slices once.
+        personsLayoutState[sliceRepresentant] = CONSIDERED;
+        int slice = sliceId(sliceRepresentant);
+        int left = sliceLeft[slice];
+        int layer = personsLayer[left];
+
+        // (family, depth) pairs
+        IntList finishedUnhookedFamilies = new IntList();
+        IntList slicePeople = sliceToArray(sliceRepresentant);
+        int size = slicePeople.size();
+        IntList[] finishedFamiliesWithinSlice = new IntList[size];
+        IntList[] familiesOfPartners = new IntList[size];
+        IntList familiesSet = new IntList();
+
+        int sliceEpoch = ++epoch;
+        for (int index = 0; index < size; index++) {
+            int current = slicePeople.get(index);
+            finishedFamiliesWithinSlice[index] = new IntList();
+            IntList familiesOfCurrent = new IntList();
+
+            for (int i = graph.parentOfOffsets[current]; i < graph.parentOfOffsets[current + 1]; i++) {
+                int family = graph.parentOf[i];
+                if (familyDepthInLayer.containsKey(depthKey(layer, family))) {
+                    continue;
+                }
+                int parentCount = graph.parentCount(family);
+                if (parentCount == 2 && index + 1 < size && graph.isParent(family, slicePeople.get(index + 1))) {
+                } else if (parentCount == 1) {
+                } else {
+                    familyDepthInLayer.put(depthKey(layer, family), familyDepthCountInLayer[layer]++);
+                }
+            }
+
+            IntList begins = beginsFamilySlices[current];
+            for (int i = 0; i < begins.size(); i++) {
+                openFamiliesMarks[begins.get(i)] = sliceEpoch;
+            }
+
+            IntList ends = endsFamilySlices[current];
+            for (int i = 0; i < ends.size(); i++) {
+                int family = ends.get(i);
+                // This means that the family is a cross slice family and will be handled
+                // as an unhooked family.
+                if (openFamiliesMarks[family] != sliceEpoch) {
+                    continue;
+                }
+                familiesOfCurrent.add(family);
+                if (graph.parentCount(family) == 2 && index - 1 >= 0
+                        && graph.isParent(family, slicePeople.get(index - 1))) {
+                    familiesOfCurrent.add(DEPTH_PARTNER);
+                } else if (graph.parentCount(family) == 1) {
+                    familiesOfCurrent.add(DEPTH_SINGLE);
+                } else {
+                    Integer depth = removeFamilyDepth(layer, family);
+                    familiesOfCurrent.add(depth == null ? DEPTH_UNKNOWN : depth + 2);
+                }
+                if (familiesSetMarks[family] != sliceEpoch) {
+                    familiesSetMarks[family] = sliceEpoch;
+                    familiesSet.add(family);
+                }
+                openFamiliesMarks[family] = 0;
+            }
+            familiesOfPartners[index] = familiesOfCurrent;
+            partnersMarks[current] = sliceEpoch;
+
+            for (int i = graph.parentOfOffsets[current]; i < graph.parentOfOffsets[current + 1]; i++) {
+                int family = graph.parentOf[i];
+                if (familyLayoutLayer[family] != -1 || familiesSetMarks[family] == sliceEpoch) {
+                    continue;
+                }
+                boolean completed = true;
+                boolean withinSlice = true;
+                for (int j = graph.familyParentsOffsets[family]; j < graph.familyParentsOffsets[family + 1]; j++) {
+                    int parent = graph.familyParents[j];
+                    boolean inSlice = partnersMarks[parent] == sliceEpoch;
+                    if (personsLayoutState[parent] != LAID_OUT && !inSlice) {
+                        completed = false;
+                        break;
+                    }
+                    if (!inSlice) {
+                        withinSlice = false;
+                    }
+                }
+                if (!completed) {
+                    continue;
+                }
+                Integer depth = removeFamilyDepth(layer, family);
+                IntList finished = withinSlice ? finishedFamiliesWithinSlice[index] : finishedUnhookedFamilies;
+                finished.add(family);
+                finished.add(depth == null ? DEPTH_UNKNOWN : depth);
+            }
+        }
+
+        List<LayoutNode> layoutLayer = layout.get(layer);
+        int lastPerson = -1;
+        if (!layoutLayer.isEmpty()) {
+            LayoutNode lastLayoutNode = layoutLayer.get(layoutLayer.size() - 1);
+            if (lastLayoutNode.partners != null) {
+                lastPerson = lastLayoutNode.partners[lastLayoutNode.partners.length - 1];
+            }
+        }
+        for (int i = 0; i < finishedUnhookedFamilies.size(); i += 2) {
+            int family = finishedUnhookedFamilies.get(i);
+            FamilyLayoutInformation information = new FamilyLayoutInformation(family,
+                    pushFamilyMembersIntoLayout(family), finishedUnhookedFamilies.get(i + 1));
+            if (graph.parentCount(family) == 2 && lastPerson != -1 && graph.isParent(family, lastPerson)
+                    && graph.isParent(family, left)) {
+                information.depth = DEPTH_PARTNER;
+            }
+            familyLayoutLayer[family] = layer;
+            familyLayoutPosition[family] = layoutLayer.size();
+            layoutLayer.add(new LayoutNode(information));
+        }
+
+        FamilyLayoutInformation[][] familyNodes = new FamilyLayoutInformation[size][];
+        // The first person is pushed in a different order first, which affects the
+        // order in which the children are laid out.
+        pushFamiliesMembersIntoLayout(familiesOfPartners[0], finishedFamiliesWithinSlice[0]);
+        for (int index = 0; index < size; index++) {
+            familyNodes[index] = pushFamiliesMembersIntoLayout(finishedFamiliesWithinSlice[index],
+                    familiesOfPartners[index]);
+        }
+
+        int position = layoutLayer.size();
+        for (int index = 0; index < size; index++) {
+            int person = slicePeople.get(index);
+            personsLayoutState[person] = LAID_OUT;
+            personsLayoutLayer[person] = layer;
+            personsLayoutPosition[person] = position;
+        }
+        for (int i = 0; i < familiesSet.size(); i++) {
+            familyLayoutLayer[familiesSet.get(i)] = layer;
+            familyLayoutPosition[familiesSet.get(i)] = position;
+        }
+        layoutLayer.add(new LayoutNode(slicePeople.toArray(), familyNodes));
+    }
+
+    // -------------------------- Placing people in correct places on the plane using the layer information and some heuristics --------------------------
+
+    private double[] personX;
+    private double[] personY;
+    private boolean[] personPlaced;
+    private double[] familyX;
+    private double[] familyY;
+    private boolean[] familyPlaced;
+    private double[] layerBox;
+    private int[] nextLayoutNodeToDrawOnLayer;
+
+    void recalculatePositions() {
+        personX = new double[people];
+        personY = new double[people];
+        personPlaced = new boolean[people];
+        familyX = new double[families];
+        familyY = new double[families];
+        familyPlaced = new boolean[families];
+        layerBox = new double[layout.size()];
+        nextLayoutNodeToDrawOnLayer = new int[layout.size()];
+
+        for (int i = 0; i < layout.size(); i++) {
+            int layoutLayerSize = layout.get(i).size();
+            for (int j = nextLayoutNodeToDrawOnLayer[i]; j < layoutLayerSize; j++) {
+                calculateLayoutNode(i, j, layerBox[i]);
+            }
+        }
+
+        // TODO: This shouldn't be necessary.
+        double tmpX = 20;
+        for (int person = 0; person < people; person++) {
+            if (!personPlaced[person]) {
+                logger.warn("BUG: No data for person with id {}", graph.personIds[person]);
+                placePerson(person, tmpX, 50);
+                tmpX += 30;
+            }
+        }
+        for (int family = 0; family < families; family++) {
+            if (!familyPlaced[family]) {
+                logger.warn("BUG: No data for family with id {}", graph.familyIds[family]);
+                placeFamily(family, tmpX, 50);
+                tmpX += 30;
+            }
+        }
+    }
+
+    // Positions of laid out people and families, by index. For tests.
+    double[] personPosition(int person) {
+        return new double[] { personX[person], personY[person] };
+    }
+
+    double[] familyPosition(int family) {
+        return new double[] { familyX[family], familyY[family] };
+    }
+
+    private void placePerson(int person, double x, double y) {
+        personX[person] = x;
+        personY[person] = y;
+        personPlaced[person] = true;
+    }
+
+    private void placeFamily(int family, double x, double y) {
+        familyX[family] = x;
+        familyY[family] = y;
+        familyPlaced[family] = true;
+    }
+
+    private static double familyDepth(int depth) {
+        if (depth == DEPTH_SINGLE) {
+            return DEPTH_FAMILY_BASE + DEPTH_MODIFIER;
+        } else if (depth == DEPTH_PARTNER) {
+            return 0;
+        } else if (depth == DEPTH_UNKNOWN) {
+            return DEPTH_FAMILY_BASE;
+        }
+        return DEPTH_FAMILY_BASE + depth * DEPTH_MODIFIER;
+    }
+
+    private double[] calculatePositionForPerson(int person, double suggestedBoxStart) {
+        int layer = personsLayer[person];
+        double boxStart = Math.max(suggestedBoxStart, layerBox[layer]);
+        placePerson(person, boxStart, SPACE_BETWEEN_LAYERS * layer);
+        layerBox[layer] = boxStart + SPACE_BETWEEN_PEOPLE;
+        return new double[] { boxStart, boxStart };
+    }
+
+    private double[] calculatePositionForFamilyMembers(IntList members, double boxStart) {
+        if (members.isEmpty()) {
+            return new double[] { boxStart, boxStart };
+        }
+        double[] firstMemberBox = calculateLayoutNode(members.get(0), members.get(1), boxStart);
+        double realBoxStart = firstMemberBox[0];
+        double boxEnd = firstMemberBox[1];
+        for (int i = 2; i < members.size(); i += 2) {
+            boxEnd = calculateLayoutNode(members.get(i), members.get(i + 1), boxEnd)[1];
+        }
+        return new double[] { realBoxStart, boxEnd };
+    }
+
+    private double[] calculatePosition(LayoutNode node, double suggestedBoxStart) {
+        if (node.partners == null) {
+            int family = node.family.family;
+            int layer = familyLayoutLayer[family];
+            double[] familyBox = calculatePositionForFamilyMembers(node.family.members, suggestedBoxStart);
+            placeFamily(family, (familyBox[0] + familyBox[1]) / 2,
+                    layer * SPACE_BETWEEN_LAYERS + familyDepth(node.family.depth));
+            layerBox[layer] = familyBox[1] + SPACE_BETWEEN_PEOPLE;
+            return familyBox;
+        }
+
+        int[] partners = node.partners;
+        int layer = personsLayer[partners[0]];
+        double boxEnd = suggestedBoxStart;
+        double realBoxStart = 0;
+        boolean hasRealBoxStart = false;
+        for (int personIndex = 0; personIndex < partners.length; personIndex++) {
+            for (FamilyLayoutInformation familyNode : node.partnerFamilies[personIndex]) {
+                if (hasRealBoxStart) {
+                    // We don't want the children to be too far away from parents
+                    boxEnd = Math.max(boxEnd, realBoxStart
+                            + (personIndex - graph.parentCount(familyNode.family) + 1) * SPACE_BETWEEN_PEOPLE);
+                }
+                double[] familyBox = calculatePositionForFamilyMembers(familyNode.members, boxEnd);
+                if (!hasRealBoxStart) {
+                    realBoxStart = familyBox[0];
+                    hasRealBoxStart = true;
+                }
+                boxEnd = familyBox[1];
+                placeFamily(familyNode.family, (familyBox[0] + familyBox[1]) / 2,
+                        layer * SPACE_BETWEEN_LAYERS + familyDepth(familyNode.depth));
+            }
+        }
+        if (!hasRealBoxStart) {
+            realBoxStart = suggestedBoxStart;
+        }
+        double partnersBoxStart = (realBoxStart + boxEnd) / 2 - (SPACE_BETWEEN_PEOPLE * (partners.length - 1)) / 2;
+        partnersBoxStart = Math.max(partnersBoxStart, realBoxStart);
+        double partnersBoxEnd = partnersBoxStart;
+
+        for (int i = 0; i < partners.length; i++) {
+            if (i > 0) {
+                partnersBoxEnd += SPACE_BETWEEN_PEOPLE;
+            }
+            partnersBoxEnd = calculatePositionForPerson(partners[i], partnersBoxEnd)[1];
+        }
+
+        for (int i = 1; i < partners.length; i++) {
+            double x = (personX[partners[i - 1]] + personX[partners[i]]) / 2;
+            double y = layer * SPACE_BETWEEN_LAYERS;
+            double offset = 0;
+            for (FamilyLayoutInformation family : node.partnerFamilies[i]) {
+                if (family.depth != DEPTH_PARTNER) {
+                    continue;
+                }
+                placeFamily(family.family, x + offset, y);
+                offset += OVERLAY_OFFSET;
+            }
+        }
+        boxEnd = Math.max(boxEnd, partnersBoxEnd);
+
+        layerBox[layer] = boxEnd + SPACE_BETWEEN_PEOPLE;
+        return new double[] { realBoxStart, boxEnd };
+    }
+
+    private double[] calculateLayoutNode(int layer, int position, double suggestedBoxStart) {
+        if (position < nextLayoutNodeToDrawOnLayer[layer]) {
+            logger.warn("BUG: This was already drawn.");
+            return new double[] { suggestedBoxStart, suggestedBoxStart };
+        }
+        while (nextLayoutNodeToDrawOnLayer[layer] < position) {
+            calculatePosition(layout.get(layer).get(nextLayoutNodeToDrawOnLayer[layer]), layerBox[layer]);
+            nextLayoutNodeToDrawOnLayer[layer] = nextLayoutNodeToDrawOnLayer[layer] + 1;
+        }
+        layerBox[layer] = Math.max(layerBox[layer], suggestedBoxStart);
+        double[] box = calculatePosition(layout.get(layer).get(position), layerBox[layer]);
+        nextLayoutNodeToDrawOnLayer[layer] = position + 1;
+        return box;
+    }
+}
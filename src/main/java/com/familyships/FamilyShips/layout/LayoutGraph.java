@@ -0,0 +1,112 @@
+package com.familyships.FamilyShips.layout;
+
+import java.util.Arrays;
+
+import com.familyships.FamilyShips.graph.TreeGraph;
+
+// The people and families of a tree in the shape the layout works with: the arrays
+// of the `TreeGraph` (people and families numbered densely in the order of their ids,
+// relations as compressed sparse rows) plus the partners and children of every person.
+//
+// As people and families are numbered in the order of their ids, all the lists come
+// out sorted by id, the same way the accessors in `model.ts` sort them.
+final class LayoutGraph {
+    final int[] personIds;
+    final int[] familyIds;
+
+    // Families the person is a parent of / a child of.
+    final int[] parentOfOffsets;
+    final int[] parentOf;
+    final int[] childOfOffsets;
+    final int[] childOf;
+    // Parents / children of the family.
+    final int[] familyParentsOffsets;
+    final int[] familyParents;
+    final int[] familyChildrenOffsets;
+    final int[] familyChildren;
+    // Other parents of the families the person is a parent of (`model.partners`) and
+    // children of those families (`model.children`), both with repetitions.
+    final int[] partnersOffsets;
+    final int[] partners;
+    final int[] childrenOffsets;
+    final int[] children;
+
+    // Links are given as (family id, person id) pairs. Links to people or families
+    // that are not in the lists are ignored.
+    LayoutGraph(int[] personIds, int[] familyIds, int[] parentLinkFamilyIds, int[] parentLinkPersonIds,
+            int[] childLinkFamilyIds, int[] childLinkPersonIds) {
+        this(new TreeGraph(0, personIds, familyIds, parentLinkFamilyIds, parentLinkPersonIds, childLinkFamilyIds,
+                childLinkPersonIds));
+    }
+
+    LayoutGraph(TreeGraph graph) {
+        personIds = graph.personIds();
+        familyIds = graph.familyIds();
+        int people = personIds.length;
+        parentOfOffsets = graph.parentOfOffsets();
+        parentOf = graph.parentOf();
+        childOfOffsets = graph.childOfOffsets();
+        childOf = graph.childOf();
+        familyParentsOffsets = graph.familyParentsOffsets();
+        familyParents = graph.familyParents();
+        familyChildrenOffsets = graph.familyChildrenOffsets();
+        familyChildren = graph.familyChildren();
+
+        partnersOffsets = new int[people + 1];
+        childrenOffsets = new int[people + 1];
+        for (int person = 0; person < people; person++) {
+            int partnerCount = 0;
+            int childCount = 0;
+            for (int i = parentOfOffsets[person]; i < parentOfOffsets[person + 1]; i++) {
+                partnerCount += parentCount(parentOf[i]) - 1;
+                childCount += childCount(parentOf[i]);
+            }
+            partnersOffsets[person + 1] = partnersOffsets[person] + partnerCount;
+            childrenOffsets[person + 1] = childrenOffsets[person] + childCount;
+        }
+        partners = new int[partnersOffsets[people]];
+        children = new int[childrenOffsets[people]];
+        for (int person = 0; person < people; person++) {
+            int partner = partnersOffsets[person];
+            int child = childrenOffsets[person];
+            for (int i = parentOfOffsets[person]; i < parentOfOffsets[person + 1]; i++) {
+                int family = parentOf[i];
+                for (int j = familyParentsOffsets[family]; j < familyParentsOffsets[family + 1]; j++) {
+                    if (familyParents[j] != person) {
+                        partners[partner++] = familyParents[j];
+                    }
+                }
+                for (int j = familyChildrenOffsets[family]; j < familyChildrenOffsets[family + 1]; j++) {
+                    children[child++] = familyChildren[j];
+                }
+            }
+            Arrays.sort(partners, partnersOffsets[person], partner);
+            Arrays.sort(children, childrenOffsets[person], child);
+        }
+    }
+
+    int peopleCount() {
+        return personIds.length;
+    }
+
+    int familyCount() {
+        return familyIds.length;
+    }
+
+    int parentCount(int family) {
+        return familyParentsOffsets[family + 1] - familyParentsOffsets[family];
+    }
+
+    int childCount(int family) {
+        return familyChildrenOffsets[family + 1] - familyChildrenOffsets[family];
+    }
+
+    boolean isParent(int family, int person) {
+        for (int i = familyParentsOffsets[family]; i < familyParentsOffsets[family + 1]; i++) {
+            if (familyParents[i] == person) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+package com.familyships.FamilyShips.layout;
+
+import java.util.Arrays;
+
+// Strongly connected components of the parent-child graph, port of `scc.ts`.
+//
+// Same Tarjan's algorithm, but with an explicit stack instead of recursion, so that
+// long lines of descent don't overflow the thread stack.
+final class StronglyConnectedComponents {
+    private StronglyConnectedComponents() {
+    }
+
+    // Returns the component of every person. Only equality of the components is
+    // meaningful.
+    static int[] of(LayoutGraph graph) {
+        int people = graph.peopleCount();
+        int[] component = new int[people];
+        int[] number = new int[people];
+        int[] low = new int[people];
+        boolean[] processed = new boolean[people];
+        Arrays.fill(number, -1);
+
+        int[] sccStack = new int[people];
+        int sccStackSize = 0;
+        // Person and the position in its list of children, for every call that would
+        // be on the stack in the recursive version.
+        int[] callPerson = new int[people];
+        int[] callChild = new int[people];
+        int callStackSize = 0;
+
+        int counter = 0;
+        int components = 0;
+        for (int start = 0; start < people; start++) {
+            if (number[start] != -1) {
+                continue;
+            }
+            number[start] = low[start] = counter++;
+            sccStack[sccStackSize++] = start;
+            callPerson[callStackSize] = start;
+            callChild[callStackSize] = graph.childrenOffsets[start];
+            callStackSize++;
+
+            while (callStackSize > 0) {
+                int person = callPerson[callStackSize - 1];
+                int child = callChild[callStackSize - 1];
+                if (child < graph.childrenOffsets[person + 1]) {
+                    callChild[callStackSize - 1]++;
+                    int childId = graph.children[child];
+                    if (number[childId] == -1) {
+                        number[childId] = low[childId] = counter++;
+                        sccStack[sccStackSize++] = childId;
+                        callPerson[callStackSize] = childId;
+                        callChild[callStackSize] = graph.childrenOffsets[childId];
+                        callStackSize++;
+                    } else if (!processed[childId]) {
+                        low[person] = Math.min(low[person], number[childId]);
+                    }
+                    continue;
+                }
+
+                processed[person] = true;
+                if (low[person] == number[person]) {
+                    int current;
+                    do {
+                        current = sccStack[--sccStackSize];
+                        component[current] = components;
+                    } while (current != person);
+                    components++;
+                }
+                callStackSize--;
+                if (callStackSize > 0) {
+                    int parent = callPerson[callStackSize - 1];
+                    low[parent] = Math.min(low[parent], low[person]);
+                }
+            }
+        }
+        return component;
+    }
+}
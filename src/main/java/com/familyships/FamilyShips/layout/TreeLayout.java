@@ -0,0 +1,70 @@
+package com.familyships.FamilyShips.layout;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+// Positions of all the people and families of a tree at a given revision, as
+// calculated by `layout.ts`. Serialized as
+// `{"revision": 1, "people": {"<id>": {"x": 0, "y": 0}}, "families": {...}}`,
+// which is the shape of `personsPosition` and `familyPosition` in the frontend.
+@JsonSerialize(using = TreeLayout.Serializer.class)
+public class TreeLayout {
+    private final long revision;
+    private final int[] personIds;
+    private final double[] personX;
+    private final double[] personY;
+    private final int[] familyIds;
+    private final double[] familyX;
+    private final double[] familyY;
+
+    TreeLayout(long revision, int[] personIds, double[] personX, double[] personY, int[] familyIds,
+            double[] familyX, double[] familyY) {
+        this.revision = revision;
+        this.personIds = personIds;
+        this.personX = personX;
+        this.personY = personY;
+        this.familyIds = familyIds;
+        this.familyX = familyX;
+        this.familyY = familyY;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public int peopleCount() {
+        return personIds.length;
+    }
+
+    public int familyCount() {
+        return familyIds.length;
+    }
+
+    static class Serializer extends JsonSerializer<TreeLayout> {
+        @Override
+        public void serialize(TreeLayout layout, JsonGenerator generator, SerializerProvider serializers)
+                throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("revision", layout.revision);
+            writePositions(generator, "people", layout.personIds, layout.personX, layout.personY);
+            writePositions(generator, "families", layout.familyIds, layout.familyX, layout.familyY);
+            generator.writeEndObject();
+        }
+
+        private static void writePositions(JsonGenerator generator, String name, int[] ids, double[] x, double[] y)
+                throws IOException {
+            generator.writeObjectFieldStart(name);
+            for (int i = 0; i < ids.length; i++) {
+                generator.writeObjectFieldStart(Integer.toString(ids[i]));
+                generator.writeNumberField("x", x[i]);
+                generator.writeNumberField("y", y[i]);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.familyships.FamilyShips.layout;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.familyships.FamilyShips.graph.RevisionCache;
+import com.familyships.FamilyShips.graph.TreeGraph;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Remembers the last calculated layout of every tree, see `RevisionCache`.
+@Component
+public class TreeLayoutCache {
+    private final RevisionCache<TreeLayout> layouts;
+
+    public TreeLayoutCache(@Value("${familyships.layout-cache.max-size:1000}") int maxSize,
+            MeterRegistry meterRegistry) {
+        this.layouts = new RevisionCache<TreeLayout>("familyships.layout_cache", "familyships.layout.calculation",
+                maxSize, TreeLayout::getRevision, meterRegistry);
+    }
+
+    public static TreeLayout calculate(TreeGraph graph) {
+        return new LayoutEngine(new LayoutGraph(graph)).calculate(graph.getRevision());
+    }
+
+    // Returns the layout of the tree at the given revision, calculating it from the
+    // graph if it's not cached.
+    public TreeLayout get(Integer treeId, long revision, Supplier<TreeGraph> graph) {
+        return layouts.get(treeId, revision, () -> calculate(graph.get()));
+    }
+
+    public int size() {
+        return layouts.size();
+    }
+}
@@ -0,0 +1,102 @@
+package com.familyships.FamilyShips.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.ModelAndView;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Metrics of every /model/* request, tagged with the endpoint (see `WebConfiguration`):
+//
+// - familyships.model.requests: timer, also tagged with the method and the status
+//   ("error" if the endpoint threw),
+// - familyships.model.statements: distribution of the number of SQL statements fired
+//   (see `StatementCounter`),
+// - familyships.model.over_budget: requests that fired more statements than the
+//   `QueryBudget` of their endpoint.
+//
+// All of them are on /actuator/metrics.
+@Component
+public class ModelRequestMetrics implements HandlerInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(ModelRequestMetrics.class);
+    private static final String START_ATTRIBUTE = ModelRequestMetrics.class.getName() + ".start";
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    private final MeterRegistry meterRegistry;
+    private final boolean failOverBudget;
+
+    public ModelRequestMetrics(MeterRegistry meterRegistry,
+            @Value("${familyships.query-budget.fail:false}") boolean failOverBudget) {
+        this.meterRegistry = meterRegistry;
+        this.failOverBudget = failOverBudget;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        statementCounter.reset();
+        request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    // The response body has been written by now, so everything the endpoint read has
+    // been counted.
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+            ModelAndView modelAndView) throws Exception {
+        if (!(handler instanceof HandlerMethod)) {
+            return;
+        }
+        QueryBudget budget = ((HandlerMethod) handler).getMethodAnnotation(QueryBudget.class);
+        int statements = statementCounter.count();
+        if (budget == null || statements <= budget.value()) {
+            return;
+        }
+        meterRegistry.counter("familyships.model.over_budget", "endpoint", endpoint(request)).increment();
+        String message = request.getMethod() + " " + endpoint(request) + " fired " + statements
+                + " statements, its budget is " + budget.value();
+        if (failOverBudget) {
+            throw new Exception(message);
+        }
+        logger.warn(message);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (start == null) {
+            return;
+        }
+        String endpoint = endpoint(request);
+        Timer.builder("familyships.model.requests")
+                .tag("endpoint", endpoint)
+                .tag("method", request.getMethod())
+                .tag("status", ex == null ? "" + response.getStatus() : "error")
+                .register(meterRegistry)
+                .record(System.nanoTime() - (Long) start, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("familyships.model.statements")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .record(statementCounter.count());
+    }
+
+    // The path of the endpoint that handled the request, not the one requested.
+    private static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "unknown" : pattern.toString();
+    }
+}
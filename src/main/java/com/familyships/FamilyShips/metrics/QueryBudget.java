@@ -0,0 +1,19 @@
+package com.familyships.FamilyShips.metrics;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// The most SQL statements a request to the endpoint may fire, whatever the size of the
+// tree and with all the caches cold. Checked by `ModelRequestMetrics`, which fails the
+// request in the tests (`familyships.query-budget.fail`) and logs a warning otherwise,
+// so that a query per person or per family doesn't go unnoticed. Endpoints whose work
+// grows with their input (/model/batch, /model/delete_people, the imports) don't
+// declare one. The budgets of the writes leave room for the ids Hibernate takes from
+// the sequences every now and then.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+    int value();
+}
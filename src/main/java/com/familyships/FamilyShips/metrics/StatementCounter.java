@@ -0,0 +1,36 @@
+package com.familyships.FamilyShips.metrics;
+
+import java.util.Map;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+// Counts the SQL statements Hibernate prepares on every thread, so that
+// `ModelRequestMetrics` can tell how many statements a request fired. Registers itself
+// as the statement inspector of the session factory.
+@Component
+public class StatementCounter implements StatementInspector, HibernatePropertiesCustomizer {
+    private static final ThreadLocal<int[]> counts = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        counts.get()[0]++;
+        return sql;
+    }
+
+    // Statements prepared on the current thread since the last `reset`.
+    public int count() {
+        return counts.get()[0];
+    }
+
+    public void reset() {
+        counts.get()[0] = 0;
+    }
+}
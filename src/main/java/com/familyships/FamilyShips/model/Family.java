@@ -1,5 +1,7 @@
 package com.familyships.FamilyShips.model;
 
+import java.time.Instant;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -10,22 +12,43 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
-// TODO: Remember to have something that cleans up empty families!
+// Families left without any parents or children are removed by `TombstoneSweeper`.
 @Entity
+@Table(indexes = { @Index(columnList = "treeId"), @Index(columnList = "removedAt") })
 public class Family {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "family_seq")
+    @SequenceGenerator(name = "family_seq", sequenceName = "family_seq", allocationSize = 50)
     private Integer id = null;
 
+    // The tree this family belongs to
+    @JsonIgnore
+    private Integer treeId;
+
+    // Bumped whenever a link of the family is attached or detached, see
+    // `ModelService.linksChanged`. The bulk deletes of people and families only rely on
+    // `Tree.version`.
+    @JsonIgnore
+    @Version
+    private long version;
+
+    // When the family was deleted, see `Person.removedAt`.
+    @JsonIgnore
+    private Instant removedAt;
+
     @OneToMany(mappedBy = "family")
     @JsonManagedReference
-    private Set<FamilyParent> parents; 
+    private Set<FamilyParent> parents = new HashSet<>(); 
 
     @OneToMany(mappedBy = "family")
     @JsonManagedReference
-    private Set<FamilyChild> children;
+    private Set<FamilyChild> children = new HashSet<>();
 
     public Integer getId() {
         return id;
@@ -35,6 +58,26 @@ public class Family {
         this.id = id;
     }
 
+    public Integer getTreeId() {
+        return treeId;
+    }
+
+    public void setTreeId(Integer treeId) {
+        this.treeId = treeId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getRemovedAt() {
+        return removedAt;
+    }
+
+    public void setRemovedAt(Instant removedAt) {
+        this.removedAt = removedAt;
+    }
+
     @JsonIgnore
     public Set<FamilyParent> getParents() {
         return parents;
@@ -1,15 +1,21 @@
 package com.familyships.FamilyShips.model;
 
+import org.springframework.data.domain.Persistable;
+
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.EmbeddedId;
 import jakarta.persistence.Entity;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.MapsId;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
 
 @Entity
-public class FamilyChild {
+public class FamilyChild implements Persistable<FamilyChildKey> {
 
   @EmbeddedId
   private FamilyChildKey id;
@@ -26,6 +32,11 @@ public class FamilyChild {
   @JsonBackReference
   private Person child;
 
+  // The key is assigned by hand, so without this Spring Data would treat every new
+  // link as an existing one and select it before inserting it.
+  @Transient
+  private boolean isNew = true;
+
   public FamilyChild() {
   }
 
@@ -57,6 +68,18 @@ public class FamilyChild {
     this.child = child;
   }
 
+  @Override
+  @JsonIgnore
+  public boolean isNew() {
+    return isNew;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    this.isNew = false;
+  }
+
   @Override
   public String toString() {
     return "FamilyChild [id=" + id + ", family_id=" + family.getId() + ", child_id=" + child + "]";
@@ -1,6 +1,45 @@
 package com.familyships.FamilyShips.model;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
 public interface FamilyChildRepository extends CrudRepository<FamilyChild, FamilyChildKey> {
-}
\ No newline at end of file
+    @Query("SELECT fc.id FROM FamilyChild fc WHERE fc.family.treeId = ?1")
+    List<FamilyChildKey> findKeysByTreeId(Integer treeId);
+
+    @Query("SELECT fc.id FROM FamilyChild fc WHERE fc.family.treeId = ?1 AND fc.id.childId BETWEEN ?2 AND ?3")
+    List<FamilyChildKey> findKeysByTreeIdAndChildIdBetween(Integer treeId, Integer fromChildId, Integer toChildId);
+
+    @Query("SELECT fc.id FROM FamilyChild fc WHERE fc.family.treeId = ?1 AND fc.id.familyId BETWEEN ?2 AND ?3")
+    List<FamilyChildKey> findKeysByTreeIdAndFamilyIdBetween(Integer treeId, Integer fromFamilyId, Integer toFamilyId);
+
+    @Query("SELECT fc.id.childId FROM FamilyChild fc WHERE fc.id.familyId = ?1")
+    List<Integer> findChildIdsByFamilyId(Integer familyId);
+
+    @Query("SELECT fc.id.childId FROM FamilyChild fc WHERE fc.id.familyId IN ?1")
+    List<Integer> findChildIdsByFamilyIdIn(Collection<Integer> familyIds);
+
+    @Query("SELECT fc.id FROM FamilyChild fc WHERE fc.id.childId IN ?1")
+    List<FamilyChildKey> findKeysByChildIdIn(Collection<Integer> childIds);
+
+    // The links removed this way stay in the persistence context, see
+    // `ModelService.forgetLinks`.
+    @Modifying
+    @Query("DELETE FROM FamilyChild fc WHERE fc.id.childId IN ?1")
+    int deleteByChildIdIn(Collection<Integer> childIds);
+
+    // Same as `deleteByChildIdIn`.
+    @Modifying
+    @Query("DELETE FROM FamilyChild fc WHERE fc.id.familyId = ?1")
+    int deleteByFamilyId(Integer familyId);
+
+    // (childId, parentId, generation of the parent) for all the parents of the given
+    // people.
+    @Query("SELECT fc.id.childId, fp.id.parentId, p.generation FROM FamilyChild fc, FamilyParent fp, Person p "
+            + "WHERE fp.id.familyId = fc.id.familyId AND p.id = fp.id.parentId AND fc.id.childId IN ?1")
+    List<Object[]> findParentsWithGenerationsByChildIdIn(Collection<Integer> childIds);
+}
@@ -1,15 +1,21 @@
 package com.familyships.FamilyShips.model;
 
+import org.springframework.data.domain.Persistable;
+
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.EmbeddedId;
 import jakarta.persistence.Entity;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.MapsId;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
 
 @Entity
-public class FamilyParent {
+public class FamilyParent implements Persistable<FamilyParentKey> {
   @EmbeddedId
   private FamilyParentKey id;
 
@@ -25,6 +31,11 @@ public class FamilyParent {
   @JoinColumn(name = "parent_id")
   private Person parent;
 
+  // The key is assigned by hand, so without this Spring Data would treat every new
+  // link as an existing one and select it before inserting it.
+  @Transient
+  private boolean isNew = true;
+
   public FamilyParent() {
   }
 
@@ -61,6 +72,18 @@ public class FamilyParent {
     this.parent = parent;
   }
 
+  @Override
+  @JsonIgnore
+  public boolean isNew() {
+    return isNew;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    this.isNew = false;
+  }
+
   @Override
   public String toString() {
     return "FamilyParent [id=" + id + ", family=" + family.getId() + ", parent=" + parent + "]";
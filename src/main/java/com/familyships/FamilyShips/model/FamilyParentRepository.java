@@ -1,6 +1,40 @@
 package com.familyships.FamilyShips.model;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
 public interface FamilyParentRepository extends CrudRepository<FamilyParent, FamilyParentKey> {
-}
\ No newline at end of file
+    @Query("SELECT fp.id FROM FamilyParent fp WHERE fp.family.treeId = ?1")
+    List<FamilyParentKey> findKeysByTreeId(Integer treeId);
+
+    @Query("SELECT fp.id.parentId FROM FamilyParent fp WHERE fp.id.familyId = ?1")
+    List<Integer> findParentIdsByFamilyId(Integer familyId);
+
+    @Query("SELECT fp.id FROM FamilyParent fp WHERE fp.id.parentId IN ?1")
+    List<FamilyParentKey> findKeysByParentIdIn(Collection<Integer> parentIds);
+
+    // Same as `FamilyChildRepository.deleteByChildIdIn`.
+    @Modifying
+    @Query("DELETE FROM FamilyParent fp WHERE fp.id.parentId IN ?1")
+    int deleteByParentIdIn(Collection<Integer> parentIds);
+
+    // Same as `FamilyChildRepository.deleteByChildIdIn`.
+    @Modifying
+    @Query("DELETE FROM FamilyParent fp WHERE fp.id.familyId = ?1")
+    int deleteByFamilyId(Integer familyId);
+
+    @Query("SELECT fp.id FROM FamilyParent fp WHERE fp.family.treeId = ?1 AND fp.id.parentId BETWEEN ?2 AND ?3")
+    List<FamilyParentKey> findKeysByTreeIdAndParentIdBetween(Integer treeId, Integer fromParentId, Integer toParentId);
+
+    @Query("SELECT fp.id FROM FamilyParent fp WHERE fp.family.treeId = ?1 AND fp.id.familyId BETWEEN ?2 AND ?3")
+    List<FamilyParentKey> findKeysByTreeIdAndFamilyIdBetween(Integer treeId, Integer fromFamilyId, Integer toFamilyId);
+
+    // (parentId, childId) pairs of all the children of the given people.
+    @Query("SELECT fp.id.parentId, fc.id.childId FROM FamilyParent fp, FamilyChild fc "
+            + "WHERE fc.id.familyId = fp.id.familyId AND fp.id.parentId IN ?1")
+    List<Object[]> findParentAndChildIdsByParentIdIn(Collection<Integer> parentIds);
+}
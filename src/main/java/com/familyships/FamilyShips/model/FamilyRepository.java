@@ -1,6 +1,41 @@
 package com.familyships.FamilyShips.model;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
 public interface FamilyRepository extends CrudRepository<Family, Integer> {
-}
\ No newline at end of file
+    @Query("SELECT f.id FROM Family f WHERE f.treeId = ?1")
+    List<Integer> findIdsByTreeId(Integer treeId);
+
+    // The given families that have neither parents nor children.
+    @Query("SELECT f.id FROM Family f WHERE f.id IN ?1 "
+            + "AND NOT EXISTS (SELECT fc FROM FamilyChild fc WHERE fc.id.familyId = f.id) "
+            + "AND NOT EXISTS (SELECT fp FROM FamilyParent fp WHERE fp.id.familyId = f.id)")
+    List<Integer> findEmptyIdsByIdIn(Collection<Integer> ids);
+
+    // (familyId, treeId, version) of the families of all trees that have neither parents
+    // nor children, in id order.
+    @Query("SELECT f.id, f.treeId, f.version FROM Family f WHERE f.treeId IS NOT NULL AND f.id > ?1 "
+            + "AND NOT EXISTS (SELECT fc FROM FamilyChild fc WHERE fc.id.familyId = f.id) "
+            + "AND NOT EXISTS (SELECT fp FROM FamilyParent fp WHERE fp.id.familyId = f.id) ORDER BY f.id")
+    List<Object[]> findEmptyAfter(Integer afterId, Pageable pageable);
+
+    // Deleted families waiting to be purged, see `Family.removedAt`.
+    @Query("SELECT f.id FROM Family f WHERE f.removedAt IS NOT NULL ORDER BY f.id")
+    List<Integer> findRemovedIds(Pageable pageable);
+
+    long countByRemovedAtIsNotNull();
+
+    @Modifying
+    @Query("DELETE FROM Family f WHERE f.id IN ?1")
+    int deleteByIdIn(Collection<Integer> ids);
+
+    // Keyset pagination over the families of a tree, in id order.
+    @Query("SELECT f.id FROM Family f WHERE f.treeId = ?1 AND f.id > ?2 ORDER BY f.id")
+    List<Integer> findIdsByTreeIdAfter(Integer treeId, Integer afterId, Pageable pageable);
+}
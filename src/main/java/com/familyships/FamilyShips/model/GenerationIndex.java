@@ -0,0 +1,214 @@
+package com.familyships.FamilyShips.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Keeps `Person.generation` up to date: 0 for people without parents, otherwise one
+// more than the highest generation amongst the parents.
+//
+// When the parents of some people change, only those people and their descendants
+// can change their generation, so only that part of the tree is read (one query per
+// generation of descendants) and only the people whose generation actually changed
+// are written.
+//
+// Lines of descent that loop back on themselves don't have a well defined generation.
+// Within such a loop the parents that are part of it are ignored, starting with the
+// person with the lowest id, similarly to how `layout.ts` ignores parents in the same
+// strongly connected component.
+@Component
+public class GenerationIndex implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(GenerationIndex.class);
+
+    // Maximum number of ids in one `IN` clause.
+    private static final int CHUNK_SIZE = 1000;
+
+    @Autowired
+    private PersonRepository personRepository;
+    @Autowired
+    private FamilyChildRepository familyChildRepository;
+    @Autowired
+    private FamilyParentRepository familyParentRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Must be called within a transaction, after the links of the given people to
+    // their parents changed.
+    public void parentsChanged(Collection<Integer> personIds) {
+        if (personIds.isEmpty()) {
+            return;
+        }
+        Set<Integer> region = new LinkedHashSet<Integer>(personIds);
+        Map<Integer, Set<Integer>> children = new HashMap<Integer, Set<Integer>>();
+        List<Integer> frontier = new ArrayList<Integer>(region);
+        while (!frontier.isEmpty()) {
+            List<Integer> next = new ArrayList<Integer>();
+            for (List<Integer> chunk : chunks(frontier)) {
+                for (Object[] row : familyParentRepository.findParentAndChildIdsByParentIdIn(chunk)) {
+                    Integer childId = (Integer) row[1];
+                    children.computeIfAbsent((Integer) row[0], id -> new LinkedHashSet<Integer>()).add(childId);
+                    if (region.add(childId)) {
+                        next.add(childId);
+                    }
+                }
+            }
+            frontier = next;
+        }
+
+        Map<Integer, Integer> outsideParentsGeneration = new HashMap<Integer, Integer>();
+        Map<Integer, Integer> currentGenerations = new HashMap<Integer, Integer>();
+        for (List<Integer> chunk : chunks(region)) {
+            for (Object[] row : familyChildRepository.findParentsWithGenerationsByChildIdIn(chunk)) {
+                if (region.contains((Integer) row[1])) {
+                    continue;
+                }
+                int generation = row[2] == null ? 0 : (Integer) row[2];
+                outsideParentsGeneration.merge((Integer) row[0], generation, Math::max);
+            }
+            for (Object[] row : personRepository.findGenerationsByIdIn(chunk)) {
+                currentGenerations.put((Integer) row[0], (Integer) row[1]);
+            }
+        }
+
+        Map<Integer, Integer> generations = assign(region, children, outsideParentsGeneration);
+        List<Integer> changed = new ArrayList<Integer>();
+        for (Map.Entry<Integer, Integer> entry : generations.entrySet()) {
+            if (!entry.getValue().equals(currentGenerations.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        // Updated through the entities, so that people already loaded in this
+        // transaction don't write their old generation back.
+        for (Person person : personRepository.findAllById(changed)) {
+            person.setGeneration(generations.get(person.getId()));
+        }
+    }
+
+    // Recalculates the generations of the whole tree, for when a lot changed at once
+    // (like an import). Must be called within a transaction.
+    public void recalculate(Integer treeId) {
+        Set<Integer> region = new LinkedHashSet<Integer>(personRepository.findIdsByTreeId(treeId));
+        Map<Integer, List<Integer>> familyChildren = new HashMap<Integer, List<Integer>>();
+        for (FamilyChildKey key : familyChildRepository.findKeysByTreeId(treeId)) {
+            familyChildren.computeIfAbsent(key.getFamilyId(), id -> new ArrayList<Integer>()).add(key.getChildId());
+        }
+        Map<Integer, Set<Integer>> children = new HashMap<Integer, Set<Integer>>();
+        for (FamilyParentKey key : familyParentRepository.findKeysByTreeId(treeId)) {
+            for (Integer childId : familyChildren.getOrDefault(key.getFamilyId(), List.of())) {
+                if (region.contains(childId)) {
+                    children.computeIfAbsent(key.getParentId(), id -> new LinkedHashSet<Integer>()).add(childId);
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> peopleByGeneration = new TreeMap<Integer, List<Integer>>();
+        assign(region, children, Map.of()).forEach((personId, generation) -> peopleByGeneration
+                .computeIfAbsent(generation, g -> new ArrayList<Integer>()).add(personId));
+        for (Map.Entry<Integer, List<Integer>> entry : peopleByGeneration.entrySet()) {
+            for (List<Integer> chunk : chunks(entry.getValue())) {
+                personRepository.updateGenerations(chunk, entry.getKey());
+            }
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        calculateMissing();
+    }
+
+    // Fills in the generations of people created before they were tracked. Only finds
+    // the people that already have their `treeId`, the ones still in the old ownership
+    // tables get theirs when they are migrated (see `TreeOwnershipMigration`).
+    public void calculateMissing() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (Integer treeId : personRepository.findTreeIdsWithoutGenerations()) {
+            transactionTemplate.executeWithoutResult(status -> recalculate(treeId));
+            logger.info("Calculated generations of tree {}", treeId);
+        }
+    }
+
+    // Generations of the people in the region, given the children of every person
+    // in the region that are also in the region and the highest generation of the
+    // parents of every person in the region that are outside of it.
+    static Map<Integer, Integer> assign(Set<Integer> region, Map<Integer, Set<Integer>> children,
+            Map<Integer, Integer> outsideParentsGeneration) {
+        Map<Integer, Integer> generations = new LinkedHashMap<Integer, Integer>();
+        Map<Integer, Integer> candidates = new HashMap<Integer, Integer>();
+        Map<Integer, Integer> remainingParents = new HashMap<Integer, Integer>();
+        for (Integer personId : region) {
+            Integer outside = outsideParentsGeneration.get(personId);
+            candidates.put(personId, outside == null ? 0 : outside + 1);
+        }
+        for (Integer parentId : region) {
+            for (Integer childId : children.getOrDefault(parentId, Set.of())) {
+                remainingParents.merge(childId, 1, Integer::sum);
+            }
+        }
+
+        // Kahn's algorithm, falling back to the person with the lowest id when
+        // everyone left is on a loop.
+        TreeSet<Integer> notReady = new TreeSet<Integer>();
+        ArrayDeque<Integer> ready = new ArrayDeque<Integer>();
+        for (Integer personId : region) {
+            if (remainingParents.getOrDefault(personId, 0) == 0) {
+                ready.add(personId);
+            } else {
+                notReady.add(personId);
+            }
+        }
+        while (generations.size() < region.size()) {
+            if (ready.isEmpty()) {
+                Integer personId = notReady.pollFirst();
+                remainingParents.put(personId, 0);
+                ready.add(personId);
+            }
+            Integer personId = ready.poll();
+            int generation = candidates.get(personId);
+            generations.put(personId, generation);
+            for (Integer childId : children.getOrDefault(personId, Set.of())) {
+                if (generations.containsKey(childId)) {
+                    continue;
+                }
+                candidates.merge(childId, generation + 1, Math::max);
+                if (remainingParents.merge(childId, -1, Integer::sum) == 0) {
+                    notReady.remove(childId);
+                    ready.add(childId);
+                }
+            }
+        }
+        return generations;
+    }
+
+    private static List<List<Integer>> chunks(Collection<Integer> ids) {
+        List<List<Integer>> result = new ArrayList<List<Integer>>();
+        List<Integer> chunk = new ArrayList<Integer>();
+        for (Integer id : ids) {
+            chunk.add(id);
+            if (chunk.size() == CHUNK_SIZE) {
+                result.add(chunk);
+                chunk = new ArrayList<Integer>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            result.add(chunk);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,131 @@
+package com.familyships.FamilyShips.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.familyships.FamilyShips.search.NameIndex;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Keeps the `NameIndex` of every tree that is being searched.
+//
+// The names added, changed and removed by a transaction are applied to the index
+// right after it commits (handed over by `TreeChangeLog`), so the index follows the
+// tree without reading it again. A tree is only loaded from the database again when
+// the index missed some changes (changes made by another instance, an import, or the
+// tree was dropped). Trees that were not searched for the longest are dropped when the
+// cache grows over its maximum size.
+@Component
+public class NameIndexCache {
+    private static class Entry {
+        final NameIndex index;
+        long revision;
+
+        Entry(NameIndex index, long revision) {
+            this.index = index;
+            this.revision = revision;
+        }
+    }
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    private final int maxSize;
+    private final Map<Integer, Entry> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer loads;
+
+    public NameIndexCache(@Value("${familyships.name-index.max-size:1000}") int maxSize,
+            MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > NameIndexCache.this.maxSize;
+            }
+        };
+        this.hits = meterRegistry.counter("familyships.name_index.hits");
+        this.misses = meterRegistry.counter("familyships.name_index.misses");
+        this.loads = meterRegistry.timer("familyships.name_index.load");
+        Gauge.builder("familyships.name_index.size", this, NameIndexCache::size).register(meterRegistry);
+    }
+
+    // Returns the index of the tree at the given revision (or a later one), which must
+    // be the revision read in the current transaction.
+    public NameIndex get(Integer treeId, long revision) {
+        synchronized (this) {
+            Entry entry = entries.get(treeId);
+            if (entry != null && entry.revision >= revision) {
+                hits.increment();
+                return entry.index;
+            }
+        }
+
+        misses.increment();
+        NameIndex index = loads.record(() -> load(treeId));
+        synchronized (this) {
+            Entry cached = entries.get(treeId);
+            if (cached == null || cached.revision < revision) {
+                entries.put(treeId, new Entry(index, revision));
+            }
+        }
+        return index;
+    }
+
+    private NameIndex load(Integer treeId) {
+        Map<Integer, List<String>> names = new LinkedHashMap<Integer, List<String>>();
+        for (Object[] row : personRepository.findIdsAndNamesByTreeId(treeId)) {
+            List<String> personNames = names.computeIfAbsent((Integer) row[0], id -> new ArrayList<String>());
+            if (row[1] != null) {
+                personNames.add((String) row[1]);
+            }
+        }
+        NameIndex index = new NameIndex();
+        for (Map.Entry<Integer, List<String>> person : names.entrySet()) {
+            index.setNames(person.getKey(), person.getValue());
+        }
+        return index;
+    }
+
+    // Called after a transaction that took the tree from `previousRevision` to
+    // `revision` committed, with the space separated names of the people it added or
+    // renamed, and null for the people it removed.
+    public synchronized void committed(Integer treeId, long previousRevision, long revision,
+            Map<Integer, String> names) {
+        Entry entry = entries.get(treeId);
+        if (entry == null) {
+            return;
+        }
+        if (entry.revision != previousRevision) {
+            entries.remove(treeId);
+            return;
+        }
+        for (Map.Entry<Integer, String> change : names.entrySet()) {
+            if (change.getValue() == null) {
+                entry.index.remove(change.getKey());
+            } else {
+                entry.index.setNames(change.getKey(), List.of(change.getValue().split(" ")));
+            }
+        }
+        entry.revision = revision;
+    }
+
+    public synchronized void evict(Integer treeId) {
+        entries.remove(treeId);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -1,9 +1,11 @@
 package com.familyships.FamilyShips.model;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -15,25 +17,50 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 
 @Entity
+@Table(indexes = { @Index(columnList = "treeId"), @Index(columnList = "treeId, generation"),
+        @Index(columnList = "removedAt") })
 public class Person {
+    // Ids come from a sequence of their own (emulated with a table on MySQL), handed
+    // out in blocks of 50 by the pooled optimizer, so that creating many people only
+    // costs one sequence round trip per 50 inserts and the inserts can be batched.
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "person_seq")
+    @SequenceGenerator(name = "person_seq", sequenceName = "person_seq", allocationSize = 50)
     private Integer id;
 
+    // The tree this person belongs to
+    @JsonIgnore
+    private Integer treeId;
+
     @ElementCollection
     private List<String> names;
+
+    // Length of the longest line of ancestors above this person, 0 for people
+    // without parents. Kept up to date by `GenerationIndex` whenever links change.
+    // Null for people created before it was introduced, until they are filled in on
+    // startup.
+    private Integer generation;
+
+    // When the person was deleted, null for the people of a tree. Deleting a person
+    // only takes it out of its tree (`treeId` is cleared) and leaves this tombstone,
+    // the row and its names are purged later by `TombstoneSweeper`.
+    @JsonIgnore
+    private Instant removedAt;
     
     // may be >1 if not sure which one
     @OneToMany(mappedBy = "child")
     @JsonManagedReference
-    private Set<FamilyChild> childOfFamily;
+    private Set<FamilyChild> childOfFamily = new HashSet<>();
 
     @OneToMany(mappedBy = "parent")
     @JsonManagedReference
-    private Set<FamilyParent> parentOfFamily;
+    private Set<FamilyParent> parentOfFamily = new HashSet<>();
 
     @JsonIgnore
     public Set<FamilyChild> getChildOfFamily() {
@@ -53,6 +80,30 @@ public class Person {
         this.id = id;
     }
 
+    public Integer getTreeId() {
+        return treeId;
+    }
+
+    public void setTreeId(Integer treeId) {
+        this.treeId = treeId;
+    }
+
+    public Integer getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(Integer generation) {
+        this.generation = generation;
+    }
+
+    public Instant getRemovedAt() {
+        return removedAt;
+    }
+
+    public void setRemovedAt(Instant removedAt) {
+        this.removedAt = removedAt;
+    }
+
     public Collection<String> getNames() {
         return names != null ? names : Collections.<String>emptyList();
     }
@@ -1,6 +1,54 @@
 package com.familyships.FamilyShips.model;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
 public interface PersonRepository extends CrudRepository<Person, Integer> {
-}
\ No newline at end of file
+    // Ownership check, a single indexed lookup regardless of the size of the tree.
+    boolean existsByIdAndTreeId(Integer id, Integer treeId);
+
+    // One row per (personId, name, generation), people without names come back with
+    // a null name.
+    @Query("SELECT p.id, n, p.generation FROM Person p LEFT JOIN p.names n WHERE p.treeId = ?1")
+    List<Object[]> findIdsAndNamesByTreeId(Integer treeId);
+
+    // Same as `findIdsAndNamesByTreeId` for the given people only.
+    @Query("SELECT p.id, n, p.generation FROM Person p LEFT JOIN p.names n WHERE p.id IN ?1")
+    List<Object[]> findIdsAndNamesByIdIn(Collection<Integer> ids);
+
+    @Query("SELECT p.id FROM Person p WHERE p.treeId = ?1 AND p.generation BETWEEN ?2 AND ?3 ORDER BY p.generation, p.id")
+    List<Integer> findIdsByTreeIdAndGenerationBetween(Integer treeId, Integer fromGeneration, Integer toGeneration);
+
+    // (personId, generation) pairs.
+    @Query("SELECT p.id, p.generation FROM Person p WHERE p.id IN ?1")
+    List<Object[]> findGenerationsByIdIn(Collection<Integer> ids);
+
+    @Query("SELECT p.id FROM Person p WHERE p.treeId = ?1")
+    List<Integer> findIdsByTreeId(Integer treeId);
+
+    @Query("SELECT DISTINCT p.treeId FROM Person p WHERE p.generation IS NULL AND p.treeId IS NOT NULL")
+    List<Integer> findTreeIdsWithoutGenerations();
+
+    // Deleted people waiting to be purged, see `Person.removedAt`.
+    @Query("SELECT p.id FROM Person p WHERE p.removedAt IS NOT NULL ORDER BY p.id")
+    List<Integer> findRemovedIds(Pageable pageable);
+
+    long countByRemovedAtIsNotNull();
+
+    @Modifying
+    @Query("UPDATE Person p SET p.generation = ?2 WHERE p.id IN ?1")
+    int updateGenerations(Collection<Integer> ids, Integer generation);
+
+    // Keyset pagination over the people of a tree, in id order.
+    @Query("SELECT p.id FROM Person p WHERE p.treeId = ?1 AND p.id > ?2 ORDER BY p.id")
+    List<Integer> findIdsByTreeIdAfter(Integer treeId, Integer afterId, Pageable pageable);
+
+    // One row per (personId, name) pair for the people with ids in the given range.
+    @Query("SELECT p.id, n FROM Person p JOIN p.names n WHERE p.treeId = ?1 AND p.id BETWEEN ?2 AND ?3")
+    List<Object[]> findIdsAndNamesByTreeIdBetween(Integer treeId, Integer fromId, Integer toId);
+}
@@ -0,0 +1,153 @@
+package com.familyships.FamilyShips.model;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.familyships.FamilyShips.graph.ReachabilityIndex;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Keeps a `ReachabilityIndex` of every tree that is being modified, so that links
+// which would make someone their own ancestor can be rejected without reading the
+// tree.
+//
+// The index is handed to one transaction at a time (concurrent ones build their own),
+// and the transaction patches the index as it changes links. An index is only reused
+// by the next transaction if it was built or patched up to the revision of the tree,
+// otherwise (another instance modified the tree, a transaction rolled back, an
+// import) it's built again from the link tables. Trees that were not modified for the
+// longest are dropped when the cache grows over its maximum size.
+@Component
+public class ReachabilityIndexCache {
+    private static class Entry {
+        final ReachabilityIndex index;
+        long revision;
+        // Handed to a transaction that didn't complete yet.
+        boolean inUse = true;
+
+        Entry(ReachabilityIndex index, long revision) {
+            this.index = index;
+            this.revision = revision;
+        }
+    }
+
+    @Autowired
+    private TreeRepository treeRepository;
+    @Autowired
+    private TreeChangeLog treeChangeLog;
+    @Autowired
+    private FamilyChildRepository familyChildRepository;
+    @Autowired
+    private FamilyParentRepository familyParentRepository;
+
+    private final int maxSize;
+    private final Map<Integer, Entry> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer builds;
+
+    public ReachabilityIndexCache(@Value("${familyships.reachability-index.max-size:1000}") int maxSize,
+            MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > ReachabilityIndexCache.this.maxSize;
+            }
+        };
+        this.hits = meterRegistry.counter("familyships.reachability_index.hits");
+        this.misses = meterRegistry.counter("familyships.reachability_index.misses");
+        this.builds = meterRegistry.timer("familyships.reachability_index.build");
+        Gauge.builder("familyships.reachability_index.size", this, ReachabilityIndexCache::size)
+                .register(meterRegistry);
+    }
+
+    // Returns the index of the tree for the current transaction, which has to be
+    // patched with every link the transaction adds or removes. Must be called within
+    // a transaction, before the links are changed.
+    public ReachabilityIndex forTransaction(Integer treeId) {
+        String resourceKey = ReachabilityIndexCache.class.getName() + ".tree." + treeId;
+        Entry entry = (Entry) TransactionSynchronizationManager.getResource(resourceKey);
+        if (entry != null) {
+            return entry.index;
+        }
+        // Two modifications that each add half of a loop can't both commit, as both
+        // bump the version of the tree, see `Tree.version`.
+        long revision = treeChangeLog.treeForModification(treeId).getRevision();
+        synchronized (this) {
+            entry = entries.get(treeId);
+            if (entry != null && !entry.inUse && entry.revision == revision) {
+                entry.inUse = true;
+                hits.increment();
+            } else {
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            entry = new Entry(builds.record(() -> build(treeId)), revision);
+            synchronized (this) {
+                entries.put(treeId, entry);
+            }
+        }
+
+        Entry boundEntry = entry;
+        TransactionSynchronizationManager.bindResource(resourceKey, boundEntry);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long committedRevision;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                committedRevision = treeRepository.findById(treeId).get().getRevision();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(resourceKey);
+                synchronized (ReachabilityIndexCache.this) {
+                    if (status == STATUS_COMMITTED) {
+                        boundEntry.revision = committedRevision;
+                        boundEntry.inUse = false;
+                    } else {
+                        entries.remove(treeId, boundEntry);
+                    }
+                }
+            }
+        });
+        return entry.index;
+    }
+
+    private ReachabilityIndex build(Integer treeId) {
+        List<FamilyParentKey> parentKeys = familyParentRepository.findKeysByTreeId(treeId);
+        List<FamilyChildKey> childKeys = familyChildRepository.findKeysByTreeId(treeId);
+        int[] parentLinkFamilyIds = new int[parentKeys.size()];
+        int[] parentLinkPersonIds = new int[parentKeys.size()];
+        for (int i = 0; i < parentKeys.size(); i++) {
+            parentLinkFamilyIds[i] = parentKeys.get(i).getFamilyId();
+            parentLinkPersonIds[i] = parentKeys.get(i).getParentId();
+        }
+        int[] childLinkFamilyIds = new int[childKeys.size()];
+        int[] childLinkPersonIds = new int[childKeys.size()];
+        for (int i = 0; i < childKeys.size(); i++) {
+            childLinkFamilyIds[i] = childKeys.get(i).getFamilyId();
+            childLinkPersonIds[i] = childKeys.get(i).getChildId();
+        }
+        return ReachabilityIndex.of(parentLinkFamilyIds, parentLinkPersonIds, childLinkFamilyIds,
+                childLinkPersonIds);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -1,47 +1,51 @@
 package com.familyships.FamilyShips.model;
 
-import java.util.Set;
-
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.OneToMany;
-
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 
+// People and families point to their tree through their `treeId`. The people and
+// families of a tree are listed from its cached graph, see `TreeGraphCache`.
 @Entity
 public class Tree {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tree_seq")
+    @SequenceGenerator(name = "tree_seq", sequenceName = "tree_seq", allocationSize = 50)
     private Integer id;
 
-    @OneToMany
-    private Set<Person> people;
+    // Increases by one with every modification of the tree, see `TreeChangeLog`.
+    private long revision;
 
-    @OneToMany
-    private Set<Family> families;
-    
-    public Set<Person> getPeople() {
-        return people;
-    }
+    // Changes up to (and including) this revision were dropped from the change log.
+    private long compactedRevision;
+
+    // Every modification of the tree updates the tree (see `TreeChangeLog`), so of two
+    // transactions modifying the same tree concurrently only the first one to commit
+    // succeeds, whatever part of the tree they touch. The other one is retried, see
+    // `ConflictRetry`.
+    @Version
+    private long version;
 
-    public void addPerson(Person person) {
-        people.add(person);
+    public Integer getId() {
+        return id;
     }
 
-     public void addFamily(Family family) {
-        families.add(family);
+    public long getRevision() {
+        return revision;
     }
 
-    public Set<Family> getFamilies() {
-        return families;
+    public void setRevision(long revision) {
+        this.revision = revision;
     }
 
-    public void deleteFamily(Family family) {
-        families.remove(family);
+    public long getCompactedRevision() {
+        return compactedRevision;
     }
 
-    public void deletePerson(Person person) {
-        people.remove(person);
+    public void setCompactedRevision(long compactedRevision) {
+        this.compactedRevision = compactedRevision;
     }
 }
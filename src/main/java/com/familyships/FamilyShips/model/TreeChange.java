@@ -0,0 +1,95 @@
+package com.familyships.FamilyShips.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+// One entry of the change log of a tree. All the changes made by one request share
+// the same revision. Only the fields relevant for the kind of change are set.
+@Entity
+@Table(indexes = @Index(columnList = "treeId,revision"))
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TreeChange {
+    public enum Kind {
+        PERSON_ADDED, PERSON_REMOVED, PERSON_RENAMED,
+        FAMILY_ADDED, FAMILY_REMOVED,
+        CHILD_ATTACHED, CHILD_DETACHED,
+        PARENT_ATTACHED, PARENT_DETACHED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tree_change_seq")
+    @SequenceGenerator(name = "tree_change_seq", sequenceName = "tree_change_seq", allocationSize = 50)
+    @JsonIgnore
+    private Long id;
+
+    @JsonIgnore
+    private Integer treeId;
+
+    private long revision;
+
+    @Enumerated(EnumType.STRING)
+    private Kind kind;
+
+    private Integer personId;
+
+    private Integer familyId;
+
+    private String spaceSeparatedNames;
+
+    public TreeChange() {
+    }
+
+    public TreeChange(Integer treeId, long revision, Kind kind, Integer personId, Integer familyId,
+            String spaceSeparatedNames) {
+        this.treeId = treeId;
+        this.revision = revision;
+        this.kind = kind;
+        this.personId = personId;
+        this.familyId = familyId;
+        this.spaceSeparatedNames = spaceSeparatedNames;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Integer getTreeId() {
+        return treeId;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Integer getPersonId() {
+        return personId;
+    }
+
+    public Integer getFamilyId() {
+        return familyId;
+    }
+
+    public String getSpaceSeparatedNames() {
+        return spaceSeparatedNames;
+    }
+
+    @Override
+    public String toString() {
+        return "TreeChange [treeId=" + treeId + ", revision=" + revision + ", kind=" + kind + ", personId="
+                + personId + ", familyId=" + familyId + ", spaceSeparatedNames=" + spaceSeparatedNames + "]";
+    }
+}
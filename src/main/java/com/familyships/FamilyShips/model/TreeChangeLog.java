@@ -0,0 +1,180 @@
+package com.familyships.FamilyShips.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.familyships.FamilyShips.graph.TreeGraph;
+import com.familyships.FamilyShips.model.TreeChange.Kind;
+
+// Keeps the revision of every tree and the log of changes between revisions, so that
+// clients can catch up with `/model/changes` instead of reloading the whole tree.
+//
+// The first change recorded in a transaction bumps the revision of the tree, all the
+// following ones in the same transaction share it. Concurrent modifications of the
+// same tree don't hold a lock while they run: they bump the same revision and the
+// version of the tree lets only the first one commit (see `Tree.version`). A
+// modification that keeps losing can run `locked` instead, which makes the others
+// wait for it. Once the transaction commits its changes are handed over to the
+// `TreeGraphCache` and the `NameIndexCache`.
+//
+// So the modifications of one tree still commit one after another, even when they
+// touch unrelated parts of it, and overlapping ones are retried. That is the price of
+// the revisions being totally ordered: /model/changes and the caches apply the
+// changes of revision N on top of revision N - 1, and a link is checked for loops
+// against the whole tree as of the previous revision, which two links committed in
+// parallel could close together.
+@Component
+public class TreeChangeLog {
+    // Changes of one tree made by the current transaction.
+    private static class Changes {
+        final long previousRevision;
+        final long revision;
+        final TreeGraph.Patch patch = new TreeGraph.Patch();
+        // Names of the people added or renamed, null for the people removed.
+        final Map<Integer, String> names = new LinkedHashMap<Integer, String>();
+        boolean reload = false;
+
+        Changes(long previousRevision, long revision) {
+            this.previousRevision = previousRevision;
+            this.revision = revision;
+        }
+    }
+
+    // Compaction runs every that many revisions.
+    static final long COMPACTION_INTERVAL = 100;
+
+    // Set while a modification runs `locked`.
+    private static final ThreadLocal<Boolean> locking = ThreadLocal.withInitial(() -> false);
+
+    @Autowired
+    private TreeRepository treeRepository;
+    @Autowired
+    private TreeChangeRepository treeChangeRepository;
+    @Autowired
+    private TreeGraphCache treeGraphCache;
+    @Autowired
+    private NameIndexCache nameIndexCache;
+
+    // How many revisions worth of changes are kept for each tree. Clients that are
+    // further behind have to reload the whole tree.
+    @Value("${familyships.change-log.retained-revisions:1000}")
+    private long retainedRevisions;
+
+    // Runs the modification (which must start its own transaction) with the tree row
+    // locked from the first time it's read until the commit, so that it can't lose
+    // against a concurrent modification.
+    public <T> T locked(Supplier<T> modification) {
+        locking.set(true);
+        try {
+            return modification.get();
+        } finally {
+            locking.set(false);
+        }
+    }
+
+    // The tree, for a transaction that is going to modify it. Must be called before
+    // the transaction reads the tree in any other way.
+    public Tree treeForModification(Integer treeId) {
+        if (locking.get()) {
+            return treeRepository.findByIdForUpdate(treeId);
+        }
+        return treeRepository.findById(treeId).get();
+    }
+
+    // Must be called within a transaction.
+    public void record(Integer treeId, Kind kind, Integer personId, Integer familyId, String spaceSeparatedNames) {
+        Changes changes = changesOfCurrentTransaction(treeId);
+        treeChangeRepository.save(
+                new TreeChange(treeId, changes.revision, kind, personId, familyId, spaceSeparatedNames));
+        switch (kind) {
+            case PERSON_ADDED:
+                changes.patch.addPerson(personId);
+                changes.names.put(personId, spaceSeparatedNames);
+                break;
+            case PERSON_REMOVED:
+                changes.patch.removePerson(personId);
+                changes.names.put(personId, null);
+                break;
+            case FAMILY_ADDED:
+                changes.patch.addFamily(familyId);
+                break;
+            case FAMILY_REMOVED:
+                changes.patch.removeFamily(familyId);
+                break;
+            case CHILD_ATTACHED:
+                changes.patch.attachChild(familyId, personId);
+                break;
+            case CHILD_DETACHED:
+                changes.patch.detachChild(familyId, personId);
+                break;
+            case PARENT_ATTACHED:
+                changes.patch.attachParent(familyId, personId);
+                break;
+            case PARENT_DETACHED:
+                changes.patch.detachParent(familyId, personId);
+                break;
+            case PERSON_RENAMED:
+                changes.names.put(personId, spaceSeparatedNames);
+                break;
+        }
+    }
+
+    // Records a change that is too big to be described change by change (like an
+    // import). Clients at an older revision will be told to reload the whole tree.
+    // Must be called within a transaction.
+    public void recordReload(Integer treeId) {
+        Changes changes = changesOfCurrentTransaction(treeId);
+        changes.reload = true;
+        long revision = changes.revision;
+        Tree tree = treeRepository.findById(treeId).get();
+        treeChangeRepository.deleteByTreeIdUpTo(treeId, revision);
+        tree.setCompactedRevision(revision);
+        treeRepository.save(tree);
+    }
+
+    private Changes changesOfCurrentTransaction(Integer treeId) {
+        String resourceKey = TreeChangeLog.class.getName() + ".changes." + treeId;
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(resourceKey);
+        if (changes != null) {
+            return changes;
+        }
+        Tree tree = treeForModification(treeId);
+        long revision = tree.getRevision() + 1;
+        tree.setRevision(revision);
+        if (revision % COMPACTION_INTERVAL == 0 && revision > retainedRevisions) {
+            long compactedRevision = revision - retainedRevisions;
+            treeChangeRepository.deleteByTreeIdUpTo(treeId, compactedRevision);
+            tree.setCompactedRevision(compactedRevision);
+        }
+        treeRepository.save(tree);
+
+        Changes newChanges = new Changes(revision - 1, revision);
+        TransactionSynchronizationManager.bindResource(resourceKey, newChanges);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(resourceKey);
+                if (status != STATUS_COMMITTED) {
+                    return;
+                }
+                if (newChanges.reload) {
+                    treeGraphCache.evict(treeId);
+                    nameIndexCache.evict(treeId);
+                } else {
+                    treeGraphCache.committed(treeId, newChanges.previousRevision, newChanges.revision,
+                            newChanges.patch);
+                    nameIndexCache.committed(treeId, newChanges.previousRevision, newChanges.revision,
+                            newChanges.names);
+                }
+            }
+        });
+        return newChanges;
+    }
+}
@@ -0,0 +1,16 @@
+package com.familyships.FamilyShips.model;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+public interface TreeChangeRepository extends CrudRepository<TreeChange, Long> {
+    @Query("SELECT c FROM TreeChange c WHERE c.treeId = ?1 AND c.revision > ?2 ORDER BY c.revision, c.id")
+    List<TreeChange> findByTreeIdSince(Integer treeId, long revision);
+
+    @Modifying
+    @Query("DELETE FROM TreeChange c WHERE c.treeId = ?1 AND c.revision <= ?2")
+    int deleteByTreeIdUpTo(Integer treeId, long revision);
+}
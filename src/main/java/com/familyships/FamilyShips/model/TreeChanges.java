@@ -0,0 +1,29 @@
+package com.familyships.FamilyShips.model;
+
+import java.util.List;
+
+// Response of /model/changes. When `resync` is true the changes the client asked for
+// are no longer available (or never existed) and it has to reload the whole tree.
+public class TreeChanges {
+    private final long revision;
+    private final boolean resync;
+    private final List<TreeChange> changes;
+
+    public TreeChanges(long revision, boolean resync, List<TreeChange> changes) {
+        this.revision = revision;
+        this.resync = resync;
+        this.changes = changes;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public boolean isResync() {
+        return resync;
+    }
+
+    public List<TreeChange> getChanges() {
+        return changes;
+    }
+}
@@ -0,0 +1,181 @@
+package com.familyships.FamilyShips.model;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.familyships.FamilyShips.graph.TreeGraph;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Keeps the `TreeGraph` of every tree that is being read, so that the read endpoints
+// don't have to load the links (or the entities) on every request.
+//
+// The changes committed by `TreeChangeLog` are collected per tree and applied to the
+// graph on the next read, in memory. A tree is only loaded from the link tables again
+// when the cached graph can't be brought up to the revision being read (changes made
+// by another instance, an import, or the tree was dropped). Trees that were not looked
+// at for the longest are dropped when the cache grows over its maximum size.
+@Component
+public class TreeGraphCache {
+    private static class Entry {
+        final TreeGraph graph;
+        // Committed changes not applied to the graph yet, null if there are none.
+        final TreeGraph.Patch pending;
+        // Revision of the graph with the pending changes applied.
+        final long revision;
+
+        Entry(TreeGraph graph, TreeGraph.Patch pending, long revision) {
+            this.graph = graph;
+            this.pending = pending;
+            this.revision = revision;
+        }
+    }
+
+    private static final int MIN_PENDING = 1000;
+
+    @Autowired
+    private PersonRepository personRepository;
+    @Autowired
+    private FamilyRepository familyRepository;
+    @Autowired
+    private FamilyChildRepository familyChildRepository;
+    @Autowired
+    private FamilyParentRepository familyParentRepository;
+
+    private final int maxSize;
+    private final Map<Integer, Entry> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter patches;
+    private final Timer loads;
+    private final DistributionSummary loadedPeople;
+    private final DistributionSummary loadedFamilies;
+
+    public TreeGraphCache(@Value("${familyships.tree-graph-cache.max-size:1000}") int maxSize,
+            MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > TreeGraphCache.this.maxSize;
+            }
+        };
+        this.hits = meterRegistry.counter("familyships.tree_graph_cache.hits");
+        this.misses = meterRegistry.counter("familyships.tree_graph_cache.misses");
+        this.patches = meterRegistry.counter("familyships.tree_graph_cache.patches");
+        this.loads = meterRegistry.timer("familyships.tree_graph.load");
+        // The sizes of the trees loaded, to tell how large the trees in use are.
+        this.loadedPeople = DistributionSummary.builder("familyships.tree_graph.people")
+                .publishPercentileHistogram().register(meterRegistry);
+        this.loadedFamilies = DistributionSummary.builder("familyships.tree_graph.families")
+                .publishPercentileHistogram().register(meterRegistry);
+        Gauge.builder("familyships.tree_graph_cache.size", this, TreeGraphCache::size).register(meterRegistry);
+        Gauge.builder("familyships.tree_graph_cache.bytes", this, TreeGraphCache::estimatedBytes)
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    // Returns the graph of the tree at the given revision, which must be the revision
+    // read in the current transaction.
+    public TreeGraph get(Integer treeId, long revision) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(treeId);
+        }
+        if (entry != null && entry.revision == revision) {
+            hits.increment();
+            if (entry.pending == null) {
+                return entry.graph;
+            }
+            patches.increment();
+            TreeGraph graph = entry.graph.patched(entry.pending, revision);
+            synchronized (this) {
+                if (entries.get(treeId) == entry) {
+                    entries.put(treeId, new Entry(graph, null, revision));
+                }
+            }
+            return graph;
+        }
+
+        misses.increment();
+        TreeGraph graph = loads.record(() -> load(treeId, revision));
+        loadedPeople.record(graph.peopleCount());
+        loadedFamilies.record(graph.familyCount());
+        synchronized (this) {
+            Entry cached = entries.get(treeId);
+            if (cached == null || cached.revision < revision) {
+                entries.put(treeId, new Entry(graph, null, revision));
+            }
+        }
+        return graph;
+    }
+
+    private TreeGraph load(Integer treeId, long revision) {
+        List<FamilyParentKey> parentKeys = familyParentRepository.findKeysByTreeId(treeId);
+        List<FamilyChildKey> childKeys = familyChildRepository.findKeysByTreeId(treeId);
+        int[] parentLinkFamilyIds = new int[parentKeys.size()];
+        int[] parentLinkPersonIds = new int[parentKeys.size()];
+        for (int i = 0; i < parentKeys.size(); i++) {
+            parentLinkFamilyIds[i] = parentKeys.get(i).getFamilyId();
+            parentLinkPersonIds[i] = parentKeys.get(i).getParentId();
+        }
+        int[] childLinkFamilyIds = new int[childKeys.size()];
+        int[] childLinkPersonIds = new int[childKeys.size()];
+        for (int i = 0; i < childKeys.size(); i++) {
+            childLinkFamilyIds[i] = childKeys.get(i).getFamilyId();
+            childLinkPersonIds[i] = childKeys.get(i).getChildId();
+        }
+        return new TreeGraph(revision,
+                personRepository.findIdsByTreeId(treeId).stream().mapToInt(Integer::intValue).toArray(),
+                familyRepository.findIdsByTreeId(treeId).stream().mapToInt(Integer::intValue).toArray(),
+                parentLinkFamilyIds, parentLinkPersonIds, childLinkFamilyIds, childLinkPersonIds);
+    }
+
+    // Called after a transaction that took the tree from `previousRevision` to
+    // `revision` with the given changes committed.
+    public synchronized void committed(Integer treeId, long previousRevision, long revision,
+            TreeGraph.Patch patch) {
+        Entry entry = entries.get(treeId);
+        if (entry == null) {
+            return;
+        }
+        // Once there are more changes than the graph has people, loading the tree
+        // again is not much slower than applying them.
+        if (entry.revision != previousRevision
+                || (entry.pending != null && entry.pending.size() > MIN_PENDING + entry.graph.peopleCount())) {
+            entries.remove(treeId);
+            return;
+        }
+        TreeGraph.Patch pending = new TreeGraph.Patch();
+        if (entry.pending != null) {
+            pending.addAll(entry.pending);
+        }
+        pending.addAll(patch);
+        entries.put(treeId, new Entry(entry.graph, pending, revision));
+    }
+
+    public synchronized void evict(Integer treeId) {
+        entries.remove(treeId);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long estimatedBytes() {
+        long bytes = 0;
+        for (Entry entry : entries.values()) {
+            bytes += entry.graph.estimatedBytes();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,87 @@
+package com.familyships.FamilyShips.model;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// People and families used to be attached to their tree through the `tree_people`
+// and `tree_families` join tables. They now carry a `tree_id` column instead; this
+// copies the ownership over from the join tables for rows that don't have it yet.
+//
+// The join table rows are deleted as soon as they are migrated (in the same
+// transaction), as their foreign keys would otherwise keep the people and families
+// from ever being deleted. The empty tables can be dropped by hand.
+//
+// Deleted people and families don't have a `tree_id` either (see `Person.removedAt`),
+// they are skipped, but their join table rows go too.
+//
+// Runs once all the beans are created, before the web server starts, so that no
+// request sees the trees without their people and families. The people migrated get
+// their generations right after (see `GenerationIndex`).
+@Component
+public class TreeOwnershipMigration implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(TreeOwnershipMigration.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private GenerationIndex generationIndex;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        migrate();
+    }
+
+    public void migrate() {
+        boolean hasTreePeople = tableExists("tree_people");
+        boolean hasTreeFamilies = tableExists("tree_families");
+        int migratedPeople = new TransactionTemplate(transactionManager).execute(status -> {
+            int migrated = 0;
+            if (hasTreePeople) {
+                migrated = jdbcTemplate.update("UPDATE person SET tree_id = "
+                        + "(SELECT tp.tree_id FROM tree_people tp WHERE tp.people_id = person.id) "
+                        + "WHERE tree_id IS NULL AND removed_at IS NULL");
+                jdbcTemplate.update("DELETE FROM tree_people WHERE people_id IN "
+                        + "(SELECT id FROM person WHERE tree_id IS NOT NULL OR removed_at IS NOT NULL)");
+                logger.info("Migrated tree ownership of {} people", migrated);
+            }
+            if (hasTreeFamilies) {
+                int migratedFamilies = jdbcTemplate.update("UPDATE family SET tree_id = "
+                        + "(SELECT tf.tree_id FROM tree_families tf WHERE tf.families_id = family.id) "
+                        + "WHERE tree_id IS NULL AND removed_at IS NULL");
+                jdbcTemplate.update("DELETE FROM tree_families WHERE families_id IN "
+                        + "(SELECT id FROM family WHERE tree_id IS NOT NULL OR removed_at IS NOT NULL)");
+                logger.info("Migrated tree ownership of {} families", migratedFamilies);
+            }
+            return migrated;
+        });
+        if (migratedPeople > 0) {
+            generationIndex.calculateMissing();
+        }
+    }
+
+    private boolean tableExists(String name) {
+        return jdbcTemplate.execute((Connection connection) -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String candidate : new String[] { name, name.toUpperCase() }) {
+                try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, candidate, null)) {
+                    if (tables.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+    }
+}
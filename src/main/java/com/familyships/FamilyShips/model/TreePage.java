@@ -0,0 +1,30 @@
+package com.familyships.FamilyShips.model;
+
+import java.util.List;
+
+// One page of a listing in id order. `next` is the id to pass as `after` to get the
+// following page, null on the last page.
+public class TreePage<T> {
+    private final long revision;
+    private final List<T> items;
+    private final Integer next;
+
+    public TreePage(long revision, List<T> items, Integer next) {
+        this.revision = revision;
+        this.items = items;
+        this.next = next;
+    }
+
+    // Revision of the tree the page was read at, see `TreeChangeLog`.
+    public long getRevision() {
+        return revision;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public Integer getNext() {
+        return next;
+    }
+}
@@ -1,6 +1,19 @@
 package com.familyships.FamilyShips.model;
 
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
+import jakarta.persistence.LockModeType;
+
 public interface TreeRepository extends CrudRepository<Tree, Integer> {
+    // Only for modifications that kept losing to concurrent ones, see
+    // `TreeChangeLog.locked`.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Tree t WHERE t.id = ?1")
+    Tree findByIdForUpdate(Integer id);
+
+    // The revision alone, by primary key, without loading the tree.
+    @Query("SELECT t.revision FROM Tree t WHERE t.id = ?1")
+    Long findRevisionById(Integer id);
 }
@@ -0,0 +1,197 @@
+package com.familyships.FamilyShips.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.familyships.FamilyShips.graph.TreeGraph;
+
+// Whole content of a tree (or a part of it), assembled from the names and the cached
+// `TreeGraph` instead of walking the entity graph. The people and families have the
+// same JSON shape as `Person` and `Family`, so the frontend can use them
+// interchangeably.
+public class TreeSnapshot {
+    public static class PersonEntry {
+        private final Integer id;
+        private final List<String> names = new ArrayList<String>();
+        private Integer generation;
+        private final Set<Integer> childOfFamiliesIds = new LinkedHashSet<Integer>();
+        private final Set<Integer> parentOfFamilyIds = new LinkedHashSet<Integer>();
+
+        PersonEntry(Integer id) {
+            this.id = id;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public List<String> getNames() {
+            return names;
+        }
+
+        public Integer getGeneration() {
+            return generation;
+        }
+
+        public Set<Integer> getChildOfFamiliesIds() {
+            return childOfFamiliesIds;
+        }
+
+        public Set<Integer> getParentOfFamilyIds() {
+            return parentOfFamilyIds;
+        }
+    }
+
+    public static class FamilyEntry {
+        private final Integer id;
+        private final Set<Integer> childrenIds = new LinkedHashSet<Integer>();
+        private final Set<Integer> parentIds = new LinkedHashSet<Integer>();
+
+        FamilyEntry(Integer id) {
+            this.id = id;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public Set<Integer> getChildrenIds() {
+            return childrenIds;
+        }
+
+        public Set<Integer> getParentIds() {
+            return parentIds;
+        }
+    }
+
+    private final long revision;
+    private final Map<Integer, PersonEntry> people = new LinkedHashMap<Integer, PersonEntry>();
+    private final Map<Integer, FamilyEntry> families = new LinkedHashMap<Integer, FamilyEntry>();
+
+    // People and their names are the result of
+    // `PersonRepository.findIdsAndNamesByTreeId`, the families and the links come from
+    // the graph of the tree at the same revision.
+    public TreeSnapshot(List<Object[]> peopleAndNames, TreeGraph graph) {
+        this.revision = graph.getRevision();
+        addPeople(peopleAndNames, graph, null);
+        for (int family = 0; family < graph.familyCount(); family++) {
+            FamilyEntry entry = familyEntry(graph, family, null);
+            families.put(entry.id, entry);
+        }
+    }
+
+    // Part of the tree: the people with the given names (from
+    // `PersonRepository.findIdsAndNamesByIdIn`) and the given families (indices of the
+    // graph), with only the links between them.
+    public TreeSnapshot(List<Object[]> peopleAndNames, TreeGraph graph, int[] familyIndices) {
+        this.revision = graph.getRevision();
+        boolean[] includedFamilies = new boolean[graph.familyCount()];
+        for (int family : familyIndices) {
+            includedFamilies[family] = true;
+        }
+        addPeople(peopleAndNames, graph, includedFamilies);
+        boolean[] includedPeople = new boolean[graph.peopleCount()];
+        for (Integer personId : people.keySet()) {
+            int index = graph.personIndex(personId);
+            if (index >= 0) {
+                includedPeople[index] = true;
+            }
+        }
+        for (int family : familyIndices) {
+            FamilyEntry entry = familyEntry(graph, family, includedPeople);
+            families.put(entry.id, entry);
+        }
+    }
+
+    // People with the given names and the families they are in, like in the snapshot
+    // of the whole tree, in id order.
+    public static List<PersonEntry> people(List<Object[]> peopleAndNames, TreeGraph graph) {
+        TreeSnapshot snapshot = new TreeSnapshot(graph.getRevision());
+        snapshot.addPeople(peopleAndNames, graph, null);
+        List<PersonEntry> result = new ArrayList<PersonEntry>(snapshot.people.values());
+        result.sort(Comparator.comparing(PersonEntry::getId));
+        return result;
+    }
+
+    // Families `from`..`to - 1` (indices of the graph) with all their links, like in the
+    // snapshot of the whole tree.
+    public static List<FamilyEntry> families(TreeGraph graph, int from, int to) {
+        List<FamilyEntry> result = new ArrayList<FamilyEntry>(to - from);
+        for (int family = from; family < to; family++) {
+            result.add(familyEntry(graph, family, null));
+        }
+        return result;
+    }
+
+    private TreeSnapshot(long revision) {
+        this.revision = revision;
+    }
+
+    // Links to families that are not included (if given) are left out.
+    private void addPeople(List<Object[]> peopleAndNames, TreeGraph graph, boolean[] includedFamilies) {
+        for (Object[] row : peopleAndNames) {
+            PersonEntry person = people.computeIfAbsent((Integer) row[0], PersonEntry::new);
+            if (row[1] != null) {
+                person.names.add((String) row[1]);
+            }
+            person.generation = (Integer) row[2];
+        }
+        int[] familyIds = graph.familyIds();
+        for (PersonEntry person : people.values()) {
+            int index = graph.personIndex(person.id);
+            if (index < 0) {
+                continue;
+            }
+            for (int i = graph.childOfOffsets()[index]; i < graph.childOfOffsets()[index + 1]; i++) {
+                int family = graph.childOf()[i];
+                if (includedFamilies == null || includedFamilies[family]) {
+                    person.childOfFamiliesIds.add(familyIds[family]);
+                }
+            }
+            for (int i = graph.parentOfOffsets()[index]; i < graph.parentOfOffsets()[index + 1]; i++) {
+                int family = graph.parentOf()[i];
+                if (includedFamilies == null || includedFamilies[family]) {
+                    person.parentOfFamilyIds.add(familyIds[family]);
+                }
+            }
+        }
+    }
+
+    // Links to people that are not included (if given) are left out.
+    private static FamilyEntry familyEntry(TreeGraph graph, int family, boolean[] includedPeople) {
+        int[] personIds = graph.personIds();
+        FamilyEntry entry = new FamilyEntry(graph.familyIds()[family]);
+        for (int i = graph.familyChildrenOffsets()[family]; i < graph.familyChildrenOffsets()[family + 1]; i++) {
+            int child = graph.familyChildren()[i];
+            if (includedPeople == null || includedPeople[child]) {
+                entry.childrenIds.add(personIds[child]);
+            }
+        }
+        for (int i = graph.familyParentsOffsets()[family]; i < graph.familyParentsOffsets()[family + 1]; i++) {
+            int parent = graph.familyParents()[i];
+            if (includedPeople == null || includedPeople[parent]) {
+                entry.parentIds.add(personIds[parent]);
+            }
+        }
+        return entry;
+    }
+
+    // Revision of the tree the snapshot was taken at, see `TreeChangeLog`.
+    public long getRevision() {
+        return revision;
+    }
+
+    public Collection<PersonEntry> getPeople() {
+        return people.values();
+    }
+
+    public Collection<FamilyEntry> getFamilies() {
+        return families.values();
+    }
+}
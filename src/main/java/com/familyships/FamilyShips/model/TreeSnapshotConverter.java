@@ -0,0 +1,139 @@
+package com.familyships.FamilyShips.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import com.familyships.FamilyShips.graph.IntList;
+
+// Writes a `TreeSnapshot` (from /model/snapshot and /model/subgraph) in a compact
+// binary form when the client asks for it with
+// `Accept: application/vnd.familyships.tree`, see `reload()` in `model.ts`. Everyone
+// else still gets JSON, see `WebConfiguration`.
+//
+// The snapshot is written column by column, all numbers as big endian 32 bit integers
+// except for the revision (64 bit):
+//
+//   version (1), revision
+//   string count, then every string as its UTF-8 length and bytes
+//   people count, their ids, their generations (-1 if unknown), their name counts,
+//   and the names of all of them one after the other as indices into the strings
+//   family count, their ids, their parent counts, the parent ids of all of them,
+//   their children counts, the children ids of all of them
+//
+// Every name is written once however many people have it, and the families people are
+// in are left out, they are the same links as the parents and children of the families.
+public class TreeSnapshotConverter extends AbstractHttpMessageConverter<TreeSnapshot> {
+    public static final MediaType MEDIA_TYPE = new MediaType("application", "vnd.familyships.tree");
+    public static final int VERSION = 1;
+
+    public TreeSnapshotConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return TreeSnapshot.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected TreeSnapshot readInternal(Class<? extends TreeSnapshot> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Tree snapshots can't be read.", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(TreeSnapshot snapshot, HttpOutputMessage outputMessage) throws IOException {
+        write(snapshot, outputMessage.getBody());
+    }
+
+    public static void write(TreeSnapshot snapshot, OutputStream output) throws IOException {
+        Map<String, Integer> stringIndices = new HashMap<String, Integer>();
+        List<byte[]> strings = new ArrayList<byte[]>();
+        int stringBytes = 0;
+        IntList names = new IntList(snapshot.getPeople().size() * 2);
+        for (TreeSnapshot.PersonEntry person : snapshot.getPeople()) {
+            for (String name : person.getNames()) {
+                Integer index = stringIndices.get(name);
+                if (index == null) {
+                    index = strings.size();
+                    stringIndices.put(name, index);
+                    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                    strings.add(bytes);
+                    stringBytes += bytes.length;
+                }
+                names.add(index);
+            }
+        }
+        int people = snapshot.getPeople().size();
+        int families = snapshot.getFamilies().size();
+        int links = 0;
+        for (TreeSnapshot.FamilyEntry family : snapshot.getFamilies()) {
+            links += family.getParentIds().size() + family.getChildrenIds().size();
+        }
+
+        // Laid out in memory first, writing the integers one by one to the stream is
+        // several times slower.
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 8 + 4 + 4 * strings.size() + stringBytes + 4 + 12 * people
+                + 4 * names.size() + 4 + 12 * families + 4 * links);
+        buffer.putInt(VERSION);
+        buffer.putLong(snapshot.getRevision());
+        buffer.putInt(strings.size());
+        for (byte[] string : strings) {
+            buffer.putInt(string.length);
+            buffer.put(string);
+        }
+
+        buffer.putInt(people);
+        for (TreeSnapshot.PersonEntry person : snapshot.getPeople()) {
+            buffer.putInt(person.getId());
+        }
+        for (TreeSnapshot.PersonEntry person : snapshot.getPeople()) {
+            buffer.putInt(person.getGeneration() == null ? -1 : person.getGeneration());
+        }
+        for (TreeSnapshot.PersonEntry person : snapshot.getPeople()) {
+            buffer.putInt(person.getNames().size());
+        }
+        for (int i = 0; i < names.size(); i++) {
+            buffer.putInt(names.get(i));
+        }
+
+        buffer.putInt(families);
+        for (TreeSnapshot.FamilyEntry family : snapshot.getFamilies()) {
+            buffer.putInt(family.getId());
+        }
+        for (TreeSnapshot.FamilyEntry family : snapshot.getFamilies()) {
+            buffer.putInt(family.getParentIds().size());
+        }
+        for (TreeSnapshot.FamilyEntry family : snapshot.getFamilies()) {
+            for (Integer parentId : family.getParentIds()) {
+                buffer.putInt(parentId);
+            }
+        }
+        for (TreeSnapshot.FamilyEntry family : snapshot.getFamilies()) {
+            buffer.putInt(family.getChildrenIds().size());
+        }
+        for (TreeSnapshot.FamilyEntry family : snapshot.getFamilies()) {
+            for (Integer childId : family.getChildrenIds()) {
+                buffer.putInt(childId);
+            }
+        }
+        output.write(buffer.array());
+        output.flush();
+    }
+}
@@ -0,0 +1,353 @@
+package com.familyships.FamilyShips.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.familyships.FamilyShips.graph.IntList;
+
+// Names of the people of one tree, for finding people as the user types.
+//
+// Every name is split into terms which are lowercased and stripped of diacritics
+// ("Łucja-Żaneta" is found as "lucja" and "zaneta"), and the terms are kept in a trie
+// with the people that have them. A word of the query matches a term when it is a
+// prefix of the term with at most a few typos (letters added, missing, replaced or
+// swapped), found by walking the trie with one row of the edit distance table per
+// node, so only the branches within reach of the query are visited.
+//
+// Kept up to date person by person with `setNames` and `remove`. Thread safe.
+public class NameIndex {
+    // A person that matched the query, `score` is lower for better matches: every
+    // word of the query adds 0 for an exact match, 1 for a prefix of a name, and 2
+    // for every typo.
+    public static class Hit {
+        private final int id;
+        private final List<String> names;
+        private final int score;
+
+        Hit(int id, List<String> names, int score) {
+            this.id = id;
+            this.names = names;
+            this.score = score;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public List<String> getNames() {
+            return names;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
+    private static class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        // Sorted.
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        // People with the term ending here, once for every time they have it. Null
+        // if no term ends here.
+        IntList people;
+
+        Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, keys.length - index);
+            newKeys[index] = key;
+            newChildren[index] = new Node();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[index];
+        }
+    }
+
+    private static final Map<Character, String> LETTERS_WITHOUT_DECOMPOSITION = Map.of('ł', "l", 'ø', "o",
+            'đ', "d", 'ß', "ss", 'æ', "ae", 'œ', "oe", 'þ', "th", 'ı', "i");
+
+    private final Node root = new Node();
+    private int termCount = 0;
+    // People are numbered densely (slots of removed people are reused) so that the
+    // searches can keep their scores in arrays.
+    private final Map<Integer, Integer> slots = new HashMap<Integer, Integer>();
+    private final IntList slotPersonIds = new IntList();
+    private final List<List<String>> slotNames = new ArrayList<List<String>>();
+    private final IntList freeSlots = new IntList();
+
+    // Scratch space of the searches, indexed by slot: the best score (plus one, 0 if
+    // not reached) of the current word and the total of the words so far.
+    private int[] wordScores = new int[0];
+    private int[] totals = new int[0];
+    private final IntList reached = new IntList();
+
+    // Splits the text into lowercase terms without diacritics.
+    public static List<String> terms(String text) {
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        List<String> terms = new ArrayList<String>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            String replacement = LETTERS_WITHOUT_DECOMPOSITION.get(c);
+            if (replacement != null) {
+                term.append(replacement);
+            } else if (Character.isLetterOrDigit(c)) {
+                term.append(c);
+            } else if (term.length() > 0) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        if (term.length() > 0) {
+            terms.add(term.toString());
+        }
+        return terms;
+    }
+
+    // How many typos a word of the query of the given length may have.
+    static int maxEdits(int length) {
+        if (length < 3) {
+            return 0;
+        }
+        return length < 6 ? 1 : 2;
+    }
+
+    // Replaces the names of the person, adding them if they are not in the index.
+    public synchronized void setNames(int personId, List<String> personNames) {
+        remove(personId);
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = slotPersonIds.size();
+            slotPersonIds.add(personId);
+            slotNames.add(List.copyOf(personNames));
+        } else {
+            slot = freeSlots.last();
+            freeSlots.removeLast();
+            slotPersonIds.set(slot, personId);
+            slotNames.set(slot, List.copyOf(personNames));
+        }
+        slots.put(personId, slot);
+        for (String name : personNames) {
+            for (String term : terms(name)) {
+                Node node = root;
+                for (int i = 0; i < term.length(); i++) {
+                    node = node.addChild(term.charAt(i));
+                }
+                if (node.people == null) {
+                    node.people = new IntList(1);
+                    termCount++;
+                }
+                node.people.add(slot);
+            }
+        }
+    }
+
+    public synchronized void remove(int personId) {
+        Integer slot = slots.remove(personId);
+        if (slot == null) {
+            return;
+        }
+        for (String name : slotNames.get(slot)) {
+            for (String term : terms(name)) {
+                Node node = root;
+                for (int i = 0; i < term.length() && node != null; i++) {
+                    node = node.child(term.charAt(i));
+                }
+                if (node != null && node.people != null) {
+                    node.people.removeFirst(slot);
+                    if (node.people.isEmpty()) {
+                        // The nodes stay, so the next person with that name doesn't
+                        // have to add them again.
+                        node.people = null;
+                        termCount--;
+                    }
+                }
+            }
+        }
+        slotNames.set(slot, null);
+        freeSlots.add(slot);
+    }
+
+    public synchronized int peopleCount() {
+        return slots.size();
+    }
+
+    // Number of different terms in the names.
+    public synchronized int termCount() {
+        return termCount;
+    }
+
+    // People whose names match every word of the query, best first (ties by id), at
+    // most `limit` of them.
+    public synchronized List<Hit> search(String query, int limit) {
+        List<String> words = terms(query);
+        if (words.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        if (wordScores.length < slotPersonIds.size()) {
+            wordScores = new int[slotPersonIds.size() * 2];
+            totals = new int[slotPersonIds.size() * 2];
+        }
+        IntList candidates = null;
+        for (String word : words) {
+            reached.clear();
+            new Walk(word).start();
+            if (candidates == null) {
+                candidates = new IntList(reached.size());
+                for (int i = 0; i < reached.size(); i++) {
+                    totals[reached.get(i)] = wordScores[reached.get(i)];
+                    candidates.add(reached.get(i));
+                }
+            } else {
+                IntList remaining = new IntList();
+                for (int i = 0; i < candidates.size(); i++) {
+                    int slot = candidates.get(i);
+                    if (wordScores[slot] > 0) {
+                        totals[slot] += wordScores[slot] - 1;
+                        remaining.add(slot);
+                    } else {
+                        totals[slot] = 0;
+                    }
+                }
+                candidates = remaining;
+            }
+            for (int i = 0; i < reached.size(); i++) {
+                wordScores[reached.get(i)] = 0;
+            }
+        }
+
+        Comparator<Integer> better = Comparator.<Integer>comparingInt(slot -> totals[slot])
+                .thenComparingInt(slot -> slotPersonIds.get(slot));
+        // The worst of the best `limit` ones on top.
+        PriorityQueue<Integer> best = new PriorityQueue<Integer>(better.reversed());
+        for (int i = 0; i < candidates.size(); i++) {
+            int slot = candidates.get(i);
+            if (best.size() < limit) {
+                best.add(slot);
+            } else if (better.compare(slot, best.peek()) < 0) {
+                best.poll();
+                best.add(slot);
+            }
+        }
+        List<Hit> hits = new ArrayList<Hit>(best.size());
+        while (!best.isEmpty()) {
+            int slot = best.poll();
+            hits.add(new Hit(slotPersonIds.get(slot), slotNames.get(slot), totals[slot] - 1));
+        }
+        for (int i = 0; i < candidates.size(); i++) {
+            totals[candidates.get(i)] = 0;
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    // Walk of the trie for one word of the query, collecting the best score of every
+    // person reached in `wordScores` and `reached`.
+    private class Walk {
+        private final String word;
+        private final int maxEdits;
+
+        Walk(String word) {
+            this.word = word;
+            this.maxEdits = maxEdits(word.length());
+        }
+
+        void start() {
+            // Row `i` of the table holds the distance between the first `i` letters
+            // of the word and the letters on the path to the node.
+            int[] row = new int[word.length() + 1];
+            for (int i = 0; i <= word.length(); i++) {
+                row[i] = i;
+            }
+            for (int i = 0; i < root.keys.length; i++) {
+                visit(root.children[i], root.keys[i], (char) 0, row, null, row[word.length()]);
+            }
+        }
+
+        // `closest` is the fewest typos between the whole word and the path so far,
+        // the word matches everything below the node with that many typos.
+        private void visit(Node node, char key, char parentKey, int[] parentRow, int[] grandparentRow,
+                int closest) {
+            int length = word.length();
+            int[] row = new int[length + 1];
+            row[0] = parentRow[0] + 1;
+            int smallest = row[0];
+            for (int i = 1; i <= length; i++) {
+                char letter = word.charAt(i - 1);
+                int distance = Math.min(Math.min(row[i - 1], parentRow[i]) + 1,
+                        parentRow[i - 1] + (letter == key ? 0 : 1));
+                // Two letters swapped count as one typo.
+                if (grandparentRow != null && i > 1 && letter == parentKey && word.charAt(i - 2) == key) {
+                    distance = Math.min(distance, grandparentRow[i - 2] + 1);
+                }
+                row[i] = distance;
+                smallest = Math.min(smallest, distance);
+            }
+            closest = Math.min(closest, row[length]);
+
+            if (smallest > maxEdits) {
+                // Going deeper only gets further away from the word.
+                if (closest <= maxEdits) {
+                    collect(node, 2 * closest + 1);
+                }
+                return;
+            }
+            if (node.people != null && closest <= maxEdits) {
+                // The term itself is the word (with typos) or longer than it.
+                add(node.people, 2 * closest + (row[length] == closest ? 0 : 1));
+            }
+            for (int i = 0; i < node.keys.length; i++) {
+                visit(node.children[i], node.keys[i], key, row, parentRow, closest);
+            }
+        }
+
+        // Everyone with a term below the node.
+        private void collect(Node node, int score) {
+            if (node.people != null) {
+                add(node.people, score);
+            }
+            for (Node child : node.children) {
+                collect(child, score);
+            }
+        }
+
+        private void add(IntList people, int score) {
+            for (int i = 0; i < people.size(); i++) {
+                int slot = people.get(i);
+                if (wordScores[slot] == 0) {
+                    reached.add(slot);
+                    wordScores[slot] = score + 1;
+                } else {
+                    wordScores[slot] = Math.min(wordScores[slot], score + 1);
+                }
+            }
+        }
+    }
+}
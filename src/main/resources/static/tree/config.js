@@ -3,4 +3,7 @@
 export const test = false;
 // When this is true, certain log lines will appear on the console.
 export const debug = false;
+// When this is true the tree is fetched in the compact binary format (see
+// `TreeSnapshotConverter` on the server) instead of JSON.
+export const compactSnapshots = false;
 //# sourceMappingURL=config.js.map
\ No newline at end of file
@@ -5,3 +5,6 @@ export const test: boolean = false;
 // When this is true, certain log lines will appear on the console.
 export const debug: boolean = false;
 
+// When this is true the tree is fetched in the compact binary format (see
+// `TreeSnapshotConverter` on the server) instead of JSON.
+export const compactSnapshots: boolean = false;
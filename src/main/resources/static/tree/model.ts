@@ -10,6 +10,9 @@ export interface Person {
     childOfFamiliesIds: Array<FamilyId>
     parentOfFamilyIds: Array<FamilyId>
     names: Array<string>
+    // Maintained by the server, 0 for people without parents, otherwise one more than
+    // the highest generation of the parents. Not kept up to date by the fakes.
+    generation?: number
 }
 
 export interface Family {
@@ -21,9 +24,93 @@ export interface Family {
 export let families: Record<FamilyId, Family> = {};
 export let people: Record<PersonId, Person> = {};
 
+// Revision of the tree that `people` and `families` reflect. Undefined until the first `reload()`.
+export let revision: number | undefined = undefined;
+
 export function reset() {
     families = {};
     people = {};
+    revision = undefined;
+}
+
+interface Snapshot {
+    revision: number
+    people: Iterable<Person>
+    families: Iterable<Family>
+}
+
+const COMPACT_SNAPSHOT = "application/vnd.familyships.tree";
+
+// Reads a snapshot in the binary format of `TreeSnapshotConverter`: columns of big endian
+// 32 bit integers and a table of the names. The families of every person are filled in
+// from the parents and children of the families.
+export function decodeSnapshot(buffer: ArrayBuffer): Snapshot {
+    const view = new DataView(buffer);
+    const decoder = new TextDecoder();
+    let offset = 0;
+    const int = () => { offset += 4; return view.getInt32(offset - 4); };
+    const ints = (count: number) => {
+        const values = new Array<number>(count);
+        for (let i = 0; i < count; i++) {
+            values[i] = int();
+        }
+        return values;
+    };
+    const sum = (values: Array<number>) => values.reduce((a, b) => a + b, 0);
+
+    if (int() != 1) {
+        throw new Error("Unknown snapshot version");
+    }
+    const revisionHigh = int();
+    const revision = revisionHigh * 2 ** 32 + view.getUint32(offset);
+    offset += 4;
+    const strings = new Array<string>(int());
+    for (let i = 0; i < strings.length; i++) {
+        const length = int();
+        strings[i] = decoder.decode(new Uint8Array(buffer, offset, length));
+        offset += length;
+    }
+
+    const personIds = ints(int());
+    const generations = ints(personIds.length);
+    const nameCounts = ints(personIds.length);
+    const names = ints(sum(nameCounts));
+    const snapshotPeople: Record<PersonId, Person> = {};
+    let name = 0;
+    for (let i = 0; i < personIds.length; i++) {
+        snapshotPeople[personIds[i]] = {
+            id: personIds[i], childOfFamiliesIds: [], parentOfFamilyIds: [],
+            names: names.slice(name, name + nameCounts[i]).map(index => strings[index]),
+            generation: generations[i] < 0 ? undefined : generations[i]
+        };
+        name += nameCounts[i];
+    }
+
+    const familyIds = ints(int());
+    const parentCounts = ints(familyIds.length);
+    const parentIds = ints(sum(parentCounts));
+    const childrenCounts = ints(familyIds.length);
+    const childrenIds = ints(sum(childrenCounts));
+    const snapshotFamilies: Array<Family> = [];
+    let parent = 0;
+    let child = 0;
+    for (let i = 0; i < familyIds.length; i++) {
+        const family: Family = {
+            id: familyIds[i],
+            parentIds: parentIds.slice(parent, parent + parentCounts[i]),
+            childrenIds: childrenIds.slice(child, child + childrenCounts[i])
+        };
+        parent += parentCounts[i];
+        child += childrenCounts[i];
+        for (const parentId of family.parentIds) {
+            snapshotPeople[parentId]?.parentOfFamilyIds.push(family.id);
+        }
+        for (const childId of family.childrenIds) {
+            snapshotPeople[childId]?.childOfFamiliesIds.push(family.id);
+        }
+        snapshotFamilies.push(family);
+    }
+    return { revision: revision, people: Object.values(snapshotPeople), families: snapshotFamilies };
 }
 
 // TODO: It would be nice if the server would be able to stream updates, so that people can
@@ -31,14 +118,17 @@ export function reset() {
 export async function reload() {
     if (!config.test) {
         reset();
-        let peopleData: Iterable<Person> = await fetch("/model/people").then(data => data.json());
-        let familiesData: Iterable<Family> = await fetch("/model/families").then(data => data.json());
-        for (const family of familiesData) {
+        let snapshot: Snapshot = config.compactSnapshots ?
+            await fetch("/model/snapshot", { headers: { 'Accept': COMPACT_SNAPSHOT } })
+                .then(data => data.arrayBuffer()).then(decodeSnapshot) :
+            await fetch("/model/snapshot").then(data => data.json());
+        for (const family of snapshot.families) {
             families[family.id] = family;
         }
-        for (const person of peopleData) {
+        for (const person of snapshot.people) {
             people[person.id] = person;
         }
+        revision = snapshot.revision;
     }
 
     if(config.debug) {
@@ -49,6 +139,74 @@ export async function reload() {
     }
 }
 
+export interface TreeChange {
+    revision: number
+    kind: "PERSON_ADDED" | "PERSON_REMOVED" | "PERSON_RENAMED" | "FAMILY_ADDED" | "FAMILY_REMOVED" |
+        "CHILD_ATTACHED" | "CHILD_DETACHED" | "PARENT_ATTACHED" | "PARENT_DETACHED"
+    personId?: PersonId
+    familyId?: FamilyId
+    spaceSeparatedNames?: string
+}
+
+// Brings `people` and `families` up to date by only fetching what changed since the last
+// `reload()` or `sync()`. Falls back to `reload()` if the server can't tell what changed.
+export async function sync() {
+    if (config.test) {
+        return;
+    }
+    if (revision == undefined) {
+        return await reload();
+    }
+    let changes: { revision: number, resync: boolean, changes: Array<TreeChange> } =
+        await fetch("/model/changes?" + new URLSearchParams({ 'since': "" + revision })).then(data => data.json());
+    if (changes.resync) {
+        return await reload();
+    }
+    for (const change of changes.changes) {
+        applyChange(change);
+    }
+    revision = changes.revision;
+
+    if(config.debug) {
+        console.log("Synced to revision " + revision + " with " + changes.changes.length + " changes");
+    }
+}
+
+// Changes may already be reflected locally (e.g. the snapshot was taken while they were being made),
+// so applying one has to be idempotent.
+function applyChange(change: TreeChange) {
+    switch (change.kind) {
+        case "PERSON_ADDED":
+            if (people[change.personId] == undefined) {
+                people[change.personId] = {
+                    id: change.personId, names: change.spaceSeparatedNames.split(' '),
+                    childOfFamiliesIds: [], parentOfFamilyIds: []
+                };
+            }
+            break;
+        case "PERSON_REMOVED": fakeDeletePerson(change.personId); break;
+        case "PERSON_RENAMED": fakeSetNames(change.personId, change.spaceSeparatedNames); break;
+        case "FAMILY_ADDED":
+            if (families[change.familyId] == undefined) {
+                families[change.familyId] = { id: change.familyId, childrenIds: [], parentIds: [] };
+            }
+            break;
+        case "FAMILY_REMOVED": fakeDeleteFamily(change.familyId); break;
+        case "CHILD_ATTACHED":
+            if (families[change.familyId] != undefined && !familyChildren(change.familyId).includes(change.personId)) {
+                fakeAttachChild(change.familyId, change.personId);
+            }
+            break;
+        case "CHILD_DETACHED": fakeDetachChild(change.familyId, change.personId); break;
+        case "PARENT_ATTACHED":
+            if (families[change.familyId] != undefined && !familyParents(change.familyId).includes(change.personId)) {
+                fakeAttachParent(change.familyId, change.personId);
+            }
+            break;
+        case "PARENT_DETACHED": fakeDetachParent(change.familyId, change.personId); break;
+    }
+}
+
 // Note that this must be followed by a call to `reload()` in production and call to `recalculate()` in test mode.
 export async function newPerson(spaceSeparatedNames: string): Promise<PersonId> {
     if(config.debug) {
@@ -197,6 +355,41 @@ export async function setNames(personId: PersonId, spaceSeparatedNames: string):
     }).then(data => data.json());
 }
 
+// One step of `batch()`, see `BatchOperation.java`. `op` is the name of the endpoint and
+// new people and families can be named with `ref` (anything but a number), so that later
+// steps can use the ref in place of an id.
+export interface BatchOperation {
+    op: "new_person" | "delete_person" | "new_family" | "delete_family" | "attach_child" |
+        "detach_child" | "attach_parent" | "detach_parent" | "set_names"
+    ref?: string
+    personId?: PersonId | string
+    familyId?: FamilyId | string
+    childId?: PersonId | string
+    parentId?: PersonId | string
+    spaceSeparatedNames?: string
+}
+
+export interface BatchResult {
+    applied: boolean
+    failedOperation?: number
+    ids: Record<string, number>
+}
+
+// Applies all the operations in one request and one transaction. Either all of them are applied or none.
+export async function batch(operations: Array<BatchOperation>): Promise<BatchResult> {
+    if(config.debug) {
+        console.log("batch " + JSON.stringify(operations));
+    }
+    if(config.test) { return fakeBatch(operations); }
+    return await fetch("/model/batch", {
+        method: 'POST',
+        headers: {
+            'Content-Type': 'application/json'
+        },
+        body: JSON.stringify(operations)
+    }).then(data => data.json());
+}
+
 // -------------------------- Utility functions to conveniently access the data prepared in the section above --------------------------
 export function familyChildren(familyId: FamilyId): Array<PersonId> {
     return families[familyId].childrenIds;
@@ -391,4 +584,29 @@ export function fakeSetNames(personId: PersonId, spaceSeparatedNames: string) :
     }
     people[personId].names = spaceSeparatedNames.split(' ');
     return true;
+}
+
+// Unlike the backend, this doesn't roll back the operations applied before a failing one.
+export function fakeBatch(operations: Array<BatchOperation>) : BatchResult {
+    let ids: Record<string, number> = {};
+    const resolve = (id: number | string) => (typeof id == "string" && id in ids) ? ids[id] : +id;
+    for (let i = 0; i < operations.length; i++) {
+        const operation = operations[i];
+        let applied = true;
+        switch (operation.op) {
+            case "new_person": ids[operation.ref] = fakeNewPerson(operation.spaceSeparatedNames); break;
+            case "delete_person": applied = fakeDeletePerson(resolve(operation.personId)); break;
+            case "new_family": ids[operation.ref] = fakeNewFamily(); break;
+            case "delete_family": applied = fakeDeleteFamily(resolve(operation.familyId)); break;
+            case "attach_child": applied = fakeAttachChild(resolve(operation.familyId), resolve(operation.childId)); break;
+            case "detach_child": applied = fakeDetachChild(resolve(operation.familyId), resolve(operation.childId)); break;
+            case "attach_parent": applied = fakeAttachParent(resolve(operation.familyId), resolve(operation.parentId)); break;
+            case "detach_parent": applied = fakeDetachParent(resolve(operation.familyId), resolve(operation.parentId)); break;
+            case "set_names": applied = fakeSetNames(resolve(operation.personId), operation.spaceSeparatedNames); break;
+        }
+        if (!applied) {
+            return { applied: false, failedOperation: i, ids: {} };
+        }
+    }
+    return { applied: true, ids: ids };
 }
\ No newline at end of file
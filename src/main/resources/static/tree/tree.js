@@ -66,7 +66,7 @@ let familyNodes = [];
 let parentLinks = [];
 let childrenLinks = [];
 async function updateData() {
-    await model.reload();
+    await model.sync();
     layout.recalculate();
     familyNodes = [];
     for (const familyId in model.families) {
@@ -527,8 +527,9 @@ export function updateGraphics() {
             updateSelectionGraphics();
         }));
         familyAddChildButton.on("click", async (event, d) => {
-            let childId = await model.newPerson("Child");
-            await model.attachChild(d, childId);
+            await model.batch([
+                { op: "new_person", ref: "child", spaceSeparatedNames: "Child" },
+                { op: "attach_child", familyId: d, childId: "child" }]);
             await updateAll();
         });
         let familyAddParentButton = familyHook.append("g")
@@ -566,8 +567,9 @@ export function updateGraphics() {
             updateSelectionGraphics();
         }));
         familyAddParentButton.on("click", async (event, d) => {
-            let childId = await model.newPerson("Parent");
-            await model.attachParent(d, childId);
+            await model.batch([
+                { op: "new_person", ref: "parent", spaceSeparatedNames: "Parent" },
+                { op: "attach_parent", familyId: d, parentId: "parent" }]);
             await updateAll();
         });
         return familyHook;
@@ -674,10 +676,11 @@ export function updateGraphics() {
             .attr("width", () => buttonSize.width)
             .attr("height", () => buttonSize.height);
         personAddParentButton.on("click", async (event, d) => {
-            let familyId = await model.newFamily();
-            let parent = await model.newPerson("Parent");
-            await model.attachParent(familyId, parent);
-            await model.attachChild(familyId, d);
+            await model.batch([
+                { op: "new_family", ref: "family" },
+                { op: "new_person", ref: "parent", spaceSeparatedNames: "Parent" },
+                { op: "attach_parent", familyId: "family", parentId: "parent" },
+                { op: "attach_child", familyId: "family", childId: d }]);
             await updateAll();
         });
         personAddParentButton.call(d3.drag().on("start", (event, d) => {
@@ -727,10 +730,11 @@ export function updateGraphics() {
             updateSelectionGraphics();
         }));
         personAddPartnerButton.on("click", async (event, d) => {
-            let familyId = await model.newFamily();
-            let partner = await model.newPerson("Partner");
-            await model.attachParent(familyId, partner);
-            await model.attachParent(familyId, d);
+            await model.batch([
+                { op: "new_family", ref: "family" },
+                { op: "new_person", ref: "partner", spaceSeparatedNames: "Partner" },
+                { op: "attach_parent", familyId: "family", parentId: "partner" },
+                { op: "attach_parent", familyId: "family", parentId: d }]);
             await updateAll();
         });
         let personSaveChangedNameButton = personHook.append("g")
@@ -785,10 +789,11 @@ export function updateGraphics() {
             updateSelectionGraphics();
         }));
         personAddChildButton.on("click", async (event, d) => {
-            let familyId = await model.newFamily();
-            let childId = await model.newPerson("Child");
-            await model.attachParent(familyId, d);
-            await model.attachChild(familyId, childId);
+            await model.batch([
+                { op: "new_family", ref: "family" },
+                { op: "new_person", ref: "child", spaceSeparatedNames: "Child" },
+                { op: "attach_parent", familyId: "family", parentId: d },
+                { op: "attach_child", familyId: "family", childId: "child" }]);
             await updateAll();
         });
         return personHook;
@@ -79,7 +79,7 @@ let parentLinks: Array<{ parentId: number, familyId: number }> = [];
 let childrenLinks: Array<{ childId: number, familyId: number }> = [];
 
 async function updateData() {
-    await model.reload();
+    await model.sync();
     layout.recalculate();
 
     familyNodes = [];
@@ -673,8 +673,9 @@ export function updateGraphics() {
                 }));
 
                 familyAddChildButton.on("click", async (event, d) => {
-                    let childId = await model.newPerson("Child");
-                    await model.attachChild(d, childId);
+                    await model.batch([
+                        { op: "new_person", ref: "child", spaceSeparatedNames: "Child" },
+                        { op: "attach_child", familyId: d, childId: "child" }]);
                     await updateAll();
                 }
                 );
@@ -717,8 +718,9 @@ export function updateGraphics() {
                 }));
 
                 familyAddParentButton.on("click", async (event, d) => {
-                    let childId = await model.newPerson("Parent");
-                    await model.attachParent(d, childId);
+                    await model.batch([
+                        { op: "new_person", ref: "parent", spaceSeparatedNames: "Parent" },
+                        { op: "attach_parent", familyId: d, parentId: "parent" }]);
                     await updateAll();
                 }
                 );
@@ -851,10 +853,11 @@ export function updateGraphics() {
 
 
                 personAddParentButton.on("click", async (event, d) => {
-                    let familyId = await model.newFamily();
-                    let parent = await model.newPerson("Parent");
-                    await model.attachParent(familyId, parent);
-                    await model.attachChild(familyId, d);
+                    await model.batch([
+                        { op: "new_family", ref: "family" },
+                        { op: "new_person", ref: "parent", spaceSeparatedNames: "Parent" },
+                        { op: "attach_parent", familyId: "family", parentId: "parent" },
+                        { op: "attach_child", familyId: "family", childId: d }]);
                     await updateAll();
                 }
                 );
@@ -912,10 +915,11 @@ export function updateGraphics() {
                 }));
 
                 personAddPartnerButton.on("click", async (event, d) => {
-                    let familyId = await model.newFamily();
-                    let partner = await model.newPerson("Partner");
-                    await model.attachParent(familyId, partner);
-                    await model.attachParent(familyId, d);
+                    await model.batch([
+                        { op: "new_family", ref: "family" },
+                        { op: "new_person", ref: "partner", spaceSeparatedNames: "Partner" },
+                        { op: "attach_parent", familyId: "family", parentId: "partner" },
+                        { op: "attach_parent", familyId: "family", parentId: d }]);
                     await updateAll();
                 }
                 );
@@ -980,10 +984,11 @@ export function updateGraphics() {
                 }));
 
                 personAddChildButton.on("click", async (event, d) => {
-                    let familyId = await model.newFamily();
-                    let childId = await model.newPerson("Child");
-                    await model.attachParent(familyId, d);
-                    await model.attachChild(familyId, childId);
+                    await model.batch([
+                        { op: "new_family", ref: "family" },
+                        { op: "new_person", ref: "child", spaceSeparatedNames: "Child" },
+                        { op: "attach_parent", familyId: "family", parentId: d },
+                        { op: "attach_child", familyId: "family", childId: "child" }]);
                     await updateAll();
                 }
                 );
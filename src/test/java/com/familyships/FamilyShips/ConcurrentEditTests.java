@@ -0,0 +1,209 @@
+package com.familyships.FamilyShips;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.familyships.FamilyShips.metrics.StatementCounter;
+import com.familyships.FamilyShips.model.Tree;
+import com.familyships.FamilyShips.model.TreeChange;
+import com.familyships.FamilyShips.model.TreeChangeLog;
+import com.familyships.FamilyShips.model.TreeRepository;
+import com.familyships.FamilyShips.model.TreeSnapshot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Many editors modifying the same tree at the same time, through `ConflictRetry` like
+// the /model/* endpoints do.
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class ConcurrentEditTests {
+    private static final int EDITORS = 8;
+
+    @Autowired
+    private ModelService modelService;
+
+    @Autowired
+    private ConflictRetry conflictRetry;
+
+    @Autowired
+    private TreeRepository treeRepository;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private TreeChangeLog treeChangeLog;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Runs the edits at the same time, each on its own thread, and returns their
+    // results in order.
+    private <T> List<T> concurrently(List<Callable<T>> edits) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(edits.size());
+        try {
+            CyclicBarrier start = new CyclicBarrier(edits.size());
+            List<Future<T>> futures = new ArrayList<Future<T>>();
+            for (Callable<T> edit : edits) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return edit.call();
+                }));
+            }
+            List<T> results = new ArrayList<T>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private TreeSnapshot.FamilyEntry family(Integer treeId, Integer familyId) {
+        TreeSnapshot snapshot = modelService.snapshot(treeId, modelService.revision(treeId));
+        return snapshot.getFamilies().stream().filter(family -> family.getId().equals(familyId)).findFirst()
+                .orElse(null);
+    }
+
+    @Test
+    void testConcurrentEditsAreAllApplied() throws Exception {
+        Integer treeId = treeRepository.save(new Tree()).getId();
+        Integer familyId = modelService.newFamily(treeId);
+        conflictRetry.run(() -> modelService.attachParent(treeId, familyId,
+                modelService.newPerson(treeId, List.of("Mother"))));
+        long revision = modelService.revision(treeId);
+
+        int editsPerEditor = 10;
+        List<Callable<List<Integer>>> editors = new ArrayList<Callable<List<Integer>>>();
+        for (int i = 0; i < EDITORS; i++) {
+            editors.add(() -> {
+                List<Integer> childIds = new ArrayList<Integer>();
+                for (int j = 0; j < editsPerEditor; j++) {
+                    Integer childId = conflictRetry.run(() -> modelService.newPerson(treeId, List.of("Child")));
+                    assertTrue(conflictRetry.run(() -> modelService.attachChild(treeId, familyId, childId)));
+                    childIds.add(childId);
+                }
+                return childIds;
+            });
+        }
+        Set<Integer> childIds = new HashSet<Integer>();
+        concurrently(editors).forEach(childIds::addAll);
+
+        assertEquals(childIds, new HashSet<Integer>(family(treeId, familyId).getChildrenIds()));
+        // One revision per edit, each with its own change.
+        assertEquals(revision + 2 * EDITORS * editsPerEditor, modelService.revision(treeId));
+        List<TreeChange> changes = modelService.changes(treeId, revision).getChanges();
+        assertEquals(2 * EDITORS * editsPerEditor, changes.size());
+        for (int i = 0; i < changes.size(); i++) {
+            assertEquals(revision + i + 1, changes.get(i).getRevision());
+        }
+    }
+
+    @Test
+    void testConcurrentLinksDontMakeLoops() throws Exception {
+        Integer treeId = treeRepository.save(new Tree()).getId();
+        for (int round = 0; round < 10; round++) {
+            Integer first = modelService.newPerson(treeId, List.of("First"));
+            Integer second = modelService.newPerson(treeId, List.of("Second"));
+            Integer firstFamily = modelService.newFamily(treeId);
+            modelService.attachParent(treeId, firstFamily, first);
+            Integer secondFamily = modelService.newFamily(treeId);
+            modelService.attachParent(treeId, secondFamily, second);
+
+            // Each link alone is fine, both would make them their own ancestors.
+            List<Boolean> attached = concurrently(List.of(
+                    () -> conflictRetry.run(() -> modelService.attachChild(treeId, firstFamily, second)),
+                    () -> conflictRetry.run(() -> modelService.attachChild(treeId, secondFamily, first))));
+            assertTrue(attached.get(0) ^ attached.get(1));
+        }
+    }
+
+    @Test
+    void testEmptyFamilyRemovalRacesWithAttach() throws Exception {
+        Integer treeId = treeRepository.save(new Tree()).getId();
+        for (int round = 0; round < 10; round++) {
+            Integer familyId = modelService.newFamily(treeId);
+            Integer childId = modelService.newPerson(treeId, List.of("Child"));
+
+            // `TombstoneSweeper` removes the family it found empty, unless the child is
+            // attached to it first.
+            List<Boolean> results = concurrently(List.of(
+                    () -> conflictRetry.run(() -> modelService.removeEmptyFamilies(treeId, Map.of(familyId, 0L)) == 1),
+                    () -> conflictRetry.run(() -> modelService.attachChild(treeId, familyId, childId))));
+            assertTrue(results.get(0) ^ results.get(1));
+            TreeSnapshot.FamilyEntry family = family(treeId, familyId);
+            if (results.get(1)) {
+                assertEquals(List.of(childId), List.copyOf(family.getChildrenIds()));
+            } else {
+                assertEquals(null, family);
+            }
+        }
+    }
+
+    @Test
+    void testLosingTransactionIsRetried() throws Exception {
+        Integer treeId = treeRepository.save(new Tree()).getId();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger attempts = new AtomicInteger();
+
+        Integer personId = conflictRetry.run(() -> transactionTemplate.execute(status -> {
+            Integer id = modelService.newPerson(treeId, List.of("Slow"));
+            if (attempts.incrementAndGet() == 1) {
+                // Another editor commits while this transaction is still open.
+                try {
+                    concurrently(List.<Callable<Integer>>of(() -> modelService.newPerson(treeId, List.of("Fast"))));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return id;
+        }));
+        assertEquals(2, attempts.get());
+        assertEquals(2, modelService.revision(treeId));
+        assertEquals(personId, modelService.changes(treeId, 1).getChanges().get(0).getPersonId());
+    }
+
+    @Test
+    void testConflictAfterMaxAttempts() {
+        ConflictRetry retry = new ConflictRetry(1, 3, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(retry, "statementCounter", statementCounter);
+        ReflectionTestUtils.setField(retry, "treeChangeLog", treeChangeLog);
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(ConflictRetry.ConflictException.class, () -> retry.run(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("Lost the race");
+        }));
+        assertEquals(3, attempts.get());
+        assertEquals(HttpStatus.CONFLICT,
+                AnnotationUtils.findAnnotation(ConflictRetry.ConflictException.class, ResponseStatus.class).value());
+        assertFalse(retry.run(() -> false));
+    }
+}
@@ -0,0 +1,201 @@
+package com.familyships.FamilyShips;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.familyships.FamilyShips.graph.IntList;
+import com.familyships.FamilyShips.graph.TreeGraph;
+import com.familyships.FamilyShips.model.Family;
+import com.familyships.FamilyShips.model.FamilyChild;
+import com.familyships.FamilyShips.model.FamilyChildKey;
+import com.familyships.FamilyShips.model.FamilyParent;
+import com.familyships.FamilyShips.model.FamilyParentKey;
+import com.familyships.FamilyShips.model.Person;
+
+// Family tree of the descendants of one couple, for the benchmarks in `jmh`.
+//
+// Every couple has on average `branching` children (between 1 and
+// `2 * branching - 1`). In every generation but the last, every child gets a partner
+// from outside of the tree and has children with them, and with probability
+// `remarriageRate` a second partner with children of their own (half siblings of the
+// first ones). People and families are numbered from 1 in the order they are
+// created, so parents always come before their children.
+//
+// The same tree can be taken as linked `Person`/`Family` entities (not saved), as a
+// `TreeGraph`, or as `/model/batch` operations to create it in a database.
+public class FamilyTreeGenerator {
+    private static final String[] GIVEN_NAMES = { "Anna", "Jan", "Maria", "Piotr", "Zofia", "Łukasz", "Ewa",
+            "Tomasz", "Agnieszka", "Paweł", "Małgorzata", "Krzysztof" };
+    private static final String[] FAMILY_NAMES = { "Nowak", "Kowalski", "Wiśniewski", "Wójcik", "Kowalczyk",
+            "Kamiński", "Lewandowski", "Zieliński" };
+
+    private final List<String> names = new ArrayList<String>();
+    private final IntList parentLinkFamilyIds = new IntList();
+    private final IntList parentLinkPersonIds = new IntList();
+    private final IntList childLinkFamilyIds = new IntList();
+    private final IntList childLinkPersonIds = new IntList();
+    private int families = 0;
+
+    public FamilyTreeGenerator(int generations, int branching, double remarriageRate, long seed) {
+        Random random = new Random(seed);
+        IntList generation = IntList.of(newPerson(random), newPerson(random));
+        int family = newFamily(generation.get(0), generation.get(1));
+        IntList couples = IntList.of(family);
+        for (int depth = 1; depth < generations; depth++) {
+            IntList children = new IntList();
+            for (int i = 0; i < couples.size(); i++) {
+                int count = 1 + random.nextInt(2 * branching - 1);
+                for (int j = 0; j < count; j++) {
+                    int child = newPerson(random);
+                    childLinkFamilyIds.add(couples.get(i));
+                    childLinkPersonIds.add(child);
+                    children.add(child);
+                }
+            }
+            couples = new IntList();
+            if (depth + 1 < generations) {
+                for (int i = 0; i < children.size(); i++) {
+                    couples.add(newFamily(children.get(i), newPerson(random)));
+                    if (random.nextDouble() < remarriageRate) {
+                        couples.add(newFamily(children.get(i), newPerson(random)));
+                    }
+                }
+            }
+        }
+    }
+
+    private int newPerson(Random random) {
+        names.add(GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)] + " "
+                + FAMILY_NAMES[random.nextInt(FAMILY_NAMES.length)]);
+        return names.size();
+    }
+
+    private int newFamily(int parentId, int partnerId) {
+        int familyId = ++families;
+        parentLinkFamilyIds.add(familyId);
+        parentLinkPersonIds.add(parentId);
+        parentLinkFamilyIds.add(familyId);
+        parentLinkPersonIds.add(partnerId);
+        return familyId;
+    }
+
+    public int peopleCount() {
+        return names.size();
+    }
+
+    public int familyCount() {
+        return families;
+    }
+
+    // Space separated names of the person with the given id.
+    public String names(int personId) {
+        return names.get(personId - 1);
+    }
+
+    // Entities with the ids of the generated tree and all the links set both ways, as
+    // loaded from the database.
+    public List<Person> people(Integer treeId) {
+        List<Person> people = new ArrayList<Person>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            Person person = new Person();
+            person.setId(i + 1);
+            person.setTreeId(treeId);
+            for (String name : names.get(i).split(" ")) {
+                person.addName(name);
+            }
+            people.add(person);
+        }
+        List<Family> families = new ArrayList<Family>(this.families);
+        for (int i = 0; i < this.families; i++) {
+            Family family = new Family();
+            family.setId(i + 1);
+            family.setTreeId(treeId);
+            families.add(family);
+        }
+        for (int i = 0; i < parentLinkFamilyIds.size(); i++) {
+            Family family = families.get(parentLinkFamilyIds.get(i) - 1);
+            Person parent = people.get(parentLinkPersonIds.get(i) - 1);
+            FamilyParent link = new FamilyParent(new FamilyParentKey(family.getId(), parent.getId()));
+            link.setFamily(family);
+            link.setParent(parent);
+            family.getParents().add(link);
+            parent.getParentOfFamily().add(link);
+        }
+        for (int i = 0; i < childLinkFamilyIds.size(); i++) {
+            Family family = families.get(childLinkFamilyIds.get(i) - 1);
+            Person child = people.get(childLinkPersonIds.get(i) - 1);
+            FamilyChild link = new FamilyChild(new FamilyChildKey(family.getId(), child.getId()));
+            link.setFamily(family);
+            link.setChild(child);
+            family.getChildren().add(link);
+            child.getChildOfFamily().add(link);
+        }
+        return people;
+    }
+
+    // The families the people are in.
+    public static List<Family> families(List<Person> people) {
+        Set<Family> families = new LinkedHashSet<Family>();
+        for (Person person : people) {
+            for (FamilyParent link : person.getParentOfFamily()) {
+                families.add(link.getFamily());
+            }
+        }
+        List<Family> result = new ArrayList<Family>(families);
+        result.sort(Comparator.comparing(Family::getId));
+        return result;
+    }
+
+    public TreeGraph graph(long revision) {
+        int[] personIds = new int[names.size()];
+        for (int i = 0; i < personIds.length; i++) {
+            personIds[i] = i + 1;
+        }
+        int[] familyIds = new int[families];
+        for (int i = 0; i < familyIds.length; i++) {
+            familyIds[i] = i + 1;
+        }
+        return new TreeGraph(revision, personIds, familyIds, parentLinkFamilyIds.toArray(),
+                parentLinkPersonIds.toArray(), childLinkFamilyIds.toArray(), childLinkPersonIds.toArray());
+    }
+
+    // Operations creating the tree with `/model/batch`, people named `p<id>` and
+    // families `f<id>` with the ids of the generated tree.
+    public List<BatchOperation> operations() {
+        List<BatchOperation> operations = new ArrayList<BatchOperation>();
+        for (int i = 0; i < names.size(); i++) {
+            BatchOperation operation = operation("new_person");
+            operation.setRef("p" + (i + 1));
+            operation.setSpaceSeparatedNames(names.get(i));
+            operations.add(operation);
+        }
+        for (int i = 0; i < families; i++) {
+            BatchOperation operation = operation("new_family");
+            operation.setRef("f" + (i + 1));
+            operations.add(operation);
+        }
+        for (int i = 0; i < parentLinkFamilyIds.size(); i++) {
+            BatchOperation operation = operation("attach_parent");
+            operation.setFamilyId("f" + parentLinkFamilyIds.get(i));
+            operation.setParentId("p" + parentLinkPersonIds.get(i));
+            operations.add(operation);
+        }
+        for (int i = 0; i < childLinkFamilyIds.size(); i++) {
+            BatchOperation operation = operation("attach_child");
+            operation.setFamilyId("f" + childLinkFamilyIds.get(i));
+            operation.setChildId("p" + childLinkPersonIds.get(i));
+            operations.add(operation);
+        }
+        return operations;
+    }
+
+    private static BatchOperation operation(String op) {
+        BatchOperation operation = new BatchOperation();
+        operation.setOp(op);
+        return operation;
+    }
+}
@@ -0,0 +1,164 @@
+package com.familyships.FamilyShips;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.jayway.jsonpath.JsonPath;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class GedcomTests {
+
+    // The family comes before some of its members to exercise forward references.
+    private static final String GEDCOM = """
+            0 HEAD
+            1 CHAR UTF-8
+            1 GEDC
+            2 VERS 5.5.1
+            0 @I1@ INDI
+            1 NAME John Paul /Smith/
+            1 FAMS @F1@
+            0 @F1@ FAM
+            1 HUSB @I1@
+            1 WIFE @I2@
+            1 CHIL @I3@
+            1 CHIL @I3@
+            1 CHIL @I9@
+            0 @I2@ INDI
+            1 NAME Mary /Brown/
+            1 NAME Maria /Braun/
+            0 @I3@ INDI
+            1 NAME Anna /Smith/
+            1 FAMC @F1@
+            0 TRLR
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private RequestPostProcessor login(String googleSub) {
+        return SecurityMockMvcRequestPostProcessors.oauth2Login()
+                .attributes(attributes -> attributes.put("sub", googleSub));
+    }
+
+    private String waitForImport(RequestPostProcessor user, String gedcom) throws Exception {
+        String job = mockMvc.perform(MockMvcRequestBuilders.multipart("/model/import")
+                .file(new MockMultipartFile("file", "tree.ged", "text/plain", gedcom.getBytes(StandardCharsets.UTF_8)))
+                .with(user))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String jobId = JsonPath.read(job, "$.id");
+        for (int i = 0; i < 100; i++) {
+            String status = mockMvc.perform(MockMvcRequestBuilders.get("/model/import_status").with(user)
+                    .param("jobId", jobId)).andReturn().getResponse().getContentAsString();
+            String state = JsonPath.read(status, "$.state");
+            if (state.equals("DONE") || state.equals("FAILED")) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Import did not finish");
+    }
+
+    @Test
+    void testImport() throws Exception {
+        RequestPostProcessor user = login("gedcom-import");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+
+        String status = waitForImport(user, GEDCOM);
+        assertEquals("DONE", JsonPath.read(status, "$.state"));
+        assertEquals(3, JsonPath.<Integer>read(status, "$.people"));
+        assertEquals(1, JsonPath.<Integer>read(status, "$.families"));
+        assertEquals(3, JsonPath.<Integer>read(status, "$.links"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people.length()").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people[0].names").value(
+                        Matchers.contains("John", "Paul", "Smith")))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people[1].names").value(
+                        Matchers.contains("Mary", "Brown")))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families[0].parentIds.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families[0].childrenIds.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people[0].generation").value(0))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people[2].generation").value(1));
+    }
+
+    @Test
+    void testImportStatusOfOtherUsersIsHidden() throws Exception {
+        RequestPostProcessor owner = login("gedcom-owner");
+        RequestPostProcessor stranger = login("gedcom-stranger");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(owner));
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(stranger));
+        String jobId = JsonPath.read(waitForImport(owner, GEDCOM), "$.id");
+
+        assertThrows(Exception.class,
+                () -> mockMvc.perform(MockMvcRequestBuilders.get("/model/import_status").with(stranger)
+                        .param("jobId", jobId)));
+    }
+
+    private String export(RequestPostProcessor user) throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/model/export.ged").with(user))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testExportRoundTrip() throws Exception {
+        RequestPostProcessor user = login("gedcom-export");
+        RequestPostProcessor copy = login("gedcom-export-copy");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(copy));
+        waitForImport(user, GEDCOM);
+
+        String gedcom = export(user);
+        assertTrue(gedcom.startsWith("0 HEAD\n"));
+        assertTrue(gedcom.endsWith("0 TRLR\n"));
+        assertTrue(gedcom.contains("1 NAME John Paul /Smith/\n"));
+        assertTrue(gedcom.contains("1 HUSB @I"));
+        assertTrue(gedcom.contains("1 WIFE @I"));
+
+        String status = waitForImport(copy, gedcom);
+        assertEquals(3, JsonPath.<Integer>read(status, "$.people"));
+        assertEquals(1, JsonPath.<Integer>read(status, "$.families"));
+        assertEquals(3, JsonPath.<Integer>read(status, "$.links"));
+    }
+
+    // The tests have their own properties, so this reads the ones of the application:
+    // without them the uploads are limited to 1MB.
+    @Test
+    void testUploadLimitIsConfigured() throws Exception {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Path.of("src/main/resources/application.properties"))) {
+            properties.load(reader);
+        }
+        assertEquals("512MB", properties.getProperty("spring.servlet.multipart.max-file-size"));
+        assertEquals("512MB", properties.getProperty("spring.servlet.multipart.max-request-size"));
+        assertEquals("health,metrics", properties.getProperty("management.endpoints.web.exposure.include"));
+    }
+}
@@ -0,0 +1,329 @@
+package com.familyships.FamilyShips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Not part of the regular test run, run with `./mvnw test -Pbenchmark`.
+//
+// Load test of the whole application (security, controllers, services, caches and the
+// in-memory database of the tests, through `MockMvc`, without the network):
+// provisions users the way the frontend does (logging in with OAuth2, /auth/id
+// creating their tree) and fills their trees with `FamilyTreeGenerator` through
+// /model/batch, then every user keeps sending a mix of reads and mutations, picked at
+// random with the weights below, for the given time. Reports the throughput and the
+// latency percentiles of every endpoint.
+//
+// Sized with system properties: `-Dloadtest.users=16 -Dloadtest.seconds=30
+// -Dloadtest.generations=5`.
+//
+// The statistics the tests collect are logged after every session, which at this rate
+// would take more time than the requests, so that logging is turned off.
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN")
+@AutoConfigureMockMvc
+public class LoadTestBenchmark {
+    private static final int USERS = Integer.getInteger("loadtest.users", 16);
+    private static final int SECONDS = Integer.getInteger("loadtest.seconds", 30);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmup-seconds", 5);
+    private static final int GENERATIONS = Integer.getInteger("loadtest.generations", 5);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static class User {
+        final RequestPostProcessor login;
+        final FamilyTreeGenerator tree;
+        final Random random;
+        final List<Integer> personIds = new ArrayList<Integer>();
+        final List<Integer> familyIds = new ArrayList<Integer>();
+        // People added by /model/new_person during the test, the only ones deleted or
+        // attached, so that the generated tree stays as it is.
+        final List<Integer> addedIds = new ArrayList<Integer>();
+        String snapshotETag;
+
+        User(int number) {
+            login = SecurityMockMvcRequestPostProcessors.oauth2Login()
+                    .attributes(attributes -> attributes.put("sub", "load-test-" + number));
+            tree = new FamilyTreeGenerator(GENERATIONS, 3, 0.1, number);
+            random = new Random(number);
+        }
+
+        Integer anyPerson() {
+            return personIds.get(random.nextInt(personIds.size()));
+        }
+
+        Integer anyFamily() {
+            return familyIds.get(random.nextInt(familyIds.size()));
+        }
+
+        // One of the terms of the names in the tree, cut short as if being typed.
+        String anyNamePrefix() {
+            String[] names = tree.names(1 + random.nextInt(tree.peopleCount())).split(" ");
+            String name = names[random.nextInt(names.length)];
+            return name.substring(0, 2 + random.nextInt(name.length() - 1));
+        }
+    }
+
+    private interface Request {
+        MockHttpServletRequestBuilder build(User user) throws Exception;
+    }
+
+    private static class Endpoint {
+        final String name;
+        final int weight;
+        final Request request;
+
+        Endpoint(String name, int weight, Request request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+    }
+
+    // Roughly what an open tree page does: mostly reads, some of them conditional,
+    // and an edit every now and then.
+    private final List<Endpoint> endpoints = List.of(
+            new Endpoint("GET /model/snapshot", 10, user -> {
+                var request = MockMvcRequestBuilders.get("/model/snapshot");
+                if (user.snapshotETag != null) {
+                    request.header(HttpHeaders.IF_NONE_MATCH, user.snapshotETag);
+                }
+                return request;
+            }),
+            new Endpoint("GET /model/people", 4, user -> MockMvcRequestBuilders.get("/model/people")),
+            new Endpoint("GET /model/families", 4, user -> MockMvcRequestBuilders.get("/model/families")),
+            new Endpoint("GET /model/layout", 6, user -> MockMvcRequestBuilders.get("/model/layout")),
+            new Endpoint("GET /model/people_page", 4,
+                    user -> MockMvcRequestBuilders.get("/model/people_page").param("limit", "100")),
+            new Endpoint("GET /model/subgraph", 10, user -> MockMvcRequestBuilders.get("/model/subgraph")
+                    .param("root", "" + user.anyPerson())),
+            new Endpoint("GET /model/search", 15, user -> MockMvcRequestBuilders.get("/model/search")
+                    .param("q", user.anyNamePrefix())),
+            new Endpoint("GET /model/ancestors", 6, user -> MockMvcRequestBuilders.get("/model/ancestors")
+                    .param("personId", "" + user.anyPerson())),
+            new Endpoint("GET /model/relationship", 6, user -> MockMvcRequestBuilders.get("/model/relationship")
+                    .param("personId", "" + user.anyPerson()).param("relativeId", "" + user.anyPerson())),
+            new Endpoint("GET /model/changes", 10,
+                    user -> MockMvcRequestBuilders.get("/model/changes").param("since", "0")),
+            new Endpoint("POST /model/new_person", 8, user -> MockMvcRequestBuilders.post("/model/new_person")
+                    .param("spaceSeparatedNames", "Added " + user.random.nextInt(1000))),
+            new Endpoint("POST /model/set_names", 8, user -> MockMvcRequestBuilders.post("/model/set_names")
+                    .param("personId", "" + user.anyPerson())
+                    .param("spaceSeparatedNames", "Renamed " + user.random.nextInt(1000))),
+            new Endpoint("POST /model/attach_child", 5, user -> {
+                if (user.addedIds.isEmpty()) {
+                    return null;
+                }
+                // Someone without descendants can't close a loop.
+                return MockMvcRequestBuilders.post("/model/attach_child").param("familyId", "" + user.anyFamily())
+                        .param("childId", "" + user.addedIds.get(user.random.nextInt(user.addedIds.size())));
+            }),
+            new Endpoint("POST /model/delete_person", 4, user -> {
+                if (user.addedIds.isEmpty()) {
+                    return null;
+                }
+                return MockMvcRequestBuilders.post("/model/delete_person").param("personId",
+                        "" + user.addedIds.remove(user.random.nextInt(user.addedIds.size())));
+            }));
+
+    // Milliseconds taken by every request of one endpoint, and the failed ones.
+    private static class Samples {
+        double[] latencies = new double[1024];
+        int count = 0;
+        int errors = 0;
+
+        void add(double latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.latencies[i]);
+            }
+            errors += other.errors;
+        }
+
+        double percentile(double fraction) {
+            return latencies[Math.min(count - 1, (int) Math.ceil(fraction * count) - 1)];
+        }
+    }
+
+    @Test
+    void benchmarkLoad() throws Exception {
+        List<User> users = new ArrayList<User>();
+        long start = System.nanoTime();
+        for (int i = 0; i < USERS; i++) {
+            users.add(provision(i));
+        }
+        System.out.printf("Provisioned %d users with %d people each in %.1fs%n", USERS,
+                users.get(0).tree.peopleCount(), (System.nanoTime() - start) / 1e9);
+
+        run(users, WARMUP_SECONDS);
+        start = System.nanoTime();
+        Map<String, Samples> samples = run(users, SECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d users for %.1fs:%n", USERS, seconds);
+        System.out.printf("%-26s %8s %7s %8s %8s %8s %8s %8s%n", "endpoint", "requests", "errors", "req/s",
+                "p50 ms", "p95 ms", "p99 ms", "max ms");
+        Samples total = new Samples();
+        for (Endpoint endpoint : endpoints) {
+            Samples endpointSamples = samples.get(endpoint.name);
+            print(endpoint.name, endpointSamples, seconds);
+            total.addAll(endpointSamples);
+        }
+        print("all", total, seconds);
+    }
+
+    private User provision(int number) throws Exception {
+        User user = new User(number);
+        // Creates the tree of the user, see `AuthenticationController.id`.
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user.login));
+        // In batches of at most 1000 operations, the refs of the earlier ones replaced
+        // by the ids they got.
+        List<BatchOperation> operations = user.tree.operations();
+        Map<String, Integer> ids = new LinkedHashMap<String, Integer>();
+        for (int from = 0; from < operations.size(); from += 1000) {
+            List<BatchOperation> batch = operations.subList(from, Math.min(from + 1000, operations.size()));
+            for (BatchOperation operation : batch) {
+                operation.setPersonId(resolve(ids, operation.getPersonId()));
+                operation.setFamilyId(resolve(ids, operation.getFamilyId()));
+                operation.setChildId(resolve(ids, operation.getChildId()));
+                operation.setParentId(resolve(ids, operation.getParentId()));
+            }
+            String response = mockMvc.perform(MockMvcRequestBuilders.post("/model/batch").with(user.login)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(batch)))
+                    .andReturn().getResponse().getContentAsString();
+            BatchResult result = objectMapper.readValue(response, BatchResult.class);
+            if (!result.isApplied()) {
+                throw new IllegalStateException("Generated tree was not created");
+            }
+            ids.putAll(result.getIds());
+        }
+        for (int i = 1; i <= user.tree.peopleCount(); i++) {
+            user.personIds.add(ids.get("p" + i));
+        }
+        for (int i = 1; i <= user.tree.familyCount(); i++) {
+            user.familyIds.add(ids.get("f" + i));
+        }
+        return user;
+    }
+
+    private static String resolve(Map<String, Integer> ids, String ref) {
+        Integer id = ref == null ? null : ids.get(ref);
+        return id == null ? ref : id.toString();
+    }
+
+    // Every user in a thread of their own, sending requests one after another (no
+    // think time) until the time is up.
+    private Map<String, Samples> run(List<User> users, int seconds) throws Exception {
+        int totalWeight = endpoints.stream().mapToInt(endpoint -> endpoint.weight).sum();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        ExecutorService executor = Executors.newFixedThreadPool(users.size());
+        try {
+            List<Future<Map<String, Samples>>> results = new ArrayList<Future<Map<String, Samples>>>();
+            for (User user : users) {
+                results.add(executor.submit(() -> {
+                    Map<String, Samples> samples = new LinkedHashMap<String, Samples>();
+                    while (System.nanoTime() < deadline) {
+                        Endpoint endpoint = pick(user.random.nextInt(totalWeight));
+                        send(user, endpoint, samples.computeIfAbsent(endpoint.name, name -> new Samples()));
+                    }
+                    return samples;
+                }));
+            }
+            Map<String, Samples> merged = new LinkedHashMap<String, Samples>();
+            for (Endpoint endpoint : endpoints) {
+                merged.put(endpoint.name, new Samples());
+            }
+            for (Future<Map<String, Samples>> result : results) {
+                for (Map.Entry<String, Samples> entry : result.get().entrySet()) {
+                    merged.get(entry.getKey()).addAll(entry.getValue());
+                }
+            }
+            for (Samples endpointSamples : merged.values()) {
+                Arrays.sort(endpointSamples.latencies, 0, endpointSamples.count);
+            }
+            return merged;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Endpoint pick(int weight) {
+        for (Endpoint endpoint : endpoints) {
+            weight -= endpoint.weight;
+            if (weight < 0) {
+                return endpoint;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private void send(User user, Endpoint endpoint, Samples samples) {
+        long start = System.nanoTime();
+        try {
+            MockHttpServletRequestBuilder request = endpoint.request.build(user);
+            if (request == null) {
+                return;
+            }
+            MvcResult result = mockMvc.perform(request.with(user.login)).andReturn();
+            int status = result.getResponse().getStatus();
+            if (status >= 400) {
+                samples.errors++;
+            } else if (endpoint.name.equals("POST /model/new_person")) {
+                user.addedIds.add(Integer.valueOf(result.getResponse().getContentAsString()));
+            } else if (endpoint.name.equals("GET /model/snapshot")) {
+                user.snapshotETag = result.getResponse().getHeader(HttpHeaders.ETAG);
+            }
+        } catch (Exception e) {
+            // Controllers signal bad requests with exceptions, which `MockMvc` rethrows.
+            samples.errors++;
+        }
+        samples.add((System.nanoTime() - start) / 1e6);
+    }
+
+    private static void print(String name, Samples samples, double seconds) {
+        if (samples.count == 0) {
+            System.out.printf("%-26s %8d%n", name, 0);
+            return;
+        }
+        if (name.equals("all")) {
+            Arrays.sort(samples.latencies, 0, samples.count);
+        }
+        System.out.printf("%-26s %8d %7d %8.1f %8.2f %8.2f %8.2f %8.2f%n", name, samples.count, samples.errors,
+                samples.count / seconds, samples.percentile(0.5), samples.percentile(0.95),
+                samples.percentile(0.99), samples.latencies[samples.count - 1]);
+    }
+}
@@ -0,0 +1,818 @@
+package com.familyships.FamilyShips;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.familyships.FamilyShips.metrics.ModelRequestMetrics;
+import com.familyships.FamilyShips.metrics.QueryBudget;
+import com.familyships.FamilyShips.metrics.StatementCounter;
+import com.familyships.FamilyShips.model.PersonRepository;
+import com.familyships.FamilyShips.model.TreeGraphCache;
+import com.familyships.FamilyShips.model.TreeSnapshotConverter;
+import com.jayway.jsonpath.JsonPath;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+// Runs against the real repositories (in-memory database) to keep an eye on how many
+// queries the read endpoints fire.
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ModelControllerQueryTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private TreeGraphCache treeGraphCache;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    private RequestPostProcessor login(String googleSub) {
+        return SecurityMockMvcRequestPostProcessors.oauth2Login()
+                .attributes(attributes -> attributes.put("sub", googleSub));
+    }
+
+    private Integer post(RequestPostProcessor user, String path, String... params) throws Exception {
+        var request = MockMvcRequestBuilders.post(path).with(user);
+        for (int i = 0; i < params.length; i += 2) {
+            request.param(params[i], params[i + 1]);
+        }
+        String response = mockMvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return response.matches("\\d+") ? Integer.valueOf(response) : null;
+    }
+
+    // Adds a couple with the given number of children.
+    private void addFamily(RequestPostProcessor user, int children) throws Exception {
+        Integer familyId = post(user, "/model/new_family");
+        for (String role : new String[] { "Mother", "Father" }) {
+            Integer parentId = post(user, "/model/new_person", "spaceSeparatedNames", role + " Smith");
+            post(user, "/model/attach_parent", "familyId", "" + familyId, "parentId", "" + parentId);
+        }
+        for (int i = 0; i < children; i++) {
+            Integer childId = post(user, "/model/new_person", "spaceSeparatedNames", "Child Smith");
+            post(user, "/model/attach_child", "familyId", "" + familyId, "childId", "" + childId);
+        }
+    }
+
+    private long countSnapshotStatements(RequestPostProcessor user) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void testSnapshotContent() throws Exception {
+        RequestPostProcessor user = login("snapshot-content");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        addFamily(user, 1);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people.length()").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families[0].parentIds.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families[0].childrenIds.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people[0].names[0]").value("Mother"));
+    }
+
+    @Test
+    void testTreeOfLoggedInUserIsResolvedWithoutQueries() throws Exception {
+        RequestPostProcessor user = login("cached-tree");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        double hits = meterRegistry.counter("familyships.principal_tree_cache.hits").count();
+
+        // One query for the revision of the tree, one for the names, four to load the
+        // graph of the tree (people, families and both link tables) and nothing to find
+        // the tree of the user.
+        assertEquals(6, countSnapshotStatements(user));
+        assertEquals(hits + 1, meterRegistry.counter("familyships.principal_tree_cache.hits").count());
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/logout").with(user));
+        double misses = meterRegistry.counter("familyships.principal_tree_cache.misses").count();
+        countSnapshotStatements(user);
+        assertEquals(misses + 1, meterRegistry.counter("familyships.principal_tree_cache.misses").count());
+    }
+
+    @Test
+    void testSnapshotQueryCountDoesNotGrowWithTree() throws Exception {
+        RequestPostProcessor user = login("snapshot-query-count");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        addFamily(user, 1);
+        Integer treeId = personRepository.findById(post(user, "/model/new_person", "spaceSeparatedNames", "Someone"))
+                .get().getTreeId();
+        treeGraphCache.evict(treeId);
+        long smallTreeStatements = countSnapshotStatements(user);
+
+        for (int i = 0; i < 10; i++) {
+            addFamily(user, 3);
+        }
+        treeGraphCache.evict(treeId);
+        long largeTreeStatements = countSnapshotStatements(user);
+
+        assertEquals(smallTreeStatements, largeTreeStatements);
+    }
+
+    @Test
+    void testTreeGraphIsPatchedWithCommittedChanges() throws Exception {
+        RequestPostProcessor user = login("tree-graph-cache");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        addFamily(user, 1);
+        countSnapshotStatements(user);
+        double misses = meterRegistry.counter("familyships.tree_graph_cache.misses").count();
+        double patches = meterRegistry.counter("familyships.tree_graph_cache.patches").count();
+
+        // Only the revision and the names are read once the graph is cached.
+        assertEquals(2, countSnapshotStatements(user));
+        Integer familyId = post(user, "/model/new_family");
+        Integer parentId = post(user, "/model/new_person", "spaceSeparatedNames", "Parent");
+        Integer childId = post(user, "/model/new_person", "spaceSeparatedNames", "Child");
+        post(user, "/model/attach_parent", "familyId", "" + familyId, "parentId", "" + parentId);
+        post(user, "/model/attach_child", "familyId", "" + familyId, "childId", "" + childId);
+        post(user, "/model/detach_child", "familyId", "" + familyId, "childId", "" + childId);
+        post(user, "/model/attach_child", "familyId", "" + familyId, "childId", "" + childId);
+        assertEquals(2, countSnapshotStatements(user));
+
+        String snapshot = mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(List.of(List.of(parentId)),
+                JsonPath.read(snapshot, "$.families[?(@.id == " + familyId + ")].parentIds"));
+        assertEquals(List.of(List.of(childId)),
+                JsonPath.read(snapshot, "$.families[?(@.id == " + familyId + ")].childrenIds"));
+        assertEquals(5, (int) JsonPath.read(snapshot, "$.people.length()"));
+        assertEquals(misses, meterRegistry.counter("familyships.tree_graph_cache.misses").count());
+        assertEquals(patches + 1, meterRegistry.counter("familyships.tree_graph_cache.patches").count());
+
+        post(user, "/model/delete_person", "personId", "" + childId);
+        snapshot = mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(List.of(List.of()),
+                JsonPath.read(snapshot, "$.families[?(@.id == " + familyId + ")].childrenIds"));
+        assertEquals(misses, meterRegistry.counter("familyships.tree_graph_cache.misses").count());
+    }
+
+    @Test
+    void testPeopleOfOtherTreesCannotBeEdited() throws Exception {
+        RequestPostProcessor owner = login("ownership-owner");
+        RequestPostProcessor stranger = login("ownership-stranger");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(owner));
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(stranger));
+        Integer personId = post(owner, "/model/new_person", "spaceSeparatedNames", "Anna");
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/model/set_names").with(stranger)
+                .param("personId", "" + personId).param("spaceSeparatedNames", "Bob"))
+                .andExpect(MockMvcResultMatchers.content().string("false"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/model/set_names").with(owner)
+                .param("personId", "" + personId).param("spaceSeparatedNames", "Anna Maria"))
+                .andExpect(MockMvcResultMatchers.content().string("true"));
+    }
+
+    @Test
+    void testBatchIsAppliedInOneTransaction() throws Exception {
+        RequestPostProcessor user = login("batch");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/model/batch").with(user)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        [{"op": "new_family", "ref": "f"},
+                         {"op": "new_person", "ref": "mother", "spaceSeparatedNames": "Anna Smith"},
+                         {"op": "new_person", "ref": "child", "spaceSeparatedNames": "Bob Smith"},
+                         {"op": "attach_parent", "familyId": "f", "parentId": "mother"},
+                         {"op": "attach_child", "familyId": "f", "childId": "child"}]
+                        """))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.applied").value(true))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.ids.f").isNumber())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.ids.mother").isNumber());
+        assertEquals(1, statistics.getTransactionCount());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families[0].parentIds.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families[0].childrenIds.length()").value(1));
+    }
+
+    @Test
+    void testFailedBatchIsRolledBack() throws Exception {
+        RequestPostProcessor user = login("failed-batch");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/model/batch").with(user)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        [{"op": "new_person", "ref": "p", "spaceSeparatedNames": "Anna"},
+                         {"op": "attach_child", "familyId": "unknown", "childId": "p"}]
+                        """))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.applied").value(false))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failedOperation").value(1));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people.length()").value(0));
+
+        // A ref that is a number would stand for the person or family with that id.
+        mockMvc.perform(MockMvcRequestBuilders.post("/model/batch").with(user)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        [{"op": "new_family", "ref": "f"},
+                         {"op": "new_person", "ref": "42", "spaceSeparatedNames": "Anna"}]
+                        """))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.applied").value(false))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failedOperation").value(1));
+
+        String tooMany = "[" + String.join(",", Collections.nCopies(1001, "{\"op\": \"new_family\"}")) + "]";
+        assertThrows(Exception.class, () -> mockMvc.perform(MockMvcRequestBuilders.post("/model/batch").with(user)
+                .contentType(MediaType.APPLICATION_JSON).content(tooMany)));
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families.length()").value(0));
+    }
+
+    // Deletes a person who is a parent of `families` families, each with another parent
+    // and a child, and returns the statements it took.
+    private long countPersonDeleteStatements(RequestPostProcessor user, int families) throws Exception {
+        Integer personId = post(user, "/model/new_person", "spaceSeparatedNames", "Hub");
+        for (int i = 0; i < families; i++) {
+            Integer familyId = post(user, "/model/new_family");
+            post(user, "/model/attach_parent", "familyId", "" + familyId, "parentId", "" + personId);
+            Integer partnerId = post(user, "/model/new_person", "spaceSeparatedNames", "Partner");
+            post(user, "/model/attach_parent", "familyId", "" + familyId, "parentId", "" + partnerId);
+            Integer childId = post(user, "/model/new_person", "spaceSeparatedNames", "Child");
+            post(user, "/model/attach_child", "familyId", "" + familyId, "childId", "" + childId);
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        post(user, "/model/delete_person", "personId", "" + personId);
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void testPersonDeleteStatementsDontGrowWithLinks() throws Exception {
+        RequestPostProcessor user = login("person-delete-statements");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        countPersonDeleteStatements(user, 1);
+
+        assertEquals(countPersonDeleteStatements(user, 1), countPersonDeleteStatements(user, 10));
+    }
+
+    private long countFamilyDeleteStatements(RequestPostProcessor user, int children) throws Exception {
+        Integer familyId = post(user, "/model/new_family");
+        for (String parent : List.of("Mother", "Father")) {
+            Integer parentId = post(user, "/model/new_person", "spaceSeparatedNames", parent);
+            post(user, "/model/attach_parent", "familyId", "" + familyId, "parentId", "" + parentId);
+        }
+        for (int i = 0; i < children; i++) {
+            Integer childId = post(user, "/model/new_person", "spaceSeparatedNames", "Child");
+            post(user, "/model/attach_child", "familyId", "" + familyId, "childId", "" + childId);
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        post(user, "/model/delete_family", "familyId", "" + familyId);
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void testFamilyDeleteStatementsDontGrowWithLinks() throws Exception {
+        RequestPostProcessor user = login("family-delete-statements");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        countFamilyDeleteStatements(user, 1);
+
+        assertEquals(countFamilyDeleteStatements(user, 1), countFamilyDeleteStatements(user, 10));
+    }
+
+    @Test
+    void testDeletePeople() throws Exception {
+        RequestPostProcessor user = login("delete-people");
+        RequestPostProcessor stranger = login("delete-people-stranger");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(stranger));
+        Integer strangerId = post(stranger, "/model/new_person", "spaceSeparatedNames", "Stranger");
+
+        String ids = mockMvc.perform(MockMvcRequestBuilders.post("/model/batch").with(user)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        [{"op": "new_family", "ref": "couple"},
+                         {"op": "new_family", "ref": "single"},
+                         {"op": "new_person", "ref": "mother", "spaceSeparatedNames": "Anna"},
+                         {"op": "new_person", "ref": "father", "spaceSeparatedNames": "Bob"},
+                         {"op": "new_person", "ref": "child", "spaceSeparatedNames": "Cecil"},
+                         {"op": "attach_parent", "familyId": "couple", "parentId": "mother"},
+                         {"op": "attach_parent", "familyId": "couple", "parentId": "father"},
+                         {"op": "attach_child", "familyId": "couple", "childId": "child"},
+                         {"op": "attach_parent", "familyId": "single", "parentId": "mother"}]
+                        """))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.applied").value(true))
+                .andReturn().getResponse().getContentAsString();
+        Integer motherId = JsonPath.read(ids, "$.ids.mother");
+        Integer fatherId = JsonPath.read(ids, "$.ids.father");
+        Integer childId = JsonPath.read(ids, "$.ids.child");
+        Integer coupleId = JsonPath.read(ids, "$.ids.couple");
+
+        // The family of the mother alone is left empty (until `TombstoneSweeper` removes
+        // it), the child keeps the couple's.
+        mockMvc.perform(MockMvcRequestBuilders.post("/model/delete_people").with(user)
+                .param("personIds", motherId + "," + fatherId + "," + strangerId))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2));
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families[*].parentIds.length()").value(
+                        Matchers.everyItem(Matchers.is(0))))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families[?(@.id == " + coupleId + ")].childrenIds[0]")
+                        .value(childId));
+        assertNull(personRepository.findById(motherId).get().getTreeId());
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(stranger))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people.length()").value(1));
+
+        // Links made earlier in the same transaction are deleted too.
+        mockMvc.perform(MockMvcRequestBuilders.post("/model/batch").with(user)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        [{"op": "new_person", "ref": "p", "spaceSeparatedNames": "Dora"},
+                         {"op": "attach_parent", "familyId": "%d", "parentId": "p"},
+                         {"op": "delete_person", "personId": "p"},
+                         {"op": "new_family", "ref": "f"},
+                         {"op": "attach_child", "familyId": "f", "childId": "%d"},
+                         {"op": "delete_family", "familyId": "f"}]
+                        """.formatted(coupleId, childId)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.applied").value(true));
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families[?(@.id == " + coupleId + ")].parentIds.length()")
+                        .value(0));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/model/delete_people").with(user)
+                .param("personIds", "" + childId))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0]").value(childId));
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people.length()").value(0))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.families[*].childrenIds.length()").value(
+                        Matchers.everyItem(Matchers.is(0))));
+    }
+
+    @Test
+    void testChangesSinceRevision() throws Exception {
+        RequestPostProcessor user = login("changes");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        Integer personId = post(user, "/model/new_person", "spaceSeparatedNames", "Anna");
+        long revision = JsonPath.<Number>read(mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andReturn().getResponse().getContentAsString(), "$.revision").longValue();
+
+        post(user, "/model/set_names", "personId", "" + personId, "spaceSeparatedNames", "Anna Maria");
+        Integer familyId = post(user, "/model/new_family");
+        post(user, "/model/attach_parent", "familyId", "" + familyId, "parentId", "" + personId);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/changes").with(user).param("since", "" + revision))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.resync").value(false))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.revision").value(revision + 3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.changes.length()").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.changes[0].kind").value("PERSON_RENAMED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.changes[0].spaceSeparatedNames").value("Anna Maria"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.changes[2].kind").value("PARENT_ATTACHED"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/changes").with(user).param("since", "" + (revision + 10)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.resync").value(true));
+    }
+
+    @Test
+    void testLayoutIsCachedUntilTheTreeChanges() throws Exception {
+        RequestPostProcessor user = login("layout");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        addFamily(user, 1);
+        double misses = meterRegistry.counter("familyships.layout_cache.misses").count();
+
+        String layout = mockMvc.perform(MockMvcRequestBuilders.get("/model/layout").with(user))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Integer motherId = JsonPath.read(mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andReturn().getResponse().getContentAsString(), "$.people[0].id");
+        assertEquals(0.0, JsonPath.<Number>read(layout, "$.people." + motherId + ".x").doubleValue());
+        assertEquals(0.0, JsonPath.<Number>read(layout, "$.people." + motherId + ".y").doubleValue());
+        assertEquals(3, JsonPath.<Integer>read(layout, "$.people.length()"));
+        assertEquals(1, JsonPath.<Integer>read(layout, "$.families.length()"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/layout").with(user));
+        assertEquals(misses + 1, meterRegistry.counter("familyships.layout_cache.misses").count());
+
+        post(user, "/model/new_person", "spaceSeparatedNames", "Anna");
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/layout").with(user))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people.length()").value(4));
+        assertEquals(misses + 2, meterRegistry.counter("familyships.layout_cache.misses").count());
+    }
+
+    private void assertGeneration(RequestPostProcessor user, Integer personId, int generation) throws Exception {
+        String people = mockMvc.perform(MockMvcRequestBuilders.get("/model/people_by_generation").with(user)
+                .param("from", "" + generation).param("to", "" + generation))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(List.of(personId), JsonPath.<List<Integer>>read(people, "$[?(@.id == " + personId + ")].id"));
+    }
+
+    @Test
+    void testGenerationsFollowLinks() throws Exception {
+        RequestPostProcessor user = login("generations");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        Integer grandparentId = post(user, "/model/new_person", "spaceSeparatedNames", "Grandparent");
+        Integer parentId = post(user, "/model/new_person", "spaceSeparatedNames", "Parent");
+        Integer childId = post(user, "/model/new_person", "spaceSeparatedNames", "Child");
+        Integer otherParentId = post(user, "/model/new_person", "spaceSeparatedNames", "Other Parent");
+        Integer parentsFamilyId = post(user, "/model/new_family");
+        post(user, "/model/attach_parent", "familyId", "" + parentsFamilyId, "parentId", "" + parentId);
+        post(user, "/model/attach_parent", "familyId", "" + parentsFamilyId, "parentId", "" + otherParentId);
+        post(user, "/model/attach_child", "familyId", "" + parentsFamilyId, "childId", "" + childId);
+        assertGeneration(user, childId, 1);
+
+        // Attaching a parent above the parent moves the whole line down.
+        Integer grandparentsFamilyId = post(user, "/model/new_family");
+        post(user, "/model/attach_child", "familyId", "" + grandparentsFamilyId, "childId", "" + parentId);
+        post(user, "/model/attach_parent", "familyId", "" + grandparentsFamilyId, "parentId", "" + grandparentId);
+        assertGeneration(user, grandparentId, 0);
+        assertGeneration(user, parentId, 1);
+        assertGeneration(user, otherParentId, 0);
+        assertGeneration(user, childId, 2);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.people[?(@.id == " + childId + ")].generation")
+                        .value(2));
+
+        post(user, "/model/delete_person", "personId", "" + parentId);
+        assertGeneration(user, childId, 1);
+        post(user, "/model/detach_parent", "familyId", "" + parentsFamilyId, "parentId", "" + otherParentId);
+        assertGeneration(user, childId, 0);
+    }
+
+    private void assertAttached(RequestPostProcessor user, String path, String role, Integer familyId,
+            Integer personId, boolean attached) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post(path).with(user)
+                .param("familyId", "" + familyId).param(role, "" + personId))
+                .andExpect(MockMvcResultMatchers.content().string("" + attached));
+    }
+
+    @Test
+    void testLinksThatWouldLoopAreRejected() throws Exception {
+        RequestPostProcessor user = login("loops");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        Integer grandparentId = post(user, "/model/new_person", "spaceSeparatedNames", "Grandparent");
+        Integer parentId = post(user, "/model/new_person", "spaceSeparatedNames", "Parent");
+        Integer childId = post(user, "/model/new_person", "spaceSeparatedNames", "Child");
+        Integer grandparentsFamilyId = post(user, "/model/new_family");
+        assertAttached(user, "/model/attach_parent", "parentId", grandparentsFamilyId, grandparentId, true);
+        assertAttached(user, "/model/attach_child", "childId", grandparentsFamilyId, parentId, true);
+        Integer parentsFamilyId = post(user, "/model/new_family");
+        assertAttached(user, "/model/attach_child", "childId", parentsFamilyId, childId, true);
+        assertAttached(user, "/model/attach_parent", "parentId", parentsFamilyId, parentId, true);
+
+        assertAttached(user, "/model/attach_child", "childId", parentsFamilyId, parentId, false);
+        assertAttached(user, "/model/attach_child", "childId", parentsFamilyId, grandparentId, false);
+        assertAttached(user, "/model/attach_parent", "parentId", grandparentsFamilyId, childId, false);
+        assertAttached(user, "/model/attach_parent", "parentId", parentsFamilyId, childId, false);
+
+        // A batch closing a loop is rolled back as a whole, and the links it made
+        // before don't count afterwards.
+        mockMvc.perform(MockMvcRequestBuilders.post("/model/batch").with(user)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        [{"op": "new_family", "ref": "f"},
+                         {"op": "attach_parent", "familyId": "f", "parentId": "%d"},
+                         {"op": "attach_child", "familyId": "f", "childId": "%d"}]
+                        """.formatted(childId, grandparentId)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.applied").value(false))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failedOperation").value(2));
+        Integer grandchildId = post(user, "/model/new_person", "spaceSeparatedNames", "Grandchild");
+        Integer childsFamilyId = post(user, "/model/new_family");
+        assertAttached(user, "/model/attach_parent", "parentId", childsFamilyId, childId, true);
+        assertAttached(user, "/model/attach_child", "childId", childsFamilyId, grandchildId, true);
+
+        // Once the line is broken the same link is fine.
+        post(user, "/model/delete_person", "personId", "" + parentId);
+        assertAttached(user, "/model/attach_child", "childId", grandparentsFamilyId, childId, true);
+        assertAttached(user, "/model/attach_parent", "parentId", grandparentsFamilyId, grandchildId, false);
+    }
+
+    @Test
+    void testKinshipQueries() throws Exception {
+        RequestPostProcessor user = login("kinship");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        Integer grandparentId = post(user, "/model/new_person", "spaceSeparatedNames", "Grandparent");
+        Integer parentId = post(user, "/model/new_person", "spaceSeparatedNames", "Parent");
+        Integer auntId = post(user, "/model/new_person", "spaceSeparatedNames", "Aunt");
+        Integer childId = post(user, "/model/new_person", "spaceSeparatedNames", "Child");
+        Integer grandparentsFamilyId = post(user, "/model/new_family");
+        post(user, "/model/attach_parent", "familyId", "" + grandparentsFamilyId, "parentId", "" + grandparentId);
+        post(user, "/model/attach_child", "familyId", "" + grandparentsFamilyId, "childId", "" + parentId);
+        post(user, "/model/attach_child", "familyId", "" + grandparentsFamilyId, "childId", "" + auntId);
+        Integer parentsFamilyId = post(user, "/model/new_family");
+        post(user, "/model/attach_parent", "familyId", "" + parentsFamilyId, "parentId", "" + parentId);
+        post(user, "/model/attach_child", "familyId", "" + parentsFamilyId, "childId", "" + childId);
+        double misses = meterRegistry.counter("familyships.kinship_cache.misses").count();
+
+        String ancestors = mockMvc.perform(MockMvcRequestBuilders.get("/model/ancestors").with(user)
+                .param("personId", "" + childId)).andReturn().getResponse().getContentAsString();
+        assertEquals(List.of(parentId, grandparentId), JsonPath.read(ancestors, "$[*].id"));
+        assertEquals(List.of(1, 2), JsonPath.read(ancestors, "$[*].distance"));
+        String descendants = mockMvc.perform(MockMvcRequestBuilders.get("/model/descendants").with(user)
+                .param("personId", "" + grandparentId).param("depth", "1"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(List.of(parentId, auntId), JsonPath.read(descendants, "$[*].id"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/common_ancestors").with(user)
+                .param("personId", "" + childId).param("relativeId", "" + auntId))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(grandparentId))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].personDistance").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].relativeDistance").value(1));
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/relationship").with(user)
+                .param("personId", "" + childId).param("relativeId", "" + auntId))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("aunt or uncle"));
+        assertEquals(misses + 1, meterRegistry.counter("familyships.kinship_cache.misses").count());
+
+        Integer strangerId = post(user, "/model/new_person", "spaceSeparatedNames", "Stranger");
+        mockMvc.perform(MockMvcRequestBuilders.get("/model/relationship").with(user)
+                .param("personId", "" + childId).param("relativeId", "" + strangerId))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").doesNotExist());
+        assertEquals(misses + 2, meterRegistry.counter("familyships.kinship_cache.misses").count());
+    }
+
+    @Test
+    void testSearchFollowsChanges() throws Exception {
+        RequestPostProcessor user = login("search");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        Integer annaId = post(user, "/model/new_person", "spaceSeparatedNames", "Anna Kowalska");
+        Integer lucjaId = post(user, "/model/new_person", "spaceSeparatedNames", "Łucja Kowalska");
+        double misses = meterRegistry.counter("familyships.name_index.misses").count();
+
+        String hits = mockMvc.perform(MockMvcRequestBuilders.get("/model/search").with(user).param("q", "kowal"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(List.of(annaId, lucjaId), JsonPath.read(hits, "$[*].id"));
+        hits = mockMvc.perform(MockMvcRequestBuilders.get("/model/search").with(user).param("q", "lucja kowlaska"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertEquals(List.of(lucjaId), JsonPath.read(hits, "$[*].id"));
+        assertEquals(List.of("Łucja", "Kowalska"), JsonPath.read(hits, "$[0].names"));
+
+        post(user, "/model/set_names", "personId", "" + annaId, "spaceSeparatedNames", "Anna Nowak");
+        post(user, "/model/delete_person", "personId", "" + lucjaId);
+        Integer janId = post(user, "/model/new_person", "spaceSeparatedNames", "Jan Kowalski");
+        hits = mockMvc.perform(MockMvcRequestBuilders.get("/model/search").with(user).param("q", "kowal"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(List.of(janId), JsonPath.read(hits, "$[*].id"));
+        hits = mockMvc.perform(MockMvcRequestBuilders.get("/model/search").with(user).param("q", "nowak"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(List.of(annaId), JsonPath.read(hits, "$[*].id"));
+        // Loaded once, then kept up to date with the changes.
+        assertEquals(misses + 1, meterRegistry.counter("familyships.name_index.misses").count());
+    }
+
+    private String get(RequestPostProcessor user, String path, String... params) throws Exception {
+        var request = MockMvcRequestBuilders.get(path).with(user);
+        for (int i = 0; i < params.length; i += 2) {
+            request.param(params[i], params[i + 1]);
+        }
+        return mockMvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Test
+    void testSubgraph() throws Exception {
+        RequestPostProcessor user = login("subgraph");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        Integer grandparentId = post(user, "/model/new_person", "spaceSeparatedNames", "Grandparent");
+        Integer parentId = post(user, "/model/new_person", "spaceSeparatedNames", "Parent");
+        Integer auntId = post(user, "/model/new_person", "spaceSeparatedNames", "Aunt");
+        Integer childId = post(user, "/model/new_person", "spaceSeparatedNames", "Child");
+        Integer grandparentsFamilyId = post(user, "/model/new_family");
+        post(user, "/model/attach_parent", "familyId", "" + grandparentsFamilyId, "parentId", "" + grandparentId);
+        post(user, "/model/attach_child", "familyId", "" + grandparentsFamilyId, "childId", "" + parentId);
+        post(user, "/model/attach_child", "familyId", "" + grandparentsFamilyId, "childId", "" + auntId);
+        Integer parentsFamilyId = post(user, "/model/new_family");
+        post(user, "/model/attach_parent", "familyId", "" + parentsFamilyId, "parentId", "" + parentId);
+        post(user, "/model/attach_child", "familyId", "" + parentsFamilyId, "childId", "" + childId);
+
+        String subgraph = get(user, "/model/subgraph", "root", "" + childId, "up", "1", "sideways", "0");
+        assertEquals(List.of(parentId, childId), JsonPath.read(subgraph, "$.people[*].id"));
+        assertEquals(List.of("Parent"), JsonPath.read(subgraph, "$.people[0].names"));
+        assertEquals(List.of(grandparentsFamilyId, parentsFamilyId), JsonPath.read(subgraph, "$.families[*].id"));
+        // Only the links between the people of the subgraph.
+        assertEquals(List.of(parentId), JsonPath.read(subgraph, "$.families[0].childrenIds"));
+        assertEquals(List.of(), JsonPath.read(subgraph, "$.families[0].parentIds"));
+
+        subgraph = get(user, "/model/subgraph", "root", "" + childId, "up", "1");
+        assertEquals(List.of(parentId, auntId, childId), JsonPath.read(subgraph, "$.people[*].id"));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        get(user, "/model/subgraph", "root", "" + grandparentId, "down", "2");
+        // The revision and the names of the people around.
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        assertThrows(Exception.class, () -> get(user, "/model/subgraph", "root", "-1"));
+    }
+
+    @Test
+    void testPagination() throws Exception {
+        RequestPostProcessor user = login("pagination");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        for (int i = 0; i < 3; i++) {
+            addFamily(user, 2);
+        }
+        String snapshot = get(user, "/model/snapshot");
+        List<Integer> personIds = JsonPath.read(snapshot, "$.people[*].id");
+        List<Integer> familyIds = JsonPath.read(snapshot, "$.families[*].id");
+
+        List<Integer> pagedPersonIds = new ArrayList<Integer>();
+        String after = null;
+        do {
+            String page = after == null ? get(user, "/model/people_page", "limit", "5")
+                    : get(user, "/model/people_page", "limit", "5", "after", after);
+            List<Integer> ids = JsonPath.read(page, "$.items[*].id");
+            assertTrue(ids.size() <= 5);
+            pagedPersonIds.addAll(ids);
+            Integer next = JsonPath.read(page, "$.next");
+            after = next == null ? null : "" + next;
+        } while (after != null);
+        assertEquals(personIds.stream().sorted().toList(), pagedPersonIds);
+
+        String page = get(user, "/model/families_page", "limit", "2");
+        assertEquals(familyIds.stream().sorted().limit(2).toList(), JsonPath.read(page, "$.items[*].id"));
+        assertEquals(2, (int) JsonPath.read(page, "$.items[0].parentIds.length()"));
+        page = get(user, "/model/families_page", "after", "" + JsonPath.read(page, "$.next"));
+        assertEquals(familyIds.stream().sorted().skip(2).toList(), JsonPath.read(page, "$.items[*].id"));
+        assertNull(JsonPath.read(page, "$.next"));
+    }
+
+    @Test
+    void testCompactSnapshot() throws Exception {
+        RequestPostProcessor user = login("compact-snapshot");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        addFamily(user, 2);
+        String snapshot = get(user, "/model/snapshot");
+        assertTrue(mockMvc.perform(MockMvcRequestBuilders.get("/model/snapshot").with(user)).andReturn()
+                .getResponse().getContentType().startsWith(MediaType.APPLICATION_JSON_VALUE));
+
+        byte[] compact = mockMvc
+                .perform(MockMvcRequestBuilders.get("/model/snapshot").with(user)
+                        .accept(TreeSnapshotConverter.MEDIA_TYPE))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(TreeSnapshotConverter.MEDIA_TYPE))
+                .andReturn().getResponse().getContentAsByteArray();
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(compact));
+        assertEquals(TreeSnapshotConverter.VERSION, input.readInt());
+        assertEquals(((Number) JsonPath.read(snapshot, "$.revision")).longValue(), input.readLong());
+        String[] strings = new String[input.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int people = input.readInt();
+        List<Integer> personIds = new ArrayList<Integer>();
+        for (int i = 0; i < people; i++) {
+            personIds.add(input.readInt());
+        }
+        assertEquals(JsonPath.read(snapshot, "$.people[*].id"), personIds);
+        for (int i = 0; i < people; i++) {
+            input.readInt();
+        }
+        int[] nameCounts = new int[people];
+        for (int i = 0; i < people; i++) {
+            nameCounts[i] = input.readInt();
+        }
+        for (int i = 0; i < people; i++) {
+            List<String> names = new ArrayList<String>();
+            for (int j = 0; j < nameCounts[i]; j++) {
+                names.add(strings[input.readInt()]);
+            }
+            assertEquals(JsonPath.read(snapshot, "$.people[" + i + "].names"), names);
+        }
+        assertEquals(1, input.readInt());
+        assertEquals((Integer) JsonPath.read(snapshot, "$.families[0].id"), input.readInt());
+        int parents = input.readInt();
+        List<Integer> parentIds = new ArrayList<Integer>();
+        for (int i = 0; i < parents; i++) {
+            parentIds.add(input.readInt());
+        }
+        assertEquals(JsonPath.read(snapshot, "$.families[0].parentIds"), parentIds);
+        int children = input.readInt();
+        List<Integer> childrenIds = new ArrayList<Integer>();
+        for (int i = 0; i < children; i++) {
+            childrenIds.add(input.readInt());
+        }
+        assertEquals(JsonPath.read(snapshot, "$.families[0].childrenIds"), childrenIds);
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    void testConditionalGet() throws Exception {
+        RequestPostProcessor user = login("conditional-get");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        addFamily(user, 1);
+
+        for (String path : List.of("/model/people", "/model/families", "/model/snapshot", "/model/layout")) {
+            String eTag = mockMvc.perform(MockMvcRequestBuilders.get(path).with(user))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.header().string("Cache-Control", "no-cache, private"))
+                    .andReturn().getResponse().getHeader("ETag");
+            assertTrue(eTag != null && eTag.startsWith("\""));
+
+            Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            statistics.setStatisticsEnabled(true);
+            statistics.clear();
+            mockMvc.perform(MockMvcRequestBuilders.get(path).with(user).header("If-None-Match", eTag))
+                    .andExpect(MockMvcResultMatchers.status().isNotModified())
+                    .andExpect(MockMvcResultMatchers.header().string("ETag", eTag))
+                    .andExpect(MockMvcResultMatchers.content().string(""));
+            // Only the revision.
+            assertEquals(1, statistics.getPrepareStatementCount());
+
+            // The compact snapshot is another representation.
+            mockMvc.perform(MockMvcRequestBuilders.get(path).with(user).header("If-None-Match", eTag)
+                    .accept(TreeSnapshotConverter.MEDIA_TYPE, MediaType.APPLICATION_JSON))
+                    .andExpect(MockMvcResultMatchers.status().isOk());
+
+            post(user, "/model/new_person", "spaceSeparatedNames", "Newcomer");
+            mockMvc.perform(MockMvcRequestBuilders.get(path).with(user).header("If-None-Match", eTag))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.header().string("ETag", Matchers.not(eTag)));
+        }
+    }
+
+    @QueryBudget(0)
+    void noQueries() {
+    }
+
+    @Test
+    void testRequestMetricsAndQueryBudget() throws Exception {
+        RequestPostProcessor user = login("request-metrics");
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(user));
+        addFamily(user, 1);
+        get(user, "/model/snapshot");
+        DistributionSummary statements = meterRegistry.get("familyships.model.statements")
+                .tag("endpoint", "/model/snapshot").summary();
+        long requests = statements.count();
+        double total = statements.totalAmount();
+
+        get(user, "/model/snapshot");
+        assertEquals(requests + 1, statements.count());
+        // The revision and the names, the graph is cached.
+        assertEquals(2, statements.totalAmount() - total);
+        assertTrue(meterRegistry.get("familyships.model.requests").tag("endpoint", "/model/snapshot")
+                .tag("method", "GET").tag("status", "200").timer().count() > 0);
+        assertTrue(meterRegistry.get("familyships.tree_graph.people").summary().max() > 0);
+
+        ModelRequestMetrics metrics = new ModelRequestMetrics(meterRegistry, true);
+        ReflectionTestUtils.setField(metrics, "statementCounter", statementCounter);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/model/test");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/model/test");
+        HandlerMethod handler = new HandlerMethod(this, getClass().getDeclaredMethod("noQueries"));
+        metrics.preHandle(request, new MockHttpServletResponse(), handler);
+        metrics.postHandle(request, new MockHttpServletResponse(), handler, null);
+        statementCounter.inspect("SELECT 1");
+        assertThrows(Exception.class, () -> metrics.postHandle(request, new MockHttpServletResponse(), handler, null));
+        assertEquals(1, meterRegistry.counter("familyships.model.over_budget", "endpoint", "/model/test").count());
+    }
+}
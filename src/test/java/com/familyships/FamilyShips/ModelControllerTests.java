@@ -10,6 +10,7 @@ import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequ
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import com.familyships.FamilyShips.model.FamilyChildRepository;
 import com.familyships.FamilyShips.model.FamilyParentRepository;
@@ -47,9 +48,13 @@ public class ModelControllerTests {
             return person;
         });
 
+        RequestPostProcessor julia = SecurityMockMvcRequestPostProcessors.oauth2Login()
+                .attributes(attributes -> attributes.put("sub", "Julia"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/auth/id").with(julia));
+
         mockMvc.perform(MockMvcRequestBuilders.post("/model/new_person").contentType("text/html;charset=UTF-8")
-                .param("name", "Robert")
-                .with(SecurityMockMvcRequestPostProcessors.user("Julia")))
+                .param("spaceSeparatedNames", "Robert")
+                .with(julia))
                 .andExpect(MockMvcResultMatchers.status().isOk());
 
         verify(personRepository).save(argThat(p -> p.getNames().toArray()[0].equals("Robert")));
@@ -0,0 +1,121 @@
+package com.familyships.FamilyShips;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.familyships.FamilyShips.model.Tree;
+import com.familyships.FamilyShips.model.TreeRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// Not part of the regular test run, run with `./mvnw test -Pbenchmark`.
+//
+// Deletes people with dozens of links (each of them the parent of `FAMILIES` families
+// with another parent and two children, and the child of one more family) and
+// reports the latency and the number of JDBC statements of a delete, one person at a
+// time (/model/delete_person) and all of them at once (/model/delete_people).
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class PersonDeleteBenchmark {
+    private static final int PEOPLE = 10;
+    private static final int FAMILIES = 30;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private ModelService modelService;
+
+    @Autowired
+    private TreeRepository treeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private static BatchOperation create(String op, String ref) {
+        BatchOperation operation = new BatchOperation();
+        operation.setOp(op);
+        operation.setRef(ref);
+        return operation;
+    }
+
+    private static BatchOperation attach(String op, String familyRef, String personRef) {
+        BatchOperation operation = new BatchOperation();
+        operation.setOp(op);
+        operation.setFamilyId(familyRef);
+        if (op.equals("attach_child")) {
+            operation.setChildId(personRef);
+        } else {
+            operation.setParentId(personRef);
+        }
+        return operation;
+    }
+
+    // Returns the ids of the people with many links.
+    private List<Integer> buildTree(Integer treeId) {
+        List<BatchOperation> operations = new ArrayList<BatchOperation>();
+        int people = 0;
+        int families = 0;
+        for (int i = 0; i < PEOPLE; i++) {
+            String personRef = "p" + people++;
+            operations.add(create("new_person", personRef));
+            String parentsRef = "f" + families++;
+            operations.add(create("new_family", parentsRef));
+            operations.add(attach("attach_child", parentsRef, personRef));
+            for (int j = 0; j < FAMILIES; j++) {
+                String familyRef = "f" + families++;
+                operations.add(create("new_family", familyRef));
+                operations.add(attach("attach_parent", familyRef, personRef));
+                for (String role : List.of("attach_parent", "attach_child", "attach_child")) {
+                    String otherRef = "p" + people++;
+                    operations.add(create("new_person", otherRef));
+                    operations.add(attach(role, familyRef, otherRef));
+                }
+            }
+        }
+        BatchResult result = modelService.batch(treeId, operations);
+        List<Integer> personIds = new ArrayList<Integer>();
+        for (int i = 0; i < PEOPLE; i++) {
+            personIds.add(result.getIds().get("p" + i * (1 + 3 * FAMILIES)));
+        }
+        return personIds;
+    }
+
+    @Test
+    void benchmarkPersonDeletes() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // The first round warms up the JIT and the id pools.
+        for (int round = 0; round <= ROUNDS; round++) {
+            Integer treeId = treeRepository.save(new Tree()).getId();
+            List<Integer> personIds = buildTree(treeId);
+            statistics.clear();
+            long start = System.nanoTime();
+            for (Integer personId : personIds) {
+                modelService.deletePerson(treeId, personId);
+            }
+            double millis = (System.nanoTime() - start) / 1e6 / PEOPLE;
+            if (round > 0) {
+                System.out.printf("Round %d: %.2fms and %d statements per person with %d links%n", round, millis,
+                        statistics.getPrepareStatementCount() / PEOPLE, FAMILIES + 1);
+            }
+
+            treeId = treeRepository.save(new Tree()).getId();
+            personIds = buildTree(treeId);
+            statistics.clear();
+            start = System.nanoTime();
+            modelService.deletePeople(treeId, personIds);
+            millis = (System.nanoTime() - start) / 1e6;
+            if (round > 0) {
+                System.out.printf("Round %d: %.2fms and %d statements for %d people at once%n", round, millis,
+                        statistics.getPrepareStatementCount(), PEOPLE);
+            }
+        }
+    }
+}
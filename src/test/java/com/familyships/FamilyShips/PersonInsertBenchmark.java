@@ -0,0 +1,63 @@
+package com.familyships.FamilyShips;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.familyships.FamilyShips.model.Tree;
+import com.familyships.FamilyShips.model.TreeRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// Not part of the regular test run, run with `./mvnw test -Pbenchmark`.
+//
+// Creates 10k people in one `/model/batch` worth of operations and reports how many
+// were inserted per second and how many JDBC statements and batches that took.
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class PersonInsertBenchmark {
+    private static final int PEOPLE = 10_000;
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    private ModelService modelService;
+
+    @Autowired
+    private TreeRepository treeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void benchmarkPersonInserts() {
+        List<BatchOperation> operations = new ArrayList<BatchOperation>();
+        for (int i = 0; i < PEOPLE; i++) {
+            BatchOperation operation = new BatchOperation();
+            operation.setOp("new_person");
+            operation.setSpaceSeparatedNames("Person " + i);
+            operations.add(operation);
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // The first round warms up the JIT and the id pools.
+        for (int round = 0; round <= ROUNDS; round++) {
+            Integer treeId = treeRepository.save(new Tree()).getId();
+            statistics.clear();
+            long start = System.nanoTime();
+            modelService.batch(treeId, operations);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (round > 0) {
+                System.out.printf("Round %d: %d people in %.3fs, %.0f people/s, %d statements, %d entity inserts%n",
+                        round, PEOPLE, seconds, PEOPLE / seconds, statistics.getPrepareStatementCount(),
+                        statistics.getEntityInsertCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.familyships.FamilyShips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.familyships.FamilyShips.model.PersonRepository;
+import com.familyships.FamilyShips.model.Tree;
+import com.familyships.FamilyShips.model.TreeRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Not part of the regular test run, run with `./mvnw test -Pbenchmark`.
+//
+// Reads all the people of a tree of 500 people as JSON (what /model/people does) from a
+// growing number of concurrent users, with a connection pool of 4, and reports the
+// latencies and the most users served within a p99 of 200ms, for:
+//
+// - entities: the people loaded as entities and written while the transaction is
+//   still open, so their families are loaded lazily one by one and the connection is
+//   held for the whole response (what open-in-view did),
+// - graph: `ModelService.people`, the names and the cached graph of the tree in a
+//   short transaction, written after the connection went back to the pool.
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "spring.datasource.hikari.maximum-pool-size=4")
+public class ReadPathLoadBenchmark {
+    private static final int PEOPLE = 500;
+    private static final int REQUESTS_PER_USER = 10;
+    private static final int[] USERS = { 1, 2, 4, 8, 16, 32 };
+    private static final double P99_BUDGET_MS = 200;
+
+    @Autowired
+    private ModelService modelService;
+    @Autowired
+    private TreeRepository treeRepository;
+    @Autowired
+    private PersonRepository personRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private interface Request {
+        void run() throws Exception;
+    }
+
+    @Test
+    void benchmarkReadPath() throws Exception {
+        Integer treeId = treeRepository.save(new Tree()).getId();
+        List<BatchOperation> operations = new ArrayList<BatchOperation>();
+        for (int i = 0; i < PEOPLE; i++) {
+            operations.add(operation("new_person", "p" + i, "spaceSeparatedNames", "Person " + i));
+        }
+        // Two parents and two children per family, every child a parent in the next one.
+        for (int family = 0; 2 * family + 3 < PEOPLE; family++) {
+            operations.add(operation("new_family", "f" + family));
+            operations.add(operation("attach_parent", null, "familyId", "f" + family, "parentId", "p" + 2 * family));
+            operations.add(operation("attach_parent", null, "familyId", "f" + family, "parentId",
+                    "p" + (2 * family + 1)));
+            operations.add(operation("attach_child", null, "familyId", "f" + family, "childId",
+                    "p" + (2 * family + 2)));
+            operations.add(operation("attach_child", null, "familyId", "f" + family, "childId",
+                    "p" + (2 * family + 3)));
+        }
+        modelService.batch(treeId, operations);
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Request entities = () -> readOnly.execute(status -> {
+            try {
+                return objectMapper.writeValueAsBytes(personRepository.findAllById(personRepository.findIdsByTreeId(treeId)));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Request graph = () -> objectMapper
+                .writeValueAsBytes(modelService.people(treeId, modelService.revision(treeId)));
+
+        report("entities", entities);
+        report("graph", graph);
+    }
+
+    private static BatchOperation operation(String op, String ref, String... fields) {
+        BatchOperation operation = new BatchOperation();
+        operation.setOp(op);
+        operation.setRef(ref);
+        for (int i = 0; i < fields.length; i += 2) {
+            switch (fields[i]) {
+                case "spaceSeparatedNames":
+                    operation.setSpaceSeparatedNames(fields[i + 1]);
+                    break;
+                case "familyId":
+                    operation.setFamilyId(fields[i + 1]);
+                    break;
+                case "parentId":
+                    operation.setParentId(fields[i + 1]);
+                    break;
+                case "childId":
+                    operation.setChildId(fields[i + 1]);
+                    break;
+            }
+        }
+        return operation;
+    }
+
+    private static void report(String name, Request request) throws Exception {
+        // Warms up the JIT and the caches.
+        latencies(4, request);
+        int capacity = 0;
+        for (int users : USERS) {
+            long start = System.nanoTime();
+            double[] latencies = latencies(users, request);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double p99 = percentile(latencies, 0.99);
+            System.out.printf("%s, %d users: p50 %.1fms, p99 %.1fms, %.0f requests/s%n", name, users,
+                    percentile(latencies, 0.5), p99, latencies.length / seconds);
+            if (p99 <= P99_BUDGET_MS) {
+                capacity = users;
+            }
+        }
+        System.out.printf("%s: %d users within a p99 of %.0fms%n", name, capacity, P99_BUDGET_MS);
+    }
+
+    // Milliseconds every request took, sorted.
+    private static double[] latencies(int users, Request request) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        try {
+            List<Future<double[]>> results = new ArrayList<Future<double[]>>();
+            for (int user = 0; user < users; user++) {
+                results.add(executor.submit(() -> {
+                    double[] latencies = new double[REQUESTS_PER_USER];
+                    for (int i = 0; i < REQUESTS_PER_USER; i++) {
+                        long start = System.nanoTime();
+                        request.run();
+                        latencies[i] = (System.nanoTime() - start) / 1e6;
+                    }
+                    return latencies;
+                }));
+            }
+            double[] all = new double[users * REQUESTS_PER_USER];
+            for (int user = 0; user < users; user++) {
+                System.arraycopy(results.get(user).get(), 0, all, user * REQUESTS_PER_USER, REQUESTS_PER_USER);
+            }
+            Arrays.sort(all);
+            return all;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static double percentile(double[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,67 @@
+package com.familyships.FamilyShips;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.familyships.FamilyShips.graph.SyntheticTree;
+import com.familyships.FamilyShips.graph.TreeGraph;
+import com.familyships.FamilyShips.model.TreeSnapshot;
+import com.familyships.FamilyShips.model.TreeSnapshotConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Not part of the regular test run, run with `./mvnw test -Pbenchmark`.
+//
+// Encodes the snapshot of a synthetic tree of 20k people as JSON and in the binary
+// format of `TreeSnapshotConverter` and reports the sizes (plain and gzipped, as sent
+// with response compression on) and how long encoding takes.
+public class SnapshotEncodingBenchmark {
+    private static final int PEOPLE = 20_000;
+    private static final String[] FIRST_NAMES = { "Anna", "Maria", "Katarzyna", "Jan", "Piotr", "Krzysztof",
+            "Zofia", "Stanisław", "Józef", "Helena", "Tomasz", "Agnieszka" };
+    private static final String[] SURNAMES = { "Nowak", "Kowalski", "Wiśniewski", "Wójcik", "Kowalczyk",
+            "Kamiński", "Lewandowski", "Zieliński", "Szymański", "Woźniak", "Dąbrowski", "Kozłowski" };
+
+    private static int gzippedSize(byte[] bytes) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(bytes);
+        }
+        return output.size();
+    }
+
+    @Test
+    void benchmarkEncoding() throws IOException {
+        TreeGraph graph = new SyntheticTree(PEOPLE, 1).graph(1);
+        Random random = new Random(1);
+        List<Object[]> peopleAndNames = new ArrayList<Object[]>();
+        for (int personId : graph.personIds()) {
+            peopleAndNames.add(new Object[] { personId, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)], 0 });
+            peopleAndNames.add(new Object[] { personId, SURNAMES[random.nextInt(SURNAMES.length)], 0 });
+        }
+        TreeSnapshot snapshot = new TreeSnapshot(peopleAndNames, graph);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        // The first round warms up the JIT.
+        for (int round = 0; round <= 5; round++) {
+            long start = System.nanoTime();
+            byte[] json = objectMapper.writeValueAsBytes(snapshot);
+            long jsonEncoded = System.nanoTime();
+            ByteArrayOutputStream binary = new ByteArrayOutputStream();
+            TreeSnapshotConverter.write(snapshot, binary);
+            long binaryEncoded = System.nanoTime();
+            if (round > 0) {
+                System.out.printf("Round %d: %d people, %d families, JSON %.1fKB (%.1fKB gzipped) in %.1fms, "
+                        + "binary %.1fKB (%.1fKB gzipped) in %.1fms%n", round, graph.peopleCount(),
+                        graph.familyCount(), json.length / 1024.0, gzippedSize(json) / 1024.0,
+                        (jsonEncoded - start) / 1e6, binary.size() / 1024.0,
+                        gzippedSize(binary.toByteArray()) / 1024.0, (binaryEncoded - jsonEncoded) / 1e6);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.familyships.FamilyShips;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.familyships.FamilyShips.model.FamilyRepository;
+import com.familyships.FamilyShips.model.Person;
+import com.familyships.FamilyShips.model.PersonRepository;
+import com.familyships.FamilyShips.model.Tree;
+import com.familyships.FamilyShips.model.TreeChange;
+import com.familyships.FamilyShips.model.TreeOwnershipMigration;
+import com.familyships.FamilyShips.model.TreeRepository;
+import com.familyships.FamilyShips.model.TreeSnapshot;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// The sweeps are run by hand, the scheduled ones are turned off in the tests.
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class TombstoneSweeperTests {
+    @Autowired
+    private TombstoneSweeper tombstoneSweeper;
+
+    @Autowired
+    private ModelService modelService;
+
+    @Autowired
+    private TreeRepository treeRepository;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private FamilyRepository familyRepository;
+
+    @Autowired
+    private TreeOwnershipMigration treeOwnershipMigration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private List<Integer> familyIds(Integer treeId) {
+        TreeSnapshot snapshot = modelService.snapshot(treeId, modelService.revision(treeId));
+        return snapshot.getFamilies().stream().map(TreeSnapshot.FamilyEntry::getId).toList();
+    }
+
+    @Test
+    void testEmptyFamiliesAreRemovedOnTheSecondSweep() {
+        Integer treeId = treeRepository.save(new Tree()).getId();
+        Integer unlinkedId = modelService.newFamily(treeId);
+        Integer detachedId = modelService.newFamily(treeId);
+        Integer relinkedId = modelService.newFamily(treeId);
+        Integer linkedId = modelService.newFamily(treeId);
+        Integer childId = modelService.newPerson(treeId, List.of("Child"));
+        modelService.attachChild(treeId, detachedId, childId);
+        modelService.detachChild(treeId, detachedId, childId);
+        modelService.attachChild(treeId, linkedId, childId);
+        // Detaching the last link is left to the sweeper.
+        assertTrue(familyIds(treeId).contains(detachedId));
+
+        tombstoneSweeper.sweep();
+        assertEquals(List.of(unlinkedId, detachedId, relinkedId, linkedId), familyIds(treeId));
+        double removed = meterRegistry.counter("familyships.sweeper.cleaned", "kind", "empty_families").count();
+
+        // Linked in between, so it has a whole interval again.
+        modelService.attachChild(treeId, relinkedId, childId);
+        modelService.detachChild(treeId, relinkedId, childId);
+        long revision = modelService.revision(treeId);
+        tombstoneSweeper.sweep();
+        assertEquals(List.of(relinkedId, linkedId), familyIds(treeId));
+        assertEquals(removed + 2,
+                meterRegistry.counter("familyships.sweeper.cleaned", "kind", "empty_families").count());
+        assertTrue(meterRegistry.get("familyships.sweeper.backlog").tag("kind", "empty_families").gauge()
+                .value() >= 3);
+        // The clients find out like about any other change.
+        List<TreeChange> changes = modelService.changes(treeId, revision).getChanges();
+        assertEquals(List.of(TreeChange.Kind.FAMILY_REMOVED, TreeChange.Kind.FAMILY_REMOVED),
+                changes.stream().map(TreeChange::getKind).toList());
+        // And purged right away.
+        assertFalse(familyRepository.findById(unlinkedId).isPresent());
+        assertFalse(familyRepository.findById(detachedId).isPresent());
+
+        tombstoneSweeper.sweep();
+        assertEquals(List.of(linkedId), familyIds(treeId));
+    }
+
+    @Test
+    void testDeletedPeopleAndFamiliesArePurged() throws Exception {
+        Integer treeId = treeRepository.save(new Tree()).getId();
+        Integer personId = modelService.newPerson(treeId, List.of("Anna", "Smith"));
+        Integer familyId = modelService.newFamily(treeId);
+        modelService.attachParent(treeId, familyId, personId);
+        Integer otherFamilyId = modelService.newFamily(treeId);
+        modelService.attachParent(treeId, otherFamilyId, personId);
+
+        assertTrue(modelService.deletePerson(treeId, personId));
+        assertTrue(modelService.deleteFamily(treeId, familyId));
+        Person person = personRepository.findById(personId).get();
+        assertNull(person.getTreeId());
+        assertNotNull(person.getRemovedAt());
+        assertNull(familyRepository.findById(familyId).get().getTreeId());
+        // Ownership rows from before `tree_id`, which must not bring them back, and
+        // must not keep them from being purged.
+        jdbcTemplate.execute("CREATE TABLE tree_people (tree_id INT, people_id INT REFERENCES person(id))");
+        jdbcTemplate.execute("CREATE TABLE tree_families (tree_id INT, families_id INT REFERENCES family(id))");
+        try {
+            jdbcTemplate.update("INSERT INTO tree_people VALUES (?, ?)", treeId, personId);
+            jdbcTemplate.update("INSERT INTO tree_families VALUES (?, ?)", treeId, familyId);
+            // And one that wasn't migrated yet.
+            Integer legacyId = modelService.newPerson(treeId, List.of("Legacy"));
+            jdbcTemplate.update("UPDATE person SET tree_id = NULL, generation = NULL WHERE id = ?", legacyId);
+            jdbcTemplate.update("INSERT INTO tree_people VALUES (?, ?)", treeId, legacyId);
+            treeOwnershipMigration.migrate();
+            assertNull(personRepository.findById(personId).get().getTreeId());
+            assertEquals(treeId, personRepository.findById(legacyId).get().getTreeId());
+            assertEquals(0, personRepository.findById(legacyId).get().getGeneration());
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tree_people", Integer.class));
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tree_families", Integer.class));
+
+            tombstoneSweeper.sweep();
+            assertFalse(personRepository.findById(personId).isPresent());
+            assertFalse(familyRepository.findById(familyId).isPresent());
+            assertTrue(familyRepository.findById(otherFamilyId).isPresent());
+            assertTrue(meterRegistry.get("familyships.sweeper.backlog").tag("kind", "people").gauge().value() >= 1);
+            assertTrue(meterRegistry.counter("familyships.sweeper.cleaned", "kind", "families").count() >= 1);
+        } finally {
+            jdbcTemplate.execute("DROP TABLE tree_people");
+            jdbcTemplate.execute("DROP TABLE tree_families");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.familyships.FamilyShips.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.h2.Driver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.familyships.FamilyShips.ModelService;
+import com.familyships.FamilyShips.authentication.PrincipalTreeCache;
+import com.familyships.FamilyShips.authentication.User;
+import com.familyships.FamilyShips.authentication.UserRepository;
+import com.familyships.FamilyShips.model.Tree;
+import com.familyships.FamilyShips.model.TreeRepository;
+import com.jayway.jsonpath.JsonPath;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Two in-memory databases, the second one a replica of the first. Nothing replicates
+// on its own, the tests copy everything over with `replicate`, so in between the
+// replica is as far behind as it gets.
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = { "familyships.datasource.replica-urls=" + ReplicaRoutingTests.REPLICA_URL,
+        "familyships.datasource.read-your-writes-window=PT1M" })
+@AutoConfigureMockMvc
+public class ReplicaRoutingTests {
+    static final String REPLICA_URL = "jdbc:h2:mem:FamilyShipsReplica;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ModelService modelService;
+
+    @Autowired
+    private TreeRepository treeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PrincipalTreeCache principalTreeCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private void replicate() {
+        List<String> script = jdbcTemplate.queryForList("SCRIPT", String.class);
+        JdbcTemplate replica = new JdbcTemplate(new SimpleDriverDataSource(new Driver(), REPLICA_URL, "sa", ""));
+        replica.execute("DROP ALL OBJECTS");
+        script.forEach(replica::execute);
+    }
+
+    // Registered without a request (like /auth/id would), so that they don't read from
+    // the primary afterwards.
+    private RequestPostProcessor register(String sub, Tree tree) {
+        User user = new User();
+        user.setGoogleSub(sub);
+        user.attachTree(tree);
+        userRepository.save(user);
+        principalTreeCache.put("google:" + sub, tree.getId());
+        return SecurityMockMvcRequestPostProcessors.oauth2Login().attributes(attributes -> attributes.put("sub", sub));
+    }
+
+    private List<String> names(RequestPostProcessor user) throws Exception {
+        String json = mockMvc.perform(MockMvcRequestBuilders.get("/model/people").with(user))
+                .andExpect(MockMvcResultMatchers.status().isOk()).andReturn().getResponse().getContentAsString();
+        return JsonPath.read(json, "$[*].names[0]");
+    }
+
+    private double connections(String target) {
+        return meterRegistry.counter("familyships.datasource.connections", "target", target).count();
+    }
+
+    @Test
+    void testReadsGoToTheReplicaUntilTheUserModifiesTheirTree() throws Exception {
+        Tree julia = treeRepository.save(new Tree());
+        RequestPostProcessor asJulia = register("Julia", julia);
+        RequestPostProcessor asMaria = register("Maria", treeRepository.save(new Tree()));
+        replicate();
+        // Not replicated yet.
+        modelService.newPerson(julia.getId(), List.of("Anna"));
+
+        double replicaConnections = connections("replica");
+        assertEquals(List.of(), names(asJulia));
+        assertTrue(connections("replica") > replicaConnections);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/model/new_person").param("spaceSeparatedNames", "Robert")
+                .with(asJulia)).andExpect(MockMvcResultMatchers.status().isOk());
+        // Julia sees her own modification (and everything before it) right away.
+        replicaConnections = connections("replica");
+        double primaryConnections = connections("primary");
+        assertEquals(List.of("Anna", "Robert"), names(asJulia));
+        assertEquals(replicaConnections, connections("replica"));
+        assertTrue(connections("primary") > primaryConnections);
+
+        // Maria didn't modify anything, so she still reads from the replica.
+        assertEquals(List.of(), names(asMaria));
+        assertTrue(connections("replica") > replicaConnections);
+    }
+}
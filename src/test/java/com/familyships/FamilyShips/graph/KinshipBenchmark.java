@@ -0,0 +1,52 @@
+package com.familyships.FamilyShips.graph;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// Not part of the regular test run, run with `./mvnw test -Pbenchmark`.
+//
+// Builds the `KinshipIndex` of a synthetic tree of 100k people and reports how long
+// building it (from the `TreeGraph`) and answering queries between random people takes.
+public class KinshipBenchmark {
+    private static final int PEOPLE = 100_000;
+    private static final int QUERIES = 10_000;
+
+    @Test
+    void benchmarkQueries() {
+        SyntheticTree tree = new SyntheticTree(PEOPLE, 1);
+        // The first round warms up the JIT.
+        for (int round = 0; round <= 3; round++) {
+            long start = System.nanoTime();
+            KinshipIndex index = new KinshipIndex(tree.graph(0));
+            long built = System.nanoTime();
+
+            Random random = new Random(round);
+            int related = 0;
+            long ancestors = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                int personId = 1 + random.nextInt(PEOPLE);
+                ancestors += index.ancestors(personId, null).size();
+                if (index.relationship(personId, 1 + random.nextInt(PEOPLE)).getName() != null) {
+                    related++;
+                }
+            }
+            long queried = System.nanoTime();
+
+            // The synthetic trees start with 100 people without parents.
+            long descendants = 0;
+            for (int personId = 1; personId <= 100; personId++) {
+                descendants += index.descendants(personId, null).size();
+            }
+            long descendantsQueried = System.nanoTime();
+            if (round > 0) {
+                System.out.printf("Round %d: %d people, index built in %.1fms, %.1fus per ancestors + "
+                        + "relationship query (%.1f ancestors on average, %d of %d related), "
+                        + "%.3fms per descendants query (%.1f descendants on average)%n", round,
+                        index.peopleCount(), (built - start) / 1e6, (queried - built) / 1e3 / QUERIES,
+                        (double) ancestors / QUERIES, related, QUERIES, (descendantsQueried - queried) / 1e6 / 100,
+                        descendants / 100.0);
+            }
+        }
+    }
+}
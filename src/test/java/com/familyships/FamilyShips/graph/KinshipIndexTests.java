@@ -0,0 +1,70 @@
+package com.familyships.FamilyShips.graph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class KinshipIndexTests {
+    // 1 and 2 are the parents of 3 and 4 (family 1), 3 of 5 (family 2), 4 of 6 (family
+    // 3), 5 of 7 (family 4), 6 of 8 (family 5) and 8 of 9 (family 6). 10 is unrelated.
+    private static KinshipIndex family() {
+        return new KinshipIndex(new TreeGraph(0, new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 },
+                new int[] { 1, 2, 3, 4, 5, 6 }, new int[] { 1, 1, 2, 3, 4, 5, 6 },
+                new int[] { 1, 2, 3, 4, 5, 6, 8 }, new int[] { 1, 1, 2, 3, 4, 5, 6 },
+                new int[] { 3, 4, 5, 6, 7, 8, 9 }));
+    }
+
+    private static List<List<Integer>> relatives(List<KinshipIndex.Relative> relatives) {
+        return relatives.stream().map(relative -> List.of(relative.getId(), relative.getDistance())).toList();
+    }
+
+    @Test
+    void testAncestorsAndDescendants() {
+        KinshipIndex index = family();
+
+        assertEquals(List.of(List.of(3, 1), List.of(1, 2), List.of(2, 2)), relatives(index.ancestors(5, null)));
+        assertEquals(List.of(List.of(3, 1)), relatives(index.ancestors(5, 1)));
+        assertEquals(List.of(List.of(6, 1), List.of(8, 2)), relatives(index.descendants(4, 2)));
+        assertEquals(List.of(), relatives(index.descendants(10, null)));
+    }
+
+    @Test
+    void testLowestCommonAncestors() {
+        KinshipIndex index = family();
+
+        List<KinshipIndex.CommonAncestor> ancestors = index.lowestCommonAncestors(7, 9);
+        assertEquals(List.of(1, 2), ancestors.stream().map(KinshipIndex.CommonAncestor::getId).toList());
+        assertEquals(3, ancestors.get(0).getPersonDistance());
+        assertEquals(4, ancestors.get(0).getRelativeDistance());
+        assertEquals(List.of(3), index.lowestCommonAncestors(7, 3).stream()
+                .map(KinshipIndex.CommonAncestor::getId).toList());
+        assertEquals(List.of(), index.lowestCommonAncestors(7, 10));
+    }
+
+    @Test
+    void testRelationshipNames() {
+        KinshipIndex index = family();
+
+        assertEquals("self", index.relationship(5, 5).getName());
+        assertEquals("parent", index.relationship(5, 3).getName());
+        assertEquals("grandchild", index.relationship(1, 5).getName());
+        assertEquals("sibling", index.relationship(3, 4).getName());
+        assertEquals("aunt or uncle", index.relationship(5, 4).getName());
+        assertEquals("great-niece or great-nephew", index.relationship(3, 8).getName());
+        assertEquals("first cousin", index.relationship(5, 6).getName());
+        assertEquals("first cousin once removed", index.relationship(5, 8).getName());
+        assertEquals("first cousin twice removed", index.relationship(5, 9).getName());
+        assertEquals("second cousin once removed", index.relationship(7, 9).getName());
+        assertNull(index.relationship(7, 10).getName());
+
+        assertEquals("great-great-grandparent", KinshipIndex.name(4, 0));
+        assertEquals("3rd great-grandparent", KinshipIndex.name(5, 0));
+        assertEquals("3rd great-grandchild", KinshipIndex.name(0, 5));
+        assertEquals("great-great-aunt or great-great-uncle", KinshipIndex.name(4, 1));
+        assertEquals("third cousin 3 times removed", KinshipIndex.name(4, 7));
+        assertEquals("12th cousin", KinshipIndex.name(13, 13));
+    }
+}
@@ -0,0 +1,41 @@
+package com.familyships.FamilyShips.graph;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class NeighborhoodTests {
+    // Family 1: 1 and 2 are the parents of 3 and 4.
+    // Family 2: 3 and 5 are the parents of 6.
+    // Family 3: 6 is the parent of 7.
+    // Family 4: 4 is the parent of 8.
+    private static final TreeGraph GRAPH = new TreeGraph(0, new int[] { 1, 2, 3, 4, 5, 6, 7, 8 },
+            new int[] { 1, 2, 3, 4 }, new int[] { 1, 1, 2, 2, 3, 4 }, new int[] { 1, 2, 3, 5, 6, 4 },
+            new int[] { 1, 1, 2, 3, 4 }, new int[] { 3, 4, 6, 7, 8 });
+
+    private static int[] ids(int[] indices, int[] ids) {
+        return Arrays.stream(indices).map(index -> ids[index]).toArray();
+    }
+
+    private static void assertNeighborhood(int personId, int up, int down, int sideways, int[] personIds,
+            int[] familyIds) {
+        Neighborhood neighborhood = new Neighborhood(GRAPH, GRAPH.personIndex(personId), up, down, sideways);
+        assertArrayEquals(personIds, ids(neighborhood.people(), GRAPH.personIds()));
+        assertArrayEquals(familyIds, ids(neighborhood.families(), GRAPH.familyIds()));
+    }
+
+    @Test
+    void testGenerationsAndSideways() {
+        assertNeighborhood(6, 0, 0, 0, new int[] { 6 }, new int[] { 2, 3 });
+        assertNeighborhood(6, 1, 0, 0, new int[] { 3, 5, 6 }, new int[] { 1, 2, 3 });
+        assertNeighborhood(6, 2, 1, 0, new int[] { 1, 2, 3, 5, 6, 7 }, new int[] { 1, 2, 3 });
+        // The sibling of 3 comes in sideways, but not their child.
+        assertNeighborhood(6, 1, 0, 1, new int[] { 3, 4, 5, 6 }, new int[] { 1, 2, 3, 4 });
+        assertNeighborhood(3, 0, 0, 1, new int[] { 3, 4, 5 }, new int[] { 1, 2, 4 });
+        // Partners of siblings.
+        assertNeighborhood(4, 0, 0, 2, new int[] { 3, 4, 5 }, new int[] { 1, 2, 4 });
+        assertNeighborhood(1, 0, 3, 0, new int[] { 1, 3, 4, 6, 7, 8 }, new int[] { 1, 2, 3, 4 });
+    }
+}
@@ -0,0 +1,49 @@
+package com.familyships.FamilyShips.graph;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// Not part of the regular test run, run with `./mvnw test -Pbenchmark`.
+//
+// Builds synthetic trees of growing size link by link (checking every link first,
+// like `/model/attach_*` does) and reports how long building the index from the
+// link tables takes and how long checking a link takes, for links that would be
+// accepted and for links that would close a loop.
+public class ReachabilityBenchmark {
+    private static final int[] SIZES = { 1_000, 10_000, 50_000, 100_000 };
+    private static final int CHECKS = 100_000;
+
+    @Test
+    void benchmarkChecks() {
+        // The first round warms up the JIT.
+        for (int round = 0; round <= 1; round++) {
+            for (int size : SIZES) {
+                SyntheticTree tree = new SyntheticTree(size, size);
+                long start = System.nanoTime();
+                ReachabilityIndex index = ReachabilityIndex.of(tree.parentLinkFamilyIds.toArray(),
+                        tree.parentLinkPersonIds.toArray(), tree.childLinkFamilyIds.toArray(),
+                        tree.childLinkPersonIds.toArray());
+                long built = System.nanoTime();
+
+                // Random people as new parents of random families, most of which are
+                // fine and some (someone becoming a parent of their own ancestors) are not.
+                Random random = new Random(round);
+                int loops = 0;
+                long checkStart = System.nanoTime();
+                for (int i = 0; i < CHECKS; i++) {
+                    if (index.wouldLoopWithParent(1 + random.nextInt(tree.families), 1 + random.nextInt(size))) {
+                        loops++;
+                    }
+                }
+                long checked = System.nanoTime();
+                if (round > 0) {
+                    System.out.printf("%d people, %d families: built in %.1fms, %.2fus per link while building, "
+                            + "%.2fus per random link (%d of %d loop)%n", size, tree.families, (built - start) / 1e6,
+                            tree.checkNanos / 1e3 / tree.checks, (checked - checkStart) / 1e3 / CHECKS, loops,
+                            CHECKS);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.familyships.FamilyShips.graph;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class ReachabilityIndexTests {
+    @Test
+    void testLoopsThroughDescendants() {
+        // 1 and 2 are the parents of 3 (family 1), 3 is the parent of 4 (family 2).
+        ReachabilityIndex index = ReachabilityIndex.of(new int[] { 1, 1, 2 }, new int[] { 1, 2, 3 },
+                new int[] { 1, 2 }, new int[] { 3, 4 });
+
+        assertTrue(index.wouldLoopWithChild(2, 1));
+        assertTrue(index.wouldLoopWithChild(2, 3));
+        assertTrue(index.wouldLoopWithParent(1, 4));
+        assertFalse(index.wouldLoopWithChild(1, 4));
+        assertFalse(index.wouldLoopWithParent(2, 1));
+        // People and families the index didn't see yet have no links.
+        assertFalse(index.wouldLoopWithParent(3, 1));
+        assertFalse(index.wouldLoopWithParent(2, 5));
+
+        // 4 becomes a parent of 5, which can't be a parent of 3 anymore, 1 still can be a
+        // parent of 5.
+        index.attachParent(3, 4);
+        index.attachChild(3, 5);
+        assertTrue(index.wouldLoopWithParent(1, 5));
+        assertFalse(index.wouldLoopWithParent(3, 1));
+
+        index.detachChild(2, 4);
+        assertFalse(index.wouldLoopWithParent(1, 5));
+        assertTrue(index.wouldLoopWithChild(2, 1));
+    }
+
+    @Test
+    void testTreesThatAlreadyLoop() {
+        // 1 is the parent of 2 (family 1) and 2 is the parent of 1 (family 2).
+        ReachabilityIndex index = ReachabilityIndex.of(new int[] { 1, 2 }, new int[] { 1, 2 },
+                new int[] { 1, 2 }, new int[] { 2, 1 });
+        index.attachParent(3, 2);
+        index.attachChild(3, 3);
+
+        assertTrue(index.wouldLoopWithParent(1, 3));
+        assertFalse(index.wouldLoopWithChild(3, 4));
+
+        index.detachChild(2, 1);
+        assertTrue(index.wouldLoopWithParent(1, 3));
+        assertFalse(index.wouldLoopWithParent(2, 3));
+        assertTrue(index.wouldLoopWithChild(3, 1));
+    }
+}
@@ -0,0 +1,84 @@
+package com.familyships.FamilyShips.graph;
+
+import java.util.Random;
+
+// Generations of couples, where every child of the previous generation finds a
+// partner from outside of the tree with some probability, and every couple has
+// up to four children (the same shape as `LayoutBenchmark`). Every link is checked
+// with the `ReachabilityIndex` before it's added, timing the checks.
+public class SyntheticTree {
+    final IntList parentLinkFamilyIds = new IntList();
+    final IntList parentLinkPersonIds = new IntList();
+    final IntList childLinkFamilyIds = new IntList();
+    final IntList childLinkPersonIds = new IntList();
+    final ReachabilityIndex index = new ReachabilityIndex();
+    int people = 0;
+    int families = 0;
+    long checks = 0;
+    long checkNanos = 0;
+
+    public SyntheticTree(int size, long seed) {
+        Random random = new Random(seed);
+        IntList generation = new IntList();
+        for (int i = 0; i < 100; i++) {
+            generation.add(++people);
+        }
+        while (people < size) {
+            IntList nextGeneration = new IntList();
+            for (int i = 0; i < generation.size() && people < size; i++) {
+                if (random.nextInt(4) == 0) {
+                    continue;
+                }
+                int partner = ++people;
+                int family = ++families;
+                attachParent(family, generation.get(i));
+                attachParent(family, partner);
+                int children = 1 + random.nextInt(4);
+                for (int j = 0; j < children && people < size; j++) {
+                    attachChild(family, ++people);
+                    nextGeneration.add(people);
+                }
+            }
+            generation = nextGeneration.isEmpty() ? IntList.of(people) : nextGeneration;
+        }
+    }
+
+    public TreeGraph graph(long revision) {
+        int[] personIds = new int[people];
+        for (int i = 0; i < people; i++) {
+            personIds[i] = i + 1;
+        }
+        int[] familyIds = new int[families];
+        for (int i = 0; i < families; i++) {
+            familyIds[i] = i + 1;
+        }
+        return new TreeGraph(revision, personIds, familyIds, parentLinkFamilyIds.toArray(),
+                parentLinkPersonIds.toArray(), childLinkFamilyIds.toArray(), childLinkPersonIds.toArray());
+    }
+
+    private void attachParent(int family, int person) {
+        long start = System.nanoTime();
+        boolean loops = index.wouldLoopWithParent(family, person);
+        checkNanos += System.nanoTime() - start;
+        checks++;
+        if (loops) {
+            throw new IllegalStateException("Synthetic trees don't loop");
+        }
+        index.attachParent(family, person);
+        parentLinkFamilyIds.add(family);
+        parentLinkPersonIds.add(person);
+    }
+
+    private void attachChild(int family, int person) {
+        long start = System.nanoTime();
+        boolean loops = index.wouldLoopWithChild(family, person);
+        checkNanos += System.nanoTime() - start;
+        checks++;
+        if (loops) {
+            throw new IllegalStateException("Synthetic trees don't loop");
+        }
+        index.attachChild(family, person);
+        childLinkFamilyIds.add(family);
+        childLinkPersonIds.add(person);
+    }
+}
@@ -0,0 +1,44 @@
+package com.familyships.FamilyShips.graph;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// Not part of the regular test run, run with `./mvnw test -Pbenchmark`.
+//
+// Builds the `TreeGraph` of synthetic trees of 50k and 100k people and reports how
+// long building it and applying a batch of changes to it takes, and how much memory
+// it takes per person.
+public class TreeGraphBenchmark {
+    private static final int CHANGES = 100;
+
+    @Test
+    void benchmarkGraph() {
+        for (int people : new int[] { 50_000, 100_000 }) {
+            SyntheticTree tree = new SyntheticTree(people, 1);
+            // The first round warms up the JIT.
+            for (int round = 0; round <= 3; round++) {
+                long start = System.nanoTime();
+                TreeGraph graph = tree.graph(0);
+                long built = System.nanoTime();
+
+                Random random = new Random(round);
+                TreeGraph.Patch patch = new TreeGraph.Patch();
+                for (int i = 0; i < CHANGES; i++) {
+                    int personId = people + 1 + i;
+                    patch.addPerson(personId);
+                    patch.attachChild(1 + random.nextInt(tree.families), personId);
+                }
+                long patchStart = System.nanoTime();
+                TreeGraph patched = graph.patched(patch, 1);
+                long patchEnd = System.nanoTime();
+                if (round > 0) {
+                    System.out.printf("Round %d: %d people, %d families, graph built in %.1fms, "
+                            + "%d changes applied in %.1fms, %.1f bytes per person%n", round,
+                            patched.peopleCount(), patched.familyCount(), (built - start) / 1e6, CHANGES,
+                            (patchEnd - patchStart) / 1e6, (double) graph.estimatedBytes() / graph.peopleCount());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.familyships.FamilyShips.graph;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TreeGraphTests {
+    // Ids of the people the family links to, from the given rows.
+    private static int[] peopleOf(TreeGraph graph, int familyId, int[] offsets, int[] values) {
+        int family = graph.familyIndex(familyId);
+        int[] result = new int[offsets[family + 1] - offsets[family]];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = graph.personIds()[values[offsets[family] + i]];
+        }
+        return result;
+    }
+
+    private static int[] parentsOf(TreeGraph graph, int familyId) {
+        return peopleOf(graph, familyId, graph.familyParentsOffsets(), graph.familyParents());
+    }
+
+    private static int[] childrenOf(TreeGraph graph, int familyId) {
+        return peopleOf(graph, familyId, graph.familyChildrenOffsets(), graph.familyChildren());
+    }
+
+    @Test
+    void testLinksAreGroupedByIndex() {
+        // 30 and 10 are the parents of 20 (family 7), 20 is the parent of 40 (family 5).
+        // The link to person 50 is ignored, there is no such person.
+        TreeGraph graph = new TreeGraph(3, new int[] { 40, 10, 30, 20 }, new int[] { 7, 5 },
+                new int[] { 7, 7, 5 }, new int[] { 30, 10, 20 }, new int[] { 7, 5, 5 }, new int[] { 20, 40, 50 });
+
+        assertEquals(3, graph.getRevision());
+        assertArrayEquals(new int[] { 10, 20, 30, 40 }, graph.personIds());
+        assertArrayEquals(new int[] { 5, 7 }, graph.familyIds());
+        assertArrayEquals(new int[] { 10, 30 }, parentsOf(graph, 7));
+        assertArrayEquals(new int[] { 40 }, childrenOf(graph, 5));
+        int person = graph.personIndex(20);
+        assertEquals(graph.familyIndex(5), graph.parentOf()[graph.parentOfOffsets()[person]]);
+        assertEquals(graph.familyIndex(7), graph.childOf()[graph.childOfOffsets()[person]]);
+        assertTrue(graph.personIndex(50) < 0);
+    }
+
+    @Test
+    void testPatched() {
+        TreeGraph graph = new TreeGraph(1, new int[] { 1, 2, 3 }, new int[] { 1 }, new int[] { 1, 1 },
+                new int[] { 1, 2 }, new int[] { 1 }, new int[] { 3 });
+        TreeGraph.Patch patch = new TreeGraph.Patch();
+        patch.addPerson(4);
+        patch.addFamily(2);
+        patch.attachParent(2, 3);
+        patch.attachChild(2, 4);
+        // Attaching a link that is already there doesn't add it twice, the last change
+        // of a link wins.
+        patch.attachParent(1, 1);
+        patch.detachChild(1, 3);
+        patch.attachChild(1, 3);
+        patch.detachParent(1, 2);
+        patch.removePerson(1);
+
+        TreeGraph patched = graph.patched(patch, 9);
+
+        assertEquals(9, patched.getRevision());
+        assertArrayEquals(new int[] { 2, 3, 4 }, patched.personIds());
+        assertArrayEquals(new int[] { 1, 2 }, patched.familyIds());
+        assertArrayEquals(new int[] {}, parentsOf(patched, 1));
+        assertArrayEquals(new int[] { 3 }, childrenOf(patched, 1));
+        assertArrayEquals(new int[] { 3 }, parentsOf(patched, 2));
+        assertArrayEquals(new int[] { 4 }, childrenOf(patched, 2));
+        // The original graph is left as it was.
+        assertArrayEquals(new int[] { 1, 2 }, parentsOf(graph, 1));
+
+        TreeGraph.Patch removal = new TreeGraph.Patch();
+        removal.removeFamily(2);
+        TreeGraph removed = patched.patched(removal, 10);
+        assertArrayEquals(new int[] { 1 }, removed.familyIds());
+        assertEquals(0, removed.parentOf().length);
+        assertEquals(1, removed.childOf().length);
+    }
+}
@@ -0,0 +1,24 @@
+package com.familyships.FamilyShips.jmh;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the JMH benchmarks of this package, only compiled and run with
+// `./mvnw test -Pjmh` (which adds the JMH dependencies). A subset can be picked with
+// `-Djmh.include=<regular expression>`, e.g. `-Djmh.include=ModelBenchmarks.serialize`.
+//
+// The other `*Benchmark` classes (`-Pbenchmark`) time larger scenarios once; these are
+// for the small hot paths, where JMH takes care of warming up and forking. How many
+// warmup and measurement iterations is up to each class.
+public class JmhBenchmark {
+    @Test
+    void runBenchmarks() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(System.getProperty("jmh.include", JmhBenchmark.class.getPackageName() + "\\..*Benchmarks"))
+                .forks(1)
+                .build();
+        new Runner(options).run();
+    }
+}
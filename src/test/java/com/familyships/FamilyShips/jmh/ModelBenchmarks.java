@@ -0,0 +1,120 @@
+package com.familyships.FamilyShips.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.familyships.FamilyShips.FamilyTreeGenerator;
+import com.familyships.FamilyShips.graph.TreeGraph;
+import com.familyships.FamilyShips.model.Family;
+import com.familyships.FamilyShips.model.Person;
+import com.familyships.FamilyShips.model.TreeSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// The in-memory parts of the read endpoints on a generated tree: the id sets `Person`
+// and `Family` derive from their links, writing /model/people and /model/families as
+// JSON from the entities and from the graph (see `TreeSnapshot`), and checking
+// whether people are in the tree.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ModelBenchmarks {
+    @Param({ "5", "7" })
+    public int generations;
+    @Param({ "3" })
+    public int branching;
+    @Param({ "0.1" })
+    public double remarriageRate;
+
+    private List<Person> people;
+    private List<Family> families;
+    private TreeGraph graph;
+    private List<Object[]> peopleAndNames;
+    private int[] lookups;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        FamilyTreeGenerator tree = new FamilyTreeGenerator(generations, branching, remarriageRate, 1);
+        people = tree.people(1);
+        families = FamilyTreeGenerator.families(people);
+        graph = tree.graph(1);
+        // Rows of `PersonRepository.findIdsAndNamesByTreeId`.
+        peopleAndNames = new ArrayList<Object[]>();
+        for (Person person : people) {
+            for (String name : person.getNames()) {
+                peopleAndNames.add(new Object[] { person.getId(), name, null });
+            }
+        }
+        // Half of them are not in the tree.
+        Random random = new Random(1);
+        lookups = new int[1024];
+        for (int i = 0; i < lookups.length; i++) {
+            lookups[i] = 1 + random.nextInt(2 * tree.peopleCount());
+        }
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public void personIdSets(Blackhole blackhole) {
+        for (Person person : people) {
+            blackhole.consume(person.getChildOfFamiliesIds());
+            blackhole.consume(person.getParentOfFamilyIds());
+        }
+    }
+
+    @Benchmark
+    public void familyIdSets(Blackhole blackhole) {
+        for (Family family : families) {
+            blackhole.consume(family.getChildrenIds());
+            blackhole.consume(family.getParentIds());
+        }
+    }
+
+    @Benchmark
+    public byte[] serializePeopleEntities() throws Exception {
+        return objectMapper.writeValueAsBytes(people);
+    }
+
+    @Benchmark
+    public byte[] serializeFamiliesEntities() throws Exception {
+        return objectMapper.writeValueAsBytes(families);
+    }
+
+    @Benchmark
+    public byte[] serializePeopleFromGraph() throws Exception {
+        return objectMapper.writeValueAsBytes(TreeSnapshot.people(peopleAndNames, graph));
+    }
+
+    @Benchmark
+    public byte[] serializeFamiliesFromGraph() throws Exception {
+        return objectMapper.writeValueAsBytes(TreeSnapshot.families(graph, 0, graph.familyCount()));
+    }
+
+    // What the read endpoints check before answering about a person.
+    @Benchmark
+    public int membership() {
+        int found = 0;
+        for (int personId : lookups) {
+            if (graph.personIndex(personId) >= 0) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
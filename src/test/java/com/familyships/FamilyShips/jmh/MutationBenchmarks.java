@@ -0,0 +1,104 @@
+package com.familyships.FamilyShips.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.familyships.FamilyShips.FamilyShipsApplication;
+import com.familyships.FamilyShips.FamilyTreeGenerator;
+import com.familyships.FamilyShips.ModelService;
+import com.familyships.FamilyShips.model.Tree;
+import com.familyships.FamilyShips.model.TreeRepository;
+
+// The mutation handlers of `ModelService` against the embedded database of the tests
+// (`src/test/resources/application.properties`), on a generated tree. Every
+// benchmark leaves the tree as it found it, so the tree doesn't grow between
+// iterations. Only the people deleted by `newAndDeletePerson` stay behind as
+// tombstones, which are purged after every iteration (`TombstoneSweeper` doesn't run
+// in the tests).
+//
+// Going through Spring, Hibernate and the database takes the JIT about a minute to
+// settle, hence the longer warmup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 5)
+public class MutationBenchmarks {
+    @Param({ "5" })
+    public int generations;
+    @Param({ "3" })
+    public int branching;
+    @Param({ "0.1" })
+    public double remarriageRate;
+
+    private ConfigurableApplicationContext context;
+    private ModelService modelService;
+    private Integer treeId;
+    private Integer personId;
+    private Integer familyId;
+    private Integer childId;
+    private int renames = 0;
+
+    @Setup
+    public void setUp() {
+        context = SpringApplication.run(FamilyShipsApplication.class, "--server.port=0",
+                "--spring.main.banner-mode=off", "--logging.level.root=WARN");
+        modelService = context.getBean(ModelService.class);
+        treeId = context.getBean(TreeRepository.class).save(new Tree()).getId();
+        FamilyTreeGenerator tree = new FamilyTreeGenerator(generations, branching, remarriageRate, 1);
+        modelService.batch(treeId, tree.operations());
+
+        personId = modelService.newPerson(treeId, List.of("Renamed"));
+        // A family with a parent, so it stays when its child is detached.
+        familyId = modelService.newFamily(treeId);
+        modelService.attachParent(treeId, familyId, modelService.newPerson(treeId, List.of("Parent")));
+        childId = modelService.newPerson(treeId, List.of("Child"));
+    }
+
+    @TearDown(Level.Iteration)
+    public void purgeRemovedPeople() {
+        int purged;
+        do {
+            purged = modelService.purgeRemovedPeople(1000);
+        } while (purged == 1000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean newAndDeletePerson() {
+        return modelService.deletePerson(treeId, modelService.newPerson(treeId, List.of("Someone", "New")));
+    }
+
+    @Benchmark
+    public boolean setNames() {
+        // A mutable list, like the one /model/set_names passes.
+        return modelService.setNames(treeId, personId, new ArrayList<String>(List.of("Renamed", "" + renames++)));
+    }
+
+    // Including the check that the link doesn't make anyone their own ancestor.
+    @Benchmark
+    public boolean attachAndDetachChild() {
+        return modelService.attachChild(treeId, familyId, childId)
+                && modelService.detachChild(treeId, familyId, childId);
+    }
+}
@@ -0,0 +1,77 @@
+package com.familyships.FamilyShips.layout;
+
+import java.util.Random;
+
+import com.familyships.FamilyShips.graph.IntList;
+
+import org.junit.jupiter.api.Test;
+
+// Not part of the regular test run, run with `./mvnw test -Pbenchmark`.
+//
+// Lays out a synthetic tree of 50k people and reports how long building the graph
+// and calculating the positions takes.
+public class LayoutBenchmark {
+    private static final int PEOPLE = 50_000;
+    private static final int ROUNDS = 5;
+
+    // Generations of couples, where every child of the previous generation finds a
+    // partner from outside of the tree with some probability, and every couple has
+    // up to four children.
+    static LayoutGraph syntheticTree(int people, long seed) {
+        Random random = new Random(seed);
+        IntList personIds = new IntList(people);
+        IntList familyIds = new IntList();
+        IntList parentLinkFamilyIds = new IntList();
+        IntList parentLinkPersonIds = new IntList();
+        IntList childLinkFamilyIds = new IntList();
+        IntList childLinkPersonIds = new IntList();
+
+        IntList generation = new IntList();
+        for (int i = 0; i < 100; i++) {
+            personIds.add(personIds.size() + 1);
+            generation.add(personIds.size());
+        }
+        while (personIds.size() < people) {
+            IntList nextGeneration = new IntList();
+            for (int i = 0; i < generation.size() && personIds.size() < people; i++) {
+                if (random.nextInt(4) == 0) {
+                    continue;
+                }
+                personIds.add(personIds.size() + 1);
+                int partner = personIds.size();
+                familyIds.add(familyIds.size() + 1);
+                int family = familyIds.size();
+                for (int parent : new int[] { generation.get(i), partner }) {
+                    parentLinkFamilyIds.add(family);
+                    parentLinkPersonIds.add(parent);
+                }
+                int children = 1 + random.nextInt(4);
+                for (int j = 0; j < children && personIds.size() < people; j++) {
+                    personIds.add(personIds.size() + 1);
+                    childLinkFamilyIds.add(family);
+                    childLinkPersonIds.add(personIds.size());
+                    nextGeneration.add(personIds.size());
+                }
+            }
+            generation = nextGeneration.isEmpty() ? IntList.of(personIds.last()) : nextGeneration;
+        }
+        return new LayoutGraph(personIds.toArray(), familyIds.toArray(), parentLinkFamilyIds.toArray(),
+                parentLinkPersonIds.toArray(), childLinkFamilyIds.toArray(), childLinkPersonIds.toArray());
+    }
+
+    @Test
+    void benchmarkLayout() {
+        // The first round warms up the JIT.
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            LayoutGraph graph = syntheticTree(PEOPLE, round);
+            long built = System.nanoTime();
+            new LayoutEngine(graph).calculate(0);
+            long calculated = System.nanoTime();
+            if (round > 0) {
+                System.out.printf("Round %d: %d people, %d families, graph in %.1fms, layout in %.1fms%n", round,
+                        graph.peopleCount(), graph.familyCount(), (built - start) / 1e6, (calculated - built) / 1e6);
+            }
+        }
+    }
+}
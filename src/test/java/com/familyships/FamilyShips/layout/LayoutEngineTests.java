@@ -0,0 +1,239 @@
+package com.familyships.FamilyShips.layout;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.familyships.FamilyShips.graph.IntList;
+
+import org.junit.jupiter.api.Test;
+
+// Same cases as `layout_test.ts`, the positions have to be exactly the ones the
+// frontend calculates.
+public class LayoutEngineTests {
+    // Builds the tree the same way the `fake*` functions of `model.ts` do: people
+    // are numbered from 1 and families get the next free id.
+    private static class Tree {
+        private final int people;
+        private int families = 0;
+        private final IntList parentLinkFamilyIds = new IntList();
+        private final IntList parentLinkPersonIds = new IntList();
+        private final IntList childLinkFamilyIds = new IntList();
+        private final IntList childLinkPersonIds = new IntList();
+
+        Tree(int people) {
+            this.people = people;
+        }
+
+        int newFamily() {
+            return ++families;
+        }
+
+        Tree family(int[] parents, int... children) {
+            int familyId = newFamily();
+            for (int parent : parents) {
+                attachParent(familyId, parent);
+            }
+            for (int child : children) {
+                attachChild(familyId, child);
+            }
+            return this;
+        }
+
+        void attachParent(int familyId, int personId) {
+            parentLinkFamilyIds.add(familyId);
+            parentLinkPersonIds.add(personId);
+        }
+
+        void attachChild(int familyId, int personId) {
+            childLinkFamilyIds.add(familyId);
+            childLinkPersonIds.add(personId);
+        }
+
+        LayoutEngine calculate() {
+            int[] personIds = new int[people];
+            for (int i = 0; i < people; i++) {
+                personIds[i] = i + 1;
+            }
+            int[] familyIds = new int[families];
+            for (int i = 0; i < families; i++) {
+                familyIds[i] = i + 1;
+            }
+            LayoutEngine engine = new LayoutEngine(new LayoutGraph(personIds, familyIds,
+                    parentLinkFamilyIds.toArray(), parentLinkPersonIds.toArray(), childLinkFamilyIds.toArray(),
+                    childLinkPersonIds.toArray()));
+            engine.calculate(0);
+            return engine;
+        }
+    }
+
+    private static int[] parents(int... ids) {
+        return ids;
+    }
+
+    // Positions given as {x, y} of person/family 1, 2, ...
+    private static void assertPositions(LayoutEngine engine, double[][] people, double[][] families) {
+        for (int i = 0; i < people.length; i++) {
+            assertArrayEquals(people[i], engine.personPosition(i), "person " + (i + 1));
+        }
+        for (int i = 0; i < families.length; i++) {
+            assertArrayEquals(families[i], engine.familyPosition(i), "family " + (i + 1));
+        }
+    }
+
+    // Layer in person ids.
+    private static int[] layer(LayoutEngine engine, int layerIndex) {
+        return Arrays.stream(engine.layers.get(layerIndex)).map(person -> person + 1).toArray();
+    }
+
+    @Test
+    void testSccs() {
+        Tree tree = new Tree(10);
+        int[][] edges = { { 1, 2 }, { 2, 3 }, { 3, 1 }, { 3, 4 }, { 4, 5 }, { 5, 6 }, { 6, 7 }, { 7, 8 }, { 8, 9 },
+                { 9, 6 }, { 7, 9 }, { 9, 5 } };
+        for (int[] edge : edges) {
+            tree.family(parents(edge[0]), edge[1]);
+        }
+        LayoutEngine engine = tree.calculate();
+
+        assertArrayEquals(new int[] { 1, 2, 3, 6, 7, 8, 9, 10 }, layer(engine, 0));
+    }
+
+    @Test
+    void testNuclear() {
+        LayoutEngine engine = new Tree(14)
+                .family(parents(1, 2), 3, 4)
+                .family(parents(5, 6), 7)
+                .family(parents(3, 7), 8)
+                .family(parents(7, 11), 12)
+                .family(parents(8, 12), 13)
+                .family(parents(10), 14)
+                .family(parents(13, 14))
+                .calculate();
+
+        assertArrayEquals(new int[] { 1, 2, 5, 6, 9, 10 }, layer(engine, 0));
+        assertArrayEquals(new int[] { 3, 4, 7, 11 }, layer(engine, 1));
+        assertArrayEquals(new int[] { 8, 12 }, layer(engine, 2));
+        assertArrayEquals(new int[] { 13, 14 }, layer(engine, 3));
+
+        assertEquals(List.of(List.of(List.of(1, 2), List.of(5, 6)), List.of(List.of(9)), List.of(List.of(10))),
+                engine.layerConstraintsToArray(0));
+        assertEquals(List.of(List.of(List.of(3), List.of(7, 11)), List.of(List.of(4))),
+                engine.layerConstraintsToArray(1));
+        assertEquals(List.of(List.of(List.of(8), List.of(12))), engine.layerConstraintsToArray(2));
+        assertEquals(List.of(List.of(List.of(13)), List.of(List.of(14))), engine.layerConstraintsToArray(3));
+
+        assertPositions(engine,
+                new double[][] { { 0, 0 }, { 300, 0 }, { 300, 200 }, { 0, 200 }, { 1200, 0 }, { 1500, 0 },
+                        { 1200, 200 }, { 600, 400 }, { 1800, 0 }, { 2100, 0 }, { 1500, 200 }, { 1200, 400 },
+                        { 900, 600 }, { 2100, 600 } },
+                new double[][] { { 150, 0 }, { 1350, 0 }, { 600, 200 }, { 1350, 200 }, { 900, 400 }, { 2100, 75 },
+                        { 1200, 600 } });
+    }
+
+    @Test
+    void testChildrenOrdering() {
+        LayoutEngine engine = new Tree(7)
+                .family(parents(1, 2), 3)
+                .family(parents(2), 4)
+                .family(parents(5), 6)
+                .family(parents(4, 6), 7)
+                .calculate();
+
+        assertEquals(List.of(List.of(List.of(1, 2), List.of(5))), engine.layerConstraintsToArray(0));
+        assertEquals(List.of(List.of(List.of(3)), List.of(List.of(4), List.of(6))),
+                engine.layerConstraintsToArray(1));
+        assertPositions(engine,
+                new double[][] { { 0, 0 }, { 300, 0 }, { 0, 200 }, { 300, 200 }, { 900, 0 }, { 900, 200 },
+                        { 600, 400 } },
+                new double[][] { { 150, 0 }, { 300, 75 }, { 900, 75 }, { 600, 200 } });
+    }
+
+    @Test
+    void testFamiliesOrdering() {
+        LayoutEngine engine = new Tree(2)
+                .family(parents(1, 2))
+                .family(parents(2))
+                .calculate();
+
+        assertEquals(List.of(List.of(List.of(1, 2))), engine.layerConstraintsToArray(0));
+        assertPositions(engine, new double[][] { { 0, 0 }, { 300, 0 } }, new double[][] { { 150, 0 }, { 300, 75 } });
+    }
+
+    @Test
+    void testChildrenLinksDoNotCollide() {
+        Tree tree = new Tree(6)
+                .family(parents(1, 2), 6)
+                .family(parents(2, 3), 4)
+                .family(parents(1, 3));
+        tree.attachChild(2, 5);
+        LayoutEngine engine = tree.calculate();
+
+        assertEquals(List.of(List.of(List.of(3, 1, 2))), engine.layerConstraintsToArray(0));
+        assertPositions(engine,
+                new double[][] { { 450, 0 }, { 750, 0 }, { 150, 0 }, { 300, 200 }, { 600, 200 }, { 900, 200 } },
+                new double[][] { { 600, 0 }, { 450, 60 }, { 300, 0 } });
+    }
+
+    @Test
+    void testReversalConstraints() {
+        Tree tree = new Tree(16)
+                .family(parents(1, 2), 3, 13)
+                .family(parents(4, 5), 6, 14)
+                .family(parents(7, 8), 9, 15)
+                .family(parents(10, 11), 12);
+        tree.attachChild(3, 16);
+        LayoutEngine engine = tree
+                .family(parents(13, 6))
+                .family(parents(15, 12))
+                .family(parents(14, 16))
+                .calculate();
+
+        assertPositions(engine,
+                new double[][] { { 2700, 0 }, { 3000, 0 }, { 3000, 200 }, { 1800, 0 }, { 2100, 0 }, { 2100, 200 },
+                        { 750, 0 }, { 1050, 0 }, { 900, 200 }, { 0, 0 }, { 300, 0 }, { 0, 200 }, { 2700, 200 },
+                        { 1800, 200 }, { 600, 200 }, { 1200, 200 } },
+                new double[][] { { 2850, 0 }, { 1950, 0 }, { 900, 0 }, { 150, 0 }, { 2400, 200 }, { 300, 200 },
+                        { 1500, 200 } });
+    }
+
+    @Test
+    void testLoopDaLoop() {
+        LayoutEngine engine = new Tree(2)
+                .family(parents(1), 2)
+                .family(parents(2), 1)
+                .calculate();
+
+        assertPositions(engine, new double[][] { { 300, 0 }, { 0, 0 } }, new double[][] { { 300, 75 }, { 0, 75 } });
+    }
+
+    @Test
+    void testThree() {
+        LayoutEngine engine = new Tree(4)
+                .family(parents(1, 2, 3), 4)
+                .calculate();
+
+        assertPositions(engine, new double[][] { { 300, 0 }, { 600, 0 }, { 0, 0 }, { 0, 200 } },
+                new double[][] { { 0, 90 } });
+    }
+
+    @Test
+    void testChildAndPartner() {
+        LayoutEngine engine = new Tree(2)
+                .family(parents(1, 2), 1)
+                .calculate();
+
+        assertPositions(engine, new double[][] { { 300, 200 }, { 0, 0 } }, new double[][] { { 0, 260 } });
+    }
+
+    @Test
+    void testSortMatchesJavaScriptForInconsistentComparator() {
+        // The comparator `findBestFamilyForPerson` uses claims both a < b and b < a for
+        // two two-parent families, the result depends on the exact sorting algorithm.
+        IntList list = IntList.of(3, 1, 2, 5, 4);
+        list.sort((a, b) -> -1);
+        assertArrayEquals(new int[] { 4, 5, 2, 1, 3 }, list.toArray());
+    }
+}
@@ -0,0 +1,70 @@
+package com.familyships.FamilyShips.search;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// Not part of the regular test run, run with `./mvnw test -Pbenchmark`.
+//
+// Indexes the names of 100k made up people and reports how long building the index
+// takes and how long searching takes for prefixes of names, with and without typos.
+public class NameIndexBenchmark {
+    private static final int PEOPLE = 100_000;
+    private static final int QUERIES = 10_000;
+    private static final String[] SYLLABLES = { "an", "ber", "ka", "lo", "mi", "no", "ra", "sta", "to", "wi",
+            "zé", "ło", "ja", "rek", "son", "el" };
+
+    private static String name(Random random) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 1 + random.nextInt(3); i >= 0; i--) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    // The beginning of a name, with one of its letters replaced now and then.
+    private static String query(Random random) {
+        String name = name(random).toLowerCase();
+        String query = name.substring(0, Math.min(name.length(), 3 + random.nextInt(4)));
+        if (random.nextInt(4) == 0) {
+            int letter = random.nextInt(query.length());
+            query = query.substring(0, letter) + 'x' + query.substring(letter + 1);
+        }
+        return query;
+    }
+
+    @Test
+    void benchmarkSearch() {
+        // The first round warms up the JIT.
+        for (int round = 0; round <= 3; round++) {
+            Random random = new Random(round);
+            long start = System.nanoTime();
+            NameIndex index = new NameIndex();
+            for (int personId = 1; personId <= PEOPLE; personId++) {
+                index.setNames(personId, List.of(name(random), name(random), name(random)));
+            }
+            long built = System.nanoTime();
+
+            long hits = 0;
+            long[] times = new long[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                String query = random.nextInt(3) == 0 ? query(random) + " " + query(random) : query(random);
+                long queryStart = System.nanoTime();
+                hits += index.search(query, 20).size();
+                times[i] = System.nanoTime() - queryStart;
+            }
+            long searched = System.nanoTime();
+            Arrays.sort(times);
+            if (round > 0) {
+                System.out.printf("Round %d: %d people, %d terms, index built in %.1fms, %.3fms per search "
+                        + "(p50 %.3fms, p99 %.3fms, slowest %.1fms, %.1f hits on average)%n", round,
+                        index.peopleCount(), index.termCount(), (built - start) / 1e6,
+                        (searched - built) / 1e6 / QUERIES, times[QUERIES / 2] / 1e6, times[QUERIES * 99 / 100] / 1e6,
+                        times[QUERIES - 1] / 1e6, (double) hits / QUERIES);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.familyships.FamilyShips.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class NameIndexTests {
+    private static List<Integer> ids(List<NameIndex.Hit> hits) {
+        return hits.stream().map(NameIndex.Hit::getId).toList();
+    }
+
+    private static NameIndex index() {
+        NameIndex index = new NameIndex();
+        index.setNames(1, List.of("Anna", "Kowalska"));
+        index.setNames(2, List.of("Annabelle", "Smith"));
+        index.setNames(3, List.of("Łucja", "Żmijewska-Kowalska"));
+        index.setNames(4, List.of("John", "Smith"));
+        index.setNames(5, List.of("Jonathan", "Smithers"));
+        return index;
+    }
+
+    @Test
+    void testTerms() {
+        assertEquals(List.of("lucja", "zmijewska", "kowalska"), NameIndex.terms("Łucja Żmijewska-Kowalska"));
+        assertEquals(List.of("strasse", "eloise"), NameIndex.terms("  Straße, Éloïse "));
+    }
+
+    @Test
+    void testPrefixesWithoutCaseAndDiacritics() {
+        NameIndex index = index();
+
+        // Exact matches come before the longer names.
+        assertEquals(List.of(1, 2), ids(index.search("ann", 10)));
+        assertEquals(List.of(1, 2), ids(index.search("ANNA", 10)));
+        assertEquals(List.of(0, 1), index.search("anna", 10).stream().map(NameIndex.Hit::getScore).toList());
+        assertEquals(List.of(3), ids(index.search("luc", 10)));
+        assertEquals(List.of(1, 3), ids(index.search("kowalska", 10)));
+        assertEquals(List.of(3), ids(index.search("Łucja kow", 10)));
+        assertEquals(List.of(4, 5), ids(index.search("smith j", 10)));
+        assertEquals(List.of(4), ids(index.search("smith j", 1)));
+        assertEquals(List.of(), ids(index.search(" - ", 10)));
+    }
+
+    @Test
+    void testTypos() {
+        NameIndex index = index();
+
+        // Swapped, missing, replaced and extra letters.
+        assertEquals(List.of(4, 5), ids(index.search("jhon", 10)));
+        assertEquals(List.of(2, 4, 5), ids(index.search("smth", 10)));
+        assertEquals(List.of(1, 3), ids(index.search("kowalksa", 10)));
+        assertEquals(List.of(5), ids(index.search("jonnathan", 10)));
+        // Short words have to be typed right.
+        assertEquals(List.of(), ids(index.search("jn", 10)));
+    }
+
+    @Test
+    void testUpdates() {
+        NameIndex index = index();
+
+        index.setNames(4, List.of("Johanna", "Nowak"));
+        index.remove(1);
+
+        assertEquals(List.of(2), ids(index.search("ann", 10)));
+        assertEquals(List.of(4), ids(index.search("nowak", 10)));
+        assertEquals(List.of(2, 5), ids(index.search("smith", 10)));
+        assertEquals(4, index.peopleCount());
+    }
+}